@@ -1,10 +1,13 @@
 package gqserver.api;
 
+import gqserver.api.codec.EncodedPacket;
+import gqserver.api.codec.PacketCodec;
 import gqserver.api.data.system.ServerClientConfig;
 import gqserver.api.exception.PacketLimitException;
 import gqserver.api.exception.UnknownPacketException;
 import gqserver.api.packets.data.DataRequestPacket;
 import gqserver.api.packets.earthquake.ArchivedQuakesRequestPacket;
+import gqserver.api.packets.earthquake.ArchivedQuakesSyncRequestPacket;
 import gqserver.api.packets.earthquake.EarthquakeRequestPacket;
 import gqserver.api.packets.earthquake.EarthquakesRequestPacket;
 import gqserver.api.packets.station.StationsRequestPacket;
@@ -12,9 +15,7 @@ import gqserver.api.packets.system.HandshakePacket;
 import gqserver.api.packets.system.HeartbeatPacket;
 import gqserver.api.packets.system.TerminationPacket;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.net.Socket;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -33,6 +34,10 @@ public class ServerClient {
     private final ObjectInputStream inputStream;
     private final ObjectOutputStream outputStream;
 
+    private DataInputStream binaryInputStream;
+    private OutputStream binaryOutputStream;
+    private volatile int codecVersion = 0;
+
     private final long joinTime;
     private long lastHeartbeat;
 
@@ -54,6 +59,7 @@ public class ServerClient {
         limitRules.put(EarthquakesRequestPacket.class, 20);
         limitRules.put(EarthquakeRequestPacket.class, 128);
         limitRules.put(ArchivedQuakesRequestPacket.class, 4);
+        limitRules.put(ArchivedQuakesSyncRequestPacket.class, 60);
         limitRules.put(DataRequestPacket.class, 60);
     }
 
@@ -66,6 +72,19 @@ public class ServerClient {
         this.lastHeartbeat = joinTime;
     }
 
+    /**
+     * For subclasses that do their own non-blocking I/O, no streams are created.
+     */
+    protected ServerClient(Socket socket, int codecVersion) {
+        this.socket = socket;
+        this.inputStream = null;
+        this.outputStream = null;
+        this.codecVersion = codecVersion;
+        this.id = nextID.getAndIncrement();
+        this.joinTime = System.currentTimeMillis();
+        this.lastHeartbeat = joinTime;
+    }
+
     private ObjectInputStream getInputStream() {
         return inputStream;
     }
@@ -74,14 +93,34 @@ public class ServerClient {
         return outputStream;
     }
 
+    /**
+     * Switches both directions to {@link PacketCodec}. Must be called after the handshake response was flushed
+     * and before the reader starts, the object streams are not used afterwards.
+     */
+    public synchronized void useBinaryCodec() throws IOException {
+        this.binaryInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.binaryOutputStream = socket.getOutputStream();
+        this.codecVersion = PacketCodec.VERSION;
+    }
+
+    /**
+     * @return {@link PacketCodec} version in use, 0 = Java serialization
+     */
+    public int getCodecVersion() {
+        return codecVersion;
+    }
+
     public Packet readPacket() throws IOException, UnknownPacketException, PacketLimitException {
+        if(codecVersion != 0) {
+            Packet packet = PacketCodec.read(binaryInputStream);
+            onPacketReceived(packet);
+            return packet;
+        }
+
         try {
             Object obj = getInputStream().readObject();
             if(obj instanceof Packet packet) {
-                receivedPackets++;
-
-                checkLimits(packet);
-
+                onPacketReceived(packet);
                 return packet;
             }
 
@@ -91,6 +130,22 @@ public class ServerClient {
         }
     }
 
+    protected void onPacketReceived(Packet packet) throws PacketLimitException {
+        receivedPackets++;
+        checkLimits(packet);
+    }
+
+    protected void onPacketSent() {
+        sentPackets++;
+    }
+
+    /**
+     * @return number of packets waiting to be written to the socket, blocking clients write directly and have none
+     */
+    public int getQueueDepth() {
+        return 0;
+    }
+
     private void checkLimits(Packet packet) throws PacketLimitException{
         int maximum = limitRules.getOrDefault(packet.getClass(), -1);
         if(maximum == -1) {
@@ -124,11 +179,35 @@ public class ServerClient {
     }
 
     public synchronized void sendPacket(Packet packet) throws IOException{
-        getOutputStream().writeObject(packet);
-        if(sentPackets % RESET_COUNT == 0) {
+        if(codecVersion != 0) {
+            binaryOutputStream.write(PacketCodec.encode(packet));
+            sentPackets++;
+            return;
+        }
+
+        writeObject(packet);
+    }
+
+    /**
+     * Sends a packet shared by many clients, binary clients write the frame encoded only once.
+     */
+    public synchronized void sendPacket(EncodedPacket packet) throws IOException{
+        if(codecVersion != 0) {
+            binaryOutputStream.write(packet.frame());
+            sentPackets++;
+            return;
+        }
+
+        writeObject(packet.packet());
+    }
+
+    private void writeObject(Packet packet) throws IOException{
+        if(sentPackets > 0 && sentPackets % RESET_COUNT == 0) {
             // to avoid memory leaks in clients!
+            // done before writing so that nothing trails the handshake response when switching codecs
             getOutputStream().reset();
         }
+        getOutputStream().writeObject(packet);
         sentPackets++;
     }
 
@@ -185,6 +264,10 @@ public class ServerClient {
     }
 
     public void flush() throws IOException {
+        if(codecVersion != 0) {
+            binaryOutputStream.flush();
+            return;
+        }
         getOutputStream().flush();
     }
 
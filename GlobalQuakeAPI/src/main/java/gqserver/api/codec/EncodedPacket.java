@@ -0,0 +1,36 @@
+package gqserver.api.codec;
+
+import gqserver.api.Packet;
+
+import java.io.IOException;
+
+/**
+ * Packet sent to many clients. The {@link PacketCodec} frame is created by the first client that needs it
+ * and then shared by all the others, the frame must not be modified.
+ */
+public final class EncodedPacket {
+
+    private final Packet packet;
+    private volatile byte[] frame;
+
+    public EncodedPacket(Packet packet) {
+        this.packet = packet;
+    }
+
+    public Packet packet() {
+        return packet;
+    }
+
+    public byte[] frame() throws IOException {
+        byte[] result = frame;
+        if (result == null) {
+            synchronized (this) {
+                result = frame;
+                if (result == null) {
+                    frame = result = PacketCodec.encode(packet);
+                }
+            }
+        }
+        return result;
+    }
+}
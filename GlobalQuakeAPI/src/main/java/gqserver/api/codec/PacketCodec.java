@@ -0,0 +1,622 @@
+package gqserver.api.codec;
+
+import gqserver.api.Packet;
+import gqserver.api.data.cluster.ClusterData;
+import gqserver.api.data.earthquake.ArchiveDigestData;
+import gqserver.api.data.earthquake.ArchivedEventData;
+import gqserver.api.data.earthquake.ArchivedQuakeData;
+import gqserver.api.data.earthquake.EarthquakeInfo;
+import gqserver.api.data.earthquake.HypocenterData;
+import gqserver.api.data.earthquake.advanced.*;
+import gqserver.api.data.station.StationInfoData;
+import gqserver.api.data.station.StationIntensityData;
+import gqserver.api.data.system.ServerClientConfig;
+import gqserver.api.exception.UnknownPacketException;
+import gqserver.api.packets.cluster.ClusterPacket;
+import gqserver.api.packets.data.DataRecordPacket;
+import gqserver.api.packets.data.DataRequestPacket;
+import gqserver.api.packets.earthquake.*;
+import gqserver.api.packets.station.*;
+import gqserver.api.packets.system.HandshakePacket;
+import gqserver.api.packets.system.HandshakeSuccessfulPacket;
+import gqserver.api.packets.system.HeartbeatPacket;
+import gqserver.api.packets.system.TerminationPacket;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of all packets, used instead of Java serialization once both sides agreed on it
+ * in the handshake (see {@link HandshakePacket#codecVersion()}).
+ * <p>
+ * Every packet is one frame: int length of the rest of the frame, byte packet type, then the record components
+ * in declaration order. Nullable values are prefixed by a presence byte, lists and arrays by their size (-1 = null),
+ * strings are UTF-8 with an int length. Nothing is reflected and no class descriptors are sent.
+ * The packet type ids and field order are part of the protocol, bump {@link #VERSION} when changing them.
+ */
+public final class PacketCodec {
+
+    /**
+     * 1 - initial version, 2 - {@link StationsIntensityDeltaPacket}, 3 - {@link ArchivedQuakesSyncRequestPacket}
+     */
+    public static final int VERSION = 3;
+
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final byte HANDSHAKE = 1;
+    private static final byte HANDSHAKE_SUCCESSFUL = 2;
+    private static final byte HEARTBEAT = 3;
+    private static final byte TERMINATION = 4;
+    private static final byte ARCHIVED_QUAKES_REQUEST = 5;
+    private static final byte EARTHQUAKES_REQUEST = 6;
+    private static final byte EARTHQUAKE_REQUEST = 7;
+    private static final byte EARTHQUAKE_CHECK = 8;
+    private static final byte HYPOCENTER_DATA = 9;
+    private static final byte ARCHIVED_QUAKE = 10;
+    private static final byte CLUSTER = 11;
+    private static final byte DATA_RECORD = 12;
+    private static final byte DATA_REQUEST = 13;
+    private static final byte STATIONS_REQUEST = 14;
+    private static final byte STATIONS_INFO = 15;
+    private static final byte STATIONS_INTENSITY = 16;
+    private static final byte STATIONS_INTENSITY_DELTA = 17;
+    private static final byte ARCHIVED_QUAKES_SYNC_REQUEST = 18;
+    private static final byte ARCHIVED_QUAKES_PAGE = 19;
+
+    private static final InputType[] INPUT_TYPES = InputType.values();
+
+    private PacketCodec() {
+    }
+
+    /**
+     * @return the whole frame including the length prefix
+     */
+    public static byte[] encode(Packet packet) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        writePacket(out, packet);
+        out.flush();
+
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - Integer.BYTES;
+        if (length > MAX_FRAME_SIZE) {
+            throw new IOException("Packet %s is too large: %d bytes".formatted(packet.getClass().getSimpleName(), length));
+        }
+
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    public static Packet read(DataInputStream in) throws IOException, UnknownPacketException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: %d".formatted(length));
+        }
+
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return decode(frame);
+    }
+
+    /**
+     * @param frame frame without the length prefix
+     */
+    public static Packet decode(byte[] frame) throws IOException, UnknownPacketException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        Packet packet = readPacket(in);
+        if (in.available() > 0) {
+            throw new IOException("%d bytes left after %s".formatted(in.available(), packet.getClass().getSimpleName()));
+        }
+        return packet;
+    }
+
+    private static void writePacket(DataOutputStream out, Packet packet) throws IOException {
+        if (packet instanceof HandshakePacket p) {
+            out.writeByte(HANDSHAKE);
+            out.writeInt(p.compatVersion());
+            writeClientConfig(out, p.clientConfig());
+            out.writeInt(p.codecVersion());
+        } else if (packet instanceof HandshakeSuccessfulPacket p) {
+            out.writeByte(HANDSHAKE_SUCCESSFUL);
+            out.writeInt(p.codecVersion());
+        } else if (packet instanceof HeartbeatPacket) {
+            out.writeByte(HEARTBEAT);
+        } else if (packet instanceof TerminationPacket p) {
+            out.writeByte(TERMINATION);
+            writeString(out, p.cause());
+        } else if (packet instanceof ArchivedQuakesRequestPacket) {
+            out.writeByte(ARCHIVED_QUAKES_REQUEST);
+        } else if (packet instanceof EarthquakesRequestPacket) {
+            out.writeByte(EARTHQUAKES_REQUEST);
+        } else if (packet instanceof EarthquakeRequestPacket p) {
+            out.writeByte(EARTHQUAKE_REQUEST);
+            writeUUID(out, p.uuid());
+        } else if (packet instanceof EarthquakeCheckPacket p) {
+            out.writeByte(EARTHQUAKE_CHECK);
+            writeEarthquakeInfo(out, p.info());
+        } else if (packet instanceof HypocenterDataPacket p) {
+            out.writeByte(HYPOCENTER_DATA);
+            writeHypocenterData(out, p.data());
+            writeAdvancedHypocenterData(out, p.advancedHypocenterData());
+            writeClusterData(out, p.clusterData());
+        } else if (packet instanceof ArchivedQuakePacket p) {
+            out.writeByte(ARCHIVED_QUAKE);
+            writeArchivedQuake(out, p);
+        } else if (packet instanceof ClusterPacket p) {
+            out.writeByte(CLUSTER);
+            writeClusterData(out, p.clusterData());
+        } else if (packet instanceof DataRecordPacket p) {
+            out.writeByte(DATA_RECORD);
+            out.writeInt(p.stationIndex());
+            writeBytes(out, p.data());
+        } else if (packet instanceof DataRequestPacket p) {
+            out.writeByte(DATA_REQUEST);
+            writeString(out, p.station());
+            out.writeBoolean(p.cancel());
+        } else if (packet instanceof StationsRequestPacket) {
+            out.writeByte(STATIONS_REQUEST);
+        } else if (packet instanceof StationsInfoPacket p) {
+            out.writeByte(STATIONS_INFO);
+            writeUUID(out, p.stationsIndexing());
+            writeList(out, p.stationInfoDataList(), PacketCodec::writeStationInfoData);
+        } else if (packet instanceof StationsIntensityPacket p) {
+            out.writeByte(STATIONS_INTENSITY);
+            writeUUID(out, p.stationsIndexing());
+            out.writeLong(p.time());
+            writeList(out, p.intensities(), PacketCodec::writeStationIntensityData);
+        } else if (packet instanceof StationsIntensityDeltaPacket p) {
+            out.writeByte(STATIONS_INTENSITY_DELTA);
+            writeIntensityDelta(out, p);
+        } else if (packet instanceof ArchivedQuakesSyncRequestPacket p) {
+            out.writeByte(ARCHIVED_QUAKES_SYNC_REQUEST);
+            out.writeLong(p.before());
+            writeList(out, p.digests(), PacketCodec::writeArchiveDigestData);
+        } else if (packet instanceof ArchivedQuakesPagePacket p) {
+            out.writeByte(ARCHIVED_QUAKES_PAGE);
+            writeList(out, p.quakes(), PacketCodec::writeArchivedQuake);
+            out.writeLong(p.nextBefore());
+            out.writeBoolean(p.last());
+        } else {
+            throw new IOException("No binary encoding for packet %s".formatted(packet.getClass().getName()));
+        }
+    }
+
+    private static Packet readPacket(DataInputStream in) throws IOException, UnknownPacketException {
+        byte type = in.readByte();
+        return switch (type) {
+            case HANDSHAKE -> new HandshakePacket(in.readInt(), readClientConfig(in), in.readInt());
+            case HANDSHAKE_SUCCESSFUL -> new HandshakeSuccessfulPacket(in.readInt());
+            case HEARTBEAT -> new HeartbeatPacket();
+            case TERMINATION -> new TerminationPacket(readString(in));
+            case ARCHIVED_QUAKES_REQUEST -> new ArchivedQuakesRequestPacket();
+            case EARTHQUAKES_REQUEST -> new EarthquakesRequestPacket();
+            case EARTHQUAKE_REQUEST -> new EarthquakeRequestPacket(readUUID(in));
+            case EARTHQUAKE_CHECK -> new EarthquakeCheckPacket(readEarthquakeInfo(in));
+            case HYPOCENTER_DATA -> new HypocenterDataPacket(readHypocenterData(in), readAdvancedHypocenterData(in), readClusterData(in));
+            case ARCHIVED_QUAKE -> readArchivedQuake(in);
+            case CLUSTER -> new ClusterPacket(readClusterData(in));
+            case DATA_RECORD -> new DataRecordPacket(in.readInt(), readBytes(in));
+            case DATA_REQUEST -> new DataRequestPacket(readString(in), in.readBoolean());
+            case STATIONS_REQUEST -> new StationsRequestPacket();
+            case STATIONS_INFO -> new StationsInfoPacket(readUUID(in), readList(in, PacketCodec::readStationInfoData));
+            case STATIONS_INTENSITY -> new StationsIntensityPacket(readUUID(in), in.readLong(), readList(in, PacketCodec::readStationIntensityData));
+            case STATIONS_INTENSITY_DELTA -> readIntensityDelta(in);
+            case ARCHIVED_QUAKES_SYNC_REQUEST -> new ArchivedQuakesSyncRequestPacket(in.readLong(), readList(in, PacketCodec::readArchiveDigestData));
+            case ARCHIVED_QUAKES_PAGE -> new ArchivedQuakesPagePacket(readList(in, PacketCodec::readArchivedQuake), in.readLong(), in.readBoolean());
+            default -> throw new UnknownPacketException("Unknown packet type %d".formatted(type), null);
+        };
+    }
+
+    private interface Writer<T> {
+        void write(DataOutputStream out, T value) throws IOException;
+    }
+
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static <T> void writeList(DataOutputStream out, List<T> list, Writer<T> writer) throws IOException {
+        if (list == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(list.size());
+        for (T value : list) {
+            writer.write(out, value);
+        }
+    }
+
+    private static <T> List<T> readList(DataInputStream in, Reader<T> reader) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        // each element takes at least one byte, so a corrupted size cannot allocate more than the frame
+        if (size > in.available()) {
+            throw new IOException("Invalid list size: %d".formatted(size));
+        }
+        List<T> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(reader.read(in));
+        }
+        return list;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("Invalid array length: %d".formatted(length));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeBoolean(uuid != null);
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readUUID(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+    }
+
+    private static void writeFloat(DataOutputStream out, Float value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static Float readFloat(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readFloat() : null;
+    }
+
+    private static void writeClientConfig(DataOutputStream out, ServerClientConfig config) throws IOException {
+        out.writeBoolean(config != null);
+        if (config != null) {
+            out.writeBoolean(config.earthquakeData());
+            out.writeBoolean(config.stationData());
+        }
+    }
+
+    private static ServerClientConfig readClientConfig(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new ServerClientConfig(in.readBoolean(), in.readBoolean()) : null;
+    }
+
+    private static void writeEarthquakeInfo(DataOutputStream out, EarthquakeInfo info) throws IOException {
+        out.writeBoolean(info != null);
+        if (info != null) {
+            writeUUID(out, info.uuid());
+            out.writeInt(info.revisionID());
+        }
+    }
+
+    private static EarthquakeInfo readEarthquakeInfo(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new EarthquakeInfo(readUUID(in), in.readInt()) : null;
+    }
+
+    private static void writeHypocenterData(DataOutputStream out, HypocenterData data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data != null) {
+            writeUUID(out, data.uuid());
+            out.writeInt(data.revisionID());
+            out.writeFloat(data.lat());
+            out.writeFloat(data.lon());
+            out.writeFloat(data.depth());
+            out.writeLong(data.origin());
+            out.writeFloat(data.magnitude());
+            out.writeLong(data.lastUpdate());
+            writeString(out, data.region());
+        }
+    }
+
+    private static HypocenterData readHypocenterData(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new HypocenterData(readUUID(in), in.readInt(), in.readFloat(), in.readFloat(), in.readFloat(),
+                in.readLong(), in.readFloat(), in.readLong(), readString(in));
+    }
+
+    private static void writeAdvancedHypocenterData(DataOutputStream out, AdvancedHypocenterData data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data == null) {
+            return;
+        }
+
+        HypocenterQualityData quality = data.qualityData();
+        out.writeBoolean(quality != null);
+        if (quality != null) {
+            out.writeFloat(quality.errOrigin());
+            out.writeFloat(quality.errDepth());
+            out.writeFloat(quality.errNS());
+            out.writeFloat(quality.errEW());
+            out.writeInt(quality.stations());
+            out.writeFloat(quality.pct());
+        }
+
+        DepthConfidenceIntervalData depth = data.depthIntervalData();
+        out.writeBoolean(depth != null);
+        if (depth != null) {
+            out.writeFloat(depth.minDepth());
+            out.writeFloat(depth.maxDepth());
+        }
+
+        LocationConfidenceIntervalData location = data.locationConfidenceIntervalData();
+        out.writeBoolean(location != null);
+        if (location != null) {
+            writeList(out, location.polygonConfidenceIntervalDataList(), (o, polygon) -> {
+                o.writeInt(polygon.n());
+                o.writeFloat(polygon.offset());
+                writeList(o, polygon.lengths(), PacketCodec::writeFloat);
+            });
+        }
+
+        StationCountData counts = data.stationCountData();
+        out.writeBoolean(counts != null);
+        if (counts != null) {
+            out.writeInt(counts.total());
+            out.writeInt(counts.reduced());
+            out.writeInt(counts.used());
+            out.writeInt(counts.correct());
+        }
+
+        writeList(out, data.magsData(), PacketCodec::writeFloat);
+    }
+
+    private static AdvancedHypocenterData readAdvancedHypocenterData(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        HypocenterQualityData quality = in.readBoolean() ? new HypocenterQualityData(
+                in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readInt(), in.readFloat()) : null;
+
+        DepthConfidenceIntervalData depth = in.readBoolean() ? new DepthConfidenceIntervalData(in.readFloat(), in.readFloat()) : null;
+
+        LocationConfidenceIntervalData location = in.readBoolean() ? new LocationConfidenceIntervalData(
+                readList(in, i -> new PolygonConfidenceIntervalData(i.readInt(), i.readFloat(), readList(i, PacketCodec::readFloat)))) : null;
+
+        StationCountData counts = in.readBoolean() ? new StationCountData(in.readInt(), in.readInt(), in.readInt(), in.readInt()) : null;
+
+        return new AdvancedHypocenterData(quality, depth, location, counts, readList(in, PacketCodec::readFloat));
+    }
+
+    private static void writeClusterData(DataOutputStream out, ClusterData data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data != null) {
+            writeUUID(out, data.uuid());
+            out.writeDouble(data.rootLat());
+            out.writeDouble(data.rootLon());
+            out.writeInt(data.level());
+        }
+    }
+
+    private static ClusterData readClusterData(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new ClusterData(readUUID(in), in.readDouble(), in.readDouble(), in.readInt()) : null;
+    }
+
+    private static void writeArchivedQuakeData(DataOutputStream out, ArchivedQuakeData data) throws IOException {
+        out.writeBoolean(data != null);
+        if (data != null) {
+            writeUUID(out, data.uuid());
+            out.writeFloat(data.lat());
+            out.writeFloat(data.lon());
+            out.writeFloat(data.depth());
+            out.writeFloat(data.magnitude());
+            out.writeLong(data.origin());
+            out.writeByte(data.qualityID());
+            out.writeLong(data.finalUpdateMillis());
+        }
+    }
+
+    private static ArchivedQuakeData readArchivedQuakeData(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new ArchivedQuakeData(readUUID(in), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(),
+                in.readLong(), in.readByte(), in.readLong());
+    }
+
+    private static void writeArchivedQuake(DataOutputStream out, ArchivedQuakePacket packet) throws IOException {
+        writeArchivedQuakeData(out, packet.archivedQuakeData());
+        writeList(out, packet.archivedEventDataList(), PacketCodec::writeArchivedEventData);
+    }
+
+    private static ArchivedQuakePacket readArchivedQuake(DataInputStream in) throws IOException {
+        return new ArchivedQuakePacket(readArchivedQuakeData(in), readList(in, PacketCodec::readArchivedEventData));
+    }
+
+    private static void writeArchiveDigestData(DataOutputStream out, ArchiveDigestData data) throws IOException {
+        out.writeLong(data.bucket());
+        out.writeInt(data.count());
+        out.writeLong(data.digest());
+    }
+
+    private static ArchiveDigestData readArchiveDigestData(DataInputStream in) throws IOException {
+        return new ArchiveDigestData(in.readLong(), in.readInt(), in.readLong());
+    }
+
+    private static void writeArchivedEventData(DataOutputStream out, ArchivedEventData data) throws IOException {
+        out.writeFloat(data.lat());
+        out.writeFloat(data.lon());
+        out.writeFloat(data.maxRatio());
+        out.writeLong(data.pWave());
+    }
+
+    private static ArchivedEventData readArchivedEventData(DataInputStream in) throws IOException {
+        return new ArchivedEventData(in.readFloat(), in.readFloat(), in.readFloat(), in.readLong());
+    }
+
+    private static void writeStationInfoData(DataOutputStream out, StationInfoData data) throws IOException {
+        out.writeInt(data.index());
+        out.writeFloat(data.lat());
+        out.writeFloat(data.lon());
+        writeString(out, data.network());
+        writeString(out, data.station());
+        writeString(out, data.channel());
+        writeString(out, data.location());
+        out.writeLong(data.time());
+        out.writeFloat(data.maxIntensity());
+        out.writeBoolean(data.eventMode());
+        out.writeByte(data.sensorType() == null ? -1 : data.sensorType().ordinal());
+    }
+
+    private static StationInfoData readStationInfoData(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        float lat = in.readFloat();
+        float lon = in.readFloat();
+        String network = readString(in);
+        String station = readString(in);
+        String channel = readString(in);
+        String location = readString(in);
+        long time = in.readLong();
+        float maxIntensity = in.readFloat();
+        boolean eventMode = in.readBoolean();
+        byte sensorType = in.readByte();
+        if (sensorType >= INPUT_TYPES.length) {
+            throw new IOException("Invalid sensor type: %d".formatted(sensorType));
+        }
+        return new StationInfoData(index, lat, lon, network, station, channel, location, time, maxIntensity, eventMode,
+                sensorType < 0 ? null : INPUT_TYPES[sensorType]);
+    }
+
+    /**
+     * Indices as gaps to the previous index and intensities zigzag encoded, both as varints, event modes as bits.
+     * A typical delta takes about two bytes per station.
+     */
+    private static void writeIntensityDelta(DataOutputStream out, StationsIntensityDeltaPacket packet) throws IOException {
+        int[] indices = packet.indices();
+        int[] intensities = packet.intensities();
+        boolean[] eventModes = packet.eventModes();
+        if (intensities.length != indices.length || eventModes.length != indices.length) {
+            throw new IOException("Array lengths of the intensity delta do not match");
+        }
+
+        writeUUID(out, packet.stationsIndexing());
+        out.writeLong(packet.time());
+        out.writeInt(packet.sequence());
+        out.writeBoolean(packet.keyframe());
+        writeVarInt(out, indices.length);
+
+        int previous = -1;
+        for (int index : indices) {
+            if (index <= previous) {
+                throw new IOException("Station indices must be ascending");
+            }
+            writeVarInt(out, index - previous - 1);
+            previous = index;
+        }
+
+        for (int intensity : intensities) {
+            writeVarInt(out, (intensity << 1) ^ (intensity >> 31));
+        }
+
+        byte bits = 0;
+        for (int i = 0; i < eventModes.length; i++) {
+            if (eventModes[i]) {
+                bits |= (byte) (1 << (i & 7));
+            }
+            if ((i & 7) == 7 || i == eventModes.length - 1) {
+                out.writeByte(bits);
+                bits = 0;
+            }
+        }
+    }
+
+    private static StationsIntensityDeltaPacket readIntensityDelta(DataInputStream in) throws IOException {
+        UUID indexing = readUUID(in);
+        long time = in.readLong();
+        int sequence = in.readInt();
+        boolean keyframe = in.readBoolean();
+        int count = readVarInt(in);
+        if (count < 0 || count > in.available()) {
+            throw new IOException("Invalid station count: %d".formatted(count));
+        }
+
+        int[] indices = new int[count];
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            previous = indices[i] = previous + 1 + readVarInt(in);
+        }
+
+        int[] intensities = new int[count];
+        for (int i = 0; i < count; i++) {
+            int zigzag = readVarInt(in);
+            intensities[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        boolean[] eventModes = new boolean[count];
+        byte bits = 0;
+        for (int i = 0; i < count; i++) {
+            if ((i & 7) == 0) {
+                bits = in.readByte();
+            }
+            eventModes[i] = (bits & (1 << (i & 7))) != 0;
+        }
+
+        return new StationsIntensityDeltaPacket(indexing, time, sequence, keyframe, indices, intensities, eventModes);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static void writeStationIntensityData(DataOutputStream out, StationIntensityData data) throws IOException {
+        out.writeInt(data.index());
+        out.writeFloat(data.maxIntensity());
+        out.writeBoolean(data.eventMode());
+    }
+
+    private static StationIntensityData readStationIntensityData(DataInputStream in) throws IOException {
+        return new StationIntensityData(in.readInt(), in.readFloat(), in.readBoolean());
+    }
+}
@@ -0,0 +1,52 @@
+package gqserver.api.data.earthquake;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Summary of the archived quakes with origin in one {@link #BUCKET_LENGTH} long interval.
+ * Lets the client tell the server which quakes it already has without listing their UUIDs.
+ *
+ * @param bucket origin divided by {@link #BUCKET_LENGTH}
+ * @param count  number of quakes in the bucket
+ * @param digest sum of {@link #hash(UUID)} of the quakes in the bucket, independent of their order
+ */
+public record ArchiveDigestData(long bucket, int count, long digest) implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    public static final long BUCKET_LENGTH = 24 * 60 * 60 * 1000L;
+
+    public static long bucketOf(long origin) {
+        return Math.floorDiv(origin, BUCKET_LENGTH);
+    }
+
+    public static long hash(UUID uuid) {
+        return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return digests of all buckets containing at least one quake, newest bucket first
+     */
+    public static <T> List<ArchiveDigestData> create(Collection<T> quakes, Function<T, UUID> uuid, ToLongFunction<T> origin) {
+        SortedMap<Long, long[]> buckets = new TreeMap<>(Comparator.reverseOrder());
+        for (T quake : quakes) {
+            long[] bucket = buckets.computeIfAbsent(bucketOf(origin.applyAsLong(quake)), ignored -> new long[2]);
+            bucket[0]++;
+            bucket[1] += hash(uuid.apply(quake));
+        }
+
+        List<ArchiveDigestData> result = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, value) -> result.add(new ArchiveDigestData(bucket, (int) value[0], value[1])));
+        return result;
+    }
+}
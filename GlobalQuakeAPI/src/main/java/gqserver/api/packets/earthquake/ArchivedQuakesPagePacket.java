@@ -0,0 +1,17 @@
+package gqserver.api.packets.earthquake;
+
+import gqserver.api.Packet;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Response to {@link ArchivedQuakesSyncRequestPacket}, pages never split a bucket.
+ *
+ * @param nextBefore {@link ArchivedQuakesSyncRequestPacket#before()} of the next page
+ * @param last       no more pages follow
+ */
+public record ArchivedQuakesPagePacket(List<ArchivedQuakePacket> quakes, long nextBefore, boolean last) implements Packet {
+    @Serial
+    private static final long serialVersionUID = 0L;
+}
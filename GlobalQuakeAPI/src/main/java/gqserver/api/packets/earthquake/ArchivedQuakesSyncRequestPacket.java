@@ -0,0 +1,22 @@
+package gqserver.api.packets.earthquake;
+
+import gqserver.api.Packet;
+import gqserver.api.data.earthquake.ArchiveDigestData;
+
+import java.io.Serial;
+import java.util.List;
+
+/**
+ * Paged replacement of {@link ArchivedQuakesRequestPacket} for clients using the binary codec.
+ * The server answers with one {@link ArchivedQuakesPagePacket} containing the quakes of the buckets older than
+ * {@code before} whose digest differs from the client's, so a client that is up to date receives an empty page.
+ *
+ * @param before  only buckets older than this one are considered, {@link Long#MAX_VALUE} for the first page
+ * @param digests digests of the newest buckets the client already has, at most {@link #MAX_DIGESTS}
+ */
+public record ArchivedQuakesSyncRequestPacket(long before, List<ArchiveDigestData> digests) implements Packet {
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    public static final int MAX_DIGESTS = 512;
+}
@@ -0,0 +1,65 @@
+package gqserver.api.packets.station;
+
+import gqserver.api.Packet;
+
+import java.io.Serial;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Compact replacement of {@link StationsIntensityPacket} for clients using the binary codec.
+ * Intensities are quantized with {@link #quantize(double)}. A keyframe carries the absolute values of all stations,
+ * every other packet only the change of the stations that changed since the previous packet.
+ *
+ * @param sequence    increases by one with each broadcast packet, a delta may only be applied directly after
+ *                    the packet with the previous sequence, otherwise the client waits for the next keyframe
+ * @param keyframe    intensities are absolute values instead of changes
+ * @param indices     station indices in ascending order
+ * @param intensities quantized intensity or its change for each listed station
+ * @param eventModes  event mode of each listed station
+ */
+public record StationsIntensityDeltaPacket(UUID stationsIndexing, long time, int sequence, boolean keyframe,
+                                           int[] indices, int[] intensities, boolean[] eventModes) implements Packet {
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    private static final double STEPS_PER_DECADE = 100.0;
+    private static final double MIN_LOG_INTENSITY = -2.0;
+
+    /**
+     * Logarithmic quantization with 100 steps per decade, 0 is reserved for stations without data.
+     */
+    public static int quantize(double intensity) {
+        if (!(intensity > 0)) {
+            return 0;
+        }
+        return 1 + (int) Math.max(0, Math.round((Math.log10(intensity) - MIN_LOG_INTENSITY) * STEPS_PER_DECADE));
+    }
+
+    public static double dequantize(int quantized) {
+        if (quantized <= 0) {
+            return 0;
+        }
+        return Math.pow(10, (quantized - 1) / STEPS_PER_DECADE + MIN_LOG_INTENSITY);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StationsIntensityDeltaPacket that = (StationsIntensityDeltaPacket) o;
+        return time == that.time && sequence == that.sequence && keyframe == that.keyframe
+                && Objects.equals(stationsIndexing, that.stationsIndexing) && Arrays.equals(indices, that.indices)
+                && Arrays.equals(intensities, that.intensities) && Arrays.equals(eventModes, that.eventModes);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(stationsIndexing, time, sequence, keyframe);
+        result = 31 * result + Arrays.hashCode(indices);
+        result = 31 * result + Arrays.hashCode(intensities);
+        result = 31 * result + Arrays.hashCode(eventModes);
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package gqserver.api.packets.station;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quantized station intensities rebuilt from {@link StationsIntensityDeltaPacket}s on the receiving side.
+ * Not thread safe, meant to be used only by the thread reading the packets.
+ */
+public class StationsIntensityState {
+
+    public interface Listener {
+        void update(int index, double intensity, boolean eventMode);
+    }
+
+    private final Map<Integer, Integer> quantizedIntensities = new HashMap<>();
+    private int sequence;
+    private boolean synced = false;
+
+    /**
+     * Applies a keyframe, or a delta directly following the previous packet.
+     *
+     * @param listener called with the new intensity of each station listed in the packet
+     * @return false if the packet was ignored because a delta went missing, nothing is applied until the next keyframe
+     */
+    public boolean apply(StationsIntensityDeltaPacket packet, Listener listener) {
+        if (packet.keyframe()) {
+            quantizedIntensities.clear();
+        } else if (!synced || packet.sequence() != sequence + 1) {
+            // the values would drift until the next keyframe
+            synced = false;
+            return false;
+        }
+
+        synced = true;
+        sequence = packet.sequence();
+
+        for (int i = 0; i < packet.indices().length; i++) {
+            int index = packet.indices()[i];
+            int quantized = packet.keyframe() ? packet.intensities()[i] :
+                    quantizedIntensities.getOrDefault(index, 0) + packet.intensities()[i];
+            quantizedIntensities.put(index, quantized);
+            listener.update(index, StationsIntensityDeltaPacket.dequantize(quantized), packet.eventModes()[i]);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return quantized intensity of the station, 0 if it is not known
+     */
+    public int getQuantizedIntensity(int index) {
+        return quantizedIntensities.getOrDefault(index, 0);
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    public void reset() {
+        quantizedIntensities.clear();
+        synced = false;
+    }
+}
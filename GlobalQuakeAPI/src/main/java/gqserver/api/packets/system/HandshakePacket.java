@@ -5,8 +5,15 @@ import gqserver.api.data.system.ServerClientConfig;
 
 import java.io.Serial;
 
-public record HandshakePacket(int compatVersion, ServerClientConfig clientConfig) implements Packet {
+/**
+ * @param codecVersion highest {@link gqserver.api.codec.PacketCodec} version the client supports, 0 = Java serialization only
+ */
+public record HandshakePacket(int compatVersion, ServerClientConfig clientConfig, int codecVersion) implements Packet {
     @Serial
     private static final long serialVersionUID = 0L;
 
+    public HandshakePacket(int compatVersion, ServerClientConfig clientConfig) {
+        this(compatVersion, clientConfig, 0);
+    }
+
 }
@@ -4,7 +4,14 @@ import gqserver.api.Packet;
 
 import java.io.Serial;
 
-public record HandshakeSuccessfulPacket() implements Packet {
+/**
+ * @param codecVersion codec used by both sides for all following packets, 0 = keep using Java serialization
+ */
+public record HandshakeSuccessfulPacket(int codecVersion) implements Packet {
     @Serial
     private static final long serialVersionUID = 0L;
+
+    public HandshakeSuccessfulPacket() {
+        this(0);
+    }
 }
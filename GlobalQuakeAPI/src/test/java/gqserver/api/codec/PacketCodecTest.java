@@ -0,0 +1,191 @@
+package gqserver.api.codec;
+
+import gqserver.api.GQApi;
+import gqserver.api.Packet;
+import gqserver.api.ServerClient;
+import gqserver.api.data.cluster.ClusterData;
+import gqserver.api.data.earthquake.ArchiveDigestData;
+import gqserver.api.data.earthquake.ArchivedEventData;
+import gqserver.api.data.earthquake.ArchivedQuakeData;
+import gqserver.api.data.earthquake.EarthquakeInfo;
+import gqserver.api.data.earthquake.HypocenterData;
+import gqserver.api.data.earthquake.advanced.*;
+import gqserver.api.data.station.StationInfoData;
+import gqserver.api.data.station.StationIntensityData;
+import gqserver.api.data.system.ServerClientConfig;
+import gqserver.api.exception.UnknownPacketException;
+import gqserver.api.packets.cluster.ClusterPacket;
+import gqserver.api.packets.data.DataRecordPacket;
+import gqserver.api.packets.data.DataRequestPacket;
+import gqserver.api.packets.earthquake.*;
+import gqserver.api.packets.station.*;
+import gqserver.api.packets.system.HandshakePacket;
+import gqserver.api.packets.system.HandshakeSuccessfulPacket;
+import gqserver.api.packets.system.HeartbeatPacket;
+import gqserver.api.packets.system.TerminationPacket;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PacketCodecTest {
+
+    private static Packet roundTrip(Packet packet) throws Throwable {
+        byte[] frame = PacketCodec.encode(packet);
+        return PacketCodec.read(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+
+    @Test
+    public void testRoundTrip() throws Throwable {
+        UUID uuid = UUID.randomUUID();
+        ClusterData clusterData = new ClusterData(uuid, 50.5, 17.25, 3);
+
+        List<Packet> packets = List.of(
+                new HandshakePacket(GQApi.COMPATIBILITY_VERSION, new ServerClientConfig(true, false), PacketCodec.VERSION),
+                new HandshakeSuccessfulPacket(PacketCodec.VERSION),
+                new HeartbeatPacket(),
+                new TerminationPacket("服务器已满!"),
+                new ArchivedQuakesRequestPacket(),
+                new EarthquakesRequestPacket(),
+                new EarthquakeRequestPacket(uuid),
+                new EarthquakeCheckPacket(new EarthquakeInfo(uuid, 7)),
+                new HypocenterDataPacket(
+                        new HypocenterData(uuid, 3, 50.1f, 17.2f, 10.5f, 123456789L, 5.5f, 123456999L, "Czech Republic"),
+                        new AdvancedHypocenterData(
+                                new HypocenterQualityData(1.5f, 2.5f, 3.5f, 4.5f, 20, 0.8f),
+                                new DepthConfidenceIntervalData(5f, 15f),
+                                new LocationConfidenceIntervalData(List.of(new PolygonConfidenceIntervalData(3, 0.5f, List.of(1f, 2f, 3f)))),
+                                new StationCountData(30, 25, 20, 18),
+                                List.of(5.1f, 5.4f)),
+                        clusterData),
+                new HypocenterDataPacket(
+                        new HypocenterData(uuid, 1, 0, 0, 0, 0, 0, 0, null), null, null),
+                new ArchivedQuakePacket(
+                        new ArchivedQuakeData(uuid, 50f, 17f, 10f, 4.5f, 1000L, (byte) 2, 2000L),
+                        List.of(new ArchivedEventData(50.5f, 16.5f, 12.5f, 1500L))),
+                new ClusterPacket(clusterData),
+                new DataRequestPacket("CZ PRU", true),
+                new StationsRequestPacket(),
+                new StationsInfoPacket(uuid, List.of(
+                        new StationInfoData(0, 50f, 17f, "CZ", "PRU", "HHZ", "", 1000L, 1.5f, true, InputType.VELOCITY),
+                        new StationInfoData(1, 51f, 18f, "GE", "MORC", "BHZ", "00", 1000L, 0.5f, false, null))),
+                new StationsIntensityPacket(uuid, 1000L, List.of(new StationIntensityData(1, 2.5f, true))),
+                new ArchivedQuakesSyncRequestPacket(Long.MAX_VALUE, List.of(new ArchiveDigestData(19000, 2, -5L))),
+                new ArchivedQuakesPagePacket(List.of(new ArchivedQuakePacket(
+                        new ArchivedQuakeData(uuid, 50f, 17f, 10f, 4.5f, 1000L, (byte) 2, 2000L), List.of())), 19000, false)
+        );
+
+        for (Packet packet : packets) {
+            assertEquals(packet, roundTrip(packet));
+        }
+
+        byte[] data = new byte[]{1, 2, 3, 4, 5};
+        DataRecordPacket dataRecordPacket = (DataRecordPacket) roundTrip(new DataRecordPacket(5, data));
+        assertEquals(5, dataRecordPacket.stationIndex());
+        assertTrue(Arrays.equals(data, dataRecordPacket.data()));
+    }
+
+    @Test
+    public void testSmallerThanSerialization() throws Throwable {
+        Packet packet = new StationsIntensityPacket(UUID.randomUUID(), 1000L,
+                List.of(new StationIntensityData(1, 2.5f, true), new StationIntensityData(2, 0.5f, false)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(packet);
+        }
+
+        assertTrue(PacketCodec.encode(packet).length * 4 < bytes.size());
+    }
+
+    @Test
+    public void testEncodedOnce() throws Throwable {
+        EncodedPacket packet = new EncodedPacket(new ClusterPacket(new ClusterData(UUID.randomUUID(), 50, 17, 2)));
+        byte[] frame = packet.frame();
+        assertSame(frame, packet.frame());
+        assertEquals(packet.packet(), PacketCodec.read(new DataInputStream(new ByteArrayInputStream(frame))));
+    }
+
+    @Test
+    public void testIntensityDelta() throws Throwable {
+        UUID indexing = UUID.randomUUID();
+        int count = 1000;
+        int[] indices = new int[count];
+        int[] deltas = new int[count];
+        boolean[] eventModes = new boolean[count];
+        List<StationIntensityData> full = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            indices[i] = i * 3;
+            deltas[i] = (i % 7) - 3;
+            eventModes[i] = i % 5 == 0;
+            full.add(new StationIntensityData(indices[i], 100.0f, eventModes[i]));
+        }
+
+        StationsIntensityDeltaPacket packet = new StationsIntensityDeltaPacket(indexing, 1000L, 42, false, indices, deltas, eventModes);
+        assertEquals(packet, roundTrip(packet));
+
+        StationsIntensityDeltaPacket keyframe = new StationsIntensityDeltaPacket(indexing, 1000L, 43, true,
+                new int[]{0, 70000}, new int[]{0, Integer.MAX_VALUE}, new boolean[]{true, false});
+        assertEquals(keyframe, roundTrip(keyframe));
+
+        int fullSize = PacketCodec.encode(new StationsIntensityPacket(indexing, 1000L, full)).length;
+        assertTrue(PacketCodec.encode(packet).length * 4 < fullSize);
+    }
+
+    @Test
+    public void testQuantization() {
+        assertEquals(0, StationsIntensityDeltaPacket.quantize(0));
+        assertEquals(0, StationsIntensityDeltaPacket.quantize(-1));
+        assertEquals(0, StationsIntensityDeltaPacket.dequantize(0), 0);
+        assertTrue(StationsIntensityDeltaPacket.quantize(1e-9) > 0);
+
+        for (double intensity = 0.05; intensity < 1e6; intensity *= 1.37) {
+            double restored = StationsIntensityDeltaPacket.dequantize(StationsIntensityDeltaPacket.quantize(intensity));
+            assertEquals(1.0, restored / intensity, 0.012);
+        }
+    }
+
+    @Test(expected = UnknownPacketException.class)
+    public void testUnknownType() throws Throwable {
+        PacketCodec.decode(new byte[]{(byte) 100});
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFrameLength() throws Throwable {
+        byte[] frame = new byte[]{0x7f, 0, 0, 0, 3};
+        PacketCodec.read(new DataInputStream(new ByteArrayInputStream(frame)));
+    }
+
+    @Test
+    public void testSwitchAfterHandshake() throws Throwable {
+        try (ServerSocket serverSocket = new ServerSocket(0);
+             Socket socket = new Socket("127.0.0.1", serverSocket.getLocalPort());
+             Socket accepted = serverSocket.accept()) {
+            ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+            ServerClient client = new ServerClient(accepted);
+            ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+
+            out.writeObject(new HandshakePacket(GQApi.COMPATIBILITY_VERSION, new ServerClientConfig(true, true), PacketCodec.VERSION));
+            assertEquals(PacketCodec.VERSION, ((HandshakePacket) client.readPacket()).codecVersion());
+
+            client.sendPacket(new HandshakeSuccessfulPacket(PacketCodec.VERSION));
+            client.flush();
+            client.useBinaryCodec();
+            assertEquals(PacketCodec.VERSION, ((HandshakeSuccessfulPacket) in.readObject()).codecVersion());
+
+            socket.getOutputStream().write(PacketCodec.encode(new HeartbeatPacket()));
+            assertTrue(client.readPacket() instanceof HeartbeatPacket);
+
+            client.sendPacket(new TerminationPacket("bye"));
+            Packet packet = PacketCodec.read(new DataInputStream(socket.getInputStream()));
+            assertEquals(new TerminationPacket("bye"), packet);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.Settings;
+import globalquake.core.earthquake.data.Cluster;
+import globalquake.core.earthquake.data.Hypocenter;
+import globalquake.core.earthquake.data.HypocenterFinderSettings;
+import globalquake.core.earthquake.data.PickedEvent;
+import globalquake.core.exception.FatalApplicationException;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import globalquake.core.training.EarthquakeAnalysisTraining;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic hypocenter search input shared by the benchmarks.
+ * Events are generated exactly the way {@link EarthquakeAnalysisTraining} does,
+ * so the same seed and station count always produce the same {@link PickedEvent} set.
+ */
+public class HypocenterBenchmarkData {
+
+    public static final long SEED = 6543;
+
+    public final List<PickedEvent> pickedEvents;
+    public final Cluster cluster;
+    public final Hypocenter absolutelyCorrect;
+
+    private HypocenterBenchmarkData(List<PickedEvent> pickedEvents, Cluster cluster, Hypocenter absolutelyCorrect) {
+        this.pickedEvents = pickedEvents;
+        this.cluster = cluster;
+        this.absolutelyCorrect = absolutelyCorrect;
+    }
+
+    public static void prepare(boolean parallel) throws FatalApplicationException {
+        GlobalQuake.prepare(new File("./benchmark/"), null);
+        TauPTravelTimeCalculator.init();
+
+        Settings.hypocenterDetectionResolution = Settings.hypocenterDetectionResolutionDefault;
+        Settings.pWaveInaccuracyThreshold = Settings.pWaveInaccuracyThresholdDefault;
+        Settings.parallelHypocenterLocations = parallel;
+    }
+
+    public static HypocenterBenchmarkData create(int stations) {
+        Random r = new Random(SEED);
+
+        List<EarthquakeAnalysisTraining.FakeStation> fakeStations = EarthquakeAnalysisTraining.createFakeStations(r, stations);
+
+        Cluster cluster = new Cluster();
+        cluster.updateCount = 6543541;
+
+        Hypocenter absolutelyCorrect = new Hypocenter(140 + r.nextDouble() * 10, r.nextDouble() * 10, 200, 0, 0, 0, null, null);
+
+        List<PickedEvent> pickedEvents = EarthquakeAnalysisTraining.createPickedEvents(r, fakeStations, absolutelyCorrect);
+
+        cluster.calculateRoot(fakeStations);
+
+        return new HypocenterBenchmarkData(pickedEvents, cluster, absolutelyCorrect);
+    }
+
+    public static HypocenterFinderSettings createSettings() {
+        return EarthquakeAnalysis.createSettings(false);
+    }
+
+}
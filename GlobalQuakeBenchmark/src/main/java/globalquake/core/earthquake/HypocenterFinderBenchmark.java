@@ -0,0 +1,45 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.earthquake.data.HypocenterFinderSettings;
+import globalquake.core.earthquake.data.PreliminaryHypocenter;
+import globalquake.core.exception.FatalApplicationException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full CPU hypocenter search (FAR -> REGIONAL/CLOSER -> EXACT -> DEPTH) as done for a fresh cluster.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HypocenterFinderBenchmark {
+
+    @Param({"10", "50", "200", "1000", "2000"})
+    public int stations;
+
+    @Param({"true"})
+    public boolean parallel;
+
+    private EarthquakeAnalysis earthquakeAnalysis;
+    private HypocenterBenchmarkData data;
+    private HypocenterFinderSettings finderSettings;
+
+    @Setup(Level.Trial)
+    public void setup() throws FatalApplicationException {
+        HypocenterBenchmarkData.prepare(parallel);
+        earthquakeAnalysis = new EarthquakeAnalysis();
+        earthquakeAnalysis.testing = true;
+        data = HypocenterBenchmarkData.create(stations);
+        finderSettings = HypocenterBenchmarkData.createSettings();
+    }
+
+    @Benchmark
+    public PreliminaryHypocenter runHypocenterFinder() {
+        return earthquakeAnalysis.runHypocenterFinder(data.pickedEvents, data.cluster, finderSettings, true);
+    }
+
+}
@@ -0,0 +1,81 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.earthquake.data.HypocenterFinderSettings;
+import globalquake.core.earthquake.data.HypocenterFinderThreadData;
+import globalquake.core.earthquake.data.PreliminaryHypocenter;
+import globalquake.core.exception.FatalApplicationException;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of evaluating a single candidate point - the inner loop of every {@code scanArea} pass.
+ * Runs single threaded, each thread has its own buffers just like the search workers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HypocenterPointBenchmark {
+
+    @Param({"10", "50", "200", "1000", "2000"})
+    public int stations;
+
+    @Param({"10"})
+    public int depthIterations;
+
+    private EarthquakeAnalysis earthquakeAnalysis;
+    private HypocenterFinderSettings finderSettings;
+    private HypocenterFinderThreadData threadData;
+    private PreliminaryHypocenter hypocenter;
+
+    private double lat;
+    private double lon;
+    private double depth;
+
+    @Setup(Level.Trial)
+    public void setup() throws FatalApplicationException {
+        HypocenterBenchmarkData.prepare(false);
+        earthquakeAnalysis = new EarthquakeAnalysis();
+        earthquakeAnalysis.testing = true;
+        HypocenterBenchmarkData data = HypocenterBenchmarkData.create(stations);
+        finderSettings = HypocenterBenchmarkData.createSettings();
+
+        threadData = new HypocenterFinderThreadData(data.pickedEvents.size());
+        threadData.load(data.pickedEvents);
+        hypocenter = new PreliminaryHypocenter();
+
+        lat = data.absolutelyCorrect.lat;
+        lon = data.absolutelyCorrect.lon;
+        depth = data.absolutelyCorrect.depth;
+
+        earthquakeAnalysis.calculateDistances(threadData, lat, lon);
+    }
+
+    @Benchmark
+    public PreliminaryHypocenter analyseHypocenter() {
+        EarthquakeAnalysis.analyseHypocenter(hypocenter, lat, lon, depth, finderSettings, threadData);
+        return hypocenter;
+    }
+
+    @Benchmark
+    public PreliminaryHypocenter getBestAtDepth() {
+        threadData.bestHypocenter.err = Double.MAX_VALUE;
+        threadData.bestHypocenter.correctStations = 0;
+        earthquakeAnalysis.getBestAtDepth(depthIterations, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings, 0, lat, lon, threadData);
+        return threadData.bestHypocenter;
+    }
+
+    @Benchmark
+    public PreliminaryHypocenter calculateDistancesAndGetBestAtDepth() {
+        threadData.bestHypocenter.err = Double.MAX_VALUE;
+        threadData.bestHypocenter.correctStations = 0;
+        earthquakeAnalysis.calculateDistances(threadData, lat, lon);
+        earthquakeAnalysis.getBestAtDepth(depthIterations, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings, 0, lat, lon, threadData);
+        return threadData.bestHypocenter;
+    }
+
+}
@@ -0,0 +1,38 @@
+package globalquake.core.earthquake;
+
+import static globalquake.core.earthquake.EarthquakeAnalysis.*;
+
+/**
+ * The individual {@code scanArea} passes of {@link EarthquakeAnalysis#runHypocenterFinder},
+ * with the same radius, point count and depth iterations at the default resolution.
+ */
+public enum HypocenterSearchPhase {
+
+    FAR(FAR_MAX_DIST, FAR_POINTS, FAR_DEPTH_ITERATIONS),
+    REGIONAL(REGIONAL_MAX_DIST, REGIONAL_POINTS, REGIONAL_DEPTH_ITERATIONS),
+    CLOSER(CLOSER_MAX_DIST, CLOSER_POINTS, CLOSER_DEPTH_ITERATIONS),
+    EXACT(EXACT_MAX_DIST, EXACT_POINTS, EXACT_DEPTH_ITERATIONS),
+    DEPTH(DEPTH_MAX_DIST, DEPTH_POINTS, DEPTH_DEPTH_ITERATIONS);
+
+    private final double maxDist;
+    private final int points;
+    private final int depthIterations;
+
+    HypocenterSearchPhase(double maxDist, int points, int depthIterations) {
+        this.maxDist = maxDist;
+        this.points = points;
+        this.depthIterations = depthIterations;
+    }
+
+    public double getMaxDist() {
+        return maxDist;
+    }
+
+    public int getPoints(double pointMultiplier) {
+        return (int) (points * pointMultiplier);
+    }
+
+    public int getDepthIterations(int iterationsDifference) {
+        return depthIterations + iterationsDifference;
+    }
+}
@@ -0,0 +1,60 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.earthquake.data.HypocenterFinderSettings;
+import globalquake.core.earthquake.data.PreliminaryHypocenter;
+import globalquake.core.exception.FatalApplicationException;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single {@code scanArea} pass of the given {@link HypocenterSearchPhase}, centered on the cluster anchor.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanAreaBenchmark {
+
+    @Param({"10", "50", "200", "1000", "2000"})
+    public int stations;
+
+    @Param({"FAR", "REGIONAL", "CLOSER", "EXACT", "DEPTH"})
+    public HypocenterSearchPhase phase;
+
+    @Param({"true"})
+    public boolean parallel;
+
+    private EarthquakeAnalysis earthquakeAnalysis;
+    private HypocenterBenchmarkData data;
+    private HypocenterFinderSettings finderSettings;
+
+    private int points;
+    private int depthIterations;
+
+    @Setup(Level.Trial)
+    public void setup() throws FatalApplicationException {
+        HypocenterBenchmarkData.prepare(parallel);
+        earthquakeAnalysis = new EarthquakeAnalysis();
+        earthquakeAnalysis.testing = true;
+        data = HypocenterBenchmarkData.create(stations);
+        finderSettings = HypocenterBenchmarkData.createSettings();
+
+        int iterationsDifference = (int) Math.round((finderSettings.resolution() - 40.0) / 14.0);
+        double universalMultiplier = earthquakeAnalysis.getUniversalResolutionMultiplier(finderSettings);
+        double pointMultiplier = universalMultiplier * universalMultiplier * 0.33;
+
+        points = phase.getPoints(pointMultiplier);
+        depthIterations = phase.getDepthIterations(iterationsDifference);
+    }
+
+    @Benchmark
+    public PreliminaryHypocenter scanArea() {
+        return earthquakeAnalysis.scanArea(data.pickedEvents, phase.getMaxDist(), points,
+                data.cluster.getAnchorLat(), data.cluster.getAnchorLon(), depthIterations, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings);
+    }
+
+}
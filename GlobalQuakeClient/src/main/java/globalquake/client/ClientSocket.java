@@ -5,7 +5,9 @@ import globalquake.core.exception.RuntimeApplicationException;
 import globalquake.events.specific.SocketReconnectEvent;
 import gqserver.api.GQApi;
 import gqserver.api.Packet;
+import gqserver.api.codec.PacketCodec;
 import gqserver.api.data.system.ServerClientConfig;
+import gqserver.api.exception.UnknownPacketException;
 import gqserver.api.packets.earthquake.ArchivedQuakesRequestPacket;
 import gqserver.api.packets.earthquake.EarthquakesRequestPacket;
 import gqserver.api.packets.station.StationsRequestPacket;
@@ -15,9 +17,7 @@ import gqserver.api.packets.system.HeartbeatPacket;
 import gqserver.api.packets.system.TerminationPacket;
 import org.tinylog.Logger;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.net.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -35,6 +35,10 @@ public class ClientSocket {
     private ObjectInputStream inputStream;
 
     private ObjectOutputStream outputStream;
+
+    private DataInputStream binaryInputStream;
+
+    private OutputStream binaryOutputStream;
     private ScheduledExecutorService quakeCheckService;
     private ScheduledExecutorService reconnectService;
     private String ip;
@@ -47,14 +51,7 @@ public class ClientSocket {
         this.port = port;
         status = ClientSocketStatus.CONNECTING;
         try {
-            socket = new Socket();
-            socket.setSoTimeout(SO_TIMEOUT);
-            socket.connect(new InetSocketAddress(ip, port), CONNECT_TIMEOUT);
-
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
-
-            handshake();
+            open(ip, port);
 
             inputService = Executors.newSingleThreadExecutor();
             inputService.submit(this::runReader);
@@ -64,7 +61,11 @@ public class ClientSocket {
             quakeCheckService = Executors.newSingleThreadScheduledExecutor();
             quakeCheckService.scheduleAtFixedRate(this::sendQuakeRequest, 0, 20, TimeUnit.SECONDS);
 
-            sendPacket(new ArchivedQuakesRequestPacket());
+            if(binaryOutputStream != null) {
+                ((EarthquakeArchiveClient) GlobalQuakeClient.instance.getArchive()).requestPage(this, Long.MAX_VALUE);
+            } else {
+                sendPacket(new ArchivedQuakesRequestPacket());
+            }
             sendPacket(new StationsRequestPacket());
             GlobalQuakeClient.instance.getLocalEventHandler().fireEvent(new SocketReconnectEvent());
             status = ClientSocketStatus.CONNECTED;
@@ -79,6 +80,26 @@ public class ClientSocket {
         }
     }
 
+    /**
+     * Connects and performs the handshake, switching to the binary codec if the server supports it.
+     */
+    void open(String ip, int port) throws IOException, ClassNotFoundException {
+        socket = new Socket();
+        socket.setSoTimeout(SO_TIMEOUT);
+        socket.connect(new InetSocketAddress(ip, port), CONNECT_TIMEOUT);
+
+        binaryInputStream = null;
+        binaryOutputStream = null;
+        outputStream = new ObjectOutputStream(socket.getOutputStream());
+        inputStream = new ObjectInputStream(socket.getInputStream());
+
+        handshake();
+    }
+
+    boolean usesCodec() {
+        return binaryOutputStream != null;
+    }
+
     public void runReconnectService(){
         reconnectService = Executors.newSingleThreadScheduledExecutor();
         reconnectService.scheduleAtFixedRate(this::checkReconnect, 0, 10, TimeUnit.SECONDS);
@@ -152,19 +173,27 @@ public class ClientSocket {
     private void runReader() {
         try {
             while (isConnected()) {
-                Packet packet = (Packet) inputStream.readObject();
+                Packet packet = readPacket();
                 Logger.trace("收到数据包: %s".formatted(packet.toString()));
                 ((GlobalQuakeClient) GlobalQuakeClient.instance).processPacket(this, packet);
             }
         } catch(SocketTimeoutException | SocketException se){
             Logger.trace(se);
-        }catch (Exception e){
+        }catch (Exception | UnknownPacketException e){
             Logger.error(e);
         } finally {
             onClose();
         }
     }
 
+    private Packet readPacket() throws IOException, ClassNotFoundException, UnknownPacketException {
+        if(binaryInputStream != null){
+            return PacketCodec.read(binaryInputStream);
+        }
+
+        return (Packet) inputStream.readObject();
+    }
+
     public synchronized void sendPacket(Packet packet) throws IOException {
         if(outputStream == null){
             return;
@@ -172,19 +201,32 @@ public class ClientSocket {
 
         Logger.trace("发送数据包: %s".formatted(packet.toString()));
 
+        if(binaryOutputStream != null){
+            binaryOutputStream.write(PacketCodec.encode(packet));
+            return;
+        }
+
         outputStream.writeObject(packet);
     }
 
     private void handshake() throws IOException, ClassNotFoundException {
-        sendPacket(new HandshakePacket(GQApi.COMPATIBILITY_VERSION, new ServerClientConfig(true, true)));
+        sendPacket(new HandshakePacket(GQApi.COMPATIBILITY_VERSION, new ServerClientConfig(true, true), PacketCodec.VERSION));
         Packet packet = (Packet) inputStream.readObject();
-        if(!(packet instanceof HandshakeSuccessfulPacket)) {
+        if(!(packet instanceof HandshakeSuccessfulPacket handshakeSuccessfulPacket)) {
             if(packet instanceof TerminationPacket terminationPacket){
                 throw new RuntimeApplicationException(terminationPacket.cause());
             } else {
                 throw new RuntimeApplicationException("Unknown");
             }
         }
+
+        // older servers answer with 0 and keep using Java serialization
+        if(handshakeSuccessfulPacket.codecVersion() == PacketCodec.VERSION) {
+            synchronized (this) {
+                binaryInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                binaryOutputStream = socket.getOutputStream();
+            }
+        }
     }
 
     public ClientSocketStatus getStatus() {
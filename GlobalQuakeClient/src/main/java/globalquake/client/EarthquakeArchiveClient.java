@@ -1,24 +1,86 @@
 package globalquake.client;
 
+import globalquake.core.GlobalQuake;
 import globalquake.core.archive.ArchivedEvent;
 import globalquake.core.archive.EarthquakeArchive;
 import globalquake.core.archive.ArchivedQuake;
 import globalquake.core.earthquake.data.Earthquake;
 import globalquake.core.earthquake.quality.QualityClass;
 import gqserver.api.Packet;
+import gqserver.api.data.earthquake.ArchiveDigestData;
 import gqserver.api.data.earthquake.ArchivedQuakeData;
 import gqserver.api.packets.earthquake.ArchivedQuakePacket;
+import gqserver.api.packets.earthquake.ArchivedQuakesPagePacket;
+import gqserver.api.packets.earthquake.ArchivedQuakesSyncRequestPacket;
+import org.tinylog.Logger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class EarthquakeArchiveClient extends EarthquakeArchive {
 
-    public void processPacket(ClientSocket ignoredSocket, Packet packet) {
+    /**
+     * Servers accept 60 sync requests per minute, pages are requested a bit slower than that.
+     */
+    private static final long SYNC_REQUEST_INTERVAL = 1100;
+
+    private final ScheduledExecutorService syncService = Executors.newSingleThreadScheduledExecutor();
+    private long lastSyncRequest;
+
+    public void processPacket(ClientSocket socket, Packet packet) throws IOException {
         if(packet instanceof ArchivedQuakePacket quakePacket) {
-            if(getArchivedQuakeByUUID(quakePacket.archivedQuakeData().uuid()) == null) {
-                archiveQuake(quakePacket, null);
+            archiveIfMissing(quakePacket);
+        } else if(packet instanceof ArchivedQuakesPagePacket pagePacket) {
+            pagePacket.quakes().forEach(this::archiveIfMissing);
+            if(!pagePacket.last()) {
+                requestPage(socket, pagePacket.nextBefore());
             }
         }
     }
 
+    /**
+     * Requests the page of the archive older than before, delayed so that the server's request limit is not reached.
+     */
+    public synchronized void requestPage(ClientSocket socket, long before) {
+        long now = System.currentTimeMillis();
+        long delay = Math.max(0, lastSyncRequest + SYNC_REQUEST_INTERVAL - now);
+        lastSyncRequest = now + delay;
+        syncService.schedule(() -> {
+            if (!socket.isConnected()) {
+                return;
+            }
+
+            try {
+                socket.sendPacket(createSyncRequest(before));
+            } catch (IOException e) {
+                Logger.error(e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void archiveIfMissing(ArchivedQuakePacket quakePacket) {
+        if(getArchivedQuakeByUUID(quakePacket.archivedQuakeData().uuid()) == null) {
+            archiveQuake(quakePacket, null);
+        }
+    }
+
+    /**
+     * Digests are computed again for each page, the buckets already received since are not part of the request anyway.
+     * If the archive spans too many buckets, only the newest are described and the server resends the older ones.
+     */
+    public ArchivedQuakesSyncRequestPacket createSyncRequest(long before) {
+        List<ArchivedQuake> archivedQuakes = getArchivedQuakes();
+        List<ArchiveDigestData> digests = archivedQuakes == null ? List.of() :
+                ArchiveDigestData.create(archivedQuakes, ArchivedQuake::getUuid, ArchivedQuake::getOrigin).stream()
+                        .filter(digest -> digest.bucket() < before)
+                        .limit(ArchivedQuakesSyncRequestPacket.MAX_DIGESTS)
+                        .toList();
+        return new ArchivedQuakesSyncRequestPacket(before, digests);
+    }
+
     public void archiveQuake(ArchivedQuakePacket quakePacket, Earthquake earthquake){
         archiveQuake(createArchivedQuake(quakePacket), earthquake);
     }
@@ -35,4 +97,10 @@ public class EarthquakeArchiveClient extends EarthquakeArchive {
 
         return archivedQuake;
     }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        GlobalQuake.instance.stopService(syncService);
+    }
 }
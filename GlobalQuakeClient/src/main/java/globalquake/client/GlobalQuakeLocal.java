@@ -74,10 +74,11 @@ public class GlobalQuakeLocal extends GlobalQuake {
                     @Override
                     public void windowClosing(WindowEvent e) {
                         for (Earthquake quake : getEarthquakeAnalysis().getEarthquakes()) {
-                            getArchive().archiveQuake(quake);
+                            getArchive().archiveQuakeAndSave(quake);
                         }
 
-                        getArchive().saveArchive();
+                        // waits for the queued quakes to be appended, then closes the log and writes its index
+                        getArchive().destroy();
                     }
                 });
             }catch (Exception e){
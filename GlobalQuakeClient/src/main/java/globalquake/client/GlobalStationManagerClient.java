@@ -12,7 +12,9 @@ import gqserver.api.data.station.StationInfoData;
 import gqserver.api.data.station.StationIntensityData;
 import gqserver.api.packets.data.DataRecordPacket;
 import gqserver.api.packets.station.StationsInfoPacket;
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
 import gqserver.api.packets.station.StationsIntensityPacket;
+import gqserver.api.packets.station.StationsIntensityState;
 import gqserver.api.packets.station.StationsRequestPacket;
 import org.tinylog.Logger;
 
@@ -26,6 +28,9 @@ public class GlobalStationManagerClient extends GlobalStationManager {
 
     private final Map<Integer, ClientStation> stationsIdMap = new ConcurrentHashMap<>();
 
+    // quantized intensities the deltas are applied to, only touched by the socket reader
+    private final StationsIntensityState intensityState = new StationsIntensityState();
+
     public GlobalStationManagerClient(){
         stations = new CopyOnWriteArrayList<>();
     }
@@ -40,6 +45,8 @@ public class GlobalStationManagerClient extends GlobalStationManager {
             processStationsInfoPacket(socket, stationsInfoPacket);
         } else if (packet instanceof StationsIntensityPacket stationsIntensityPacket) {
             processStationsIntensityPacket(socket, stationsIntensityPacket);
+        } else if (packet instanceof StationsIntensityDeltaPacket deltaPacket) {
+            processStationsIntensityDeltaPacket(socket, deltaPacket);
         } else if (packet instanceof DataRecordPacket dataRecordPacket){
             processDataRecordPacket(dataRecordPacket);
         }
@@ -73,6 +80,19 @@ public class GlobalStationManagerClient extends GlobalStationManager {
         }
     }
 
+    private void processStationsIntensityDeltaPacket(ClientSocket socket, StationsIntensityDeltaPacket packet) {
+        if(getIndexing() == null ||!getIndexing().equals(packet.stationsIndexing())){
+            resetIndexing(socket, packet.stationsIndexing());
+        }
+
+        intensityState.apply(packet, (index, intensity, eventMode) -> {
+            ClientStation clientStation = stationsIdMap.get(index);
+            if(clientStation != null){
+                clientStation.setIntensity(intensity, packet.time(), eventMode);
+            }
+        });
+    }
+
     private void processStationsInfoPacket(ClientSocket socket, StationsInfoPacket stationsInfoPacket) {
         if(getIndexing() == null || !getIndexing().equals(stationsInfoPacket.stationsIndexing())){
             resetIndexing(socket, stationsInfoPacket.stationsIndexing());
@@ -112,5 +132,6 @@ public class GlobalStationManagerClient extends GlobalStationManager {
         super.indexing = uuid;
         stations.clear();
         stationsIdMap.clear();
+        intensityState.reset();
     }
 }
@@ -238,17 +238,13 @@ public class StationMonitorPanel extends JPanel {
 		WaveformBuffer waveformBuffer = station.getAnalysis().getWaveformBuffer();
 
 		if(waveformBuffer != null) {
-			try{
-				waveformBuffer.getReadLock().lock();
-				if (!station.getAnalysis().getWaveformBuffer().isEmpty()) {
-					int index = station.getAnalysis().getWaveformBuffer().getOldestDataSlot();
-					while (index != station.getAnalysis().getWaveformBuffer().getNewestDataSlot()) {
-						logs.add(station.getAnalysis().getWaveformBuffer().toLog(index));
-						index = (index + 1) % station.getAnalysis().getWaveformBuffer().getSize();
-					}
+			WaveformBuffer snapshot = waveformBuffer.snapshot();
+			if (!snapshot.isEmpty()) {
+				int index = snapshot.getOldestDataSlot();
+				while (index != snapshot.getNewestDataSlot()) {
+					logs.add(snapshot.toLog(index));
+					index = (index + 1) % snapshot.getSize();
 				}
-			} finally {
-				waveformBuffer.getReadLock().unlock();
 			}
 		}
 		return logs;
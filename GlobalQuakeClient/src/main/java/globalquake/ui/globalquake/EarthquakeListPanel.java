@@ -1,5 +1,6 @@
 package globalquake.ui.globalquake;
 
+import globalquake.core.GlobalQuake;
 import globalquake.core.archive.ArchivedQuake;
 import globalquake.core.earthquake.quality.QualityClass;
 import globalquake.core.intensity.IntensityScales;
@@ -80,6 +81,9 @@ public class EarthquakeListPanel extends JPanel {
 
                 if (quake != null && e.getButton() == MouseEvent.BUTTON3 && !isMouseInGoUpRect) {
                     quake.setWrong(!quake.isWrong());
+                    if (GlobalQuake.instance != null) {
+                        GlobalQuake.instance.getArchive().updateQuake(quake);
+                    }
                 }
 
                 if(e.getButton() == MouseEvent.BUTTON1) {
@@ -0,0 +1,84 @@
+package globalquake.client;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.Settings;
+import globalquake.core.exception.RuntimeApplicationException;
+import gqserver.server.ClientSelector;
+import gqserver.server.GQServerSocket;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ClientSocketTest {
+
+    @Before
+    public void setUp() throws Exception {
+        if (GlobalQuake.mainFolder == null) {
+            // settings are saved on first use
+            GlobalQuake.prepare(Files.createTempDirectory("settings").toFile(), null);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private interface SelectorTest {
+        void run(GQServerSocket server, int port) throws Exception;
+    }
+
+    private static void withSelector(SelectorTest test) throws Exception {
+        int port = freePort();
+        GQServerSocket server = new GQServerSocket();
+        ClientSelector selector = new ClientSelector(server, "127.0.0.1", port);
+        Thread thread = new Thread(selector::run);
+        thread.start();
+        try {
+            test.run(server, port);
+        } finally {
+            server.stop();
+            selector.close();
+            thread.join();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testHandshakeWithSelector() throws Exception {
+        withSelector((server, port) -> {
+            ClientSocket clientSocket = new ClientSocket();
+            clientSocket.open("127.0.0.1", port);
+            assertTrue(clientSocket.usesCodec());
+
+            // the response is sent just before the client is added
+            while (server.getClientCount() == 0) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.getClientCount());
+        });
+    }
+
+    @Test(timeout = 20000)
+    public void testRejectedBySelector() throws Exception {
+        Integer maxClients = Settings.maxClients;
+        Settings.maxClients = 0;
+        try {
+            withSelector((server, port) -> {
+                try {
+                    new ClientSocket().open("127.0.0.1", port);
+                    fail("The server is full");
+                } catch (RuntimeApplicationException e) {
+                    assertEquals(0, server.getClientCount());
+                }
+            });
+        } finally {
+            Settings.maxClients = maxClients;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package globalquake.core;
 
+import globalquake.core.earthquake.ClusterAnalysis;
 import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStationManager;
 import globalquake.utils.NamedThreadFactory;
 import org.tinylog.Logger;
 
@@ -11,6 +13,12 @@ import java.util.concurrent.TimeUnit;
 @SuppressWarnings("unused")
 public class GlobalQuakeRuntime {
 
+    // how often the incremental cluster analysis checks for changed events
+    private static final long CLUSTER_POLL_INTERVAL = 20;
+
+    // events change in bursts while the stations are analysed, waiting this long between passes collects a burst into one pass
+    private static final long MIN_CLUSTER_PASS_INTERVAL = 100;
+
     private long lastSecond;
     private long lastAnalysis;
     private long lastGC;
@@ -19,6 +27,7 @@ public class GlobalQuakeRuntime {
     private ScheduledExecutorService execAnalysis;
     private ScheduledExecutorService exec1Sec;
     private ScheduledExecutorService execQuake;
+    private long lastClusterPass;
 
     public void runThreads() {
         execAnalysis = Executors
@@ -42,8 +51,13 @@ public class GlobalQuakeRuntime {
         exec1Sec.scheduleAtFixedRate(() -> {
             try {
                 long a = System.currentTimeMillis();
-                GlobalQuake.instance.getStationManager().getStations().parallelStream().forEach(
-                        station -> station.second(GlobalQuake.instance.currentTimeMillis()));
+                GlobalStationManager stationManager = GlobalQuake.instance.getStationManager();
+                stationManager.getStations().parallelStream().forEach(station -> {
+                    station.second(GlobalQuake.instance.currentTimeMillis());
+                    if (station.updateReportedState()) {
+                        stationManager.markChanged(station);
+                    }
+                });
                 if (GlobalQuake.instance.getEarthquakeAnalysis() != null) {
                     GlobalQuake.instance.getEarthquakeAnalysis().second();
                 }
@@ -57,6 +71,7 @@ public class GlobalQuakeRuntime {
         execQuake.scheduleAtFixedRate(() -> {
             try {
                 long a = System.currentTimeMillis();
+                lastClusterPass = a;
                 GlobalQuake.instance.getClusterAnalysis().run();
                 GlobalQuake.instance.getEarthquakeAnalysis().run();
                 lastQuakesT = System.currentTimeMillis() - a;
@@ -65,6 +80,25 @@ public class GlobalQuakeRuntime {
                 GlobalQuake.getErrorHandler().handleException(e);
             }
         }, 0, HypocsSettings.getOrDefaultInt("hypocsLoopTime", 300), TimeUnit.MILLISECONDS);
+
+        // runs on the same thread as the loop above, so the passes never overlap
+        execQuake.scheduleWithFixedDelay(() -> {
+            try {
+                ClusterAnalysis clusterAnalysis = GlobalQuake.instance.getClusterAnalysis();
+                long a = System.currentTimeMillis();
+                if (!Settings.incrementalClusterAnalysis || a - lastClusterPass < MIN_CLUSTER_PASS_INTERVAL
+                        || !clusterAnalysis.hasChangedEvents()) {
+                    return;
+                }
+
+                lastClusterPass = a;
+                clusterAnalysis.run();
+                clusterAnalysisT = System.currentTimeMillis() - a;
+            } catch (Exception e) {
+                Logger.error("震群关联中出现异常");
+                GlobalQuake.getErrorHandler().handleException(e);
+            }
+        }, CLUSTER_POLL_INTERVAL, CLUSTER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     public void stop() {
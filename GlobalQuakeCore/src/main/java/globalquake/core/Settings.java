@@ -122,6 +122,11 @@ public final class Settings {
     public static Boolean displaySystemInfo;
     public static Boolean reduceRevisions;
 
+    public static Boolean incrementalHypocenterSearch;
+    public static Boolean lockFreeWaveformBuffers;
+    public static Boolean selectorSeedlinkReader;
+    public static Boolean incrementalClusterAnalysis;
+
     public static Integer shakingLevelScale;
     public static Integer shakingLevelIndex;
 
@@ -139,6 +144,7 @@ public final class Settings {
 
     public static Integer lastServerPORT;
     public static Integer maxClients;
+    public static Boolean selectorServer;
     public static Boolean displayShakemaps;
 
     public static Integer stationsShapeIndex;
@@ -160,6 +166,10 @@ public final class Settings {
     @SuppressWarnings("unused")
     public static Boolean autoStartFDSNWSEventServer;
     @SuppressWarnings("unused")
+    public static Integer FDSNWSEventThreads;
+    @SuppressWarnings("unused")
+    public static Integer FDSNWSEventQueueSize;
+    @SuppressWarnings("unused")
     public static Double shakemapQualityOffset;
     @SuppressWarnings("unused")
     public static Boolean discordBotEnabled;
@@ -235,6 +245,7 @@ public final class Settings {
 
         loadProperty("maxClients", "64",
                 o -> validateInt(2, 10000, (Integer) o));
+        loadProperty("selectorServer", "false");
 
         loadProperty("lastServerIP", "server.globalquake.net");
         loadProperty("lastServerPORT", "38000");
@@ -242,6 +253,10 @@ public final class Settings {
         loadProperty("FDSNWSEventIP", "localhost"); //As a default, localhost is used for security.
         loadProperty("FDSNWSEventPort", "8080");
         loadProperty("autoStartFDSNWSEventServer", "false");
+        loadProperty("FDSNWSEventThreads", "4",
+                o -> validateInt(1, 256, (Integer) o));
+        loadProperty("FDSNWSEventQueueSize", "64",
+                o -> validateInt(1, 10000, (Integer) o));
 
         loadProperty("shakingLevelScale", "0",
                 o -> validateInt(0, IntensityScales.INTENSITY_SCALES.length - 1, (Integer) o));
@@ -315,6 +330,10 @@ public final class Settings {
         loadProperty("minimumStationsForEEW", String.valueOf(minimumStationsForEEWDefault));
         loadProperty("useOldColorScheme", "false");
         loadProperty("parallelHypocenterLocations", "true");
+        loadProperty("incrementalHypocenterSearch", "true");
+        loadProperty("lockFreeWaveformBuffers", "false");
+        loadProperty("selectorSeedlinkReader", "false");
+        loadProperty("incrementalClusterAnalysis", "false");
         loadProperty("displayHomeLocation", "true");
         loadProperty("antialiasing", "false");
         loadProperty("fpsIdle", "60", o -> validateInt(1, 300, (Integer) o));
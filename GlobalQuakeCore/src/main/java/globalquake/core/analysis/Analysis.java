@@ -71,13 +71,7 @@ public abstract class Analysis {
                 return;
             }
 
-            int i = 0;
-
-            for (int v : data) {
-                long time = startTime + (long) (i * (1000.0 / dataRecord.getSampleRate()));
-                nextSample(v, time, GlobalQuake.instance.currentTimeMillis());
-                i++;
-            }
+            nextSamples(data, startTime, dataRecord.getSampleRate(), GlobalQuake.instance.currentTimeMillis());
         } catch (Exception e) {
             Logger.trace(e);
             Logger.warn("%s 台站数据处理出现问题: %s".formatted(getStation().getStationCode(), e.getMessage()));
@@ -86,6 +80,24 @@ public abstract class Analysis {
 
     public abstract void nextSample(int v, long time, long currentTime);
 
+    /**
+     * Processes all samples of one decoded record, subclasses can override this to work on the whole block at once
+     *
+     * @param data decoded samples
+     * @param startTime time of the first sample
+     * @param recordSampleRate sample rate of the record, used for the timing of the individual samples
+     * @param currentTime current time
+     */
+    public void nextSamples(int[] data, long startTime, double recordSampleRate, long currentTime) {
+        for (int i = 0; i < data.length; i++) {
+            nextSample(data[i], sampleTime(startTime, i, recordSampleRate), currentTime);
+        }
+    }
+
+    protected static long sampleTime(long startTime, int index, double sampleRate) {
+        return startTime + (long) (index * (1000.0 / sampleRate));
+    }
+
     @SuppressWarnings("SameReturnValue")
     public abstract long getGapThreshold();
 
@@ -127,7 +139,10 @@ public abstract class Analysis {
 
     public void setSampleRate(double sampleRate) {
         this.sampleRate = sampleRate;
-        waveformBuffer = new WaveformBuffer(getSampleRate(), Settings.logsStoreTimeMinutes * 60, GlobalQuake.getInstance().limitedWaveformBuffers());
+        boolean limited = GlobalQuake.getInstance().limitedWaveformBuffers();
+        waveformBuffer = Settings.lockFreeWaveformBuffers ?
+                new LockFreeWaveformBuffer(getSampleRate(), Settings.logsStoreTimeMinutes * 60, limited) :
+                new WaveformBuffer(getSampleRate(), Settings.logsStoreTimeMinutes * 60, limited);
     }
 
     public WaveformBuffer getWaveformBuffer() {
@@ -43,6 +43,13 @@ public class BetterAnalysis extends Analysis {
     private WaveformTransformator waveformLowFreq;
 
     private WaveformTransformator waveformUltraLowFreq;
+
+    private double[] blockInput = new double[0];
+    private double[] blockFiltered = new double[0];
+    private double[] blockVelocity = new double[0];
+    private double[] blockVelocityLowFreq = new double[0];
+    private double[] blockVelocityUltraLowFreq = new double[0];
+
     public static final double minFreqDefault = 2.0;
     public static final double maxFreqDefault = 5.0;
 
@@ -120,8 +127,72 @@ public class BetterAnalysis extends Analysis {
         waveformLowFreq.accept(v - initialOffset);
         waveformUltraLowFreq.accept(v - initialOffset);
 
-        double filteredV = waveformDefault.getCurrentValue();
+        processSample(v, time, currentTime, waveformDefault.getCurrentValue(), Math.abs(waveformDefault.getVelocity()),
+                Math.abs(waveformLowFreq.getVelocity()), Math.abs(waveformUltraLowFreq.getVelocity()));
+    }
+
+    /**
+     * Filters the whole record per filter in one pass while the analysis is running with a fixed offset.
+     * Everything else (initialisation, time going backwards) goes through {@link #nextSample(int, long, long)},
+     * so the averages and events are the same as if the samples were processed one by one.
+     */
+    @Override
+    public synchronized void nextSamples(int[] data, long startTime, double recordSampleRate, long currentTime) {
+        int index = 0;
+        while (index < data.length) {
+            long time = sampleTime(startTime, index, recordSampleRate);
+            if (waveformDefault == null || getStatus() == AnalysisStatus.INIT || time < latestLogTime) {
+                nextSample(data[index], time, currentTime);
+                index++;
+                continue;
+            }
+
+            int count = data.length - index;
+            ensureBlockCapacity(count);
+
+            for (int i = 0; i < count; i++) {
+                blockInput[i] = data[index + i] - initialOffset;
+            }
+
+            waveformDefault.acceptAll(blockInput, count, blockFiltered, blockVelocity);
+            waveformLowFreq.acceptAll(blockInput, count, null, blockVelocityLowFreq);
+            waveformUltraLowFreq.acceptAll(blockInput, count, null, blockVelocityUltraLowFreq);
+
+            // sample times within a record never go backwards, so only a reset can interrupt the block
+            int processed = 0;
+            while (processed < count) {
+                time = sampleTime(startTime, index + processed, recordSampleRate);
+                latestLogTime = time;
+                boolean keepGoing = processSample(data[index + processed], time, currentTime, blockFiltered[processed],
+                        blockVelocity[processed], blockVelocityLowFreq[processed], blockVelocityUltraLowFreq[processed]);
+                processed++;
+                if (!keepGoing) {
+                    // filters were reset, the rest of the precomputed block is no longer valid
+                    break;
+                }
+            }
+
+            index += processed;
+        }
+    }
 
+    private void ensureBlockCapacity(int count) {
+        if (blockInput.length < count) {
+            blockInput = new double[count];
+            blockFiltered = new double[count];
+            blockVelocity = new double[count];
+            blockVelocityLowFreq = new double[count];
+            blockVelocityUltraLowFreq = new double[count];
+        }
+    }
+
+    /**
+     * Updates the averages, events and logs with an already filtered sample
+     *
+     * @return false if the analysis was reset
+     */
+    private boolean processSample(int v, long time, long currentTime, double filteredV,
+                                  double velocity, double velocityLowFreq, double velocityUltraLowFreq) {
         double absFilteredV = Math.abs(filteredV);
         shortAverage -= (shortAverage - absFilteredV) / (getSampleRate() * 0.5);
         mediumAverage -= (mediumAverage - absFilteredV) / (getSampleRate() * 6.0);
@@ -166,7 +237,7 @@ public class BetterAnalysis extends Analysis {
                         + " 因超过最大事件持续时间而重置 (" + EVENT_TOO_LONG_DURATION + "s)");
                 reset();
                 getStation().reportState(StationState.INACTIVE, time);
-                return;
+                return false;
             }
 
             if (timeFromStart >= 1000 && (timeFromStart < 7.5 * 1000 && shortAverage < longAverage * 1.25 || shortAverage < mediumAverage * 0.12)) {
@@ -176,10 +247,6 @@ public class BetterAnalysis extends Analysis {
         }
 
 
-        double velocity = Math.abs(waveformDefault.getVelocity());
-        double velocityLowFreq = Math.abs(waveformLowFreq.getVelocity());
-        double velocityUltraLowFreq = Math.abs(waveformUltraLowFreq.getVelocity());
-
         if (velocity > _maxVelocity) {
             _maxVelocity = velocity;
         }
@@ -197,14 +264,8 @@ public class BetterAnalysis extends Analysis {
         if (time - currentTime < 1000 * 10
                 && currentTime - time < 1000L * 60 * Settings.logsStoreTimeMinutes) {
 
-            try {
-                getWaveformBuffer().getWriteLock().lock();
-                getWaveformBuffer().checkSize(Settings.logsStoreTimeMinutes * 60);
-                getWaveformBuffer().log(time, v, (float) filteredV, (float) shortAverage, (float) mediumAverage,
-                        (float) longAverage, (float) specialAverage, false);
-            } finally {
-                getWaveformBuffer().getWriteLock().unlock();
-            }
+            getWaveformBuffer().append(Settings.logsStoreTimeMinutes * 60, time, v, (float) filteredV, (float) shortAverage,
+                    (float) mediumAverage, (float) longAverage, (float) specialAverage);
 
             // from latest event to the oldest event
             for (Event e : getDetectedEvents()) {
@@ -215,6 +276,7 @@ public class BetterAnalysis extends Analysis {
             }
         }
         getStation().reportState(StationState.ACTIVE, time);
+        return true;
     }
 
     @Override
@@ -277,6 +339,7 @@ public class BetterAnalysis extends Analysis {
         }
 
         getDetectedEvents().removeAll(toBeRemoved);
+        toBeRemoved.forEach(Event::markChanged);
     }
 
 
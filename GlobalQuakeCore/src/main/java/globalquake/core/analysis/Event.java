@@ -6,9 +6,12 @@ import globalquake.core.report.StationReport;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -21,6 +24,9 @@ public class Event implements Serializable {
     public static final double[] SPECIAL_PERCENTILE = new double[]{0.08, 0.12, 0.18, 0.24, 0.32, 0.40, 0.48};
     public static final double[] SLOW_THRESHOLD_MULTIPLIERS = new double[]{1.12, 1.5, 1.9, 2.2, 2.4, 2.5, 2.6};
     private static final long MIN_EVENT_DIFF = 3000;
+
+    // sets collecting the events that changed in a way the cluster analysis cares about, see trackChanges
+    private static final List<WeakReference<Set<Event>>> changeTrackers = new CopyOnWriteArrayList<>();
     private final Lock readLock;
     private final Lock writeLock;
     private boolean usingRatio;
@@ -77,6 +83,31 @@ public class Event implements Serializable {
         this.writeLock = writeLock;
     }
 
+    /**
+     * Every event whose P wave, validity or S wave flag changes, or which is no longer detected, is added to the set from now on.
+     * New events are added once they get a P wave. The set is only weakly referenced and has to be thread safe.
+     */
+    public static void trackChanges(Set<Event> changed) {
+        changeTrackers.removeIf(tracker -> tracker.get() == null);
+        changeTrackers.add(new WeakReference<>(changed));
+    }
+
+    public static void stopTrackingChanges(Set<Event> changed) {
+        changeTrackers.removeIf(tracker -> tracker.get() == null || tracker.get() == changed);
+    }
+
+    /**
+     * Reports the event to the sets given to {@link #trackChanges(Set)}, also used when it is removed from the detected events.
+     */
+    public void markChanged() {
+        for (WeakReference<Set<Event>> tracker : changeTrackers) {
+            Set<Event> changed = tracker.get();
+            if (changed != null) {
+                changed.add(this);
+            }
+        }
+    }
+
     // used in emulator
     public Event(Analysis analysis) {
         this(analysis, null, null);
@@ -88,14 +119,22 @@ public class Event implements Serializable {
     }
 
     public void endBadly() {
-        this.valid = false;
+        invalidate();
+    }
+
+    private void invalidate() {
+        if (valid) {
+            valid = false;
+            markChanged();
+        }
     }
 
     public void setpWave(long pWave) {
         if (this.pWave != pWave) {
             this.updatesCount++;
+            this.pWave = pWave;
+            markChanged();
         }
-        this.pWave = pWave;
         checkValidity();
     }
 
@@ -105,7 +144,7 @@ public class Event implements Serializable {
                 long diff = Math.abs(pWave - ev2.pWave);
                 if (diff < MIN_EVENT_DIFF) {
                     Event bad = getStart() > ev2.start ? this : ev2;
-                    bad.valid = false;
+                    bad.invalidate();
                 }
             }
         }
@@ -121,7 +160,10 @@ public class Event implements Serializable {
     }
 
     public void setAsSWave(boolean isSWave) {
-        this.isSWave = isSWave;
+        if (this.isSWave != isSWave) {
+            this.isSWave = isSWave;
+            markChanged();
+        }
     }
 
     /**
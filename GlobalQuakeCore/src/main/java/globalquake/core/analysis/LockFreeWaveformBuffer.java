@@ -0,0 +1,80 @@
+package globalquake.core.analysis;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * Waveform buffer for a single writer thread and any number of readers.
+ * The writer never blocks: every modification is wrapped in a sequence counter that is odd while the
+ * data is being changed. Readers copy the data with {@link #snapshot()} and retry if the counter moved,
+ * so the read and write locks of this buffer are never used.
+ */
+public class LockFreeWaveformBuffer extends WaveformBuffer {
+
+    private volatile long sequence;
+
+    // nested modifications (log -> resize) only bump the sequence once
+    private int writeDepth;
+
+    public LockFreeWaveformBuffer(double sps, int seconds, boolean server) {
+        super(sps, seconds, server);
+    }
+
+    @Override
+    protected void beginWrite() {
+        if (writeDepth++ == 0) {
+            sequence = sequence + 1;
+            // the odd sequence must be visible before any of the data changes
+            VarHandle.releaseFence();
+        }
+    }
+
+    @Override
+    protected void endWrite() {
+        if (--writeDepth == 0) {
+            sequence = sequence + 1;
+        }
+    }
+
+    @Override
+    public void append(int seconds, long time, int rawValue, float filteredV, float shortAverage, float mediumAverage,
+                       float longAverage, float specialAverage) {
+        beginWrite();
+        try {
+            checkSize(seconds);
+            log(time, rawValue, filteredV, shortAverage, mediumAverage, longAverage, specialAverage, false);
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public WaveformBuffer snapshot() {
+        while (true) {
+            long before = sequence;
+            if ((before & 1) == 0) {
+                try {
+                    WaveformBuffer copy = copy();
+                    VarHandle.acquireFence();
+                    if (sequence == before) {
+                        return copy;
+                    }
+                } catch (RuntimeException ignored) {
+                    // torn read while the writer was resizing, try again
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return number of modifications times two, odd while a modification is in progress
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public boolean isLockFree() {
+        return true;
+    }
+}
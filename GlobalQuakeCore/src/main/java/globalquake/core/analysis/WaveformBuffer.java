@@ -50,6 +50,81 @@ public class WaveformBuffer {
         this.writeLock = readWriteLock.writeLock();
     }
 
+    private WaveformBuffer(WaveformBuffer source) {
+        this.server = source.server;
+        this.sps = source.sps;
+        this.times = source.times.clone();
+        this.size = times.length;
+        this.rawValues = source.rawValues == null ? null : source.rawValues.clone();
+
+        float[][] sourceComputed = source.computed.clone();
+        this.computed = new float[sourceComputed.length][];
+        for (int i = 0; i < sourceComputed.length; i++) {
+            computed[i] = sourceComputed[i].clone();
+        }
+
+        this.lastLog = source.lastLog;
+        this.nextFreeSlot = source.nextFreeSlot;
+        this.oldestDataSlot = source.oldestDataSlot;
+        this.timeReference = source.timeReference;
+
+        ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+        this.readLock = readWriteLock.readLock();
+        this.writeLock = readWriteLock.writeLock();
+    }
+
+    /**
+     * Called before the buffer is modified, the lock-free variant uses it to mark the data as inconsistent
+     */
+    protected void beginWrite() {
+    }
+
+    /**
+     * Called after the buffer has been modified
+     */
+    protected void endWrite() {
+    }
+
+    /**
+     * Creates an independent copy of the current state without any locking
+     */
+    protected WaveformBuffer copy() {
+        return new WaveformBuffer(this);
+    }
+
+    /**
+     * @return consistent independent copy of this buffer that can be read without holding any lock
+     */
+    public WaveformBuffer snapshot() {
+        readLock.lock();
+        try {
+            return copy();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Resizes the buffer if needed and logs one sample, this is what the analysis calls for every sample
+     */
+    public void append(int seconds, long time, int rawValue, float filteredV, float shortAverage, float mediumAverage,
+                       float longAverage, float specialAverage) {
+        writeLock.lock();
+        try {
+            checkSize(seconds);
+            log(time, rawValue, filteredV, shortAverage, mediumAverage, longAverage, specialAverage, false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if readers must use {@link #snapshot()} instead of the read lock
+     */
+    public boolean isLockFree() {
+        return false;
+    }
+
     private void log(long time, int rawValue, float filteredV, float ratio, float mediumRatio, float specialRatio, boolean expand) {
         if(time <= lastLog) {
             return;
@@ -104,12 +179,22 @@ public class WaveformBuffer {
 
     public void log(long time, int rawValue, float filteredV, float shortAverage, float mediumAverage, float longAverage,
                     float specialAverage, boolean expand){
-        log(time, rawValue, filteredV, shortAverage / longAverage, mediumAverage / longAverage, specialAverage / longAverage, expand);
+        beginWrite();
+        try {
+            log(time, rawValue, filteredV, shortAverage / longAverage, mediumAverage / longAverage, specialAverage / longAverage, expand);
+        } finally {
+            endWrite();
+        }
     }
 
     public void resize(int seconds) {
         int new_size = (int) Math.ceil(seconds * sps);
-        _resize(new_size);
+        beginWrite();
+        try {
+            _resize(new_size);
+        } finally {
+            endWrite();
+        }
     }
 
     private void _resize(int new_size) {
@@ -287,7 +372,12 @@ public class WaveformBuffer {
     public void checkSize(int seconds) {
         int _size = (int) Math.ceil(seconds * sps);
         if(_size != size){
-            _resize(_size);
+            beginWrite();
+            try {
+                _resize(_size);
+            } finally {
+                endWrite();
+            }
         }
     }
 }
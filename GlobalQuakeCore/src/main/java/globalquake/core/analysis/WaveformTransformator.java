@@ -38,6 +38,38 @@ public class WaveformTransformator {
         valueDerived = (currentValue - lastValue) * sampleRate;
     }
 
+    /**
+     * Filters a block of samples, the result is identical to calling {@link #accept(double)} for each of them
+     *
+     * @param input samples to be filtered
+     * @param count number of samples from the start of input
+     * @param values receives the filtered value after each sample, can be null
+     * @param velocities receives the absolute value of {@link #getVelocity()} after each sample, can be null
+     */
+    public void acceptAll(double[] input, int count, double[] values, double[] velocities) {
+        double multiplier = DEFAULT_SENSITIVITY / sensitivity;
+        for (int i = 0; i < count; i++) {
+            lastValue = currentValue;
+            currentValue = filter.filter(input[i]);
+
+            valueIntegrated += currentValue / sampleRate;
+            valueIntegrated *= 0.999;
+            valueDerived = (currentValue - lastValue) * sampleRate;
+
+            if (values != null) {
+                values[i] = currentValue;
+            }
+
+            if (velocities != null) {
+                velocities[i] = Math.abs(switch (inputType) {
+                    case ACCELERATION -> valueIntegrated * multiplier;
+                    case DISPLACEMENT -> valueDerived * multiplier;
+                    default -> currentValue * multiplier;
+                });
+            }
+        }
+    }
+
     public double getCurrentValue() {
         return currentValue;
     }
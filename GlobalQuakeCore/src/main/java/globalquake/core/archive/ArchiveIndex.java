@@ -0,0 +1,160 @@
+package globalquake.core.archive;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index of archived quakes for {@link ArchiveQuery} range queries.
+ * <p>
+ * Quakes are kept in cells of one magnitude unit and {@link #LAT_CELL_SIZE} degrees of latitude, each cell sorted
+ * by origin time. A query only visits the cells overlapping its magnitude and latitude range and only the time range
+ * within them. Ordered by time, the cells are merged lazily and the walk stops once offset + limit quakes were found,
+ * ordered by magnitude, the cells are visited one magnitude unit at a time.
+ * <p>
+ * Queries do not lock and may run while quakes are added or removed.
+ */
+public class ArchiveIndex {
+
+	private static final int MIN_MAG = -10;
+	private static final int MAG_CELLS = 21;
+	private static final double LAT_CELL_SIZE = 10.0;
+	private static final int LAT_CELLS = 18;
+
+	private static final UUID MAX_UUID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+	// origin first, the UUID keeps quakes with equal origin times apart
+	private record Key(long origin, UUID uuid) implements Comparable<Key> {
+		private static final Comparator<Key> COMPARATOR = Comparator.comparingLong(Key::origin)
+				.thenComparing(Key::uuid, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+		@Override
+		public int compareTo(Key other) {
+			return COMPARATOR.compare(this, other);
+		}
+	}
+
+	private final List<NavigableMap<Key, ArchivedQuake>> cells = new ArrayList<>(MAG_CELLS * LAT_CELLS);
+
+	public ArchiveIndex() {
+		for (int i = 0; i < MAG_CELLS * LAT_CELLS; i++) {
+			cells.add(new ConcurrentSkipListMap<>());
+		}
+	}
+
+	private static int magCell(double mag) {
+		return Math.max(0, Math.min(MAG_CELLS - 1, (int) Math.floor(mag) - MIN_MAG));
+	}
+
+	private static int latCell(double lat) {
+		return Math.max(0, Math.min(LAT_CELLS - 1, (int) Math.floor((lat + 90.0) / LAT_CELL_SIZE)));
+	}
+
+	private NavigableMap<Key, ArchivedQuake> cell(ArchivedQuake quake) {
+		return cells.get(magCell(quake.getMag()) * LAT_CELLS + latCell(quake.getLat()));
+	}
+
+	public void add(ArchivedQuake quake) {
+		cell(quake).put(new Key(quake.getOrigin(), quake.getUuid()), quake);
+	}
+
+	public void remove(ArchivedQuake quake) {
+		cell(quake).remove(new Key(quake.getOrigin(), quake.getUuid()));
+	}
+
+	public void clear() {
+		cells.forEach(Map::clear);
+	}
+
+	public int size() {
+		return cells.stream().mapToInt(Map::size).sum();
+	}
+
+	public List<ArchivedQuake> query(ArchiveQuery query) {
+		List<ArchivedQuake> result = new ArrayList<>();
+		if (query.limit() <= 0 || query.startTime() > query.endTime() || query.minMag() > query.maxMag() || query.minLat() > query.maxLat()) {
+			return result;
+		}
+
+		int minMagCell = magCell(query.minMag());
+		int maxMagCell = magCell(query.maxMag());
+		int minLatCell = latCell(query.minLat());
+		int maxLatCell = latCell(query.maxLat());
+
+		boolean ascending = query.order() == ArchiveQuery.Order.TIME_ASC || query.order() == ArchiveQuery.Order.MAGNITUDE_ASC;
+		int[] skip = {query.offset()};
+
+		switch (query.order()) {
+			case TIME, TIME_ASC -> {
+				List<Iterator<ArchivedQuake>> iterators = new ArrayList<>();
+				for (int mag = minMagCell; mag <= maxMagCell; mag++) {
+					for (int lat = minLatCell; lat <= maxLatCell; lat++) {
+						iterators.add(timeRange(cells.get(mag * LAT_CELLS + lat), query, ascending));
+					}
+				}
+				merge(iterators, query.order().comparator(), query, skip, result);
+			}
+			case MAGNITUDE, MAGNITUDE_ASC -> {
+				for (int i = 0; i <= maxMagCell - minMagCell && result.size() < query.limit(); i++) {
+					int mag = ascending ? minMagCell + i : maxMagCell - i;
+					List<ArchivedQuake> matches = new ArrayList<>();
+					for (int lat = minLatCell; lat <= maxLatCell; lat++) {
+						timeRange(cells.get(mag * LAT_CELLS + lat), query, true).forEachRemaining(quake -> {
+							if (query.matches(quake)) {
+								matches.add(quake);
+							}
+						});
+					}
+					matches.sort(query.order().comparator());
+					for (ArchivedQuake quake : matches) {
+						if (!accept(quake, skip, query, result)) {
+							break;
+						}
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static Iterator<ArchivedQuake> timeRange(NavigableMap<Key, ArchivedQuake> cell, ArchiveQuery query, boolean ascending) {
+		NavigableMap<Key, ArchivedQuake> range = cell.subMap(
+				new Key(query.startTime(), null), true, new Key(query.endTime(), MAX_UUID), true);
+		return (ascending ? range : range.descendingMap()).values().iterator();
+	}
+
+	private static void merge(List<Iterator<ArchivedQuake>> iterators, Comparator<ArchivedQuake> comparator,
+							  ArchiveQuery query, int[] skip, List<ArchivedQuake> result) {
+		record Head(ArchivedQuake quake, Iterator<ArchivedQuake> iterator) {
+		}
+
+		PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, iterators.size()), Comparator.comparing(Head::quake, comparator));
+		for (Iterator<ArchivedQuake> iterator : iterators) {
+			if (iterator.hasNext()) {
+				heads.add(new Head(iterator.next(), iterator));
+			}
+		}
+
+		while (!heads.isEmpty()) {
+			Head head = heads.poll();
+			if (query.matches(head.quake()) && !accept(head.quake(), skip, query, result)) {
+				return;
+			}
+			if (head.iterator().hasNext()) {
+				heads.add(new Head(head.iterator().next(), head.iterator()));
+			}
+		}
+	}
+
+	/**
+	 * @return false once the page is full
+	 */
+	private static boolean accept(ArchivedQuake quake, int[] skip, ArchiveQuery query, List<ArchivedQuake> result) {
+		if (skip[0] > 0) {
+			skip[0]--;
+		} else {
+			result.add(quake);
+		}
+		return result.size() < query.limit();
+	}
+}
@@ -0,0 +1,440 @@
+package globalquake.core.archive;
+
+import org.tinylog.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only storage of archived quakes with a compact origin time / UUID index.
+ * <p>
+ * The log file starts with an 8 byte header (magic 'GQAL', version), followed by one entry per archived or updated quake:
+ * <pre>
+ *  int   payload length
+ *  int   CRC32 of everything after this field
+ *  long  origin time
+ *  long  UUID most significant bits
+ *  long  UUID least significant bits
+ *  byte[] serialized {@link ArchivedQuake}
+ * </pre>
+ * The newest entry of an UUID wins. The index file is a snapshot of the index (UUID, origin, offset) together with
+ * the log length it covers, it is written on close and after compaction. On open only the part of the log written
+ * after the snapshot is scanned, a torn entry at the end of the log (crash while appending) is cut off.
+ * Compaction rewrites the log with just the newest entries, most of the copying happens without holding the lock.
+ */
+public final class ArchiveLog implements Closeable {
+
+	public static final int LOG_MAGIC = 0x4751414C;
+	public static final int INDEX_MAGIC = 0x47514149;
+	public static final int VERSION = 1;
+
+	private static final int LOG_HEADER_SIZE = 8;
+	private static final int ENTRY_HEADER_SIZE = 32;
+	private static final int INDEX_HEADER_SIZE = 20;
+	private static final int INDEX_ENTRY_SIZE = 32;
+	private static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+	public record IndexEntry(UUID uuid, long origin, long offset) {
+	}
+
+	// newest first, then by UUID so that quakes with equal origin times are kept apart
+	private static final Comparator<IndexEntry> NEWEST_FIRST = Comparator.comparingLong(IndexEntry::origin).reversed()
+			.thenComparing(IndexEntry::uuid);
+
+	private final Path logFile;
+	private final Path indexFile;
+
+	private FileChannel channel;
+	private final Map<UUID, IndexEntry> index = new HashMap<>();
+	private final NavigableSet<IndexEntry> byOrigin = new TreeSet<>(NEWEST_FIRST);
+	private long logSize;
+	private int totalEntries;
+
+	public ArchiveLog(Path logFile, Path indexFile) {
+		this.logFile = logFile;
+		this.indexFile = indexFile;
+	}
+
+	public static boolean exists(Path logFile) {
+		return Files.isRegularFile(logFile);
+	}
+
+	public synchronized ArchiveLog open() throws IOException {
+		if (logFile.getParent() != null) {
+			Files.createDirectories(logFile.getParent());
+		}
+
+		channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() < LOG_HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).putInt(VERSION).flip();
+			channel.truncate(0);
+			writeFully(channel, header, 0);
+		} else {
+			ByteBuffer header = readFully(channel, 0, LOG_HEADER_SIZE);
+			if (header.getInt() != LOG_MAGIC || header.getInt() != VERSION) {
+				channel.close();
+				throw new IOException("不是有效的存档日志: %s".formatted(logFile));
+			}
+		}
+
+		long scanFrom = loadIndex();
+		scan(scanFrom);
+		return this;
+	}
+
+	/**
+	 * @return log offset from which the log still has to be scanned
+	 */
+	private long loadIndex() {
+		index.clear();
+		byOrigin.clear();
+		totalEntries = 0;
+
+		if (!Files.isRegularFile(indexFile)) {
+			return LOG_HEADER_SIZE;
+		}
+
+		try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+			ByteBuffer buffer = readFully(indexChannel, 0, (int) indexChannel.size());
+			if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION) {
+				throw new IOException("无效的索引头");
+			}
+
+			long covered = buffer.getLong();
+			int count = buffer.getInt();
+			if (covered < LOG_HEADER_SIZE || covered > channel.size() || count < 0 ||
+					buffer.remaining() != (long) count * INDEX_ENTRY_SIZE + Long.BYTES) {
+				throw new IOException("索引与日志不匹配");
+			}
+
+			CRC32 crc32 = new CRC32();
+			crc32.update(buffer.duplicate().position(0).limit(buffer.limit() - Long.BYTES));
+			if (crc32.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+				throw new IOException("索引校验和错误");
+			}
+
+			for (int i = 0; i < count; i++) {
+				UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+				long origin = buffer.getLong();
+				long offset = buffer.getLong();
+				if (offset < LOG_HEADER_SIZE || offset >= covered) {
+					throw new IOException("索引条目超出范围");
+				}
+				put(new IndexEntry(uuid, origin, offset));
+			}
+
+			totalEntries = count;
+			return covered;
+		} catch (IOException e) {
+			Logger.warn("存档索引无效, 将重新扫描日志: %s".formatted(e.getMessage()));
+			index.clear();
+			byOrigin.clear();
+			totalEntries = 0;
+			return LOG_HEADER_SIZE;
+		}
+	}
+
+	private void scan(long from) throws IOException {
+		long position = from;
+		long size = channel.size();
+		while (position + ENTRY_HEADER_SIZE <= size) {
+			ByteBuffer header = readFully(channel, position, ENTRY_HEADER_SIZE);
+			int length = header.getInt();
+			long crc = header.getInt() & 0xFFFFFFFFL;
+			long origin = header.getLong();
+			UUID uuid = new UUID(header.getLong(), header.getLong());
+
+			if (length <= 0 || length > MAX_PAYLOAD || position + ENTRY_HEADER_SIZE + length > size) {
+				break;
+			}
+
+			ByteBuffer payload = readFully(channel, position + ENTRY_HEADER_SIZE, length);
+			if (checksum(header, payload) != crc) {
+				break;
+			}
+
+			put(new IndexEntry(uuid, origin, position));
+			totalEntries++;
+			position += ENTRY_HEADER_SIZE + length;
+		}
+
+		if (position < size) {
+			Logger.warn("存档日志末尾有 %d 字节损坏的数据, 已截断".formatted(size - position));
+			channel.truncate(position);
+		}
+
+		logSize = position;
+	}
+
+	private void put(IndexEntry entry) {
+		IndexEntry previous = index.put(entry.uuid(), entry);
+		if (previous != null) {
+			byOrigin.remove(previous);
+		}
+		byOrigin.add(entry);
+	}
+
+	private static long checksum(ByteBuffer header, ByteBuffer payload) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(header.duplicate().position(8).limit(ENTRY_HEADER_SIZE));
+		crc32.update(payload.duplicate().position(0));
+		return crc32.getValue();
+	}
+
+	private static ByteBuffer encode(ArchivedQuake quake) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(quake);
+		}
+		byte[] payload = bytes.toByteArray();
+
+		ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+		buffer.putInt(payload.length).putInt(0).putLong(quake.getOrigin())
+				.putLong(quake.getUuid().getMostSignificantBits()).putLong(quake.getUuid().getLeastSignificantBits())
+				.put(payload);
+		buffer.putInt(4, (int) checksum(buffer.duplicate().limit(ENTRY_HEADER_SIZE),
+				buffer.duplicate().position(ENTRY_HEADER_SIZE).slice()));
+		return buffer.flip();
+	}
+
+	/**
+	 * Appends the quake to the log, a quake with the same UUID that was archived before is superseded
+	 */
+	public void append(ArchivedQuake quake) throws IOException {
+		ByteBuffer entry = encode(quake);
+		synchronized (this) {
+			ensureOpen();
+			writeFully(channel, entry, logSize);
+			put(new IndexEntry(quake.getUuid(), quake.getOrigin(), logSize));
+			logSize += entry.limit();
+			totalEntries++;
+		}
+	}
+
+	public synchronized ArchivedQuake read(UUID uuid) throws IOException {
+		IndexEntry entry = index.get(uuid);
+		return entry == null ? null : read(entry);
+	}
+
+	private ArchivedQuake read(IndexEntry entry) throws IOException {
+		ensureOpen();
+		ByteBuffer header = readFully(channel, entry.offset(), ENTRY_HEADER_SIZE);
+		int length = header.getInt();
+		if (length <= 0 || length > MAX_PAYLOAD) {
+			throw new IOException("存档日志条目在 %d 处损坏".formatted(entry.offset()));
+		}
+
+		ByteBuffer payload = readFully(channel, entry.offset() + ENTRY_HEADER_SIZE, length);
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload.array()))) {
+			return (ArchivedQuake) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("无法读取存档地震 %s".formatted(entry.uuid()), e);
+		}
+	}
+
+	/**
+	 * @return up to count quakes with the latest origin times, newest first
+	 */
+	public synchronized List<ArchivedQuake> readNewest(int count) throws IOException {
+		List<ArchivedQuake> result = new ArrayList<>(Math.min(count, byOrigin.size()));
+		for (IndexEntry entry : byOrigin) {
+			if (result.size() >= count) {
+				break;
+			}
+			try {
+				result.add(read(entry));
+			} catch (IOException e) {
+				Logger.warn(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return index entries with origin time in [from, to), newest first
+	 */
+	public synchronized List<IndexEntry> findBetween(long from, long to) {
+		if (from >= to) {
+			return List.of();
+		}
+		// the set is ordered newest first, so the bound at the end of the time range comes first
+		IndexEntry first = new IndexEntry(new UUID(Long.MIN_VALUE, Long.MIN_VALUE), to - 1, 0);
+		IndexEntry last = new IndexEntry(new UUID(Long.MAX_VALUE, Long.MAX_VALUE), from, 0);
+		return new ArrayList<>(byOrigin.subSet(first, true, last, true));
+	}
+
+	public synchronized boolean contains(UUID uuid) {
+		return index.containsKey(uuid);
+	}
+
+	/**
+	 * @return number of distinct quakes in the log
+	 */
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return number of entries in the log including superseded ones
+	 */
+	public synchronized int getTotalEntries() {
+		return totalEntries;
+	}
+
+	public synchronized long getLogSize() {
+		return logSize;
+	}
+
+	/**
+	 * Rewrites the log so that it only contains the newest version of the newest keep quakes.
+	 * Appends are blocked only while the entries written during the copy are transferred and the files are swapped.
+	 */
+	public void compact(int keep) throws IOException {
+		List<IndexEntry> toCopy;
+		long copyEnd;
+		FileChannel source;
+		synchronized (this) {
+			ensureOpen();
+			toCopy = byOrigin.stream().limit(keep).sorted(Comparator.comparingLong(IndexEntry::offset)).toList();
+			copyEnd = logSize;
+			source = channel;
+		}
+
+		Path tempFile = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+		try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(target, ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).putInt(VERSION).flip(), 0);
+
+			// positional reads do not interfere with appends to the same channel
+			Map<Long, Long> movedOffsets = new HashMap<>();
+			long position = LOG_HEADER_SIZE;
+			for (IndexEntry entry : toCopy) {
+				position = copyEntry(source, target, entry.offset(), position, movedOffsets);
+			}
+
+			synchronized (this) {
+				if (channel != source) {
+					throw new IOException("存档日志在压缩期间被关闭");
+				}
+
+				// entries appended while copying are kept as well
+				List<IndexEntry> fresh = new ArrayList<>();
+				for (IndexEntry entry : byOrigin) {
+					if (entry.offset() >= copyEnd) {
+						fresh.add(entry);
+					}
+				}
+				fresh.sort(Comparator.comparingLong(IndexEntry::offset));
+				for (IndexEntry entry : fresh) {
+					position = copyEntry(channel, target, entry.offset(), position, movedOffsets);
+				}
+
+				List<IndexEntry> newEntries = new ArrayList<>();
+				for (IndexEntry entry : byOrigin) {
+					Long moved = movedOffsets.get(entry.offset());
+					if (moved != null) {
+						newEntries.add(new IndexEntry(entry.uuid(), entry.origin(), moved));
+					}
+				}
+
+				target.force(true);
+				channel.close();
+				Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+				index.clear();
+				byOrigin.clear();
+				newEntries.forEach(this::put);
+				logSize = position;
+				totalEntries = newEntries.size();
+				writeIndex();
+
+				Logger.info("存档日志已压缩: %d 次地震, %d 字节".formatted(index.size(), logSize));
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static long copyEntry(FileChannel source, FileChannel target, long offset, long position, Map<Long, Long> movedOffsets) throws IOException {
+		int length = readFully(source, offset, Integer.BYTES).getInt();
+		long size = ENTRY_HEADER_SIZE + (long) length;
+		long copied = 0;
+		while (copied < size) {
+			long n = source.transferTo(offset + copied, size - copied, target.position(position + copied));
+			if (n <= 0) {
+				throw new EOFException();
+			}
+			copied += n;
+		}
+		movedOffsets.put(offset, position);
+		return position + size;
+	}
+
+	/**
+	 * Writes the index snapshot so that the next open does not have to scan the log
+	 */
+	public synchronized void writeIndex() throws IOException {
+		ensureOpen();
+		ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + index.size() * INDEX_ENTRY_SIZE + Long.BYTES);
+		buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(logSize).putInt(index.size());
+		for (IndexEntry entry : byOrigin) {
+			buffer.putLong(entry.uuid().getMostSignificantBits()).putLong(entry.uuid().getLeastSignificantBits())
+					.putLong(entry.origin()).putLong(entry.offset());
+		}
+
+		CRC32 crc32 = new CRC32();
+		crc32.update(buffer.duplicate().flip());
+		buffer.putLong(crc32.getValue()).flip();
+
+		channel.force(false);
+
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (FileChannel indexChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(indexChannel, buffer, 0);
+		}
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (channel == null || !channel.isOpen()) {
+			throw new IOException("存档日志未打开");
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel == null || !channel.isOpen()) {
+			return;
+		}
+		try {
+			writeIndex();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer.flip();
+	}
+}
@@ -0,0 +1,48 @@
+package globalquake.core.archive;
+
+import java.util.Comparator;
+
+/**
+ * Filter, order and page of an {@link ArchiveIndex} query, all bounds are inclusive.
+ *
+ * @param offset number of matching quakes to skip
+ * @param limit  maximum number of quakes returned, {@link Integer#MAX_VALUE} for no limit
+ */
+public record ArchiveQuery(long startTime, long endTime,
+						   double minLat, double maxLat, double minLon, double maxLon,
+						   double minDepth, double maxDepth, double minMag, double maxMag,
+						   Order order, int offset, int limit) {
+
+	// equal origin times are ordered by UUID, so that pages of the same query never overlap
+	private static final Comparator<ArchivedQuake> BY_ORIGIN = Comparator.comparingLong(ArchivedQuake::getOrigin)
+			.thenComparing(ArchivedQuake::getUuid, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+	public enum Order {
+		TIME(BY_ORIGIN.reversed()),
+		TIME_ASC(BY_ORIGIN),
+		MAGNITUDE(Comparator.comparingDouble(ArchivedQuake::getMag).reversed().thenComparing(TIME.comparator)),
+		MAGNITUDE_ASC(Comparator.comparingDouble(ArchivedQuake::getMag).thenComparing(TIME.comparator));
+
+		private final Comparator<ArchivedQuake> comparator;
+
+		Order(Comparator<ArchivedQuake> comparator) {
+			this.comparator = comparator;
+		}
+
+		public Comparator<ArchivedQuake> comparator() {
+			return comparator;
+		}
+	}
+
+	public ArchiveQuery withPage(int offset, int limit) {
+		return new ArchiveQuery(startTime, endTime, minLat, maxLat, minLon, maxLon, minDepth, maxDepth, minMag, maxMag, order, offset, limit);
+	}
+
+	public boolean matches(ArchivedQuake quake) {
+		return quake.getOrigin() >= startTime && quake.getOrigin() <= endTime
+				&& quake.getLat() >= minLat && quake.getLat() <= maxLat
+				&& quake.getLon() >= minLon && quake.getLon() <= maxLon
+				&& quake.getDepth() >= minDepth && quake.getDepth() <= maxDepth
+				&& quake.getMag() >= minMag && quake.getMag() <= maxMag;
+	}
+}
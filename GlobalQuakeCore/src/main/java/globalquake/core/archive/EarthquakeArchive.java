@@ -13,64 +13,117 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class EarthquakeArchive {
 
 	public static final File ARCHIVE_FILE = new File(GlobalQuake.mainFolder,  "volume/archive.dat");
-	public static final File TEMP_ARCHIVE_FILE = new File(GlobalQuake.mainFolder, "volume/temp_archive.dat");
+	public static final File ARCHIVE_LOG_FILE = new File(GlobalQuake.mainFolder, "volume/archive.log");
+	public static final File ARCHIVE_INDEX_FILE = new File(GlobalQuake.mainFolder, "volume/archive.idx");
+	public static final File MIGRATED_ARCHIVE_FILE = new File(GlobalQuake.mainFolder, "volume/archive.dat.migrated");
+
+	private static final Comparator<ArchivedQuake> NEWEST_FIRST = Comparator.comparing(archivedQuake -> -archivedQuake.getOrigin());
+
 	private final ExecutorService executor;
+	private final ExecutorService compactionExecutor;
+	private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
 
 	private List<ArchivedQuake> archivedQuakes = new MonitorableCopyOnWriteArrayList<>();
 
 	private final Map<UUID, ArchivedQuake> uuidArchivedQuakeMap = new ConcurrentHashMap<>();
 
+	private final ArchiveIndex archiveIndex = new ArchiveIndex();
+
+	private ArchiveLog archiveLog;
+
 	public EarthquakeArchive() {
 		executor = Executors.newSingleThreadExecutor();
+		compactionExecutor = Executors.newSingleThreadExecutor();
 	}
 
-	@SuppressWarnings("unchecked")
 	public EarthquakeArchive loadArchive() {
-		if (!ARCHIVE_FILE.exists()) {
-			Logger.info("创建了新的存档");
-		} else {
-			try {
-				ObjectInputStream oin = new ObjectInputStream(new FileInputStream(ARCHIVE_FILE));
-				archivedQuakes = (MonitorableCopyOnWriteArrayList<ArchivedQuake>) oin.readObject();
-				oin.close();
+		try {
+			boolean migrate = !ArchiveLog.exists(ARCHIVE_LOG_FILE.toPath()) && ARCHIVE_FILE.exists();
+			archiveLog = new ArchiveLog(ARCHIVE_LOG_FILE.toPath(), ARCHIVE_INDEX_FILE.toPath()).open();
+			if (migrate) {
+				migrate(archiveLog);
+			}
+
+			List<ArchivedQuake> loaded = archiveLog.readNewest(Settings.maxArchivedQuakes);
+			loaded.sort(NEWEST_FIRST);
+			archivedQuakes = new MonitorableCopyOnWriteArrayList<>(loaded);
+			if (archivedQuakes.isEmpty()) {
+				Logger.info("创建了新的存档");
+			} else {
 				Logger.info("从存档中加载了" + archivedQuakes.size() + "次地震.");
-			} catch (Exception e) {
-				Logger.error(e);
 			}
+		} catch (Exception e) {
+			Logger.error(e);
 		}
 
-		archivedQuakes.sort(Comparator.comparing(archivedQuake1 -> -archivedQuake1.getOrigin()));
 		buildUUIDMap();
 
 		return this;
 	}
 
+	/**
+	 * One-time conversion of the old archive.dat, which stored the whole list as one serialized object
+	 */
+	@SuppressWarnings("unchecked")
+	private static void migrate(ArchiveLog archiveLog) throws IOException, ClassNotFoundException {
+		List<ArchivedQuake> oldQuakes;
+		try (ObjectInputStream oin = new ObjectInputStream(new BufferedInputStream(new FileInputStream(ARCHIVE_FILE)))) {
+			oldQuakes = new ArrayList<>((List<ArchivedQuake>) oin.readObject());
+		}
+
+		oldQuakes.sort(NEWEST_FIRST.reversed());
+		for (ArchivedQuake archivedQuake : oldQuakes) {
+			archiveLog.append(archivedQuake);
+		}
+		archiveLog.writeIndex();
+
+		if (!ARCHIVE_FILE.renameTo(MIGRATED_ARCHIVE_FILE)) {
+			Logger.warn("无法重命名 %s".formatted(ARCHIVE_FILE.getName()));
+		}
+
+		Logger.info("已将%d次地震从%s迁移到%s".formatted(oldQuakes.size(), ARCHIVE_FILE.getName(), ARCHIVE_LOG_FILE.getName()));
+	}
+
 	private void buildUUIDMap() {
 		for(ArchivedQuake archivedQuake : archivedQuakes){
 			uuidArchivedQuakeMap.put(archivedQuake.getUuid(), archivedQuake);
+			archiveIndex.add(archivedQuake);
 		}
 	}
 
-	public void saveArchive() {
-		if (archivedQuakes != null) {
-			try {
-				ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(TEMP_ARCHIVE_FILE));
-				Logger.info("将" + archivedQuakes.size() + "次地震保存到" + ARCHIVE_FILE.getName());
-				out.writeObject(archivedQuakes);
-				out.close();
-				boolean res = (!ARCHIVE_FILE.exists() || ARCHIVE_FILE.delete()) && TEMP_ARCHIVE_FILE.renameTo(ARCHIVE_FILE);
-				if(!res){
-					Logger.error("无法保存存档!");
-				} else {
-					Logger.info("存档已保存");
+	/**
+	 * Appends the quake to the archive log, the whole archive is never rewritten
+	 */
+	private void persist(ArchivedQuake archivedQuake) {
+		if (archiveLog == null) {
+			return;
+		}
+
+		try {
+			archiveLog.append(archivedQuake);
+		} catch (IOException e) {
+			Logger.error(e);
+			return;
+		}
+
+		// the log keeps superseded and trimmed quakes until it is compacted
+		int keep = Settings.maxArchivedQuakes;
+		if (archiveLog.getTotalEntries() > keep * 2L + 16 && compactionScheduled.compareAndSet(false, true)) {
+			compactionExecutor.submit(() -> {
+				try {
+					archiveLog.compact(keep);
+				} catch (Exception e) {
+					Logger.error(e);
+				} finally {
+					compactionScheduled.set(false);
 				}
-			} catch (Exception e) {
-				Logger.error(e);
-			}
+			});
 		}
 	}
 
@@ -81,15 +134,20 @@ public class EarthquakeArchive {
 	public void archiveQuakeAndSave(Earthquake earthquake) {
 		executor.submit(() -> {
 			try {
-				archiveQuake(earthquake);
-
-				saveArchive();
+				persist(archiveQuake(earthquake));
 			} catch(Exception e){
 				Logger.error(e);
 			}
         });
 	}
 
+	/**
+	 * Saves a change of an already archived quake, e.g. when it was marked as wrong
+	 */
+	public void updateQuake(ArchivedQuake archivedQuake) {
+		executor.submit(() -> persist(archivedQuake));
+	}
+
 	private void reportQuake(Earthquake earthquake, ArchivedQuake archivedQuake) {
 		executor.submit(() -> {
             try {
@@ -100,12 +158,13 @@ public class EarthquakeArchive {
         });
 	}
 
-	public void archiveQuake(Earthquake earthquake) {
+	public ArchivedQuake archiveQuake(Earthquake earthquake) {
 		ArchivedQuake archivedQuake = new ArchivedQuake(earthquake);
 		archiveQuake(archivedQuake, earthquake);
 		if (Settings.reportsEnabled) {
 			reportQuake(earthquake, archivedQuake);
 		}
+		return archivedQuake;
 	}
 
 	protected synchronized void archiveQuake(ArchivedQuake archivedQuake, Earthquake earthquake) {
@@ -114,9 +173,12 @@ public class EarthquakeArchive {
 		}
 
 		archivedQuake.updateRegion();
-		archivedQuakes.add(0, archivedQuake);
+
+		// the list is kept sorted, so a binary search is enough to find the place of the new quake
+		int index = Collections.binarySearch(archivedQuakes, archivedQuake, NEWEST_FIRST);
+		archivedQuakes.add(index < 0 ? -index - 1 : index, archivedQuake);
 		uuidArchivedQuakeMap.put(archivedQuake.getUuid(), archivedQuake);
-		archivedQuakes.sort(Comparator.comparing(archivedQuake1 -> -archivedQuake1.getOrigin()));
+		archiveIndex.add(archivedQuake);
 
 		if(GlobalQuake.instance != null && earthquake != null) {
 			GlobalQuake.instance.getEventHandler().fireEvent(new QuakeArchiveEvent(earthquake, archivedQuake));
@@ -126,6 +188,7 @@ public class EarthquakeArchive {
 			ArchivedQuake toRemove = archivedQuakes.get(archivedQuakes.size() - 1);
 			archivedQuakes.remove(toRemove);
 			uuidArchivedQuakeMap.remove(toRemove.getUuid());
+			archiveIndex.remove(toRemove);
 		}
 
 		if(archivedQuakes.size() != uuidArchivedQuakeMap.size()){
@@ -133,12 +196,38 @@ public class EarthquakeArchive {
 		}
 	}
 
+	/**
+	 * Archived quakes matching the query, without going through the whole archive
+	 */
+	public List<ArchivedQuake> query(ArchiveQuery query) {
+		return archiveIndex.query(query);
+	}
+
 	public ArchivedQuake getArchivedQuakeByUUID(UUID uuid){
 		return uuidArchivedQuakeMap.get(uuid);
 	}
 
 	public void destroy(){
+		// quakes still waiting to be appended must not be dropped
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				Logger.warn("存档的保存未能及时完成");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
 		GlobalQuake.instance.stopService(executor);
+		GlobalQuake.instance.stopService(compactionExecutor);
+
+		if (archiveLog != null) {
+			try {
+				archiveLog.close();
+			} catch (IOException e) {
+				Logger.error(e);
+			}
+		}
 	}
 
 }
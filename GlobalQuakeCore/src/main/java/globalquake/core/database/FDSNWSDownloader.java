@@ -3,19 +3,17 @@ package globalquake.core.database;
 import globalquake.core.exception.FdnwsDownloadException;
 import gqserver.api.packets.station.InputType;
 import org.tinylog.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.math.BigDecimal;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -31,6 +29,15 @@ public class FDSNWSDownloader {
     public static final List<Character> SUPPORTED_BANDS = List.of('E', 'S', 'H', 'B', 'C', 'A');
     public static final List<Character> SUPPORTED_INSTRUMENTS = List.of('H', 'L', 'G', 'M', 'N', 'C');
 
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
     private static List<String> downloadWadl(StationSource stationSource) throws Exception {
         URL url = new URL("%sapplication.wadl".formatted(stationSource.getUrl()));
 
@@ -39,25 +46,24 @@ public class FDSNWSDownloader {
         con.setReadTimeout(TIMEOUT_SECONDS * 1000);
         InputStream inp = con.getInputStream();
 
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inp);
-        doc.getDocumentElement().normalize();
-
         List<String> paramNames = new ArrayList<>();
-        NodeList paramNodes = doc.getElementsByTagName("param");
-        for (int i = 0; i < paramNodes.getLength(); i++) {
-            Node paramNode = paramNodes.item(i);
-            if (paramNode.getNodeType() == Node.ELEMENT_NODE) {
-                Element paramElement = (Element) paramNode;
-                String paramName = paramElement.getAttribute("name");
-                paramNames.add(paramName);
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inp);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("param")) {
+                    paramNames.add(Objects.requireNonNullElse(reader.getAttributeValue(null, "name"), ""));
+                }
             }
+        } finally {
+            reader.close();
+            inp.close();
         }
 
         return paramNames;
     }
 
     public static List<Network> downloadFDSNWS(StationSource stationSource, String addons) throws Exception {
-        List<Network> result = new ArrayList<>();
+        List<Network> result = StationDatabase.createNetworkList();
         downloadFDSNWS(stationSource, result, -180, 180, addons);
         Logger.info("下载了%d个节点".formatted(result.size()));
         return result;
@@ -114,57 +120,178 @@ public class FDSNWSDownloader {
     }
 
     private static void downloadFDSNWS(StationSource stationSource, List<Network> result, InputStream inp) throws Exception {
-        DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
-        f.setNamespaceAware(false);
-        f.setValidating(false);
         final CountInputStream in = new CountInputStream(inp);
 
         in.setEvent(() ->  stationSource.getStatus().setString("正在下载%dkB".formatted(in.getCount() / 1024)));
 
-        String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        parseStationXML(stationSource, result, new BufferedInputStream(in));
+    }
+
+    /**
+     * Reads FDSN StationXML at channel level while it is being downloaded. Each channel is added to the result
+     * as soon as its element ends, the document itself is never kept in memory.
+     */
+    static void parseStationXML(StationSource stationSource, List<Network> result, InputStream inp) throws IOException, XMLStreamException {
+        InputStream in = inp.markSupported() ? inp : new BufferedInputStream(inp);
 
         // some FDSNWS providers send empty document if no stations found by given parameters
-        if(text.isEmpty()){
+        in.mark(1);
+        if (in.read() == -1) {
             return;
         }
+        in.reset();
+
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String networkCode = null;
+            String networkDescription = null;
+            StationElement station = null;
+            ChannelElement channel = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (channel != null) {
+                        channel.startElement(reader, name);
+                    } else if (station != null) {
+                        if (name.equals("Channel")) {
+                            channel = new ChannelElement(reader);
+                        } else {
+                            station.startElement(reader, name);
+                        }
+                    } else if (networkCode != null) {
+                        if (name.equals("Station")) {
+                            station = new StationElement(reader.getAttributeValue(null, "code"));
+                        } else if (name.equals("Description") && networkDescription == null) {
+                            networkDescription = readTextContent(reader);
+                        }
+                    } else if (name.equals("Network")) {
+                        networkCode = Objects.requireNonNullElse(reader.getAttributeValue(null, "code"), "unknown");
+                        networkDescription = null;
+                        if (networkCode.equalsIgnoreCase("unknown")) {
+                            Logger.debug("错误:没有网络代码.");
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (channel != null) {
+                        if (name.equals("Channel")) {
+                            if (!networkCode.equalsIgnoreCase("unknown") && station.code != null) {
+                                parseChannel(result, stationSource, networkCode, Objects.requireNonNullElse(networkDescription, ""), station, channel);
+                            }
+                            channel = null;
+                        } else {
+                            channel.endElement(name);
+                        }
+                    } else if (station != null && name.equals("Station")) {
+                        station = null;
+                    } else if (station == null && name.equals("Network")) {
+                        networkCode = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
 
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(text)));
+    private static final class StationElement {
+        private final String code;
+        private String site;
+        private String latitude;
+        private String longitude;
+        private String elevation;
 
-        doc.getDocumentElement().normalize();
+        private StationElement(String code) {
+            this.code = code;
+        }
 
-        Element root = doc.getDocumentElement();
-        parseNetworks(result, stationSource, root);
+        private void startElement(XMLStreamReader reader, String name) throws XMLStreamException {
+            switch (name) {
+                case "Site" -> site = site == null ? readTextContent(reader) : site;
+                case "Latitude" -> latitude = latitude == null ? readTextContent(reader) : latitude;
+                case "Longitude" -> longitude = longitude == null ? readTextContent(reader) : longitude;
+                case "Elevation" -> elevation = elevation == null ? readTextContent(reader) : elevation;
+            }
+        }
     }
 
-    private static void parseNetworks(List<Network> result, StationSource stationSource, Element root) {
-        NodeList networks = root.getElementsByTagName("Network");
-        for (int i = 0; i < networks.getLength(); i++) {
-            String networkCode = obtainAttribute(networks.item(i), "code", "unknown");
-            if (networkCode.equalsIgnoreCase("unknown")) {
-                Logger.debug("错误:没有网络代码.");
-                continue;
+    private static final class ChannelElement {
+        private final String code;
+        private final String locationCode;
+        private final String startDate;
+        private final String endDate;
+        private String latitude;
+        private String longitude;
+        private String elevation;
+        private String sampleRate;
+
+        // only the first InstrumentSensitivity counts
+        private boolean sensitivitySeen;
+        private boolean inSensitivity;
+        private boolean inputUnitsSeen;
+        private boolean inInputUnits;
+        private String sensitivity;
+        private String inputUnits;
+
+        private ChannelElement(XMLStreamReader reader) {
+            code = reader.getAttributeValue(null, "code");
+            locationCode = Objects.requireNonNullElse(reader.getAttributeValue(null, "locationCode"), "");
+            startDate = reader.getAttributeValue(null, "startDate");
+            endDate = reader.getAttributeValue(null, "endDate");
+        }
+
+        private void startElement(XMLStreamReader reader, String name) throws XMLStreamException {
+            switch (name) {
+                case "Latitude" -> latitude = latitude == null ? readTextContent(reader) : latitude;
+                case "Longitude" -> longitude = longitude == null ? readTextContent(reader) : longitude;
+                case "Elevation" -> elevation = elevation == null ? readTextContent(reader) : elevation;
+                case "SampleRate" -> sampleRate = sampleRate == null ? readTextContent(reader) : sampleRate;
+                case "InstrumentSensitivity" -> {
+                    inSensitivity = !sensitivitySeen;
+                    sensitivitySeen = true;
+                }
+                case "Value" -> {
+                    if (inSensitivity && sensitivity == null) {
+                        sensitivity = readTextContent(reader);
+                    }
+                }
+                case "InputUnits" -> {
+                    inInputUnits = inSensitivity && !inputUnitsSeen;
+                    inputUnitsSeen |= inSensitivity;
+                }
+                case "Name" -> {
+                    if (inInputUnits && inputUnits == null) {
+                        inputUnits = readTextContent(reader);
+                    }
+                }
+            }
+        }
+
+        private void endElement(String name) {
+            switch (name) {
+                case "InstrumentSensitivity" -> inSensitivity = false;
+                case "InputUnits" -> inInputUnits = false;
             }
-            String networkDescription = obtainElement(networks.item(i), "Description", "");
-            parseStations(result, stationSource, networks, i, networkCode, networkDescription);
         }
     }
 
-    private static void parseStations(List<Network> result, StationSource stationSource, NodeList networks, int i, String networkCode, String networkDescription) {
-        NodeList stations = ((Element) networks.item(i)).getElementsByTagName("Station");
-        for (int j = 0; j < stations.getLength(); j++) {
-            Node stationNode = stations.item(j);
-            String stationCode = stationNode.getAttributes().getNamedItem("code").getNodeValue();
-            String stationSite = ((Element) stationNode).getElementsByTagName("Site").item(0).getTextContent();
-
-            double lat = Double.parseDouble(
-                    ((Element) stationNode).getElementsByTagName("Latitude").item(0).getTextContent());
-            double lon = Double.parseDouble(
-                    ((Element) stationNode).getElementsByTagName("Longitude").item(0).getTextContent());
-            double alt = Double.parseDouble(
-                    ((Element) stationNode).getElementsByTagName("Elevation").item(0).getTextContent());
-
-            parseChannels(result, stationSource, networkCode, networkDescription, (Element) stationNode, stationCode, stationSite, lat, lon, alt);
+    /**
+     * Text of the element including all nested elements, like {@link org.w3c.dom.Node#getTextContent()}.
+     * The reader is left at the end of the element.
+     */
+    private static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> depth++;
+                case XMLStreamConstants.END_ELEMENT -> depth--;
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> text.append(reader.getText());
+            }
         }
+        return text.toString();
     }
 
     private static boolean isWithinDateRange(String startDateStr, String endDateStr) {
@@ -203,72 +330,47 @@ public class FDSNWSDownloader {
         throw new ParseException("无法解析的日期: " + dateString, 0);
     }
 
-    private static void parseChannels(
+    private static void parseChannel(
             List<Network> result, StationSource stationSource, String networkCode, String networkDescription,
-            Element stationNode, String stationCode, String stationSite,
-            double stationLat, double stationLon, double stationAlt) {
-        NodeList channels = stationNode.getElementsByTagName("Channel");
-        for (int k = 0; k < channels.getLength(); k++) {
-                // Necessary values: lat lon alt sampleRate, Other can fail
-
-            Node channelNode = channels.item(k);
-            String channel = channelNode.getAttributes().getNamedItem("code").getNodeValue();
-
-            String startDateStr = channelNode.getAttributes().getNamedItem("startDate") != null ?
-                    channelNode.getAttributes().getNamedItem("startDate").getNodeValue() : null;
-
-            // Get the "endDate" attribute if available
-            String endDateStr = channelNode.getAttributes().getNamedItem("endDate") != null ?
-                    channelNode.getAttributes().getNamedItem("endDate").getNodeValue() : null;
-
-            if(!isWithinDateRange(startDateStr, endDateStr)){
-                continue;
-            }
-
-            String locationCode = channelNode.getAttributes().getNamedItem("locationCode")
-                    .getNodeValue();
-            double lat = Double.parseDouble(
-                    ((Element) channelNode).getElementsByTagName("Latitude").item(0).getTextContent());
-            double lon = Double.parseDouble(
-                    ((Element) channelNode).getElementsByTagName("Longitude").item(0).getTextContent());
-            double alt = Double.parseDouble(
-                    ((Element) channelNode).getElementsByTagName("Elevation").item(0).getTextContent());
-
-            double sensitivity = -1;
-            InputType inputType = InputType.UNKNOWN;
-            try {
-                sensitivity = new BigDecimal(((Element) ((Element) (channelNode.getChildNodes()))
-                        .getElementsByTagName("InstrumentSensitivity").item(0))
-                        .getElementsByTagName("Value").item(0).getTextContent()).doubleValue();
-
-                String inputUnits = ((Element)((Element) ((Element) (channelNode.getChildNodes()))
-                        .getElementsByTagName("InstrumentSensitivity").item(0))
-                        .getElementsByTagName("InputUnits").item(0)).getElementsByTagName("Name").item(0).getTextContent();
-
-                sensitivity *= getInputUnitsMultiplier(inputUnits);
-                inputType = getInputType(inputUnits);
-            } catch (NullPointerException e) {
-                Logger.debug(
-                        "没有灵敏度! " + stationCode + " " + networkCode + " " + channel+" @ "+stationSource.getUrl());
-            }
+            StationElement station, ChannelElement channel) {
+        // Necessary values: lat lon alt sampleRate, Other can fail
+        if(!isWithinDateRange(channel.startDate, channel.endDate)){
+            return;
+        }
 
-            var item = ((Element) channelNode)
-                    .getElementsByTagName("SampleRate").item(0);
+        if(channel.code == null || !isSupported(channel.code)){
+            return;
+        }
 
-            // sample rate is not actually required as it is provided by the seedlink protocol itself
-            double sampleRate = -1;
-            if(item != null){
-                sampleRate = Double.parseDouble(((Element) channelNode)
-                        .getElementsByTagName("SampleRate").item(0).getTextContent());
+        double lat = Double.parseDouble(channel.latitude);
+        double lon = Double.parseDouble(channel.longitude);
+        double alt = Double.parseDouble(channel.elevation);
+
+        double sensitivity = -1;
+        InputType inputType = InputType.UNKNOWN;
+        if(channel.sensitivity != null) {
+            sensitivity = new BigDecimal(channel.sensitivity.trim()).doubleValue();
+            if(channel.inputUnits != null) {
+                sensitivity *= getInputUnitsMultiplier(channel.inputUnits);
+                inputType = getInputType(channel.inputUnits);
             }
+        }
 
-            if(!isSupported(channel)){
-                continue;
-            }
+        if(channel.sensitivity == null || channel.inputUnits == null) {
+            Logger.debug(
+                    "没有灵敏度! " + station.code + " " + networkCode + " " + channel.code+" @ "+stationSource.getUrl());
+        }
 
-            addChannel(result, stationSource, networkCode, networkDescription, stationCode, stationSite, channel,
-                    locationCode, lat, lon, alt, sampleRate, stationLat, stationLon, stationAlt, sensitivity, inputType);
+        // sample rate is not actually required as it is provided by the seedlink protocol itself
+        double sampleRate = -1;
+        if(channel.sampleRate != null){
+            sampleRate = Double.parseDouble(channel.sampleRate);
         }
+
+        addChannel(result, stationSource, networkCode, networkDescription, station.code, station.site, channel.code,
+                channel.locationCode, lat, lon, alt, sampleRate,
+                Double.parseDouble(station.latitude), Double.parseDouble(station.longitude), Double.parseDouble(station.elevation),
+                sensitivity, inputType);
     }
 
     private static final Set<String> unknownUnits = new HashSet<>();
@@ -339,20 +441,4 @@ public class FDSNWSDownloader {
         StationDatabase.getOrCreateChannel(station, channelCode, locationCode, lat, lon, alt, sampleRate, stationSource, sensitivity, inputType);
     }
 
-    public static String obtainElement(Node item, String name, String defaultValue) {
-        try {
-            return ((Element) item).getElementsByTagName(name).item(0).getTextContent();
-        } catch (Exception e) {
-            return defaultValue;
-        }
-    }
-
-    public static String obtainAttribute(Node item, String name, String defaultValue) {
-        try {
-            return item.getAttributes().getNamedItem(name).getNodeValue();
-        } catch (Exception e) {
-            return defaultValue;
-        }
-    }
-
 }
@@ -0,0 +1,128 @@
+package globalquake.core.database;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * List of the station database that keeps a hash index of its elements by key, so lookups by code do not scan the list.
+ * Every modification goes through {@link #add(int, Object)}, {@link #set(int, Object)} and {@link #remove(int)},
+ * including the iterators, so the index stays consistent with the list no matter how it is edited.
+ * <p>
+ * With several elements of the same key the index points to the first one, like the linear search did.
+ * It is serialized as a plain {@link ArrayList}, the owners wrap it again after deserialization.
+ */
+final class IndexedList<K, T> extends AbstractList<T> implements RandomAccess, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 0L;
+
+    private final ArrayList<T> elements;
+    private final transient Function<T, K> keyFunction;
+    private final transient Map<K, T> index;
+    private transient int duplicates;
+
+    IndexedList(Function<T, K> keyFunction) {
+        this(keyFunction, List.of());
+    }
+
+    IndexedList(Function<T, K> keyFunction, Collection<? extends T> elements) {
+        this.keyFunction = keyFunction;
+        this.elements = new ArrayList<>(elements.size());
+        this.index = new HashMap<>(Math.max(16, elements.size() * 4 / 3 + 1));
+        addAll(elements);
+    }
+
+    /**
+     * @return the first element with the given key or null
+     */
+    public T find(Object key) {
+        return index.get(key);
+    }
+
+    @Override
+    public T get(int i) {
+        return elements.get(i);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public void add(int i, T element) {
+        elements.add(i, element);
+        modCount++;
+
+        K key = keyFunction.apply(element);
+        T existing = index.putIfAbsent(key, element);
+        if (existing != null) {
+            duplicates++;
+            if (i < elements.size() - 1 && elements.indexOf(existing) > i) {
+                index.put(key, element);
+            }
+        }
+    }
+
+    @Override
+    public T set(int i, T element) {
+        T previous = elements.set(i, element);
+        unindex(previous);
+
+        K key = keyFunction.apply(element);
+        T existing = index.putIfAbsent(key, element);
+        if (existing != null) {
+            duplicates++;
+            if (elements.indexOf(existing) > i) {
+                index.put(key, element);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public T remove(int i) {
+        T removed = elements.remove(i);
+        modCount++;
+        unindex(removed);
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        index.clear();
+        duplicates = 0;
+        modCount++;
+    }
+
+    private void unindex(T removed) {
+        K key = keyFunction.apply(removed);
+        if (index.get(key) != removed) {
+            if (duplicates > 0 && index.containsKey(key)) {
+                duplicates--;
+            }
+            return;
+        }
+
+        index.remove(key);
+        if (duplicates == 0) {
+            return;
+        }
+
+        for (T element : elements) {
+            if (Objects.equals(keyFunction.apply(element), key)) {
+                index.put(key, element);
+                duplicates--;
+                return;
+            }
+        }
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new ArrayList<>(elements);
+    }
+}
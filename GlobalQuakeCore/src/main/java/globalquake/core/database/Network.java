@@ -1,5 +1,7 @@
 package globalquake.core.database;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.*;
@@ -11,12 +13,19 @@ public class Network implements Serializable {
 
     private final String networkCode;
     private final String description;
-    private final List<Station> stations;
+    private List<Station> stations;
 
     public Network(String networkCode, String description) {
         this.networkCode = networkCode;
         this.description = description;
-        this.stations = new ArrayList<>();
+        this.stations = new IndexedList<>(StationDatabase::stationKey);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        stations = new IndexedList<>(StationDatabase::stationKey, stations);
     }
 
     public String getNetworkCode() {
@@ -3,14 +3,10 @@ package globalquake.core.database;
 import edu.sc.seis.seisFile.seedlink.SeedlinkReader;
 import gqserver.api.packets.station.InputType;
 import org.tinylog.Logger;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
 import java.io.StringReader;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -21,6 +17,12 @@ public class SeedlinkCommunicator {
     private static final ThreadLocal<SimpleDateFormat> FORMAT_UTC_SHORT = new ThreadLocal<>();
     private static final ThreadLocal<SimpleDateFormat> FORMAT_UTC_LONG = new ThreadLocal<>();
     private static final long MAX_DELAY_MS = 1000 * 60 * 60 * 24L;
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
 
     public static void runAvailabilityCheck(SeedlinkNetwork seedlinkNetwork, StationDatabase stationDatabase, int attempt) throws Exception {
         if(attempt > 1){
@@ -46,49 +48,76 @@ public class SeedlinkCommunicator {
     private static void parseAvailability(String infoString, StationDatabase stationDatabase, SeedlinkNetwork seedlinkNetwork) throws Exception {
         seedlinkNetwork.availableStations = 0;
 
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        DocumentBuilder db = dbf.newDocumentBuilder();
-        Document doc = db.parse(new InputSource(new StringReader(infoString)));
-        doc.getDocumentElement().normalize();
-        NodeList nodeList = doc.getElementsByTagName("station");
-        Logger.info("在Seedlink节点 %s中发现了%d个可用台站".formatted(nodeList.getLength(), seedlinkNetwork.getName()));
-        for (int itr = 0; itr < nodeList.getLength(); itr++) {
-            Node node = nodeList.item(itr);
-            String stationCode = node.getAttributes().getNamedItem("name").getTextContent();
-            String networkCode = node.getAttributes().getNamedItem("network").getTextContent();
-            NodeList channelList = ((Element) node).getElementsByTagName("stream");
-            for (int k = 0; k < channelList.getLength(); k++) {
-                Node channel = channelList.item(k);
-                String locationCode = channel.getAttributes().getNamedItem("location").getTextContent();
-                String channelName = channel.getAttributes().getNamedItem("seedname").getTextContent();
-                String endDate = channel.getAttributes().getNamedItem("end_time").getTextContent();
-
-                long delay = UNKNOWN_DELAY;
-
-                try {
-                    if(FORMAT_UTC_LONG.get() == null || FORMAT_UTC_SHORT.get() == null){
-                        FORMAT_UTC_SHORT.set(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
-                        FORMAT_UTC_SHORT.get().setTimeZone(TimeZone.getTimeZone("UTC"));
-
-                        FORMAT_UTC_LONG.set(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSSS"));
-                        FORMAT_UTC_LONG.get().setTimeZone(TimeZone.getTimeZone("UTC"));
-                    }
+        int stations = readStreams(infoString, (networkCode, stationCode, locationCode, channelName, endDate) -> {
+            long delay = UNKNOWN_DELAY;
+
+            try {
+                if(FORMAT_UTC_LONG.get() == null || FORMAT_UTC_SHORT.get() == null){
+                    FORMAT_UTC_SHORT.set(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+                    FORMAT_UTC_SHORT.get().setTimeZone(TimeZone.getTimeZone("UTC"));
 
-                    Calendar end = Calendar.getInstance();
-                    end.setTime(endDate.contains("-") ? FORMAT_UTC_SHORT.get().parse(endDate) : FORMAT_UTC_LONG.get().parse(endDate));
+                    FORMAT_UTC_LONG.set(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSSS"));
+                    FORMAT_UTC_LONG.get().setTimeZone(TimeZone.getTimeZone("UTC"));
+                }
 
-                    delay = System.currentTimeMillis() - end.getTimeInMillis();
+                Calendar end = Calendar.getInstance();
+                end.setTime(endDate.contains("-") ? FORMAT_UTC_SHORT.get().parse(endDate) : FORMAT_UTC_LONG.get().parse(endDate));
 
-                    if (delay > MAX_DELAY_MS) {
-                        continue;
-                    }
+                delay = System.currentTimeMillis() - end.getTimeInMillis();
+
+                if (delay > MAX_DELAY_MS) {
+                    return;
+                }
+
+            } catch(NumberFormatException e){
+                Logger.warn(new RuntimeException("无法从%s获取延迟, %s: %s".formatted(stationCode, seedlinkNetwork.getName(), e.getMessage())));
+            }
+
+            addAvailableChannel(networkCode, stationCode, channelName, locationCode, delay, seedlinkNetwork, stationDatabase);
+        });
+
+        Logger.info("在Seedlink节点 %s中发现了%d个可用台站".formatted(seedlinkNetwork.getName(), stations));
+    }
+
+    interface StreamConsumer {
+        void accept(String networkCode, String stationCode, String locationCode, String channelName, String endDate) throws Exception;
+    }
 
-                } catch(NumberFormatException e){
-                    Logger.warn(new RuntimeException("无法从%s获取延迟, %s: %s".formatted(stationCode, seedlinkNetwork.getName(), e.getMessage())));
+    /**
+     * Streams the station and stream elements of an INFO STREAMS response without building a DOM tree.
+     * @return number of stations
+     */
+    static int readStreams(String infoString, StreamConsumer consumer) throws Exception {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new StringReader(infoString));
+        try {
+            int stations = 0;
+            String stationCode = null;
+            String networkCode = null;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
                 }
 
-                addAvailableChannel(networkCode, stationCode, channelName, locationCode, delay, seedlinkNetwork, stationDatabase);
+                switch (reader.getLocalName()) {
+                    case "station" -> {
+                        stationCode = Objects.requireNonNull(reader.getAttributeValue(null, "name"), "station name");
+                        networkCode = Objects.requireNonNull(reader.getAttributeValue(null, "network"), "station network");
+                        stations++;
+                    }
+                    case "stream" -> {
+                        if (stationCode == null) {
+                            continue;
+                        }
+                        consumer.accept(networkCode, stationCode,
+                                Objects.requireNonNull(reader.getAttributeValue(null, "location"), "stream location"),
+                                Objects.requireNonNull(reader.getAttributeValue(null, "seedname"), "stream seedname"),
+                                Objects.requireNonNull(reader.getAttributeValue(null, "end_time"), "stream end_time"));
+                    }
+                }
             }
+            return stations;
+        } finally {
+            reader.close();
         }
     }
 
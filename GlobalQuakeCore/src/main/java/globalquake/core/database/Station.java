@@ -2,9 +2,10 @@ package globalquake.core.database;
 
 import globalquake.utils.GeoUtils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serial;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -21,7 +22,7 @@ public class Station implements Serializable {
 
     private final String stationCode;
     private final String stationSite;
-    private final List<Channel> channels;
+    private List<Channel> channels;
     private final Network network;
     private Channel selectedChannel = null;
 
@@ -32,7 +33,14 @@ public class Station implements Serializable {
         this.network = network;
         this.stationCode = stationCode;
         this.stationSite = stationSite;
-        this.channels = new ArrayList<>();
+        this.channels = new IndexedList<>(StationDatabase::channelKey);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        channels = new IndexedList<>(StationDatabase::channelKey, channels);
     }
 
     public Network getNetwork() {
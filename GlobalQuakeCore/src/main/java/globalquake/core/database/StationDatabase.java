@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -27,7 +28,7 @@ public class StationDatabase implements Serializable {
 
     private int version = VERSION;
 
-    private final List<Network> networks = new ArrayList<>();
+    private List<Network> networks = createNetworkList();
     private final List<SeedlinkNetwork> seedlinkNetworks = new ArrayList<>();
     private final List<StationSource> stationSources = new ArrayList<>();
 
@@ -41,6 +42,8 @@ public class StationDatabase implements Serializable {
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
 
+        networks = new IndexedList<>(StationDatabase::networkKey, networks);
+
         databaseLock = new ReentrantReadWriteLock();
         databaseReadLock = databaseLock.readLock();
         databaseWriteLock = databaseLock.writeLock();
@@ -48,7 +51,7 @@ public class StationDatabase implements Serializable {
         convert();
     }
 
-    private void convert() {
+    void convert() {
         if(version < VERSION){
             Logger.warn("数据库已更新!");
             networks.clear();
@@ -63,6 +66,47 @@ public class StationDatabase implements Serializable {
         addDefaults();
     }
 
+    /**
+     * Empty database without the default sources, filled by {@link StationDatabaseIO}
+     */
+    StationDatabase(int version) {
+        this.version = version;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    record ChannelKey(String channelCode, String locationCode) {
+    }
+
+    static String codeKey(String code) {
+        return code == null ? null : code.toUpperCase(Locale.ROOT);
+    }
+
+    static ChannelKey channelKey(String channelCode, String locationCode) {
+        return new ChannelKey(codeKey(channelCode), codeKey(locationCode));
+    }
+
+    private static String networkKey(Network network) {
+        return codeKey(network.getNetworkCode());
+    }
+
+    static String stationKey(Station station) {
+        return codeKey(station.getStationCode());
+    }
+
+    static ChannelKey channelKey(Channel channel) {
+        return channelKey(channel.getCode(), channel.getLocationCode());
+    }
+
+    /**
+     * @return list of networks indexed by network code, lookups with {@link #getNetwork(List, String)} do not scan it
+     */
+    static List<Network> createNetworkList() {
+        return new IndexedList<>(StationDatabase::networkKey);
+    }
+
     @SuppressWarnings("HttpUrlsUsage")
     public void addDefaults() {
         stationSources.add(new StationSource("BGR", "https://eida.bgr.de/fdsnws/station/1/"));
@@ -171,6 +215,10 @@ public class StationDatabase implements Serializable {
     }
 
     public static Channel getChannel(Station station, String channelCode, String locationCode){
+        if(station.getChannels() instanceof IndexedList<?, Channel> indexed){
+            return indexed.find(channelKey(channelCode, locationCode));
+        }
+
         for(Channel channel: station.getChannels()){
             if(channel.getCode().equalsIgnoreCase(channelCode) && channel.getLocationCode().equalsIgnoreCase(locationCode)){
                 return channel;
@@ -216,6 +264,10 @@ public class StationDatabase implements Serializable {
     }
 
     private static Station findStation(Network network, String stationCode) {
+        if(network.getStations() instanceof IndexedList<?, Station> indexed){
+            return indexed.find(codeKey(stationCode));
+        }
+
         for(Station station: network.getStations()){
             if(station.getStationCode().equalsIgnoreCase(stationCode)){
                 return station;
@@ -250,6 +302,10 @@ public class StationDatabase implements Serializable {
     }
 
     public static Network getNetwork(List<Network> networks, String networkCode) {
+        if(networks instanceof IndexedList<?, Network> indexed){
+            return indexed.find(codeKey(networkCode));
+        }
+
         for(Network network: networks){
             if(network.getNetworkCode().equalsIgnoreCase(networkCode)){
                 return network;
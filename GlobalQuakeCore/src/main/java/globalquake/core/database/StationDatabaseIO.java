@@ -0,0 +1,325 @@
+package globalquake.core.database;
+
+import gqserver.api.packets.station.InputType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of the {@link StationDatabase}, replacing Java serialization of the whole object graph.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ *  0  int   magic 'GQSD'
+ *  4  int   format version
+ *  8  long  CRC32 of the body
+ * 16  int   body length
+ * 20  body: database version, station sources, seedlink networks, networks with their stations and channels
+ * </pre>
+ * Strings are written once, later occurrences (channel and location codes, descriptions) refer to the first one by index.
+ * Station sources of channels and the selected channel of stations are stored as indices as well.
+ */
+public final class StationDatabaseIO {
+
+    public static final int MAGIC = 0x47515344;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+
+    private static final int NULL_STRING = -1;
+    private static final int NEW_STRING = -2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private StationDatabaseIO() {
+    }
+
+    /**
+     * Writes the database to a temporary file first, so a crash while saving does not destroy the previous version.
+     * The caller should hold the read lock of the database.
+     */
+    public static void write(Path path, StationDatabase stationDatabase) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, encode(stationDatabase));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static StationDatabase read(Path path) throws IOException {
+        return decode(Files.readAllBytes(path));
+    }
+
+    public static byte[] encode(StationDatabase stationDatabase) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        Writer writer = new Writer(new DataOutputStream(bytes));
+        writer.writeDatabase(stationDatabase);
+        writer.out.flush();
+
+        byte[] body = bytes.toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+
+        ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        result.putInt(MAGIC).putInt(VERSION).putLong(crc32.getValue()).putInt(body.length).put(body);
+        return result.array();
+    }
+
+    public static StationDatabase decode(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a station database file");
+        }
+
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported station database version %d, expected %d".formatted(version, VERSION));
+        }
+
+        int length = buffer.getInt(16);
+        if (length != data.length - HEADER_SIZE) {
+            throw new IOException("Station database is truncated, expected %d bytes but found %d".formatted(length, data.length - HEADER_SIZE));
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, HEADER_SIZE, length);
+        if (crc32.getValue() != buffer.getLong(8)) {
+            throw new IOException("Station database checksum mismatch, the file is corrupted");
+        }
+
+        try {
+            return new Reader(buffer.position(HEADER_SIZE)).readDatabase();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Invalid station database", e);
+        }
+    }
+
+    private static final class Writer {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<StationSource, Integer> sources = new HashMap<>();
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void writeDatabase(StationDatabase stationDatabase) throws IOException {
+            out.writeInt(stationDatabase.getVersion());
+
+            // sources that are only referenced by channels are written after the listed ones
+            List<StationSource> allSources = new ArrayList<>(stationDatabase.getStationSources());
+            allSources.forEach(source -> sources.putIfAbsent(source, sources.size()));
+            for (Network network : stationDatabase.getNetworks()) {
+                for (Station station : network.getStations()) {
+                    for (Channel channel : station.getChannels()) {
+                        for (StationSource source : channel.getStationSources()) {
+                            if (source != null && sources.putIfAbsent(source, sources.size()) == null) {
+                                allSources.add(source);
+                            }
+                        }
+                    }
+                }
+            }
+
+            out.writeInt(allSources.size());
+            out.writeInt(stationDatabase.getStationSources().size());
+            for (StationSource source : allSources) {
+                writeString(source.getName());
+                writeString(source.getUrl());
+                LocalDateTime lastUpdate = source.getLastUpdate();
+                out.writeLong(lastUpdate == null ? NO_DATE : lastUpdate.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(lastUpdate == null ? 0 : lastUpdate.getNano());
+            }
+
+            out.writeInt(stationDatabase.getSeedlinkNetworks().size());
+            for (SeedlinkNetwork seedlinkNetwork : stationDatabase.getSeedlinkNetworks()) {
+                writeString(seedlinkNetwork.getName());
+                writeString(seedlinkNetwork.getHost());
+                out.writeInt(seedlinkNetwork.getPort());
+                out.writeInt(seedlinkNetwork.getTimeout());
+            }
+
+            out.writeInt(stationDatabase.getNetworks().size());
+            for (Network network : stationDatabase.getNetworks()) {
+                writeNetwork(network);
+            }
+        }
+
+        private void writeNetwork(Network network) throws IOException {
+            writeString(network.getNetworkCode());
+            writeString(network.getDescription());
+            out.writeInt(network.getStations().size());
+            for (Station station : network.getStations()) {
+                writeString(station.getStationCode());
+                writeString(station.getStationSite());
+                out.writeDouble(station.getLatitude());
+                out.writeDouble(station.getLongitude());
+                out.writeDouble(station.getAlt());
+                out.writeInt(station.getChannels().size());
+                out.writeInt(station.getChannels().indexOf(station.getSelectedChannel()));
+                for (Channel channel : station.getChannels()) {
+                    writeChannel(channel);
+                }
+            }
+        }
+
+        private void writeChannel(Channel channel) throws IOException {
+            writeString(channel.getCode());
+            writeString(channel.getLocationCode());
+            writeString(channel.getInputType() == null ? null : channel.getInputType().name());
+            out.writeDouble(channel.getSensitivity());
+            out.writeDouble(channel.getSampleRate());
+            out.writeDouble(channel.getLatitude());
+            out.writeDouble(channel.getLongitude());
+            out.writeDouble(channel.getElevation());
+            out.writeInt(channel.getStationSources().size());
+            for (StationSource source : channel.getStationSources()) {
+                out.writeInt(source == null ? -1 : sources.get(source));
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                out.writeInt(NULL_STRING);
+                return;
+            }
+
+            Integer existing = strings.putIfAbsent(string, strings.size());
+            if (existing != null) {
+                out.writeInt(existing);
+                return;
+            }
+
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(NEW_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<>();
+        private StationSource[] sources;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private StationDatabase readDatabase() throws IOException {
+            StationDatabase stationDatabase = new StationDatabase(buffer.getInt());
+
+            sources = new StationSource[readCount()];
+            int listedSources = buffer.getInt();
+            if (listedSources < 0 || listedSources > sources.length) {
+                throw new IOException("Invalid number of station sources: %d".formatted(listedSources));
+            }
+
+            for (int i = 0; i < sources.length; i++) {
+                StationSource source = new StationSource(readString(), readString());
+                long seconds = buffer.getLong();
+                int nanos = buffer.getInt();
+                if (seconds != NO_DATE) {
+                    source.setLastUpdate(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+                }
+                sources[i] = source;
+            }
+            stationDatabase.getStationSources().addAll(Arrays.asList(sources).subList(0, listedSources));
+
+            int seedlinkCount = readCount();
+            for (int i = 0; i < seedlinkCount; i++) {
+                stationDatabase.getSeedlinkNetworks().add(new SeedlinkNetwork(readString(), readString(), buffer.getInt(), buffer.getInt()));
+            }
+
+            int networkCount = readCount();
+            for (int i = 0; i < networkCount; i++) {
+                stationDatabase.getNetworks().add(readNetwork());
+            }
+
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected %d bytes after the station database".formatted(buffer.remaining()));
+            }
+
+            stationDatabase.convert();
+            return stationDatabase;
+        }
+
+        private Network readNetwork() throws IOException {
+            Network network = new Network(readString(), readString());
+            int stationCount = readCount();
+            for (int i = 0; i < stationCount; i++) {
+                Station station = new Station(network, readString(), readString(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+                int channelCount = readCount();
+                int selected = buffer.getInt();
+                for (int j = 0; j < channelCount; j++) {
+                    station.getChannels().add(readChannel());
+                }
+                if (selected >= 0) {
+                    station.setSelectedChannel(station.getChannels().get(selected));
+                }
+                network.getStations().add(station);
+            }
+            return network;
+        }
+
+        private Channel readChannel() throws IOException {
+            String code = readString();
+            String locationCode = readString();
+            String inputType = readString();
+            double sensitivity = buffer.getDouble();
+            double sampleRate = buffer.getDouble();
+            double lat = buffer.getDouble();
+            double lon = buffer.getDouble();
+            double elevation = buffer.getDouble();
+
+            int sourceCount = readCount();
+            StationSource first = sourceCount > 0 ? readSource() : null;
+            Channel channel = new Channel(code, locationCode, sampleRate, lat, lon, elevation, first, sensitivity,
+                    inputType == null ? null : InputType.valueOf(inputType));
+            if (sourceCount == 0) {
+                channel.getStationSources().clear();
+            }
+            for (int i = 1; i < sourceCount; i++) {
+                channel.getStationSources().add(readSource());
+            }
+            return channel;
+        }
+
+        private StationSource readSource() {
+            int index = buffer.getInt();
+            return index == -1 ? null : sources[index];
+        }
+
+        private int readCount() throws IOException {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("Invalid count: %d".formatted(count));
+            }
+            return count;
+        }
+
+        private String readString() throws IOException {
+            int reference = buffer.getInt();
+            if (reference == NULL_STRING) {
+                return null;
+            }
+
+            if (reference != NEW_STRING) {
+                return strings.get(reference);
+            }
+
+            int length = readCount();
+            String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            strings.add(string);
+            return string;
+        }
+    }
+}
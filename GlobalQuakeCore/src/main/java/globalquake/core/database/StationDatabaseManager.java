@@ -39,10 +39,16 @@ public class StationDatabaseManager {
 
         if (file.exists()) {
             try {
-                ObjectInputStream in = new ObjectInputStream(new FileInputStream(file));
+                stationDatabase = StationDatabaseIO.read(file.toPath());
+                Logger.info("数据库加载成功");
+            } catch (IOException e) {
+                GlobalQuake.getErrorHandler().handleException(
+                        new FatalIOException("无法加载台站数据库,它可能已损坏!", e));
+            }
+        } else if (getLegacyDatabaseFile().exists()) {
+            // databases saved by older versions, written in the binary format on the next save
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(getLegacyDatabaseFile())))) {
                 stationDatabase = (StationDatabase) in.readObject();
-                in.close();
-
                 Logger.info("数据库加载成功");
             } catch (ClassNotFoundException | IOException e) {
                 GlobalQuake.getErrorHandler().handleException(
@@ -71,9 +77,7 @@ public class StationDatabaseManager {
 
         stationDatabase.getDatabaseReadLock().lock();
         try {
-            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
-            out.writeObject(stationDatabase);
-            out.close();
+            StationDatabaseIO.write(file.toPath(), stationDatabase);
             Logger.info("台站数据库成功保存");
         } catch (IOException e) {
             throw new FatalIOException("无法保存台站数据库!", e);
@@ -178,6 +182,13 @@ public class StationDatabaseManager {
     }
 
     public static File getDatabaseFile() {
+        return new File(getStationsFolder(), "database.bin");
+    }
+
+    /**
+     * Java serialized database of older versions
+     */
+    public static File getLegacyDatabaseFile() {
         return new File(getStationsFolder(), "database.dat");
     }
 
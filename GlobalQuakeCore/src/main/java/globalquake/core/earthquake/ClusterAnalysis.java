@@ -7,6 +7,7 @@ import globalquake.core.events.specific.ClusterCreateEvent;
 import globalquake.core.events.specific.ClusterLevelUpEvent;
 import globalquake.core.events.specific.QuakeRemoveEvent;
 import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import globalquake.core.geo.taup.TravelTimeEnvelope;
 import globalquake.core.intensity.IntensityTable;
 import globalquake.core.station.AbstractStation;
 import globalquake.core.earthquake.data.*;
@@ -35,6 +36,22 @@ public class ClusterAnalysis {
 
     private static final double MERGE_THRESHOLD = 0.54;
 
+    // absorbs the rounding of expected travel times when turning them into P wave windows
+    private static final long WINDOW_MARGIN = 10;
+
+    private EventIndex eventIndex;
+
+    private final IncrementalAssociation incrementalAssociation = new IncrementalAssociation();
+
+    // set during a pass in the incremental mode
+    private IncrementalAssociation incremental;
+
+    // whether the current pass changed the S wave flags, the assigned events or the clusters
+    private boolean modified;
+
+    // S waves moved to a cluster by stealEvents in the current pass, updateClusters takes them out again
+    private final Set<Event> stolenEvents = new HashSet<>();
+
     public ClusterAnalysis(List<Earthquake> earthquakes, Collection<AbstractStation> stations) {
         this.earthquakes = earthquakes;
         this.stations = stations;
@@ -52,47 +69,81 @@ public class ClusterAnalysis {
     public void run() {
         clustersWriteLock.lock();
         try {
-            clearSWaves();
-            markSWaves();
+            modified = false;
+            stolenEvents.clear();
+            if (Settings.incrementalClusterAnalysis) {
+                incremental = incrementalAssociation;
+                if (!incremental.update(clusters, earthquakes)) {
+                    // same state as at the end of the previous pass, only the time based checks can change something
+                    updateClusters();
+                    incremental.finish(clusters, earthquakes, modified);
+                    return;
+                }
+            } else {
+                incrementalAssociation.reset();
+            }
+
+            eventIndex = new EventIndex(stations);
+            if (incremental != null) {
+                incremental.updateCandidates(eventIndex, clusters);
+            }
+
+            updateSWaves();
             //assignEventsToExistingEarthquakeClusters(); VERY CONTROVERSIAL
             expandExistingClusters();
             createNewClusters();
             stealEvents();
             mergeClusters();
             updateClusters();
+
+            if (incremental != null) {
+                if (!stolenEvents.isEmpty()) {
+                    modified = true;
+                }
+                incremental.finish(clusters, earthquakes, modified);
+            }
         } finally {
+            eventIndex = null;
+            incremental = null;
             clustersWriteLock.unlock();
         }
     }
 
-    private void markSWaves() {
-        for(Cluster cluster: getClusters()){
-            markPossibleSWaves(cluster);
-        }
+    /**
+     * @return true if the incremental mode has seen events change since the last pass started
+     */
+    public boolean hasChangedEvents() {
+        return incrementalAssociation.hasChangedEvents();
     }
 
     public void destroy() {
+        clustersWriteLock.lock();
+        try {
+            incrementalAssociation.reset();
+        } finally {
+            clustersWriteLock.unlock();
+        }
     }
 
     record EventIntensityInfo(Cluster cluster, AbstractStation station, double expectedIntensity){}
 
     private void stealEvents() {
         java.util.Map<Event, EventIntensityInfo> map = new HashMap<>();
+        List<EventIndex.Entry> sWaves = eventIndex.findSWaves();
         for(Cluster cluster : clusters) {
             if (cluster.getEarthquake() == null) {
                 continue;
             }
 
-            for (AbstractStation station : stations) {
-                for (Event event : station.getAnalysis().getDetectedEvents()) {
-                    if (event.isValid() && event.isSWave() && !couldBeArrival(event, cluster.getEarthquake(), true, false, true)) {
-                        double distGC = GeoUtils.greatCircleDistance(event.getLatFromStation(), event.getLonFromStation(), cluster.getEarthquake().getLat(), cluster.getEarthquake().getLon());
-                        double expectedIntensity = IntensityTable.getIntensity(cluster.getEarthquake().getMag(), GeoUtils.gcdToGeo(distGC));
-                        EventIntensityInfo eventIntensityInfo = new EventIntensityInfo(cluster, station, expectedIntensity);
-                        EventIntensityInfo old = map.putIfAbsent(event, eventIntensityInfo);
-                        if(old != null && eventIntensityInfo.expectedIntensity > old.expectedIntensity){
-                            map.put(event, eventIntensityInfo);
-                        }
+            for (EventIndex.Entry entry : sWaves) {
+                Event event = entry.event();
+                if (event.isValid() && event.isSWave() && !couldBeArrival(event, cluster.getEarthquake(), true, false, true)) {
+                    double distGC = GeoUtils.greatCircleDistance(event.getLatFromStation(), event.getLonFromStation(), cluster.getEarthquake().getLat(), cluster.getEarthquake().getLon());
+                    double expectedIntensity = IntensityTable.getIntensity(cluster.getEarthquake().getMag(), GeoUtils.gcdToGeo(distGC));
+                    EventIntensityInfo eventIntensityInfo = new EventIntensityInfo(cluster, entry.station(), expectedIntensity);
+                    EventIntensityInfo old = map.putIfAbsent(event, eventIntensityInfo);
+                    if(old != null && eventIntensityInfo.expectedIntensity > old.expectedIntensity){
+                        map.put(event, eventIntensityInfo);
                     }
                 }
             }
@@ -107,40 +158,156 @@ public class ClusterAnalysis {
             if(!cluster.getAssignedEvents().containsKey(station)){
                 if(event.assignedCluster != null){
                     event.assignedCluster.getAssignedEvents().remove(station);
+                    modified = true;
                 }
 
                 event.assignedCluster = cluster;
                 cluster.getAssignedEvents().put(station, event);
+                stolenEvents.add(event);
             }
         }
     }
 
-    private void clearSWaves() {
-        for(Cluster cluster : clusters) {
-            if(cluster.getEarthquake() == null){
-                continue;
+    /**
+     * An event marked as S wave stays marked only while it could be an S arrival of every earthquake,
+     * any event that could only be an S arrival of some earthquake gets marked.
+     * Both are decided before touching the flags, so an event is only changed when its flag really flips.
+     */
+    private void updateSWaves() {
+        List<Cluster> earthquakeClusters = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            if (cluster.getEarthquake() != null) {
+                earthquakeClusters.add(cluster);
             }
+        }
 
-            for (AbstractStation station : stations) {
-                for (Event event : station.getAnalysis().getDetectedEvents()) {
-                    if (event.isValid() && event.isSWave() && (!couldBeSArrival(event, cluster.getEarthquake())
-                            || couldBeArrival(event, cluster.getEarthquake(), true, false, true))) {
-                        event.setAsSWave(false);
-                    }
-                }
+        if (earthquakeClusters.isEmpty()) {
+            return;
+        }
+
+        // only this class marks S waves, so the events marked when the index was built are all there is to clear
+        List<EventIndex.Entry> marked = eventIndex.findSWaves();
+        Set<Event> sWaves = new HashSet<>();
+        for (EventIndex.Entry entry : marked) {
+            Event event = entry.event();
+            if (!event.isValid() || earthquakeClusters.stream().allMatch(cluster -> isSArrival(cluster, event))) {
+                sWaves.add(event);
+            }
+        }
+
+        for (Cluster cluster : earthquakeClusters) {
+            addPossibleSWaves(cluster, sWaves);
+        }
+
+        for (EventIndex.Entry entry : marked) {
+            if (!sWaves.contains(entry.event())) {
+                entry.event().setAsSWave(false);
+                modified = true;
+            }
+        }
+
+        for (Event event : sWaves) {
+            if (!event.isSWave()) {
+                event.setAsSWave(true);
+                modified = true;
             }
         }
     }
 
-    private void markPossibleSWaves(Cluster cluster) {
-        for (AbstractStation station : stations) {
-            for (Event event : station.getAnalysis().getDetectedEvents()) {
-                if (event.isValid() && !event.isSWave() && (couldBeSArrival(event, cluster.getEarthquake())
-                        && !couldBeArrival(event,cluster.getEarthquake(), true, false, true))) {
-                    event.setAsSWave(true);
+    private boolean isSArrival(Cluster cluster, Event event) {
+        IncrementalAssociation.Candidates candidates = incremental == null ? null : incremental.getCandidates(cluster);
+        return candidates != null ? candidates.isSArrival(event) : couldBeSArrival(event, cluster.getEarthquake());
+    }
+
+    private void addPossibleSWaves(Cluster cluster, Set<Event> sWaves) {
+        Earthquake earthquake = cluster.getEarthquake();
+        IncrementalAssociation.Candidates candidates = incremental == null ? null : incremental.getCandidates(cluster);
+        if (candidates != null) {
+            for (Event event : candidates.getSOnlyArrivals()) {
+                if (event.isValid()) {
+                    sWaves.add(event);
                 }
             }
+            return;
+        }
+
+        for (EventIndex.Entry entry : eventIndex.find(earthquake.getLat(), earthquake.getLon(), sWaveWindow(earthquake))) {
+            Event event = entry.event();
+            if (event.isValid() && couldBeSArrival(event, earthquake)
+                    && !couldBePWaveArrival(event, earthquake, true, false, true)) {
+                sWaves.add(event);
+            }
+        }
+    }
+
+    /**
+     * @return P wave times for which {@link #couldBeSArrival(Event, Earthquake)} can hold, the intensity is not considered
+     */
+    static EventIndex.ArrivalWindow sWaveWindow(Earthquake earthquake) {
+        long origin = earthquake.getOrigin();
+        TravelTimeEnvelope sWave = TauPTravelTimeCalculator.getSWaveEnvelope(earthquake.getDepth());
+        return (minDist, maxDist, minAlt, maxAlt) -> {
+            double fromAngle = TauPTravelTimeCalculator.toAngle(minDist);
+            double toAngle = TauPTravelTimeCalculator.toAngle(maxDist);
+            double min = sWave.getMin(fromAngle, toAngle);
+            if (Double.isNaN(min)) {
+                return null;
+            }
+
+            double minExpected = (min + EarthquakeAnalysis.getElevationCorrection(minAlt) * 1.5) * 1000;
+            double maxExpected = (sWave.getMax(fromAngle, toAngle) + EarthquakeAnalysis.getElevationCorrection(maxAlt) * 1.5) * 1000;
+            return new EventIndex.TimeRange(
+                    origin + (long) Math.floor(Math.min(minExpected, minExpected * 0.97) - 2000) - WINDOW_MARGIN,
+                    origin + (long) Math.ceil(Math.max(maxExpected, maxExpected * 1.05) + 6000) + WINDOW_MARGIN);
+        };
+    }
+
+    /**
+     * @return P wave times for which {@link #couldBeArrival(Event, Earthquake, boolean, boolean, boolean)} can hold
+     * with an increasing P wave window and all phases, the intensity is not considered
+     */
+    static EventIndex.ArrivalWindow pWaveWindow(Earthquake earthquake) {
+        long origin = earthquake.getOrigin();
+        double depth = earthquake.getDepth();
+        TravelTimeEnvelope pWave = TauPTravelTimeCalculator.getPWaveEnvelope(depth);
+        TravelTimeEnvelope pkpWave = TauPTravelTimeCalculator.getPKPWaveEnvelope(depth);
+        TravelTimeEnvelope pkikpWave = TauPTravelTimeCalculator.getPKIKPWaveEnvelope(depth);
+        return (minDist, maxDist, minAlt, maxAlt) -> {
+            double fromAngle = TauPTravelTimeCalculator.toAngle(minDist);
+            double toAngle = TauPTravelTimeCalculator.toAngle(maxDist);
+            double minCorrection = EarthquakeAnalysis.getElevationCorrection(minAlt);
+            double maxCorrection = EarthquakeAnalysis.getElevationCorrection(maxAlt);
+
+            EventIndex.TimeRange range = travelRange(pWave, fromAngle, toAngle, minCorrection, maxCorrection, 10000, 1000, 0.01);
+            range = union(range, travelRange(pkpWave, fromAngle, toAngle, minCorrection, maxCorrection, 6000, 0, 0.005));
+            range = union(range, travelRange(pkikpWave, fromAngle, toAngle, minCorrection, maxCorrection, 6000, 0, 0.005));
+            return range == null ? null : new EventIndex.TimeRange(origin + range.from(), origin + range.to());
+        };
+    }
+
+    /**
+     * @return travel times in ms for which |expected - actual| < max(minTolerance, base + expected * factor) can hold
+     */
+    private static EventIndex.TimeRange travelRange(TravelTimeEnvelope envelope, double fromAngle, double toAngle,
+                                                    double minCorrection, double maxCorrection,
+                                                    double minTolerance, double base, double factor) {
+        double min = envelope.getMin(fromAngle, toAngle);
+        if (Double.isNaN(min)) {
+            return null;
+        }
+
+        double minExpected = (min + minCorrection) * 1000;
+        double maxExpected = (envelope.getMax(fromAngle, toAngle) + maxCorrection) * 1000;
+        double tolerance = Math.max(minTolerance, base + Math.abs(maxExpected) * factor);
+        return new EventIndex.TimeRange((long) Math.floor(minExpected - tolerance) - WINDOW_MARGIN,
+                (long) Math.ceil(maxExpected + tolerance) + WINDOW_MARGIN);
+    }
+
+    private static EventIndex.TimeRange union(EventIndex.TimeRange a, EventIndex.TimeRange b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
         }
+        return new EventIndex.TimeRange(Math.min(a.from(), b.from()), Math.max(a.to(), b.to()));
     }
 
 
@@ -163,6 +330,7 @@ public class ClusterAnalysis {
 
             if (toMerge != null) {
                 merge(earthquake, toMerge);
+                modified = true;
             }
         }
     }
@@ -237,7 +405,7 @@ public class ClusterAnalysis {
     }
 
     @SuppressWarnings("RedundantIfStatement")
-    private boolean couldBeSArrival(Event event, Earthquake earthquake){
+    static boolean couldBeSArrival(Event event, Earthquake earthquake){
         if (!event.isValid() || earthquake == null) {
             return false;
         }
@@ -285,7 +453,19 @@ public class ClusterAnalysis {
 
     public static boolean couldBeArrival(Event event, Earthquake earthquake,
                                          boolean considerIntensity, boolean increasingPWindow, boolean pWaveOnly) {
-        if (event == null || !event.isValid() || event.isSWave() || earthquake == null) {
+        if (event == null || event.isSWave()) {
+            return false;
+        }
+
+        return couldBePWaveArrival(event, earthquake, considerIntensity, increasingPWindow, pWaveOnly);
+    }
+
+    /**
+     * Same as {@link #couldBeArrival(Event, Earthquake, boolean, boolean, boolean)}, but also for events currently marked as S waves.
+     */
+    static boolean couldBePWaveArrival(Event event, Earthquake earthquake,
+                                       boolean considerIntensity, boolean increasingPWindow, boolean pWaveOnly) {
+        if (event == null || !event.isValid() || earthquake == null) {
             return false;
         }
 
@@ -374,14 +554,16 @@ public class ClusterAnalysis {
         ArrayList<Event> list = new ArrayList<>(cluster.getAssignedEvents().values());
         while (!list.isEmpty()) {
             ArrayList<Event> newEvents = new ArrayList<>();
+            Set<AbstractStation> newStations = new HashSet<>();
             mainLoop:
             for (Event e : list) {
                 for (NearbyStationDistanceInfo info : e.getAnalysis().getStation().getNearbyStations()) {
-                    if (!cluster.containsStation(info.station()) && !_contains(newEvents, info.station())) {
+                    if (!cluster.containsStation(info.station()) && !newStations.contains(info.station())) {
                         double dist = info.dist();
                         for (Event ev : info.station().getAnalysis().getDetectedEvents()) {
                             if (potentialArrival(ev, e, dist)) {
                                 newEvents.add(ev);
+                                newStations.add(info.station());
                                 continue mainLoop;
                             }
                         }
@@ -392,6 +574,7 @@ public class ClusterAnalysis {
             for (Event event : newEvents) {
                 if (cluster.getAssignedEvents().putIfAbsent(event.getAnalysis().getStation(), event) == null) {
                     event.assignedCluster = cluster;
+                    modified = true;
                 }
             }
 
@@ -401,16 +584,21 @@ public class ClusterAnalysis {
     }
 
     private void expandPWaves(Cluster cluster) {
-        mainLoop:
-        for (AbstractStation station : stations) {
-            for (Event event : station.getAnalysis().getDetectedEvents()) {
-                if (event.isValid() && !event.isSWave() &&
-                        !cluster.containsStation(station) &&
-                        couldBeArrival(event, cluster.getEarthquake(), true, true, false)) {
-                    if (cluster.getAssignedEvents().putIfAbsent(station, event) == null) {
-                        event.assignedCluster = cluster;
-                    }
-                    continue mainLoop;
+        Earthquake earthquake = cluster.getEarthquake();
+        boolean incrementalCandidates = incremental != null && incremental.getCandidates(cluster) != null;
+        List<EventIndex.Entry> candidates = incrementalCandidates ? incremental.getPArrivals(eventIndex, cluster) :
+                eventIndex.find(earthquake.getLat(), earthquake.getLon(), pWaveWindow(earthquake));
+
+        // once a station gets an event it is contained in the cluster, so only its first matching event is taken
+        for (EventIndex.Entry entry : candidates) {
+            AbstractStation station = entry.station();
+            Event event = entry.event();
+            if (event.isValid() && !event.isSWave() &&
+                    !cluster.containsStation(station) &&
+                    (incrementalCandidates || couldBeArrival(event, earthquake, true, true, false))) {
+                if (cluster.getAssignedEvents().putIfAbsent(station, event) == null) {
+                    event.assignedCluster = cluster;
+                    modified = true;
                 }
             }
         }
@@ -432,45 +620,36 @@ public class ClusterAnalysis {
         return false;
     }
 
-    private boolean _contains(ArrayList<Event> newEvents, AbstractStation station) {
-        for (Event e : newEvents) {
-            if (e.getAnalysis().getStation().getId() == station.getId()) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private void createNewClusters() {
-        for (AbstractStation station : stations) {
-            for (Event event : station.getAnalysis().getDetectedEvents()) {
-                if (event.isValid() && !event.isSWave() && event.getpWave() > 0 && event.assignedCluster == null) {
-                    // so we have eligible event
-                    ArrayList<Event> validEvents = new ArrayList<>();
-                    validEvents.add(event);
-                    closestLoop:
-                    for (NearbyStationDistanceInfo info : station.getNearbyStations()) {
-                        AbstractStation close = info.station();
-                        double dist = info.dist();
-                        for (Event e : close.getAnalysis().getDetectedEvents()) {
-                            if (e.isValid() && !e.isSWave() && e.getpWave() > 0 && e.assignedCluster == null) {
-                                long earliestPossibleTimeOfThatEvent = event.getpWave()
-                                        - (long) ((dist * 1000.0) / 5.0) - 2500;
-                                long latestPossibleTimeOfThatEvent = event.getpWave()
-                                        + (long) ((dist * 1000.0) / 5.0) + 2500;
-                                if (e.getpWave() >= earliestPossibleTimeOfThatEvent
-                                        && e.getpWave() <= latestPossibleTimeOfThatEvent) {
-                                    validEvents.add(e);
-                                    continue closestLoop;
-                                }
+        for (EventIndex.Entry entry : eventIndex.getEntries()) {
+            AbstractStation station = entry.station();
+            Event event = entry.event();
+            if (event.isValid() && !event.isSWave() && event.getpWave() > 0 && event.assignedCluster == null) {
+                // so we have eligible event
+                ArrayList<Event> validEvents = new ArrayList<>();
+                validEvents.add(event);
+                closestLoop:
+                for (NearbyStationDistanceInfo info : station.getNearbyStations()) {
+                    AbstractStation close = info.station();
+                    double dist = info.dist();
+                    for (Event e : close.getAnalysis().getDetectedEvents()) {
+                        if (e.isValid() && !e.isSWave() && e.getpWave() > 0 && e.assignedCluster == null) {
+                            long earliestPossibleTimeOfThatEvent = event.getpWave()
+                                    - (long) ((dist * 1000.0) / 5.0) - 2500;
+                            long latestPossibleTimeOfThatEvent = event.getpWave()
+                                    + (long) ((dist * 1000.0) / 5.0) + 2500;
+                            if (e.getpWave() >= earliestPossibleTimeOfThatEvent
+                                    && e.getpWave() <= latestPossibleTimeOfThatEvent) {
+                                validEvents.add(e);
+                                continue closestLoop;
                             }
                         }
                     }
+                }
 
-                    // so no we have a list of all nearby events that could be earthquake
-                    if (validEvents.size() >= HypocsSettings.getOrDefaultInt("clusterMinSize", 4)) {
-                        expandCluster(createCluster(validEvents));
-                    }
+                // so no we have a list of all nearby events that could be earthquake
+                if (validEvents.size() >= HypocsSettings.getOrDefaultInt("clusterMinSize", 4)) {
+                    expandCluster(createCluster(validEvents));
                 }
             }
         }
@@ -490,6 +669,10 @@ public class ClusterAnalysis {
                 if (!event.isValid() || event.isSWave()) {
                     event.assignedCluster = null;
                     iterator.remove();
+                    // an S wave stolen in this pass just leaves the cluster again, which changes nothing
+                    if (!stolenEvents.remove(event)) {
+                        modified = true;
+                    }
                 } else if (!event.hasEnded()) {
                     numberOfActiveEvents++;
                 }
@@ -525,11 +708,14 @@ public class ClusterAnalysis {
             }
         }
 
-        clusters.removeAll(toBeRemoved);
+        if (clusters.removeAll(toBeRemoved)) {
+            modified = true;
+        }
     }
 
     private Cluster createCluster(ArrayList<Event> validEvents) {
         Cluster cluster = new Cluster();
+        modified = true;
         for (Event ev : validEvents) {
             if (cluster.getAssignedEvents().putIfAbsent(ev.getAnalysis().getStation(), ev) == null) {
                 ev.assignedCluster = cluster;
@@ -554,4 +740,8 @@ public class ClusterAnalysis {
         return clusters;
     }
 
+    IncrementalAssociation getIncrementalAssociation() {
+        return incrementalAssociation;
+    }
+
 }
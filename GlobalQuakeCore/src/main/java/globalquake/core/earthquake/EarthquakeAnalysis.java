@@ -17,11 +17,14 @@ import globalquake.core.station.AbstractStation;
 import globalquake.core.station.StationState;
 import globalquake.utils.GeoUtils;
 import globalquake.utils.Point2DGQ;
+import globalquake.utils.QuickSelect;
 import globalquake.utils.monitorable.MonitorableCopyOnWriteArrayList;
 import gqserver.api.packets.station.InputType;
 import org.tinylog.Logger;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -50,10 +53,34 @@ public class EarthquakeAnalysis {
 
     public static boolean DEPTH_FIX_ALLOWED = true;
 
+    // scanArea passes of the hypocenter finder: radius, points and depth iterations at the default resolution
+    static final double FAR_MAX_DIST = 90.0 / 360.0 * GeoUtils.EARTH_CIRCUMFERENCE;
+    static final int FAR_POINTS = 40000;
+    static final int FAR_DEPTH_ITERATIONS = 6;
+    static final double REGIONAL_MAX_DIST = 2500.0;
+    static final int REGIONAL_POINTS = 20000;
+    static final int REGIONAL_DEPTH_ITERATIONS = 7;
+    static final double CLOSER_MAX_DIST = 1000.0;
+    static final int CLOSER_POINTS = 10000;
+    static final int CLOSER_DEPTH_ITERATIONS = 7;
+    static final double EXACT_MAX_DIST = 100.0;
+    static final int EXACT_POINTS = 4000;
+    static final int EXACT_DEPTH_ITERATIONS = 8;
+    static final double DEPTH_MAX_DIST = 10.0;
+    static final int DEPTH_POINTS = 4000;
+    static final int DEPTH_DEPTH_ITERATIONS = 10;
+
+    // magnitude assumed for clusters that have not been located yet, they are also the newest
+    private static final double NEW_CLUSTER_PRIORITY = 6.0;
+    // priority lost per minute since the origin time
+    private static final double PRIORITY_AGE_PENALTY = 0.25;
+
     private final List<Earthquake> earthquakes;
 
     private ClusterAnalysis clusterAnalysis;
 
+    private final HypocenterExecutor hypocenterExecutor = new HypocenterExecutor();
+
     public boolean testing = false;
 
     public EarthquakeAnalysis() {
@@ -77,17 +104,51 @@ public class EarthquakeAnalysis {
                 clusterAnalysis = GlobalQuake.instance.getClusterAnalysis();
             }
         }
+        long now = GlobalQuake.instance == null ? System.currentTimeMillis() : GlobalQuake.instance.currentTimeMillis();
         clusterAnalysis.getClustersReadLock().lock();
         try {
-            clusterAnalysis.getClusters().parallelStream().forEach(cluster -> processCluster(cluster, createListOfPickedEvents(cluster), true));
+            Collection<Cluster> clusters = clusterAnalysis.getClusters();
+            for (Cluster cluster : clusters) {
+                List<PickedEvent> pickedEvents = createListOfPickedEvents(cluster);
+                if (shouldProcess(cluster, pickedEvents)) {
+                    hypocenterExecutor.submit(cluster, getPriority(cluster, now), () -> preprocess(cluster, pickedEvents, true));
+                }
+            }
+            hypocenterExecutor.retainAll(clusters);
         } finally {
             clusterAnalysis.getClustersReadLock().unlock();
         }
     }
 
+    /**
+     * Newer and stronger earthquakes are located first
+     */
+    static double getPriority(Cluster cluster, long now) {
+        Earthquake earthquake = cluster.getEarthquake();
+        if (earthquake == null) {
+            return NEW_CLUSTER_PRIORITY;
+        }
+
+        double ageMinutes = Math.max(0, now - earthquake.getOrigin()) / (60.0 * 1000.0);
+        return earthquake.getMag() - ageMinutes * PRIORITY_AGE_PENALTY;
+    }
+
+    /**
+     * Waits until the searches scheduled by {@link #run()} have finished, so that runs can be replayed step by step
+     */
+    public void awaitIdle() throws InterruptedException {
+        hypocenterExecutor.awaitIdle();
+    }
+
     public void processCluster(Cluster cluster, List<PickedEvent> pickedEvents, boolean useCUDA) {
+        if (shouldProcess(cluster, pickedEvents)) {
+            preprocess(cluster, pickedEvents, useCUDA);
+        }
+    }
+
+    private boolean shouldProcess(Cluster cluster, List<PickedEvent> pickedEvents) {
         if (pickedEvents.isEmpty()) {
-            return;
+            return false;
         }
 
         // Calculation starts only if number of events increases by some %
@@ -95,7 +156,7 @@ public class EarthquakeAnalysis {
             int count = pickedEvents.size();
             if (Settings.reduceRevisions) {
                 if (count <= cluster.getEarthquake().nextReportEventCount) {
-                    return;
+                    return false;
                 }
                 cluster.getEarthquake().nextReportEventCount = (int) (count * 1.2);
                 Logger.tag("Hypocs").debug("Next report will be at " + cluster.getEarthquake().nextReportEventCount + " assigns");
@@ -103,12 +164,11 @@ public class EarthquakeAnalysis {
         }
 
         if (cluster.lastEpicenterUpdate * (Settings.reduceRevisions ? 1.1 : 1.0) >= cluster.updateCount) {
-            return;
+            return false;
         }
 
         cluster.lastEpicenterUpdate = cluster.updateCount;
-
-        preprocess(cluster, pickedEvents, useCUDA);
+        return true;
     }
 
     private void preprocess(Cluster cluster, List<PickedEvent> pickedEvents, boolean useCUDA) {
@@ -253,7 +313,7 @@ public class EarthquakeAnalysis {
 
         if (far && (previousHypocenter == null || previousHypocenter.correctEvents < 24 || previousHypocenter.getCorrectness() < 0.8)) {
             // phase 1 search far from ANCHOR (it's not very certain)
-            bestHypocenter = scanArea(selectedEvents, 90.0 / 360.0 * GeoUtils.EARTH_CIRCUMFERENCE, (int) (40000 * pointMultiplier), _lat, _lon, 6 + iterationsDifference, maxDepth, finderSettings);
+            bestHypocenter = scanArea(selectedEvents, FAR_MAX_DIST, (int) (FAR_POINTS * pointMultiplier), _lat, _lon, FAR_DEPTH_ITERATIONS + iterationsDifference, maxDepth, finderSettings);
             Logger.tag("Hypocs").debug("FAR: " + (System.currentTimeMillis() - timeMillis));
             Logger.tag("Hypocs").debug(bestHypocenter.correctStations + " / " + bestHypocenter.err);
             _lat = bestHypocenter.lat;
@@ -263,7 +323,7 @@ public class EarthquakeAnalysis {
         if (previousHypocenter == null || previousHypocenter.correctEvents < 42 || previousHypocenter.getCorrectness() < 0.9) {
             // phase 2A search region near BEST or ANCHOR (it's quite certain)
             timeMillis = System.currentTimeMillis();
-            PreliminaryHypocenter hyp = scanArea(selectedEvents, 2500.0, (int) (20000 * pointMultiplier), _lat, _lon, 7 + iterationsDifference, maxDepth, finderSettings);
+            PreliminaryHypocenter hyp = scanArea(selectedEvents, REGIONAL_MAX_DIST, (int) (REGIONAL_POINTS * pointMultiplier), _lat, _lon, REGIONAL_DEPTH_ITERATIONS + iterationsDifference, maxDepth, finderSettings);
             bestHypocenter = selectBetterHypocenter(hyp, bestHypocenter);
             _lat = bestHypocenter.lat;
             _lon = bestHypocenter.lon;
@@ -272,7 +332,7 @@ public class EarthquakeAnalysis {
         } else {
             // phase 2B search region closer BEST or ANCHOR (it assumes it's almost right)
             timeMillis = System.currentTimeMillis();
-            PreliminaryHypocenter hyp = scanArea(selectedEvents, 1000.0, (int) (10000 * pointMultiplier), _lat, _lon, 7 + iterationsDifference, maxDepth, finderSettings);
+            PreliminaryHypocenter hyp = scanArea(selectedEvents, CLOSER_MAX_DIST, (int) (CLOSER_POINTS * pointMultiplier), _lat, _lon, CLOSER_DEPTH_ITERATIONS + iterationsDifference, maxDepth, finderSettings);
             bestHypocenter = selectBetterHypocenter(hyp, bestHypocenter);
             _lat = bestHypocenter.lat;
             _lon = bestHypocenter.lon;
@@ -280,9 +340,27 @@ public class EarthquakeAnalysis {
             Logger.tag("Hypocs").debug(bestHypocenter.correctStations + " / " + bestHypocenter.err);
         }
 
+        bestHypocenter = refineHypocenter(selectedEvents, bestHypocenter, _lat, _lon, finderSettings);
+
+        Logger.tag("Hypocs").trace(bestHypocenter);
+
+        return bestHypocenter;
+    }
+
+    /**
+     * Runs only the EXACT and DEPTH phases around given point
+     */
+    private PreliminaryHypocenter refineHypocenter(List<PickedEvent> selectedEvents, PreliminaryHypocenter bestHypocenter, double _lat, double _lon,
+                                                   HypocenterFinderSettings finderSettings) {
+        double maxDepth = TauPTravelTimeCalculator.MAX_DEPTH;
+
+        int iterationsDifference = (int) Math.round((finderSettings.resolution() - 40.0) / 14.0);
+        double universalMultiplier = getUniversalResolutionMultiplier(finderSettings);
+        double pointMultiplier = universalMultiplier * universalMultiplier * 0.33;
+
         // phase 3 find exact area
-        timeMillis = System.currentTimeMillis();
-        PreliminaryHypocenter hyp = scanArea(selectedEvents, 100.0, (int) (4000 * pointMultiplier), _lat, _lon, 8 + iterationsDifference, maxDepth, finderSettings);
+        long timeMillis = System.currentTimeMillis();
+        PreliminaryHypocenter hyp = scanArea(selectedEvents, EXACT_MAX_DIST, (int) (EXACT_POINTS * pointMultiplier), _lat, _lon, EXACT_DEPTH_ITERATIONS + iterationsDifference, maxDepth, finderSettings);
         bestHypocenter = selectBetterHypocenter(hyp, bestHypocenter);
         Logger.tag("Hypocs").debug("EXACT: " + (System.currentTimeMillis() - timeMillis));
         Logger.tag("Hypocs").debug(bestHypocenter.correctStations + " / " + bestHypocenter.err);
@@ -291,12 +369,60 @@ public class EarthquakeAnalysis {
         timeMillis = System.currentTimeMillis();
         _lat = bestHypocenter.lat;
         _lon = bestHypocenter.lon;
-        hyp = scanArea(selectedEvents, 10.0, (int) (4000 * pointMultiplier), _lat, _lon, 10 + iterationsDifference, maxDepth, finderSettings);
+        hyp = scanArea(selectedEvents, DEPTH_MAX_DIST, (int) (DEPTH_POINTS * pointMultiplier), _lat, _lon, DEPTH_DEPTH_ITERATIONS + iterationsDifference, maxDepth, finderSettings);
         bestHypocenter = selectBetterHypocenter(hyp, bestHypocenter);
         Logger.tag("Hypocs").debug("DEPTH: " + (System.currentTimeMillis() - timeMillis));
         Logger.tag("Hypocs").debug(bestHypocenter.correctStations + " / " + bestHypocenter.err);
 
-        Logger.tag("Hypocs").trace(bestHypocenter);
+        return bestHypocenter;
+    }
+
+    /**
+     * Warm start from the previous hypocenter of the cluster. If only a few events were added since the previous
+     * revision and the previous hypocenter still fits the current events, only its close surroundings are searched.
+     *
+     * @return the relocated hypocenter or null if the full search has to be done
+     */
+    PreliminaryHypocenter runIncrementalHypocenterFinder(List<PickedEvent> selectedEvents, Cluster cluster, HypocenterFinderSettings finderSettings) {
+        Hypocenter previousHypocenter = cluster.getPreviousHypocenter();
+        if (previousHypocenter == null || previousHypocenter.usedEvents == 0 || selectedEvents.isEmpty()) {
+            return null;
+        }
+
+        int newEvents = cluster.getAssignedEvents().size() - previousHypocenter.totalEvents;
+        if (newEvents > HypocsSettings.getOrDefaultInt("incrementalMaxNewEvents", 4)) {
+            Logger.tag("Hypocs").debug("INCREMENTAL: %d new events, doing full search".formatted(newEvents));
+            return null;
+        }
+
+        HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(selectedEvents);
+        calculateDistances(threadData, previousHypocenter.lat, previousHypocenter.lon);
+
+        PreliminaryHypocenter seed = new PreliminaryHypocenter();
+        analyseHypocenter(seed, previousHypocenter.lat, previousHypocenter.lon, previousHypocenter.depth, finderSettings, threadData);
+
+        if (seed.correctStations == 0) {
+            return null;
+        }
+
+        double correctness = seed.correctStations / (double) selectedEvents.size();
+        double correctnessDrop = previousHypocenter.getCorrectness() - correctness;
+        if (correctnessDrop > HypocsSettings.getOrDefault("incrementalMaxCorrectnessDrop", 0.1f)) {
+            Logger.tag("Hypocs").debug("INCREMENTAL: correctness dropped by %.2f, doing full search".formatted(correctnessDrop));
+            return null;
+        }
+
+        int previousReducedEvents = Math.max(1, previousHypocenter.reducedEvents);
+        double previousErr = previousHypocenter.totalErr / previousReducedEvents;
+        double err = seed.err / selectedEvents.size();
+        if (err > previousErr * HypocsSettings.getOrDefault("incrementalMaxErrorRatio", 2.0f)) {
+            Logger.tag("Hypocs").debug("INCREMENTAL: misfit jumped from %.3f to %.3f, doing full search".formatted(previousErr, err));
+            return null;
+        }
+
+        long timeMillis = System.currentTimeMillis();
+        PreliminaryHypocenter bestHypocenter = refineHypocenter(selectedEvents, seed, previousHypocenter.lat, previousHypocenter.lon, finderSettings);
+        Logger.tag("Hypocs").debug("INCREMENTAL: " + (System.currentTimeMillis() - timeMillis));
 
         return bestHypocenter;
     }
@@ -306,7 +432,17 @@ public class EarthquakeAnalysis {
 
         List<PickedEvent> correctSelectedEvents = new ArrayList<>(selectedEvents);
 
-        PreliminaryHypocenter bestHypocenter = runHypocenterFinder(correctSelectedEvents, cluster, finderSettings, true);
+        PreliminaryHypocenter bestHypocenter = null;
+        boolean incremental = false;
+
+        if (Settings.incrementalHypocenterSearch && !(GQHypocs.isCudaLoaded() && finderSettings.useCUDA())) {
+            bestHypocenter = runIncrementalHypocenterFinder(correctSelectedEvents, cluster, finderSettings);
+            incremental = bestHypocenter != null;
+        }
+
+        if (bestHypocenter == null) {
+            bestHypocenter = runHypocenterFinder(correctSelectedEvents, cluster, finderSettings, true);
+        }
 
         if (bestHypocenter == null) {
             return;
@@ -335,7 +471,9 @@ public class EarthquakeAnalysis {
 
                 correctSelectedEvents = list.stream().map(Map.Entry::getKey).collect(Collectors.toList());
 
-                bestHypocenter2 = runHypocenterFinder(correctSelectedEvents, cluster, finderSettings, false);
+                bestHypocenter2 = incremental ?
+                        refineHypocenter(correctSelectedEvents, null, bestHypocenter.lat, bestHypocenter.lon, finderSettings) :
+                        runHypocenterFinder(correctSelectedEvents, cluster, finderSettings, false);
             }
         }
 
@@ -371,12 +509,11 @@ public class EarthquakeAnalysis {
         double lowerBound = bestHypocenter.depth;
 
         PreliminaryHypocenter hypocenterA = new PreliminaryHypocenter();
-        HypocenterFinderThreadData threadData = new HypocenterFinderThreadData(selectedEvents.size());
-        List<ExactPickedEvent> pickedEvents = createListOfExactPickedEvents(selectedEvents);
-        calculateDistances(pickedEvents, bestHypocenter.lat, bestHypocenter.lon);
+        HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(selectedEvents);
+        calculateDistances(threadData, bestHypocenter.lat, bestHypocenter.lon);
 
         for (double depth = 0; depth < TauPTravelTimeCalculator.MAX_DEPTH; depth += 1.0 / getUniversalResolutionMultiplier(finderSettings)) {
-            analyseHypocenter(hypocenterA, bestHypocenter.lat, bestHypocenter.lon, depth, pickedEvents, finderSettings, threadData);
+            analyseHypocenter(hypocenterA, bestHypocenter.lat, bestHypocenter.lon, depth, finderSettings, threadData);
             if (calculateHeuristic(hypocenterA) > calculateHeuristic(bestHypocenter) / CONFIDENCE_LEVEL && depth < bestHypocenter.depth && depth < upperBound) {
                 upperBound = depth;
             }
@@ -412,8 +549,7 @@ public class EarthquakeAnalysis {
 
     private PolygonConfidenceInterval calculatePolygonConfidenceInterval(List<PickedEvent> selectedEvents,
                                                                          PreliminaryHypocenter bestHypocenter, HypocenterFinderSettings finderSettings, double confidenceThreshold) {
-        List<Integer> integerList = IntStream.range(0, CONFIDENCE_POLYGON_EDGES).boxed().toList();
-        List<PolygonConfidenceResult> results = (Settings.parallelHypocenterLocations ? integerList.parallelStream() : integerList.stream()).map(ray -> {
+        List<Callable<PolygonConfidenceResult>> tasks = IntStream.range(0, CONFIDENCE_POLYGON_EDGES).<Callable<PolygonConfidenceResult>>mapToObj(ray -> () -> {
             double ang = CONFIDENCE_POLYGON_OFFSET + (ray / (double) CONFIDENCE_POLYGON_EDGES) * 360.0;
             double dist = CONFIDENCE_POLYGON_STEP;
             double step = CONFIDENCE_POLYGON_STEP;
@@ -421,8 +557,7 @@ public class EarthquakeAnalysis {
             long minOrigin = Long.MAX_VALUE;
             long maxOrigin = Long.MIN_VALUE;
 
-            List<ExactPickedEvent> pickedEvents = createListOfExactPickedEvents(selectedEvents);
-            HypocenterFinderThreadData threadData = new HypocenterFinderThreadData(pickedEvents.size());
+            HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(selectedEvents);
             while (step > CONFIDENCE_POLYGON_MIN_STEP && dist < CONFIDENCE_POLYGON_MAX_DIST) {
                 double[] latLon = GeoUtils.moveOnGlobe(bestHypocenter.lat, bestHypocenter.lon, dist, ang);
                 double lat = latLon[0];
@@ -432,8 +567,8 @@ public class EarthquakeAnalysis {
                 threadData.bestHypocenter.err = Double.MAX_VALUE;
                 threadData.bestHypocenter.correctStations = 0;
 
-                calculateDistances(pickedEvents, lat, lon);
-                getBestAtDepth(DEPTH_ITERS_POLYGONS, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings, 0, lat, lon, pickedEvents, threadData);
+                calculateDistances(threadData, lat, lon);
+                getBestAtDepth(DEPTH_ITERS_POLYGONS, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings, 0, lat, lon, threadData);
 
                 double h1 = calculateHeuristic(threadData.bestHypocenter);
                 double h2 = calculateHeuristic(bestHypocenter);
@@ -454,6 +589,7 @@ public class EarthquakeAnalysis {
 
             return new PolygonConfidenceResult(dist, minOrigin, maxOrigin);
         }).toList();
+        List<PolygonConfidenceResult> results = hypocenterExecutor.invokeAll(tasks);
 
         List<Double> lengths = results.stream().map(polygonConfidenceResult -> polygonConfidenceResult.dist).toList();
 
@@ -466,11 +602,10 @@ public class EarthquakeAnalysis {
 
     // calculate correct stations and err
     private void postProcess(List<PickedEvent> selectedEvents, PreliminaryHypocenter bestHypocenterPrelim, HypocenterFinderSettings finderSettings) {
-        List<ExactPickedEvent> pickedEvents = createListOfExactPickedEvents(selectedEvents);
-        HypocenterFinderThreadData threadData = new HypocenterFinderThreadData(pickedEvents.size());
-        calculateDistances(pickedEvents, bestHypocenterPrelim.lat, bestHypocenterPrelim.lon);
+        HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(selectedEvents);
+        calculateDistances(threadData, bestHypocenterPrelim.lat, bestHypocenterPrelim.lon);
         getBestAtDepth(DEPTH_ITERS_POLYGONS, TauPTravelTimeCalculator.MAX_DEPTH, finderSettings, 0,
-                bestHypocenterPrelim.lat, bestHypocenterPrelim.lon, pickedEvents, threadData);
+                bestHypocenterPrelim.lat, bestHypocenterPrelim.lon, threadData);
 
         bestHypocenterPrelim.correctStations = threadData.bestHypocenter.correctStations;
         bestHypocenterPrelim.err = threadData.bestHypocenter.err;
@@ -482,6 +617,27 @@ public class EarthquakeAnalysis {
                 calculateDepthConfidenceInterval(correctSelectedEvents, bestHypocenterPrelim, finderSettings),
                 calculatePolygonConfidenceIntervals(correctSelectedEvents, bestHypocenterPrelim, finderSettings));
 
+        // the search ran without the lock, the cluster is only changed while the cluster analysis is not running
+        Lock lock = clusterAnalysis == null ? null : clusterAnalysis.getClustersReadLock();
+        if (lock != null) {
+            lock.lock();
+        }
+        try {
+            if (clusterAnalysis != null && !clusterAnalysis.getClusters().contains(cluster)) {
+                Logger.tag("Hypocs").debug("Cluster #%d was removed during the search".formatted(cluster.id));
+                return;
+            }
+
+            applyHypocenter(selectedEvents, correctSelectedEvents, cluster, bestHypocenter, finderSettings, startTime);
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void applyHypocenter(List<PickedEvent> selectedEvents, List<PickedEvent> correctSelectedEvents, Cluster cluster,
+                                 Hypocenter bestHypocenter, HypocenterFinderSettings finderSettings, long startTime) {
         if (bestHypocenter.correctEvents == 0 || bestHypocenter.totalErr == Double.MAX_VALUE) {
             Logger.tag("Hypocs").debug("Absurd!");
             return;
@@ -744,17 +900,15 @@ public class EarthquakeAnalysis {
 
     public static final double PHI = 1.61803398875;
 
-    private PreliminaryHypocenter scanArea(List<PickedEvent> events, double maxDist, int points, double _lat, double _lon, int depthIterations,
+    PreliminaryHypocenter scanArea(List<PickedEvent> events, double maxDist, int points, double _lat, double _lon, int depthIterations,
                                            double maxDepth, HypocenterFinderSettings finderSettings) {
         int CPUS = Runtime.getRuntime().availableProcessors();
         double c = maxDist / Math.sqrt(points);
         double one = points / (double) CPUS;
 
-        List<Integer> integerList = IntStream.range(0, CPUS).boxed().toList();
-        return (Settings.parallelHypocenterLocations ? integerList.parallelStream() : integerList.stream()).map(
-                cpu -> {
-                    List<ExactPickedEvent> pickedEvents = createListOfExactPickedEvents(events);
-                    HypocenterFinderThreadData threadData = new HypocenterFinderThreadData(pickedEvents.size());
+        List<Callable<PreliminaryHypocenter>> tasks = IntStream.range(0, CPUS).<Callable<PreliminaryHypocenter>>mapToObj(
+                cpu -> () -> {
+                    HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(events);
 
                     int start = (int) (cpu * one);
                     int end = (int) ((cpu + 1) * one);
@@ -762,17 +916,21 @@ public class EarthquakeAnalysis {
                     for (int n = start; n < end; n++) {
                         double ang = 360.0 / (PHI * PHI) * n;
                         double dist = Math.sqrt(n) * c;
-                        double[] latLon = GeoUtils.moveOnGlobe(_lat, _lon, dist, ang);
+                        GeoUtils.precomputeMoveOnGlobe(threadData.moveOnGlobePrecomputed, _lat, _lon, dist);
+                        GeoUtils.moveOnGlobe(threadData.moveOnGlobePrecomputed, threadData.point, ang);
 
-                        double lat = latLon[0];
-                        double lon = latLon[1];
+                        double lat = threadData.point.x;
+                        double lon = threadData.point.y;
 
-                        calculateDistances(pickedEvents, lat, lon);
-                        getBestAtDepth(depthIterations, maxDepth, finderSettings, 0, lat, lon, pickedEvents, threadData);
+                        calculateDistances(threadData, lat, lon);
+                        getBestAtDepth(depthIterations, maxDepth, finderSettings, 0, lat, lon, threadData);
                     }
-                    return threadData.bestHypocenter;
+
+                    // thread data is reused by the next chunk on this thread
+                    return threadData.copyOfBest();
                 }
-        ).reduce(EarthquakeAnalysis::selectBetterHypocenter).orElse(null);
+        ).toList();
+        return hypocenterExecutor.invokeAll(tasks).stream().reduce(EarthquakeAnalysis::selectBetterHypocenter).orElse(null);
     }
 
     @SuppressWarnings("unused")
@@ -784,22 +942,14 @@ public class EarthquakeAnalysis {
             distances.add(dist);
         }
 
-        return (Settings.parallelHypocenterLocations ? distances.parallelStream() : distances.stream()).map(
-                distance -> {
-                    List<ExactPickedEvent> pickedEvents = createListOfExactPickedEvents(events);
-                    HypocenterFinderThreadData threadData = new HypocenterFinderThreadData(pickedEvents.size());
-                    getBestAtDist(distance, distHorizontal, _lat, _lon, pickedEvents, depthIterations, maxDepth, finderSettings, threadData);
-                    return threadData.bestHypocenter;
+        List<Callable<PreliminaryHypocenter>> tasks = distances.stream().<Callable<PreliminaryHypocenter>>map(
+                distance -> () -> {
+                    HypocenterFinderThreadData threadData = HypocenterFinderThreadData.get(events);
+                    getBestAtDist(distance, distHorizontal, _lat, _lon, depthIterations, maxDepth, finderSettings, threadData);
+                    return threadData.copyOfBest();
                 }
-        ).reduce(EarthquakeAnalysis::selectBetterHypocenter).orElse(null);
-    }
-
-    private List<ExactPickedEvent> createListOfExactPickedEvents(List<PickedEvent> events) {
-        List<ExactPickedEvent> result = new ArrayList<>(events.size());
-        for (PickedEvent event : events) {
-            result.add(new ExactPickedEvent(event));
-        }
-        return result;
+        ).toList();
+        return hypocenterExecutor.invokeAll(tasks).stream().reduce(EarthquakeAnalysis::selectBetterHypocenter).orElse(null);
     }
 
     private static double calculateHeuristic(PreliminaryHypocenter hypocenter) {
@@ -823,7 +973,7 @@ public class EarthquakeAnalysis {
     }
 
     private void getBestAtDist(double distFromAnchor, double distHorizontal, double _lat, double _lon,
-                               List<ExactPickedEvent> events, int depthIterations, double depthEnd,
+                               int depthIterations, double depthEnd,
                                HypocenterFinderSettings finderSettings, HypocenterFinderThreadData threadData) {
         double depthStart = 0;
 
@@ -839,22 +989,21 @@ public class EarthquakeAnalysis {
             double lat = point2D.x;
             double lon = point2D.y;
 
-            calculateDistances(events, lat, lon);
-            getBestAtDepth(depthIterations, depthEnd, finderSettings, depthStart, lat, lon, events, threadData);
+            calculateDistances(threadData, lat, lon);
+            getBestAtDepth(depthIterations, depthEnd, finderSettings, depthStart, lat, lon, threadData);
         }
     }
 
-    private void getBestAtDepth(int depthIterations, double depthEnd, HypocenterFinderSettings finderSettings,
-                                double depthStart, double lat, double lon, List<ExactPickedEvent> pickedEvents,
-                                HypocenterFinderThreadData threadData) {
+    void getBestAtDepth(int depthIterations, double depthEnd, HypocenterFinderSettings finderSettings,
+                                double depthStart, double lat, double lon, HypocenterFinderThreadData threadData) {
         double lowerBound = depthStart; // 0
         double upperBound = depthEnd; // 600
 
         double depthA = lowerBound + (upperBound - lowerBound) * (1 / 3.0);
         double depthB = lowerBound + (upperBound - lowerBound) * (2 / 3.0);
 
-        analyseHypocenter(threadData.hypocenterA, lat, lon, depthA, pickedEvents, finderSettings, threadData);
-        analyseHypocenter(threadData.hypocenterB, lat, lon, depthB, pickedEvents, finderSettings, threadData);
+        analyseHypocenter(threadData.hypocenterA, lat, lon, depthA, finderSettings, threadData);
+        analyseHypocenter(threadData.hypocenterB, lat, lon, depthB, finderSettings, threadData);
 
         PreliminaryHypocenter upperHypocenter = threadData.hypocenterA;
         PreliminaryHypocenter lowerHypocenter = threadData.hypocenterB;
@@ -871,50 +1020,49 @@ public class EarthquakeAnalysis {
                 upperBound = (upperBound + lowerBound) / 2.0;
                 depthA = lowerBound + (upperBound - lowerBound) * (1 / 3.0);
 
-                analyseHypocenter(upperHypocenter, lat, lon, depthA, pickedEvents, finderSettings, threadData);
+                analyseHypocenter(upperHypocenter, lat, lon, depthA, finderSettings, threadData);
                 threadData.setBest(selectBetterHypocenter(threadData.bestHypocenter, upperHypocenter));
             } else {
                 lowerBound = (upperBound + lowerBound) / 2.0;
                 depthB = lowerBound + (upperBound - lowerBound) * (2 / 3.0);
 
-                analyseHypocenter(lowerHypocenter, lat, lon, depthB, pickedEvents, finderSettings, threadData);
+                analyseHypocenter(lowerHypocenter, lat, lon, depthB, finderSettings, threadData);
                 threadData.setBest(selectBetterHypocenter(threadData.bestHypocenter, lowerHypocenter));
             }
         }
 
         // additionally check 0km and 10 km
-        analyseHypocenter(threadData.hypocenterA, lat, lon, 0, pickedEvents, finderSettings, threadData);
+        analyseHypocenter(threadData.hypocenterA, lat, lon, 0, finderSettings, threadData);
         threadData.setBest(selectBetterHypocenter(threadData.bestHypocenter, threadData.hypocenterA));
-        analyseHypocenter(threadData.hypocenterA, lat, lon, 10, pickedEvents, finderSettings, threadData);
+        analyseHypocenter(threadData.hypocenterA, lat, lon, 10, finderSettings, threadData);
         threadData.setBest(selectBetterHypocenter(threadData.bestHypocenter, threadData.hypocenterA));
     }
 
     private static final long UNKNOWN_ORIGIN = Long.MIN_VALUE;
 
-    public static void analyseHypocenter(PreliminaryHypocenter hypocenter, double lat, double lon, double depth, List<ExactPickedEvent> events, HypocenterFinderSettings finderSettings, HypocenterFinderThreadData threadData) {
-        int c = 0;
+    public static void analyseHypocenter(PreliminaryHypocenter hypocenter, double lat, double lon, double depth, HypocenterFinderSettings finderSettings, HypocenterFinderThreadData threadData) {
+        final int size = threadData.size;
+        final long[] origins = threadData.origins;
 
-        for (ExactPickedEvent event : events) {
-            double travelTime = TauPTravelTimeCalculator.getPWaveTravelTimeFast(depth, event.angle);
+        for (int i = 0; i < size; i++) {
+            double travelTime = TauPTravelTimeCalculator.getPWaveTravelTimeFast(depth, threadData.angles[i]);
             if (travelTime == TauPTravelTimeCalculator.NO_ARRIVAL) {
-                threadData.origins[c] = UNKNOWN_ORIGIN;
-                c++;
+                origins[i] = UNKNOWN_ORIGIN;
                 continue;
             }
 
-            travelTime += getElevationCorrection(event.elevation());
+            travelTime += threadData.elevationCorrections[i];
 
-            long origin = event.pWave() - ((long) (travelTime * 1000));
-            threadData.origins[c] = origin;
-            c++;
+            origins[i] = threadData.pWaves[i] - ((long) (travelTime * 1000));
         }
 
         long bestOrigin;
         if (USE_MEDIAN_FOR_ORIGIN) {
-            Arrays.sort(threadData.origins);
-            bestOrigin = threadData.origins[(threadData.origins.length - 1) / 2];
+            // select on a copy so that the error below is summed in event order
+            System.arraycopy(origins, 0, threadData.selection, 0, size);
+            bestOrigin = QuickSelect.select(threadData.selection, size, (size - 1) / 2);
         } else {
-            bestOrigin = threadData.origins[0];
+            bestOrigin = origins[0];
         }
 
         if(bestOrigin == UNKNOWN_ORIGIN){
@@ -926,8 +1074,8 @@ public class EarthquakeAnalysis {
         double err = 0;
         int acc = 0;
 
-        for (long orign : threadData.origins) {
-            double _err = Math.abs(orign - bestOrigin);
+        for (int i = 0; i < size; i++) {
+            double _err = Math.abs(origins[i] - bestOrigin);
             if (_err < finderSettings.pWaveInaccuracyThreshold()) {
                 acc++;
             } else {
@@ -951,23 +1099,14 @@ public class EarthquakeAnalysis {
         return elevation / 6000.0;
     }
 
-    private void calculateDistances(List<ExactPickedEvent> pickedEvents, double lat, double lon) {
-        for (ExactPickedEvent event : pickedEvents) {
-            event.angle = TauPTravelTimeCalculator.toAngle(GeoUtils.greatCircleDistance(event.lat(),
-                    event.lon(), lat, lon));
+    void calculateDistances(HypocenterFinderThreadData threadData, double lat, double lon) {
+        for (int i = 0; i < threadData.size; i++) {
+            threadData.angles[i] = TauPTravelTimeCalculator.toAngle(GeoUtils.greatCircleDistance(threadData.lats[i],
+                    threadData.lons[i], lat, lon));
         }
     }
 
-    public static final class ExactPickedEvent extends PickedEvent {
-        public double angle;
-
-        public ExactPickedEvent(PickedEvent pickedEvent) {
-            super(pickedEvent.pWave(), pickedEvent.lat(), pickedEvent.lon(), pickedEvent.elevation(), pickedEvent.maxRatio());
-        }
-
-    }
-
-    private double getUniversalResolutionMultiplier(HypocenterFinderSettings finderSettings) {
+    double getUniversalResolutionMultiplier(HypocenterFinderSettings finderSettings) {
         // 30% when 0.0 (min) selected
         // 100% when 40.0 (default) selected
         // 550% when 100 (max) selected
@@ -1195,6 +1334,7 @@ public class EarthquakeAnalysis {
     }
 
     public void destroy() {
+        hypocenterExecutor.shutdown();
     }
 
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package globalquake.core.earthquake;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import globalquake.core.GlobalQuake;
+import globalquake.core.archive.ArchiveQuery;
 import globalquake.core.archive.ArchivedQuake;
+import globalquake.core.archive.EarthquakeArchive;
 import globalquake.core.earthquake.data.Earthquake;
 
 import java.util.UUID;
@@ -13,13 +19,24 @@ import org.json.JSONObject;
 
 public class EarthquakeDataExport {
 
+    private static final String QUAKEML_HEADER = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <q:quakeml xmlns="http://quakeml.org/xmlns/bed/1.2" xmlns:q="http://quakeml.org/xmlns/quakeml/1.2">
+                <eventParameters>
+                """;
+
+    private static final String QUAKEML_FOOTER = "</eventParameters>\n" + "</q:quakeml>";
+
+    private static final String TEXT_HEADER = "#EventID|Time|Latitude|Longitude|Depth/km|Author|Catalog|Contributor|ContributorID|MagType|Magnitude|MagAuthor|EventLocationName\n";
+
     public static List<ArchivedQuake> getArchivedAndLiveEvents(){
         //make a copy of the earthquakes, both archived and current.
         List<ArchivedQuake> archivedQuakes = new ArrayList<>(GlobalQuake.instance.getArchive().getArchivedQuakes());
         List<Earthquake> currentEarthquakes = GlobalQuake.instance.getEarthquakeAnalysis().getEarthquakes().stream().toList();
 
         //Combine the archived and current earthquakes
-        List<UUID> uuids = archivedQuakes.stream().map(ArchivedQuake::getUuid).toList();
+        Set<UUID> uuids = new HashSet<>();
+        archivedQuakes.forEach(archivedQuake -> uuids.add(archivedQuake.getUuid()));
         for (Earthquake quake : currentEarthquakes) {
             if (!uuids.contains(quake.getUuid())) {
                 ArchivedQuake archivedQuake = new ArchivedQuake(quake);
@@ -31,22 +48,59 @@ public class EarthquakeDataExport {
         return archivedQuakes;
     }
 
+    /**
+     * Archived and live events matching the query. The archive is searched through its index,
+     * only the few live earthquakes that are not archived yet are checked one by one.
+     */
+    public static List<ArchivedQuake> getEvents(ArchiveQuery query){
+        EarthquakeArchive archive = GlobalQuake.instance.getArchive();
+
+        List<ArchivedQuake> liveQuakes = new ArrayList<>();
+        for (Earthquake quake : GlobalQuake.instance.getEarthquakeAnalysis().getEarthquakes()) {
+            if (archive.getArchivedQuakeByUUID(quake.getUuid()) == null) {
+                ArchivedQuake archivedQuake = new ArchivedQuake(quake);
+                if (query.matches(archivedQuake)) {
+                    archivedQuake.setRegion(quake.getRegion());
+                    liveQuakes.add(archivedQuake);
+                }
+            }
+        }
+
+        if (liveQuakes.isEmpty()) {
+            return archive.query(query);
+        }
+
+        // live quakes can fall anywhere in the order, so the archive page has to include the offset
+        int end = (int) Math.min(Integer.MAX_VALUE, (long) query.offset() + query.limit());
+        List<ArchivedQuake> result = new ArrayList<>(archive.query(query.withPage(0, end)));
+        result.addAll(liveQuakes);
+        result.sort(query.order().comparator());
+        return result.subList(Math.min(query.offset(), result.size()), Math.min(end, result.size()));
+    }
+
     public static String getQuakeMl(List<ArchivedQuake> earthquakes) {
-        StringBuilder quakeml = new StringBuilder("""
-                <?xml version="1.0" encoding="UTF-8"?>
-                <q:quakeml xmlns="http://quakeml.org/xmlns/bed/1.2" xmlns:q="http://quakeml.org/xmlns/quakeml/1.2">
-                <eventParameters>
-                """);
+        StringBuilder quakeml = new StringBuilder(QUAKEML_HEADER);
 
         for (ArchivedQuake quake : earthquakes) {
             quakeml.append(quake.getQuakeML());
         }
 
-        quakeml.append("</eventParameters>\n" + "</q:quakeml>");
+        quakeml.append(QUAKEML_FOOTER);
 
         return quakeml.toString();
     }
 
+    /**
+     * Same as {@link #getQuakeMl(List)}, but each event is written as soon as it is formatted
+     */
+    public static void writeQuakeMl(List<ArchivedQuake> earthquakes, Writer writer) throws IOException {
+        writer.write(QUAKEML_HEADER);
+        for (ArchivedQuake quake : earthquakes) {
+            writer.write(quake.getQuakeML());
+        }
+        writer.write(QUAKEML_FOOTER);
+    }
+
     public static JSONObject getGeoJSON(List<ArchivedQuake> earthquakes) {
         JSONArray features = new JSONArray();
 
@@ -62,11 +116,22 @@ public class EarthquakeDataExport {
 
     }
 
+    public static void writeGeoJSON(List<ArchivedQuake> earthquakes, Writer writer) throws IOException {
+        writer.write("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < earthquakes.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(earthquakes.get(i).getGeoJSON().toString());
+        }
+        writer.write("]}");
+    }
+
     /*#EventID|Time|Latitude|Longitude|Depth/km|Author|Catalog|Contributor|ContributorID|MagType|Magnitude|MagAuthor|EventLocationName
 uw61977871|2023-12-24T15:14:04.220|47.81966666666667|-122.96|52.39|uw|uw|uw|uw61977871|ml|4.04|uw|6 km W of Quilcene, Washington */
 
     public static String getText(List<ArchivedQuake> earthquakes) {
-        StringBuilder text = new StringBuilder("#EventID|Time|Latitude|Longitude|Depth/km|Author|Catalog|Contributor|ContributorID|MagType|Magnitude|MagAuthor|EventLocationName\n");
+        StringBuilder text = new StringBuilder(TEXT_HEADER);
 
         for (ArchivedQuake quake : earthquakes) {
             text.append(quake.getFdsnText()).append("\n");
@@ -75,4 +140,12 @@ uw61977871|2023-12-24T15:14:04.220|47.81966666666667|-122.96|52.39|uw|uw|uw|uw61
         return text.toString();
     }
 
+    public static void writeText(List<ArchivedQuake> earthquakes, Writer writer) throws IOException {
+        writer.write(TEXT_HEADER);
+        for (ArchivedQuake quake : earthquakes) {
+            writer.write(quake.getFdsnText());
+            writer.write('\n');
+        }
+    }
+
 }
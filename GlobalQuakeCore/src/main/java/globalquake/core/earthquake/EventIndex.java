@@ -0,0 +1,171 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.analysis.Event;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.StationIndex;
+import globalquake.utils.GeoUtils;
+
+import java.util.*;
+
+/**
+ * Snapshot of all detected events, bucketed by the latitude/longitude cell of their station
+ * and sorted by P wave time inside each cell.
+ * <p>
+ * A query asks an {@link ArrivalWindow} for the range of P wave times that can still match in a cell,
+ * given the closest and furthest possible distance of its stations, and only looks at the events inside that range.
+ * Results keep the order of the station list and of the detected events of each station,
+ * so the phases of {@link ClusterAnalysis} make the same decisions as when iterating all stations.
+ * <p>
+ * P wave times are taken when the index is built. An event that gets a new P wave while a pass is running
+ * may be missed by that pass and is picked up by the next one.
+ */
+final class EventIndex {
+
+    private static final double CELL_SIZE = StationIndex.DEFAULT_CELL_SIZE;
+
+    private static final int LAT_CELLS = (int) Math.ceil(180.0 / CELL_SIZE);
+    private static final int LON_CELLS = (int) Math.ceil(360.0 / CELL_SIZE);
+
+    // absorbs rounding of the great circle distances
+    private static final double DISTANCE_MARGIN = 1.0;
+
+    record Entry(AbstractStation station, Event event, long pWave, int order) {
+    }
+
+    /**
+     * Bounds of the P wave times that could match in a cell.
+     */
+    record TimeRange(long from, long to) {
+    }
+
+    interface ArrivalWindow {
+        /**
+         * @param minDist closest possible distance of a station in the cell in km
+         * @param maxDist furthest possible distance of a station in the cell in km
+         * @param minAlt lowest station altitude in the cell
+         * @param maxAlt highest station altitude in the cell
+         * @return inclusive range of P wave times that can match, or null if none can
+         */
+        TimeRange getRange(double minDist, double maxDist, double minAlt, double maxAlt);
+    }
+
+    private static final class Cell {
+        private final double lat;
+        private final double lon;
+        private double radius;
+        private double minAlt = Double.MAX_VALUE;
+        private double maxAlt = -Double.MAX_VALUE;
+        private final List<Entry> entries = new ArrayList<>();
+        private long[] pWaves;
+
+        private Cell(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Event, Entry> entriesByEvent = new IdentityHashMap<>();
+    private final Collection<Cell> cells;
+
+    EventIndex(Collection<AbstractStation> stations) {
+        Map<Integer, Cell> cellMap = new HashMap<>();
+        for (AbstractStation station : stations) {
+            List<Event> events = station.getAnalysis().getDetectedEvents();
+            if (events.isEmpty()) {
+                continue;
+            }
+
+            int latIndex = Math.max(0, Math.min(LAT_CELLS - 1, (int) Math.floor((station.getLatitude() + 90.0) / CELL_SIZE)));
+            int lonIndex = Math.floorMod((int) Math.floor((station.getLongitude() + 180.0) / CELL_SIZE), LON_CELLS);
+            Cell cell = cellMap.computeIfAbsent(latIndex * LON_CELLS + lonIndex,
+                    key -> new Cell((latIndex + 0.5) * CELL_SIZE - 90.0, (lonIndex + 0.5) * CELL_SIZE - 180.0));
+
+            cell.radius = Math.max(cell.radius, GeoUtils.greatCircleDistance(cell.lat, cell.lon, station.getLatitude(), station.getLongitude()));
+            cell.minAlt = Math.min(cell.minAlt, station.getAlt());
+            cell.maxAlt = Math.max(cell.maxAlt, station.getAlt());
+
+            for (Event event : events) {
+                Entry entry = new Entry(station, event, event.getpWave(), entries.size());
+                entries.add(entry);
+                entriesByEvent.put(event, entry);
+                cell.entries.add(entry);
+            }
+        }
+
+        for (Cell cell : cellMap.values()) {
+            cell.entries.sort(Comparator.comparingLong(Entry::pWave));
+            cell.pWaves = cell.entries.stream().mapToLong(Entry::pWave).toArray();
+        }
+
+        this.cells = cellMap.values();
+    }
+
+    /**
+     * @return all indexed events in the order of the stations
+     */
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return entry of the event, or null if it was not among the detected events when the index was built
+     */
+    Entry get(Event event) {
+        return entriesByEvent.get(event);
+    }
+
+    /**
+     * @return the events currently marked as S waves, in the order of the stations
+     */
+    List<Entry> findSWaves() {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.event().isSWave()) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return events of the cells around the given point whose P wave falls in the window, in the order of the stations.
+     * The result is a superset of the matching events, callers still have to check each of them.
+     */
+    List<Entry> find(double lat, double lon, ArrivalWindow window) {
+        List<Entry> result = new ArrayList<>();
+        for (Cell cell : cells) {
+            double dist = GeoUtils.greatCircleDistance(lat, lon, cell.lat, cell.lon);
+            double minDist = Math.max(0, dist - cell.radius - DISTANCE_MARGIN);
+            double maxDist = dist + cell.radius + DISTANCE_MARGIN;
+
+            TimeRange range = window.getRange(minDist, maxDist, cell.minAlt, cell.maxAlt);
+            if (range == null) {
+                continue;
+            }
+
+            int index = lowerBound(cell.pWaves, range.from());
+            while (index < cell.pWaves.length && cell.pWaves[index] <= range.to()) {
+                result.add(cell.entries.get(index));
+                index++;
+            }
+        }
+
+        result.sort(Comparator.comparingInt(Entry::order));
+        return result;
+    }
+
+    private static int lowerBound(long[] values, long key) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
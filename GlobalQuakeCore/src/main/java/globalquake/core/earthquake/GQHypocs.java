@@ -41,7 +41,7 @@ public class GQHypocs {
     private static void initCuda() {
         boolean init = true;
 
-        init &= GQNativeFunctions.copyPTravelTable(TauPTravelTimeCalculator.getTravelTable().p_travel_table, (float) TauPTravelTimeCalculator.MAX_DEPTH);
+        init &= GQNativeFunctions.copyPTravelTable(TauPTravelTimeCalculator.getPWaveTravelTable(), (float) TauPTravelTimeCalculator.MAX_DEPTH);
         init &= GQNativeFunctions.initCUDA(depth_profiles);
 
         if(init) {
@@ -0,0 +1,201 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.HypocsSettings;
+import globalquake.core.Settings;
+import globalquake.core.earthquake.data.Cluster;
+import globalquake.utils.NamedThreadFactory;
+import org.tinylog.Logger;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the hypocenter searches of {@link EarthquakeAnalysis} on its own threads.
+ * <p>
+ * Every cluster has at most one job. Jobs wait in a priority queue for one of a few cluster threads,
+ * so a new or strong earthquake does not have to wait behind a long search of an older one.
+ * New input for a cluster that is still queued replaces the old input, new input for a running cluster
+ * is queued after it and replaces any earlier follow-up. Jobs of clusters that disappeared are dropped.
+ * <p>
+ * The parallel parts of the searches run in a dedicated fork-join pool instead of the common pool,
+ * where the searches of all clusters share the same workers.
+ */
+final class HypocenterExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    // shared by all instances, sized for the machine
+    private static final ForkJoinPool searchPool = new ForkJoinPool(Math.max(1,
+            HypocsSettings.getOrDefaultInt("hypocenterSearchThreads", Runtime.getRuntime().availableProcessors())));
+
+    private final ThreadPoolExecutor clusterExecutor;
+
+    private final Map<Cluster, Job> jobs = new HashMap<>();
+    private long nextSequence;
+
+    private final class Job implements Runnable, Comparable<Job> {
+        private final Cluster cluster;
+        private Runnable task;
+        private double priority;
+        private long sequence;
+
+        private Runnable next;
+        private double nextPriority;
+        private boolean running;
+
+        private Job(Cluster cluster) {
+            this.cluster = cluster;
+        }
+
+        @Override
+        public void run() {
+            Runnable current;
+            synchronized (HypocenterExecutor.this) {
+                current = task;
+                running = true;
+            }
+
+            try {
+                current.run();
+            } catch (Exception e) {
+                Logger.tag("Hypocs").error(e);
+            } finally {
+                finish(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int result = Double.compare(other.priority, priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    HypocenterExecutor() {
+        this(Math.max(1, HypocsSettings.getOrDefaultInt("hypocenterClusterThreads",
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 4))));
+    }
+
+    HypocenterExecutor(int clusterThreads) {
+        clusterExecutor = new ThreadPoolExecutor(clusterThreads, clusterThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), new NamedThreadFactory("Hypocenter Search"));
+        clusterExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Schedules a search for the cluster, replacing any search of the cluster that did not start yet.
+     *
+     * @param priority higher priorities are started first
+     */
+    synchronized void submit(Cluster cluster, double priority, Runnable task) {
+        Job job = jobs.get(cluster);
+        if (job == null) {
+            job = new Job(cluster);
+            jobs.put(cluster, job);
+        } else if (job.running) {
+            if (job.next != null) {
+                Logger.tag("Hypocs").trace("Superseded queued revision of cluster #%d".formatted(cluster.id));
+            }
+            job.next = task;
+            job.nextPriority = priority;
+            return;
+        } else {
+            Logger.tag("Hypocs").trace("Superseded queued revision of cluster #%d".formatted(cluster.id));
+            clusterExecutor.remove(job);
+        }
+
+        enqueue(job, task, priority);
+    }
+
+    private void enqueue(Job job, Runnable task, double priority) {
+        job.task = task;
+        job.priority = priority;
+        job.sequence = nextSequence++;
+        clusterExecutor.execute(job);
+    }
+
+    private synchronized void finish(Job job) {
+        job.running = false;
+        if (job.next != null && jobs.get(job.cluster) == job && !clusterExecutor.isShutdown()) {
+            Runnable next = job.next;
+            job.next = null;
+            enqueue(job, next, job.nextPriority);
+        } else {
+            jobs.remove(job.cluster, job);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Drops the jobs of clusters that are not in the collection anymore. Running searches are not interrupted,
+     * {@link EarthquakeAnalysis} does not apply their results to a removed cluster.
+     */
+    synchronized void retainAll(Collection<Cluster> clusters) {
+        Set<Cluster> present = new HashSet<>(clusters);
+        for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+            Job job = iterator.next();
+            if (present.contains(job.cluster)) {
+                continue;
+            }
+
+            job.next = null;
+            if (!job.running) {
+                clusterExecutor.remove(job);
+                iterator.remove();
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until all scheduled searches have finished.
+     */
+    synchronized void awaitIdle() throws InterruptedException {
+        while (!jobs.isEmpty()) {
+            wait();
+        }
+    }
+
+    /**
+     * Runs the tasks in the search pool, or one after another in the calling thread
+     * if {@link Settings#parallelHypocenterLocations} is disabled.
+     *
+     * @return results in the order of the tasks
+     */
+    <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (!Settings.parallelHypocenterLocations) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+
+            for (Future<T> future : searchPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Hypocenter search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    void shutdown() {
+        clusterExecutor.shutdownNow();
+        synchronized (this) {
+            jobs.clear();
+            notifyAll();
+        }
+    }
+}
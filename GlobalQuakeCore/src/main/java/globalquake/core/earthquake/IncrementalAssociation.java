@@ -0,0 +1,272 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.HypocsSettings;
+import globalquake.core.Settings;
+import globalquake.core.analysis.Event;
+import globalquake.core.earthquake.data.Cluster;
+import globalquake.core.earthquake.data.Earthquake;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State kept between the passes of {@link ClusterAnalysis} in the incremental mode.
+ * <p>
+ * Events report themselves when their P wave, validity or S wave flag changes, or when they are no longer detected,
+ * see {@link Event#trackChanges(Set)}. Only these events are checked again between passes.
+ * <p>
+ * For every cluster with an earthquake the events that pass the arrival checks are kept in candidate sets.
+ * While the hypocenter stays the same, only the changed events are checked again, so the phases look up set membership
+ * instead of evaluating travel times for every event. When the hypocenter moves, the sets are rebuilt from the {@link EventIndex}.
+ * <p>
+ * If the previous pass changed nothing and neither the events nor the clusters, their hypocenters and the earthquakes
+ * changed since, a full pass would repeat exactly the same steps, so only the time based part of the pass has to run.
+ */
+final class IncrementalAssociation {
+
+    /**
+     * Everything the arrival checks of one cluster depend on.
+     */
+    record Hypothesis(Earthquake earthquake, double lat, double lon, double depth, long origin, double mag,
+                      double pWaveInaccuracyThreshold) {
+    }
+
+    record ClusterState(Cluster cluster, Earthquake earthquake, Hypothesis hypothesis, int correctEvents,
+                        int assignedEvents) {
+    }
+
+    /**
+     * What the passes read from the clusters and earthquakes, without the events.
+     */
+    private record Snapshot(List<ClusterState> clusters, List<Hypothesis> earthquakes, int clusterMinSize) {
+    }
+
+    static final class Candidates {
+        private final Hypothesis hypothesis;
+
+        /**
+         * Events for which {@link ClusterAnalysis#couldBeSArrival(Event, Earthquake)} holds.
+         */
+        private final Set<Event> sArrivals = new HashSet<>();
+
+        /**
+         * Events from {@link #sArrivals} that could not be a P wave of the earthquake either, these are marked as S waves.
+         */
+        private final Set<Event> sOnlyArrivals = new HashSet<>();
+
+        /**
+         * Events that could be an arrival with the increasing P wave window, filled when the cluster is first expanded by P waves.
+         */
+        private Set<Event> pArrivals;
+
+        private Candidates(Hypothesis hypothesis) {
+            this.hypothesis = hypothesis;
+        }
+
+        private void remove(Event event) {
+            sArrivals.remove(event);
+            sOnlyArrivals.remove(event);
+            if (pArrivals != null) {
+                pArrivals.remove(event);
+            }
+        }
+
+        private void check(Event event) {
+            Earthquake earthquake = hypothesis.earthquake();
+            if (ClusterAnalysis.couldBeSArrival(event, earthquake)) {
+                sArrivals.add(event);
+                if (!ClusterAnalysis.couldBePWaveArrival(event, earthquake, true, false, true)) {
+                    sOnlyArrivals.add(event);
+                }
+            }
+
+            if (pArrivals != null && ClusterAnalysis.couldBePWaveArrival(event, earthquake, true, true, false)) {
+                pArrivals.add(event);
+            }
+        }
+
+        boolean isSArrival(Event event) {
+            return sArrivals.contains(event);
+        }
+
+        Set<Event> getSOnlyArrivals() {
+            return sOnlyArrivals;
+        }
+    }
+
+    private final Set<Event> changedEvents = ConcurrentHashMap.newKeySet();
+    private boolean tracking;
+
+    private Snapshot previous;
+    private boolean previousModified;
+    private List<Event> changed = List.of();
+    private final Map<Cluster, Candidates> candidates = new HashMap<>();
+
+    private int passes;
+    private int skippedPasses;
+
+    /**
+     * Collects the events changed since the previous pass.
+     *
+     * @return false if nothing changed since the previous pass and it did not change anything either
+     */
+    boolean update(Collection<Cluster> clusters, Collection<Earthquake> earthquakes) {
+        passes++;
+        if (!tracking) {
+            // changes made before are not known, everything is checked again
+            Event.trackChanges(changedEvents);
+            tracking = true;
+            previous = null;
+            candidates.clear();
+        }
+
+        List<Event> changed = new ArrayList<>();
+        for (Iterator<Event> iterator = changedEvents.iterator(); iterator.hasNext(); ) {
+            changed.add(iterator.next());
+            iterator.remove();
+        }
+        this.changed = changed;
+
+        if (previous != null && !previousModified && changed.isEmpty() && takeSnapshot(clusters, earthquakes).equals(previous)) {
+            skippedPasses++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if an event changed since the last pass started
+     */
+    boolean hasChangedEvents() {
+        return !changedEvents.isEmpty();
+    }
+
+    /**
+     * Remembers the state the pass ended in.
+     *
+     * @param modified whether the pass changed the S wave flags, the assigned events or the clusters
+     */
+    void finish(Collection<Cluster> clusters, Collection<Earthquake> earthquakes, boolean modified) {
+        previous = takeSnapshot(clusters, earthquakes);
+        previousModified = modified;
+        changed = List.of();
+    }
+
+    private static Snapshot takeSnapshot(Collection<Cluster> clusters, Collection<Earthquake> earthquakes) {
+        List<ClusterState> clusterStates = new ArrayList<>();
+        for (Cluster cluster : clusters) {
+            clusterStates.add(new ClusterState(cluster, cluster.getEarthquake(), hypothesis(cluster.getEarthquake()),
+                    cluster.getPreviousHypocenter() == null ? -1 : cluster.getPreviousHypocenter().correctEvents,
+                    cluster.getAssignedEvents().size()));
+        }
+
+        List<Hypothesis> earthquakeStates = new ArrayList<>();
+        for (Earthquake earthquake : earthquakes) {
+            earthquakeStates.add(hypothesis(earthquake));
+        }
+
+        return new Snapshot(clusterStates, earthquakeStates, HypocsSettings.getOrDefaultInt("clusterMinSize", 4));
+    }
+
+    private static Hypothesis hypothesis(Earthquake earthquake) {
+        if (earthquake == null) {
+            return null;
+        }
+        return new Hypothesis(earthquake, earthquake.getLat(), earthquake.getLon(), earthquake.getDepth(),
+                earthquake.getOrigin(), earthquake.getMag(), Settings.pWaveInaccuracyThreshold);
+    }
+
+    /**
+     * Brings the candidate sets up to date with the changed events and the current hypocenters.
+     */
+    void updateCandidates(EventIndex eventIndex, Collection<Cluster> clusters) {
+        Set<Cluster> present = new HashSet<>();
+        for (Cluster cluster : clusters) {
+            present.add(cluster);
+            Hypothesis hypothesis = hypothesis(cluster.getEarthquake());
+            if (hypothesis == null) {
+                candidates.remove(cluster);
+                continue;
+            }
+
+            Candidates existing = candidates.get(cluster);
+            if (existing == null || !existing.hypothesis.equals(hypothesis)) {
+                candidates.put(cluster, create(eventIndex, hypothesis));
+                continue;
+            }
+
+            for (Event event : changed) {
+                existing.remove(event);
+                if (eventIndex.get(event) != null) {
+                    existing.check(event);
+                }
+            }
+        }
+
+        candidates.keySet().retainAll(present);
+    }
+
+    private static Candidates create(EventIndex eventIndex, Hypothesis hypothesis) {
+        Candidates result = new Candidates(hypothesis);
+        Earthquake earthquake = hypothesis.earthquake();
+        for (EventIndex.Entry entry : eventIndex.find(earthquake.getLat(), earthquake.getLon(), ClusterAnalysis.sWaveWindow(earthquake))) {
+            result.check(entry.event());
+        }
+        return result;
+    }
+
+    /**
+     * @return the candidate sets of a cluster with an earthquake, or null if it has none
+     */
+    Candidates getCandidates(Cluster cluster) {
+        return candidates.get(cluster);
+    }
+
+    /**
+     * @return events that could be an arrival with the increasing P wave window, in the order of the stations
+     */
+    List<EventIndex.Entry> getPArrivals(EventIndex eventIndex, Cluster cluster) {
+        Candidates result = candidates.get(cluster);
+        if (result.pArrivals == null) {
+            result.pArrivals = new HashSet<>();
+            Earthquake earthquake = result.hypothesis.earthquake();
+            for (EventIndex.Entry entry : eventIndex.find(earthquake.getLat(), earthquake.getLon(), ClusterAnalysis.pWaveWindow(earthquake))) {
+                if (ClusterAnalysis.couldBePWaveArrival(entry.event(), earthquake, true, true, false)) {
+                    result.pArrivals.add(entry.event());
+                }
+            }
+        }
+
+        List<EventIndex.Entry> list = new ArrayList<>(result.pArrivals.size());
+        for (Event event : result.pArrivals) {
+            EventIndex.Entry entry = eventIndex.get(event);
+            if (entry != null) {
+                list.add(entry);
+            }
+        }
+        list.sort(Comparator.comparingInt(EventIndex.Entry::order));
+        return list;
+    }
+
+    /**
+     * Forgets everything and stops collecting the changed events, used when passes run in the full mode.
+     */
+    void reset() {
+        if (tracking) {
+            Event.stopTrackingChanges(changedEvents);
+            tracking = false;
+        }
+        changedEvents.clear();
+        previous = null;
+        changed = List.of();
+        candidates.clear();
+    }
+
+    int getPasses() {
+        return passes;
+    }
+
+    int getSkippedPasses() {
+        return skippedPasses;
+    }
+}
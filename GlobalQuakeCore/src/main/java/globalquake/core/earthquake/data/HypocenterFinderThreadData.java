@@ -1,20 +1,99 @@
 package globalquake.core.earthquake.data;
 
+import globalquake.core.earthquake.EarthquakeAnalysis;
+import globalquake.utils.GeoUtils;
+import globalquake.utils.Point2DGQ;
+
+import java.util.List;
+
+/**
+ * Per-thread working memory of the CPU hypocenter search.
+ * Picked events are stored as primitive arrays (structure of arrays) so that evaluating a candidate point
+ * does not allocate anything. Use {@link #get(List)} to obtain the instance reused by the current thread.
+ */
 public class HypocenterFinderThreadData {
-    public final long[] origins;
+
+    private static final ThreadLocal<HypocenterFinderThreadData> THREAD_DATA = ThreadLocal.withInitial(() -> new HypocenterFinderThreadData(0));
+
+    public int size;
+
+    public long[] pWaves;
+    public double[] lats;
+    public double[] lons;
+    public double[] elevationCorrections;
+    public double[] angles;
+
+    // origin for each event, in the same order as the events
+    public long[] origins;
+    // scratch copy of origins used for the median selection
+    public long[] selection;
 
     public final PreliminaryHypocenter hypocenterA;
 
     public final PreliminaryHypocenter hypocenterB;
     public final PreliminaryHypocenter bestHypocenter;
 
+    public final GeoUtils.MoveOnGlobePrecomputed moveOnGlobePrecomputed = new GeoUtils.MoveOnGlobePrecomputed();
+    public final Point2DGQ point = new Point2DGQ();
+
     public HypocenterFinderThreadData(int size) {
-        origins = new long[size];
+        allocate(size);
+        this.size = size;
         hypocenterA = new PreliminaryHypocenter();
         hypocenterB = new PreliminaryHypocenter();
         bestHypocenter = new PreliminaryHypocenter();
     }
 
+    /**
+     * @return buffers of the current thread filled with given events. The returned instance is reused by the next
+     * call from the same thread, so nothing from it may be kept after the calculation is done.
+     */
+    public static HypocenterFinderThreadData get(List<? extends PickedEvent> events) {
+        HypocenterFinderThreadData threadData = THREAD_DATA.get();
+        threadData.load(events);
+        return threadData;
+    }
+
+    public void load(List<? extends PickedEvent> events) {
+        if (events.size() > pWaves.length) {
+            allocate(events.size());
+        }
+
+        size = events.size();
+
+        for (int i = 0; i < size; i++) {
+            PickedEvent event = events.get(i);
+            pWaves[i] = event.pWave();
+            lats[i] = event.lat();
+            lons[i] = event.lon();
+            elevationCorrections[i] = EarthquakeAnalysis.getElevationCorrection(event.elevation());
+        }
+
+        resetBest();
+    }
+
+    private void allocate(int capacity) {
+        pWaves = new long[capacity];
+        lats = new double[capacity];
+        lons = new double[capacity];
+        elevationCorrections = new double[capacity];
+        angles = new double[capacity];
+        origins = new long[capacity];
+        selection = new long[capacity];
+    }
+
+    /**
+     * Puts the best hypocenter to the same state as a newly created one
+     */
+    public void resetBest() {
+        bestHypocenter.lat = 0;
+        bestHypocenter.lon = 0;
+        bestHypocenter.depth = 0;
+        bestHypocenter.origin = 0;
+        bestHypocenter.err = 0;
+        bestHypocenter.correctStations = 0;
+    }
+
     public void setBest(PreliminaryHypocenter preliminaryHypocenter) {
         bestHypocenter.lat = preliminaryHypocenter.lat;
         bestHypocenter.lon = preliminaryHypocenter.lon;
@@ -23,4 +102,9 @@ public class HypocenterFinderThreadData {
         bestHypocenter.correctStations = preliminaryHypocenter.correctStations;
         bestHypocenter.err = preliminaryHypocenter.err;
     }
+
+    public PreliminaryHypocenter copyOfBest() {
+        return new PreliminaryHypocenter(bestHypocenter.lat, bestHypocenter.lon, bestHypocenter.depth, bestHypocenter.origin,
+                bestHypocenter.err, bestHypocenter.correctStations);
+    }
 }
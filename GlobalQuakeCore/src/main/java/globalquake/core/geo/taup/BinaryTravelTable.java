@@ -0,0 +1,207 @@
+package globalquake.core.geo.taup;
+
+import org.tinylog.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Flat binary form of the travel time tables that can be memory-mapped instead of deserialized.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ *  0  int   magic 'GQTT'
+ *  4  int   format version
+ *  8  int   table count (P, S, PKIKP, PKP)
+ * 12  int   reserved
+ * 16  per table: int rows (depth), int cols (angle), long data offset in bytes
+ * 80  long  CRC32 of the whole file except this field
+ * 96  float data, row-major, one block per table
+ * </pre>
+ * Mapped tables live in the page cache, so several instances on one machine share a single copy.
+ * Only a plain file can be mapped, a table packed in a jar is read into each process, so the file is passed
+ * with {@code -Dgq.travelTable=<file>} instead.
+ */
+public final class BinaryTravelTable {
+
+    public static final String FILE_NAME = "travel_table.bin";
+
+    public static final int MAGIC = 0x47515454;
+    public static final int VERSION = 2;
+    public static final int TABLE_COUNT = 4;
+    public static final int HEADER_SIZE = 96;
+
+    private static final int TABLES_OFFSET = 16;
+    private static final int CHECKSUM_OFFSET = 80;
+
+    private final TravelTimeGrid pTable;
+    private final TravelTimeGrid sTable;
+    private final TravelTimeGrid pkikpTable;
+    private final TravelTimeGrid pkpTable;
+
+    private BinaryTravelTable(TravelTimeGrid[] tables) {
+        this.pTable = tables[0];
+        this.sTable = tables[1];
+        this.pkikpTable = tables[2];
+        this.pkpTable = tables[3];
+    }
+
+    public TravelTimeGrid getPTable() {
+        return pTable;
+    }
+
+    public TravelTimeGrid getSTable() {
+        return sTable;
+    }
+
+    public TravelTimeGrid getPKIKPTable() {
+        return pkikpTable;
+    }
+
+    public TravelTimeGrid getPKPTable() {
+        return pkpTable;
+    }
+
+    /**
+     * Maps the file read-only, the data is paged in lazily by the OS
+     */
+    public static BinaryTravelTable map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the whole stream into a direct buffer, used when the table is packed inside a jar and cannot be mapped
+     */
+    public static BinaryTravelTable read(InputStream inputStream) throws IOException {
+        byte[] bytes = inputStream.readAllBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return parse(buffer);
+    }
+
+    private static BinaryTravelTable parse(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a travel time table file");
+        }
+
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported travel time table version %d, expected %d".formatted(version, VERSION));
+        }
+
+        if (buffer.getInt(8) != TABLE_COUNT) {
+            throw new IOException("Unexpected number of travel time tables: %d".formatted(buffer.getInt(8)));
+        }
+
+        if (checksum(buffer, buffer.duplicate().position(HEADER_SIZE)) != buffer.getLong(CHECKSUM_OFFSET)) {
+            throw new IOException("Travel time table checksum mismatch, the file is corrupted");
+        }
+
+        TravelTimeGrid[] tables = new TravelTimeGrid[TABLE_COUNT];
+        for (int i = 0; i < TABLE_COUNT; i++) {
+            int base = TABLES_OFFSET + i * 16;
+            int rows = buffer.getInt(base);
+            int cols = buffer.getInt(base + 4);
+            long offset = buffer.getLong(base + 8);
+            long length = (long) rows * cols * Float.BYTES;
+            if (rows < 2 || cols < 2 || offset < HEADER_SIZE || offset % Float.BYTES != 0 || offset + length > buffer.limit()) {
+                throw new IOException("Invalid travel time table #%d: %d x %d at offset %d".formatted(i, rows, cols, offset));
+            }
+
+            ByteBuffer slice = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+                    .position((int) offset).limit((int) (offset + length));
+            tables[i] = new TravelTimeGrid(slice.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), rows, cols);
+        }
+
+        return new BinaryTravelTable(tables);
+    }
+
+    /**
+     * CRC32 of the header without the checksum field and of the data, the table dimensions and offsets included
+     */
+    private static long checksum(ByteBuffer header, ByteBuffer data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(header.duplicate().limit(CHECKSUM_OFFSET).position(0));
+        crc32.update(header.duplicate().limit(HEADER_SIZE).position(CHECKSUM_OFFSET + Long.BYTES));
+        crc32.update(data);
+        return crc32.getValue();
+    }
+
+    public static void write(Path path, TravelTimeGrid pTable, TravelTimeGrid sTable, TravelTimeGrid pkikpTable, TravelTimeGrid pkpTable) throws IOException {
+        TravelTimeGrid[] tables = {pTable, sTable, pkikpTable, pkpTable};
+
+        long dataSize = 0;
+        for (TravelTimeGrid table : tables) {
+            dataSize += (long) table.getRows() * table.getCols() * Float.BYTES;
+        }
+
+        if (HEADER_SIZE + dataSize > Integer.MAX_VALUE) {
+            throw new IOException("Travel time tables are too large");
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(TABLE_COUNT).putInt(0);
+
+        for (TravelTimeGrid table : tables) {
+            header.putInt(table.getRows()).putInt(table.getCols()).putLong(HEADER_SIZE + data.position());
+            data.asFloatBuffer().put(table.getData());
+            data.position(data.position() + table.getRows() * table.getCols() * Float.BYTES);
+        }
+
+        data.flip();
+        header.putLong(CHECKSUM_OFFSET, checksum(header, data.duplicate()));
+        header.position(HEADER_SIZE).flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    public static void write(Path path, TauPTravelTable travelTable) throws IOException {
+        write(path, TravelTimeGrid.of(travelTable.p_travel_table), TravelTimeGrid.of(travelTable.s_travel_table),
+                TravelTimeGrid.of(travelTable.pkikp_travel_table), TravelTimeGrid.of(travelTable.pkp_travel_table));
+    }
+
+    /**
+     * Converts the serialized travel_table.dat into the binary format, run by the build to put the table into the resources
+     */
+    public static void main(String[] args) throws Exception {
+        Path source = Path.of(args.length > 0 ? args[0] : "travel_table.dat");
+        Path target = Path.of(args.length > 1 ? args[1] : FILE_NAME);
+        if (!Files.exists(source)) {
+            Logger.warn("Skipping travel table conversion: %s not found".formatted(source));
+            return;
+        }
+
+        TauPTravelTable travelTable;
+        try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(source))) {
+            travelTable = (TauPTravelTable) in.readObject();
+        }
+
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        write(target, travelTable);
+        map(target);
+
+        System.out.printf("Converted %s to %s (%d bytes)%n", source, target, Files.size(target));
+    }
+}
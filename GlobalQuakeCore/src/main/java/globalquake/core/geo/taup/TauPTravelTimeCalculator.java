@@ -4,7 +4,12 @@ import globalquake.core.exception.FatalApplicationException;
 import globalquake.core.exception.FatalIOException;
 import globalquake.utils.GeoUtils;
 
+import org.tinylog.Logger;
+
 import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 @SuppressWarnings("unused")
@@ -15,15 +20,39 @@ public class TauPTravelTimeCalculator {
 
     public static final double MAX_DEPTH = 750.0;
     public static final float NO_ARRIVAL = -999.0f;
-    private static TauPTravelTable travelTable;
 
-    public static TauPTravelTable getTravelTable() {
-        return travelTable;
+    public static final String TRAVEL_TABLE_PROPERTY = "gq.travelTable";
+    private static TravelTimeGrid pTravelTable;
+    private static TravelTimeGrid sTravelTable;
+    private static TravelTimeGrid pkikpTravelTable;
+    private static TravelTimeGrid pkpTravelTable;
+
+    /**
+     * @return heap copy of the P wave table, the regular lookups read the (possibly memory-mapped) grid directly
+     */
+    public static float[][] getPWaveTravelTable() {
+        return pTravelTable.toArray();
     }
 
     public static void init() throws FatalApplicationException {
         try {
-            travelTable = loadTravelTable("travel_table/travel_table.dat");
+            BinaryTravelTable binaryTable = loadBinaryTravelTable("travel_table/" + BinaryTravelTable.FILE_NAME);
+            if (binaryTable != null) {
+                pTravelTable = binaryTable.getPTable();
+                sTravelTable = binaryTable.getSTable();
+                pkikpTravelTable = binaryTable.getPKIKPTable();
+                pkpTravelTable = binaryTable.getPKPTable();
+                return;
+            }
+
+            Logger.warn("Binary travel table not found, falling back to travel_table.dat");
+            TauPTravelTable travelTable = loadTravelTable("travel_table/travel_table.dat");
+            pTravelTable = TravelTimeGrid.of(travelTable.p_travel_table);
+            sTravelTable = TravelTimeGrid.of(travelTable.s_travel_table);
+            pkikpTravelTable = TravelTimeGrid.of(travelTable.pkikp_travel_table);
+            pkpTravelTable = TravelTimeGrid.of(travelTable.pkp_travel_table);
+        }catch(FatalApplicationException e){
+            throw e;
         }catch(Exception e){
             throw new FatalApplicationException(e);
         }
@@ -39,6 +68,40 @@ public class TauPTravelTimeCalculator {
         ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("travel_table.dat"));
         out.writeObject(travelTable);
         out.close();
+
+        BinaryTravelTable.write(Path.of(BinaryTravelTable.FILE_NAME), travelTable);
+    }
+
+    /**
+     * Looks for the binary table at the path given by the {@value #TRAVEL_TABLE_PROPERTY} system property first,
+     * then on the classpath. Files are memory-mapped, resources packed in a jar are read into a direct buffer.
+     *
+     * @return the loaded table or null if there is none
+     */
+    @SuppressWarnings("SameParameterValue")
+    private static BinaryTravelTable loadBinaryTravelTable(String path) throws FatalIOException {
+        try {
+            String override = System.getProperty(TRAVEL_TABLE_PROPERTY);
+            if (override != null) {
+                return BinaryTravelTable.map(Path.of(override));
+            }
+
+            var url = ClassLoader.getSystemClassLoader().getResource(path);
+            if (url == null) {
+                return null;
+            }
+
+            if ("file".equals(url.getProtocol())) {
+                return BinaryTravelTable.map(Path.of(url.toURI()));
+            }
+
+            Logger.info("Travel table loaded from %s, use -D%s=<file> to share one mapped copy between instances".formatted(url, TRAVEL_TABLE_PROPERTY));
+            try (InputStream in = url.openStream()) {
+                return BinaryTravelTable.read(in);
+            }
+        } catch (IOException | URISyntaxException | InvalidPathException e) {
+            throw new FatalIOException("无法加载震波走时表!", e);
+        }
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -62,32 +125,48 @@ public class TauPTravelTimeCalculator {
 
 
     public static double getPWaveTravelTime(double depth, double angle){
-        return interpolateWaves(travelTable.p_travel_table, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, false);
+        return interpolateWaves(pTravelTable, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, false);
     }
 
     public static double getPWaveTravelTimeFast(double depth, double angle){
-        return interpolateWaves(travelTable.p_travel_table, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, true);
+        return interpolateWaves(pTravelTable, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, true);
     }
 
     public static double getSWaveTravelTime(double depth, double angle){
-        return interpolateWaves(travelTable.s_travel_table, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, false);
+        return interpolateWaves(sTravelTable, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth, angle, false);
     }
 
     public static double getPKIKPWaveTravelTime(double depth, double angle){
-        return interpolateWaves(travelTable.pkikp_travel_table, TauPTravelTable.PKIKP_MIN_ANGLE, TauPTravelTable.PKIKP_MAX_ANGLE, depth, angle, false);
+        return interpolateWaves(pkikpTravelTable, TauPTravelTable.PKIKP_MIN_ANGLE, TauPTravelTable.PKIKP_MAX_ANGLE, depth, angle, false);
     }
 
     public static double getPKPWaveTravelTime(double depth, double angle){
-        return interpolateWaves(travelTable.pkp_travel_table, TauPTravelTable.PKP_MIN_ANGLE, TauPTravelTable.PKP_MAX_ANGLE, depth, angle, false);
+        return interpolateWaves(pkpTravelTable, TauPTravelTable.PKP_MIN_ANGLE, TauPTravelTable.PKP_MAX_ANGLE, depth, angle, false);
+    }
+
+    public static TravelTimeEnvelope getPWaveEnvelope(double depth) {
+        return new TravelTimeEnvelope(pTravelTable, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth);
+    }
+
+    public static TravelTimeEnvelope getSWaveEnvelope(double depth) {
+        return new TravelTimeEnvelope(sTravelTable, TauPTravelTable.P_S_MIN_ANGLE, TauPTravelTable.P_S_MAX_ANGLE, depth);
+    }
+
+    public static TravelTimeEnvelope getPKIKPWaveEnvelope(double depth) {
+        return new TravelTimeEnvelope(pkikpTravelTable, TauPTravelTable.PKIKP_MIN_ANGLE, TauPTravelTable.PKIKP_MAX_ANGLE, depth);
+    }
+
+    public static TravelTimeEnvelope getPKPWaveEnvelope(double depth) {
+        return new TravelTimeEnvelope(pkpTravelTable, TauPTravelTable.PKP_MIN_ANGLE, TauPTravelTable.PKP_MAX_ANGLE, depth);
     }
 
-    private static double getMaxTime(float[][] table) {
-        return table[0][table[0].length - 1];
+    private static double getMaxTime(TravelTimeGrid table) {
+        return table.get(0, table.getCols() - 1);
     }
 
     public static double getPWaveTravelAngle(double depth, double timeSeconds) {
         if(timeSeconds < 0 ||
-                timeSeconds > getMaxTime(travelTable.p_travel_table)){
+                timeSeconds > getMaxTime(pTravelTable)){
             return  NO_ARRIVAL;
         }
         return binarySearchTime((angle) -> getPWaveTravelTime(depth, angle), timeSeconds, 1e-4,
@@ -95,7 +174,7 @@ public class TauPTravelTimeCalculator {
     }
 
     public static double getSWaveTravelAngle(double depth, double timeSeconds) {
-        if(timeSeconds < 0 || timeSeconds > getMaxTime(travelTable.s_travel_table)){
+        if(timeSeconds < 0 || timeSeconds > getMaxTime(sTravelTable)){
             return  NO_ARRIVAL;
         }
         return binarySearchTime((angle) -> getSWaveTravelTime(depth, angle), timeSeconds, 1e-4,
@@ -141,25 +220,25 @@ public class TauPTravelTimeCalculator {
     }
 
 
-    private static double interpolateWaves(float[][] array, double minAng, double maxAng, double depth, double angle, boolean fast) {
-        double x = (depth / MAX_DEPTH) * (array.length - 1);
-        double y = ((angle - minAng) / (maxAng - minAng)) * (array[0].length - 1);
-        if(x < 0 || y < 0 || x > array.length - 1 || y > array[0].length - 1){
+    private static double interpolateWaves(TravelTimeGrid array, double minAng, double maxAng, double depth, double angle, boolean fast) {
+        double x = (depth / MAX_DEPTH) * (array.getRows() - 1);
+        double y = ((angle - minAng) / (maxAng - minAng)) * (array.getCols() - 1);
+        if(x < 0 || y < 0 || x > array.getRows() - 1 || y > array.getCols() - 1){
             return NO_ARRIVAL;
         }
         return fast? fastbilinearInterpolation(array, x, y) : bilinearInterpolation(array, x, y);
     }
 
-    private static double fastbilinearInterpolation(float[][] array, double x, double y) {
+    private static double fastbilinearInterpolation(TravelTimeGrid array, double x, double y) {
         int x0 = (int) x;
         int x1 = x0 + 1;
         int y0 = (int) y;
         int y1 = y0 + 1;
 
-        float q11 = array[x0][y0];
-        float q21 = array[x1][y0];
-        float q12 = array[x0][y1];
-        float q22 = array[x1][y1];
+        float q11 = array.get(x0, y0);
+        float q21 = array.get(x1, y0);
+        float q12 = array.get(x0, y1);
+        float q22 = array.get(x1, y1);
 
         double tx = x - x0;
         double ty = y - y0;
@@ -167,24 +246,24 @@ public class TauPTravelTimeCalculator {
         return (1 - tx) * (1 - ty) * q11 + tx * (1 - ty) * q21 + (1 - tx) * ty * q12 + tx * ty * q22;
     }
 
-    private static double bilinearInterpolation(float[][] array, double x, double y) {
+    private static double bilinearInterpolation(TravelTimeGrid array, double x, double y) {
         if(x < 0 || y < 0){
             return NO_ARRIVAL;
         }
 
         int x0 = (int) x;
-        int x1 = x0 == array.length - 1 ? x0 : x0 + 1;
+        int x1 = x0 == array.getRows() - 1 ? x0 : x0 + 1;
         int y0 = (int) y;
-        int y1 = y0 == array[0].length - 1 ? y0 : y0 + 1;
+        int y1 = y0 == array.getCols() - 1 ? y0 : y0 + 1;
 
-        if (x1 >= array.length || y1 >= array[0].length) {
+        if (x1 >= array.getRows() || y1 >= array.getCols()) {
             return NO_ARRIVAL;
         }
 
-        float q11 = array[x0][y0];
-        float q21 = array[x1][y0];
-        float q12 = array[x0][y1];
-        float q22 = array[x1][y1];
+        float q11 = array.get(x0, y0);
+        float q21 = array.get(x1, y0);
+        float q12 = array.get(x0, y1);
+        float q22 = array.get(x1, y1);
 
         if (q11 < 0 || q21 < 0 || q12 < 0 || q22 < 0) {
             return NO_ARRIVAL;
@@ -0,0 +1,103 @@
+package globalquake.core.geo.taup;
+
+import java.util.Arrays;
+
+/**
+ * Lowest and highest travel time of one phase at a fixed depth for every whole degree of distance.
+ * <p>
+ * At a fixed depth the bilinear interpolation of {@link TauPTravelTimeCalculator} is linear between two angle columns,
+ * so the extremes over any interval are found at the columns. The bounds are therefore exact for the interpolated values,
+ * not just sampled, and can be used to rule out arrivals without evaluating every station.
+ */
+public final class TravelTimeEnvelope {
+
+    private static final int BANDS = 180;
+
+    private final double[] min = new double[BANDS];
+    private final double[] max = new double[BANDS];
+
+    TravelTimeEnvelope(TravelTimeGrid grid, double minAng, double maxAng, double depth) {
+        Arrays.fill(min, Double.NaN);
+        Arrays.fill(max, Double.NaN);
+
+        if (grid == null) {
+            return;
+        }
+
+        double x = (depth / TauPTravelTimeCalculator.MAX_DEPTH) * (grid.getRows() - 1);
+        if (!(x >= 0 && x <= grid.getRows() - 1)) {
+            return;
+        }
+
+        int x0 = (int) x;
+        int x1 = x0 == grid.getRows() - 1 ? x0 : x0 + 1;
+        double tx = x - x0;
+        double step = (maxAng - minAng) / (grid.getCols() - 1);
+
+        double previous = value(grid, x0, x1, tx, 0);
+        for (int col = 1; col < grid.getCols(); col++) {
+            double next = value(grid, x0, x1, tx, col);
+            if (!Double.isNaN(previous) && !Double.isNaN(next)) {
+                include(minAng + (col - 1) * step, minAng + col * step, Math.min(previous, next), Math.max(previous, next));
+            }
+            previous = next;
+        }
+
+        // the very last column is reachable on its own
+        if (!Double.isNaN(previous)) {
+            include(maxAng, maxAng, previous, previous);
+        }
+    }
+
+    private static double value(TravelTimeGrid grid, int x0, int x1, double tx, int col) {
+        float q0 = grid.get(x0, col);
+        float q1 = grid.get(x1, col);
+        if (q0 < 0 || q1 < 0) {
+            return Double.NaN;
+        }
+        return (1 - tx) * q0 + tx * q1;
+    }
+
+    private void include(double fromAngle, double toAngle, double low, double high) {
+        for (int band = band(fromAngle); band <= band(toAngle); band++) {
+            if (Double.isNaN(min[band]) || low < min[band]) {
+                min[band] = low;
+            }
+            if (Double.isNaN(max[band]) || high > max[band]) {
+                max[band] = high;
+            }
+        }
+    }
+
+    private static int band(double angle) {
+        return Math.max(0, Math.min(BANDS - 1, (int) Math.floor(angle)));
+    }
+
+    /**
+     * @return the lowest travel time in seconds between the two angles, or NaN if the phase does not arrive there
+     */
+    public double getMin(double fromAngle, double toAngle) {
+        double result = Double.NaN;
+        for (int band = band(fromAngle); band <= band(toAngle); band++) {
+            double value = min[band];
+            if (!Double.isNaN(value) && (Double.isNaN(result) || value < result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the highest travel time in seconds between the two angles, or NaN if the phase does not arrive there
+     */
+    public double getMax(double fromAngle, double toAngle) {
+        double result = Double.NaN;
+        for (int band = band(fromAngle); band <= band(toAngle); band++) {
+            double value = max[band];
+            if (!Double.isNaN(value) && (Double.isNaN(result) || value > result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package globalquake.core.geo.taup;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Read-only depth x angle grid of travel times backed by a flat {@link FloatBuffer}.
+ * The buffer may be a heap buffer or a view of a memory-mapped file, see {@link BinaryTravelTable}.
+ */
+public final class TravelTimeGrid {
+
+    private final FloatBuffer data;
+    private final int rows;
+    private final int cols;
+
+    public TravelTimeGrid(FloatBuffer data, int rows, int cols) {
+        if (rows < 2 || cols < 2 || (long) rows * cols != data.remaining()) {
+            throw new IllegalArgumentException("Invalid travel time grid size %d x %d for %d values".formatted(rows, cols, data.remaining()));
+        }
+        this.data = data.slice();
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static TravelTimeGrid of(float[][] array) {
+        int rows = array.length;
+        int cols = array[0].length;
+        float[] flat = new float[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(array[row], 0, flat, row * cols, cols);
+        }
+        return new TravelTimeGrid(FloatBuffer.wrap(flat), rows, cols);
+    }
+
+    /**
+     * @param depthIndex index along the depth axis
+     * @param angleIndex index along the angle axis
+     * @return the travel time stored at the given indices, no bounds checks beyond those of the buffer
+     */
+    public float get(int depthIndex, int angleIndex) {
+        return data.get(depthIndex * cols + angleIndex);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    FloatBuffer getData() {
+        return data.duplicate();
+    }
+
+    /**
+     * Copies the grid into a newly allocated heap array, used when the whole table has to be passed elsewhere (CUDA)
+     */
+    public float[][] toArray() {
+        float[][] result = new float[rows][cols];
+        FloatBuffer buffer = data.duplicate();
+        for (int row = 0; row < rows; row++) {
+            buffer.get(result[row]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,378 @@
+package globalquake.core.regions;
+
+import org.tinylog.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed land and ocean raster of a region list, with the distance to the closest polygon vertex.
+ * <p>
+ * Every cell is either ocean, land, or coast when a polygon edge gets close to it. Ocean and land cells answer
+ * {@link Regions#isOcean(double, double, boolean)} for any point inside them exactly, coast cells are left to the polygons.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ *  0  int   magic 'GQCR'
+ *  4  int   format version
+ *  8  int   cells per degree
+ * 12  int   columns, from 180°W eastwards
+ * 16  int   rows, from 90°S northwards
+ * 20  float distance step in km
+ * 24  long  fingerprint of the polygons the raster was made from
+ * 32  long  CRC32 of everything from {@link #HEADER_SIZE} to the end of the file
+ * 40  long  reserved
+ * 48  cell types, 2 bits per cell, row-major, padded to 8 bytes
+ *     distances from the cell centers in distance steps, unsigned short per cell, row-major
+ * </pre>
+ */
+public final class CoastRaster {
+
+    public static final String FILE_NAME_HD = "coast_raster_hd.bin";
+    public static final String FILE_NAME_UHD = "coast_raster_uhd.bin";
+
+    public static final int MAGIC = 0x47514352;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 48;
+
+    public static final int OCEAN = 0;
+    public static final int LAND = 1;
+    public static final int COAST = 2;
+
+    public static final int DEFAULT_CELLS_PER_DEGREE = 4;
+    public static final float DEFAULT_DISTANCE_STEP = 0.5f;
+
+    private static final int CHECKSUM_OFFSET = 32;
+    private static final int NO_DISTANCE = 0xFFFF;
+
+    // degrees, keeps cells that only nearly touch an edge out of the exact ones
+    private static final double EDGE_MARGIN = 1e-6;
+
+    private final ByteBuffer buffer;
+    private final int cellsPerDegree;
+    private final int cols;
+    private final int rows;
+    private final float distanceStep;
+    private final long fingerprint;
+    private final int distancesOffset;
+
+    private CoastRaster(ByteBuffer buffer, int cellsPerDegree, int cols, int rows, float distanceStep, long fingerprint) {
+        this.buffer = buffer;
+        this.cellsPerDegree = cellsPerDegree;
+        this.cols = cols;
+        this.rows = rows;
+        this.distanceStep = distanceStep;
+        this.fingerprint = fingerprint;
+        this.distancesOffset = HEADER_SIZE + typesSize(cols * rows);
+    }
+
+    private static int typesSize(int cells) {
+        return ((cells + 3) / 4 + 7) / 8 * 8;
+    }
+
+    public int getCellsPerDegree() {
+        return cellsPerDegree;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return {@link #OCEAN}, {@link #LAND}, or {@link #COAST} if the point has to be checked against the polygons
+     */
+    public int getType(double lat, double lon) {
+        int row = (int) Math.floor((lat + 90) * cellsPerDegree);
+        int col = (int) Math.floor((lon + 180) * cellsPerDegree);
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return COAST;
+        }
+        return getType(row, col);
+    }
+
+    private int getType(int row, int col) {
+        int cell = row * cols + col;
+        return (buffer.get(HEADER_SIZE + cell / 4) >> (cell % 4 * 2)) & 3;
+    }
+
+    /**
+     * Great circle distance to the closest polygon vertex, interpolated between the centers of the surrounding cells.
+     *
+     * @return the distance in km, or NaN if any of the surrounding cells is not ocean
+     */
+    public double getCoastDistance(double lat, double lon) {
+        double y = (lat + 90) * cellsPerDegree - 0.5;
+        double x = (lon + 180) * cellsPerDegree - 0.5;
+        int row = (int) Math.floor(y);
+        int col = (int) Math.floor(x);
+        if (row < 0 || row + 1 >= rows || col < -1 || col >= cols) {
+            return Double.NaN;
+        }
+
+        double fy = y - row;
+        double fx = x - col;
+        int col0 = Math.floorMod(col, cols);
+        int col1 = Math.floorMod(col + 1, cols);
+
+        double d00 = getDistance(row, col0);
+        double d01 = getDistance(row, col1);
+        double d10 = getDistance(row + 1, col0);
+        double d11 = getDistance(row + 1, col1);
+
+        return (d00 * (1 - fx) + d01 * fx) * (1 - fy) + (d10 * (1 - fx) + d11 * fx) * fy;
+    }
+
+    private double getDistance(int row, int col) {
+        if (getType(row, col) != OCEAN) {
+            return Double.NaN;
+        }
+        int value = Short.toUnsignedInt(buffer.getShort(distancesOffset + (row * cols + col) * Short.BYTES));
+        return value == NO_DISTANCE ? Double.NaN : value * distanceStep;
+    }
+
+    /**
+     * Maps the file read-only, the data is paged in lazily by the OS
+     */
+    public static CoastRaster map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the whole stream into a direct buffer, used when the raster is packed inside a jar and cannot be mapped
+     */
+    public static CoastRaster read(InputStream inputStream) throws IOException {
+        byte[] bytes = inputStream.readAllBytes();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return parse(buffer);
+    }
+
+    private static CoastRaster parse(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a coast raster file");
+        }
+
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported coast raster version %d, expected %d".formatted(version, VERSION));
+        }
+
+        int cellsPerDegree = buffer.getInt(8);
+        int cols = buffer.getInt(12);
+        int rows = buffer.getInt(16);
+        float distanceStep = buffer.getFloat(20);
+        if (cellsPerDegree < 1 || cols != 360 * cellsPerDegree || rows != 180 * cellsPerDegree || !(distanceStep > 0)
+                || HEADER_SIZE + typesSize(cols * rows) + (long) cols * rows * Short.BYTES != buffer.limit()) {
+            throw new IOException("Invalid coast raster: %d x %d cells, %d per degree".formatted(cols, rows, cellsPerDegree));
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.duplicate().position(HEADER_SIZE));
+        if (crc32.getValue() != buffer.getLong(CHECKSUM_OFFSET)) {
+            throw new IOException("Coast raster checksum mismatch, the file is corrupted");
+        }
+
+        return new CoastRaster(buffer, cellsPerDegree, cols, rows, distanceStep, buffer.getLong(24));
+    }
+
+    /**
+     * @return hash of all polygon vertices, a raster is only used for the polygons it was made from
+     */
+    public static long fingerprint(List<Region> regions) {
+        long hash = 0xcbf29ce484222325L;
+        for (Region region : regions) {
+            for (GQPolygon polygon : region.raws()) {
+                hash = (hash ^ polygon.getSize()) * 0x100000001b3L;
+                for (int i = 0; i < polygon.getSize(); i++) {
+                    hash = (hash ^ Float.floatToIntBits(polygon.getLats()[i])) * 0x100000001b3L;
+                    hash = (hash ^ Float.floatToIntBits(polygon.getLons()[i])) * 0x100000001b3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static void write(Path path, List<Region> regions, int cellsPerDegree, float distanceStep) throws IOException {
+        int cols = 360 * cellsPerDegree;
+        int rows = 180 * cellsPerDegree;
+        byte[] types = classify(regions, cellsPerDegree);
+
+        RegionIndex index = new RegionIndex(regions);
+        char[] distances = new char[cols * rows];
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            double lat = -90 + (row + 0.5) / cellsPerDegree;
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                if (types[cell] == LAND) {
+                    continue;
+                }
+                double lon = -180 + (col + 0.5) / cellsPerDegree;
+                RegionIndex.Vertex closest = index.findClosestVertex(lat, lon, RegionIndex.greatCircle(lat, lon));
+                long value = closest == null ? NO_DISTANCE : Math.round(closest.distance() / distanceStep);
+                distances[cell] = (char) Math.min(NO_DISTANCE, value);
+            }
+        });
+
+        ByteBuffer data = ByteBuffer.allocate(typesSize(cols * rows) + cols * rows * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int cell = 0; cell < types.length; cell++) {
+            data.put(cell / 4, (byte) (data.get(cell / 4) | types[cell] << (cell % 4 * 2)));
+        }
+        data.position(typesSize(cols * rows));
+        data.asCharBuffer().put(distances);
+        data.position(0);
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(cellsPerDegree).putInt(cols).putInt(rows).putFloat(distanceStep)
+                .putLong(fingerprint(regions)).putLong(crc32.getValue()).putLong(0);
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * Marks the cells touched by polygon edges as coast, the rest are decided at the cell centers by counting
+     * the crossings of a ray towards the east, the same way {@link java.awt.geom.Path2D#contains(double, double)} does.
+     */
+    static byte[] classify(List<Region> regions, int cellsPerDegree) {
+        int cols = 360 * cellsPerDegree;
+        int rows = 180 * cellsPerDegree;
+        byte[] types = new byte[cols * rows];
+
+        List<GQPolygon> polygons = new ArrayList<>();
+        for (Region region : regions) {
+            polygons.addAll(region.raws());
+        }
+
+        // edges crossing the center line of each row
+        List<List<double[]>> crossings = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            crossings.add(new ArrayList<>());
+        }
+
+        for (int p = 0; p < polygons.size(); p++) {
+            GQPolygon polygon = polygons.get(p);
+            for (int i = 0; i < polygon.getSize(); i++) {
+                int next = (i + 1) % polygon.getSize();
+                double x0 = polygon.getLons()[i];
+                double y0 = polygon.getLats()[i];
+                double x1 = polygon.getLons()[next];
+                double y1 = polygon.getLats()[next];
+
+                markCoast(types, cellsPerDegree, Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+
+                if (y0 == y1) {
+                    continue;
+                }
+                int firstRow = Math.max(0, (int) Math.floor((Math.min(y0, y1) + 90) * cellsPerDegree - 0.5));
+                int lastRow = Math.min(rows - 1, (int) Math.ceil((Math.max(y0, y1) + 90) * cellsPerDegree - 0.5));
+                for (int row = firstRow; row <= lastRow; row++) {
+                    double y = -90 + (row + 0.5) / cellsPerDegree;
+                    if (y < Math.min(y0, y1) || y >= Math.max(y0, y1)) {
+                        continue;
+                    }
+                    double x = x0 + (y - y0) * (x1 - x0) / (y1 - y0);
+                    crossings.get(row).add(new double[]{x, y0 < y1 ? 1 : -1, p});
+                }
+            }
+        }
+
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            List<double[]> rowCrossings = crossings.get(row);
+            rowCrossings.sort((a, b) -> Double.compare(b[0], a[0]));
+
+            // winding numbers of the polygons, going from the east
+            int[] windings = new int[polygons.size()];
+            int inside = 0;
+            int next = 0;
+            for (int col = cols - 1; col >= 0; col--) {
+                double x = -180 + (col + 0.5) / cellsPerDegree;
+                while (next < rowCrossings.size() && rowCrossings.get(next)[0] > x) {
+                    double[] crossing = rowCrossings.get(next++);
+                    int p = (int) crossing[2];
+                    int before = windings[p];
+                    windings[p] += (int) crossing[1];
+                    if (before == 0) {
+                        inside++;
+                    } else if (windings[p] == 0) {
+                        inside--;
+                    }
+                }
+
+                int cell = row * cols + col;
+                if (types[cell] != COAST) {
+                    types[cell] = (byte) (inside > 0 ? LAND : OCEAN);
+                }
+            }
+        });
+
+        return types;
+    }
+
+    private static void markCoast(byte[] types, int cellsPerDegree, double minLon, double minLat, double maxLon, double maxLat) {
+        int cols = 360 * cellsPerDegree;
+        int rows = 180 * cellsPerDegree;
+        int firstCol = (int) Math.floor((minLon - EDGE_MARGIN + 180) * cellsPerDegree);
+        int lastCol = (int) Math.floor((maxLon + EDGE_MARGIN + 180) * cellsPerDegree);
+        int firstRow = (int) Math.floor((minLat - EDGE_MARGIN + 90) * cellsPerDegree);
+        int lastRow = (int) Math.floor((maxLat + EDGE_MARGIN + 90) * cellsPerDegree);
+        if (lastCol < 0 || firstCol >= cols || lastRow < 0 || firstRow >= rows) {
+            return;
+        }
+
+        for (int row = Math.max(0, firstRow); row <= Math.min(rows - 1, lastRow); row++) {
+            Arrays.fill(types, row * cols + Math.max(0, firstCol), row * cols + Math.min(cols - 1, lastCol) + 1, (byte) COAST);
+        }
+    }
+
+    /**
+     * Generates the rasters of the HD and UHD country polygons, run during the build.
+     * Arguments: output directory, cells per degree, distance step in km.
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Path.of(args.length > 0 ? args[0] : ".");
+        int cellsPerDegree = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CELLS_PER_DEGREE;
+        float distanceStep = args.length > 2 ? Float.parseFloat(args[2]) : DEFAULT_DISTANCE_STEP;
+        Files.createDirectories(directory);
+
+        for (String[] source : new String[][]{{"polygons/countriesHD.json", FILE_NAME_HD}, {"polygons/countriesUHD.json", FILE_NAME_UHD}}) {
+            List<Region> regions = new ArrayList<>();
+            try {
+                Regions.parseGeoJson(source[0], null, regions, Regions.NONE);
+            } catch (IOException e) {
+                Logger.warn("Skipping coast raster of %s: %s".formatted(source[0], e.getMessage()));
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            Path target = directory.resolve(source[1]);
+            write(target, regions, cellsPerDegree, distanceStep);
+            map(target);
+
+            Logger.info("Generated %s in %.1fs (%d bytes)".formatted(target, (System.currentTimeMillis() - start) / 1000.0, Files.size(target)));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package globalquake.core.regions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Static R-tree over boxes in longitude-latitude degrees, packed with the sort-tile-recursive method.
+ * <p>
+ * All nodes are stored in flat arrays, the items first and every level of parents after them.
+ * Items are referred to by the position they were added in.
+ */
+final class PackedRTree {
+
+    private static final int NODE_SIZE = 16;
+
+    /**
+     * Lower bound of the distance from the query to anything inside a box.
+     */
+    interface BoxDistance {
+        double lowerBound(double minLon, double minLat, double maxLon, double maxLat);
+    }
+
+    /**
+     * Looks at one item during a nearest neighbour search.
+     */
+    interface ItemVisitor {
+        /**
+         * @return the distance of the closest thing found so far
+         */
+        double visit(int item);
+    }
+
+    private record Candidate(double bound, int node) {
+    }
+
+    private final int itemCount;
+    private final double[] boxes;
+    private final int[] children;
+    private final int[] levelEnds;
+
+    PackedRTree(double[] minLon, double[] minLat, double[] maxLon, double[] maxLat) {
+        itemCount = minLon.length;
+
+        int nodeCount = itemCount;
+        int levels = 1;
+        for (int n = itemCount; n > 1; n = (n + NODE_SIZE - 1) / NODE_SIZE) {
+            nodeCount += (n + NODE_SIZE - 1) / NODE_SIZE;
+            levels++;
+        }
+
+        boxes = new double[nodeCount * 4];
+        children = new int[nodeCount];
+        levelEnds = new int[levels];
+
+        Integer[] order = new Integer[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            order[i] = i;
+        }
+
+        // vertical slices of boxes sorted by longitude, each sorted by latitude
+        Arrays.sort(order, Comparator.comparingDouble(i -> minLon[i] + maxLon[i]));
+        int leafNodes = (itemCount + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leafNodes)) * NODE_SIZE;
+        for (int start = 0; start < itemCount; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(itemCount, start + sliceSize), Comparator.comparingDouble(i -> minLat[i] + maxLat[i]));
+        }
+
+        for (int pos = 0; pos < itemCount; pos++) {
+            int item = order[pos];
+            setBox(pos, minLon[item], minLat[item], maxLon[item], maxLat[item]);
+            children[pos] = item;
+        }
+
+        int levelStart = 0;
+        int levelEnd = itemCount;
+        int level = 0;
+        levelEnds[level++] = levelEnd;
+        while (levelEnd - levelStart > 1) {
+            int pos = levelEnd;
+            for (int child = levelStart; child < levelEnd; child += NODE_SIZE, pos++) {
+                double nodeMinLon = Double.POSITIVE_INFINITY;
+                double nodeMinLat = Double.POSITIVE_INFINITY;
+                double nodeMaxLon = Double.NEGATIVE_INFINITY;
+                double nodeMaxLat = Double.NEGATIVE_INFINITY;
+                for (int i = child; i < Math.min(levelEnd, child + NODE_SIZE); i++) {
+                    nodeMinLon = Math.min(nodeMinLon, boxes[i * 4]);
+                    nodeMinLat = Math.min(nodeMinLat, boxes[i * 4 + 1]);
+                    nodeMaxLon = Math.max(nodeMaxLon, boxes[i * 4 + 2]);
+                    nodeMaxLat = Math.max(nodeMaxLat, boxes[i * 4 + 3]);
+                }
+                setBox(pos, nodeMinLon, nodeMinLat, nodeMaxLon, nodeMaxLat);
+                children[pos] = child;
+            }
+            levelStart = levelEnd;
+            levelEnd = pos;
+            levelEnds[level++] = levelEnd;
+        }
+    }
+
+    private void setBox(int node, double minLon, double minLat, double maxLon, double maxLat) {
+        boxes[node * 4] = minLon;
+        boxes[node * 4 + 1] = minLat;
+        boxes[node * 4 + 2] = maxLon;
+        boxes[node * 4 + 3] = maxLat;
+    }
+
+    private int root() {
+        return levelEnds[levelEnds.length - 1] - 1;
+    }
+
+    /**
+     * @return end of the children of an internal node
+     */
+    private int childrenEnd(int node) {
+        for (int level = 1; level < levelEnds.length; level++) {
+            if (node < levelEnds[level]) {
+                return Math.min(levelEnds[level - 1], children[node] + NODE_SIZE);
+            }
+        }
+        throw new IllegalArgumentException("Node %d is not in the tree".formatted(node));
+    }
+
+    int size() {
+        return itemCount;
+    }
+
+    /**
+     * Passes every item whose box contains the point, borders included, in no particular order.
+     */
+    void search(double lon, double lat, IntConsumer consumer) {
+        if (itemCount == 0) {
+            return;
+        }
+
+        int[] stack = new int[levelEnds.length * NODE_SIZE];
+        int size = 0;
+        stack[size++] = root();
+        while (size > 0) {
+            int node = stack[--size];
+            if (lon < boxes[node * 4] || lat < boxes[node * 4 + 1] || lon > boxes[node * 4 + 2] || lat > boxes[node * 4 + 3]) {
+                continue;
+            }
+
+            if (node < itemCount) {
+                consumer.accept(children[node]);
+                continue;
+            }
+
+            for (int child = children[node]; child < childrenEnd(node); child++) {
+                stack[size++] = child;
+            }
+        }
+    }
+
+    /**
+     * Visits the items in the order of their lower bounds until the bound of the next one
+     * exceeds the distance returned by the visitor by more than the tolerance.
+     */
+    void nearest(BoxDistance distance, double tolerance, ItemVisitor visitor) {
+        if (itemCount == 0) {
+            return;
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(Candidate::bound));
+        queue.add(new Candidate(lowerBound(distance, root()), root()));
+        double best = Double.MAX_VALUE;
+        while (!queue.isEmpty()) {
+            Candidate candidate = queue.poll();
+            if (candidate.bound() - tolerance > best) {
+                break;
+            }
+
+            int node = candidate.node();
+            if (node < itemCount) {
+                best = visitor.visit(children[node]);
+                continue;
+            }
+
+            for (int child = children[node]; child < childrenEnd(node); child++) {
+                double bound = lowerBound(distance, child);
+                if (bound - tolerance <= best) {
+                    queue.add(new Candidate(bound, child));
+                }
+            }
+        }
+    }
+
+    private double lowerBound(BoxDistance distance, int node) {
+        return distance.lowerBound(boxes[node * 4], boxes[node * 4 + 1], boxes[node * 4 + 2], boxes[node * 4 + 3]);
+    }
+}
@@ -0,0 +1,239 @@
+package globalquake.core.regions;
+
+import globalquake.utils.GeoUtils;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial index of a list of regions, so that lookups only touch the polygons near the point.
+ * <p>
+ * One tree holds the bounding boxes of all polygons, the other the boxes of runs of consecutive polygon vertices.
+ * Both lookups give the same results as going through the whole list: the first region in the list containing
+ * the point and the first of the closest vertices.
+ */
+final class RegionIndex {
+
+    private static final int VERTICES_PER_RUN = 32;
+
+    // kilometers, covers rounding in the distances and their bounds
+    private static final double TOLERANCE = 1e-3;
+
+    /**
+     * Distance of a polygon vertex from the query point.
+     */
+    interface Metric {
+        double distance(float lat, float lon);
+
+        /**
+         * @param angle central angle in radians
+         * @return the smallest distance of any vertex that is at least this angle away from the query point
+         */
+        double lowerBound(double angle);
+    }
+
+    record Vertex(Region region, float lat, float lon, double distance) {
+    }
+
+    private final List<Region> regions;
+
+    private final int[] pathRegions;
+    private final int[] pathNumbers;
+    private final PackedRTree pathTree;
+
+    private final int[] runRegions;
+    private final GQPolygon[] runPolygons;
+    private final int[] runStarts;
+    private final PackedRTree runTree;
+
+    RegionIndex(List<Region> regions) {
+        this.regions = List.copyOf(regions);
+
+        int pathCount = 0;
+        int runCount = 0;
+        for (Region region : this.regions) {
+            pathCount += region.paths().size();
+            for (GQPolygon polygon : region.raws()) {
+                runCount += (polygon.getSize() + VERTICES_PER_RUN - 1) / VERTICES_PER_RUN;
+            }
+        }
+
+        pathRegions = new int[pathCount];
+        pathNumbers = new int[pathCount];
+        double[][] pathBoxes = new double[4][pathCount];
+
+        runRegions = new int[runCount];
+        runPolygons = new GQPolygon[runCount];
+        runStarts = new int[runCount];
+        double[][] runBoxes = new double[4][runCount];
+
+        int path = 0;
+        int run = 0;
+        for (int r = 0; r < this.regions.size(); r++) {
+            Region region = this.regions.get(r);
+            for (int p = 0; p < region.paths().size(); p++, path++) {
+                Rectangle2D bounds = region.paths().get(p).getBounds2D();
+                pathRegions[path] = r;
+                pathNumbers[path] = p;
+                setBox(pathBoxes, path, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            }
+
+            for (GQPolygon polygon : region.raws()) {
+                for (int start = 0; start < polygon.getSize(); start += VERTICES_PER_RUN, run++) {
+                    double minLon = Double.POSITIVE_INFINITY;
+                    double minLat = Double.POSITIVE_INFINITY;
+                    double maxLon = Double.NEGATIVE_INFINITY;
+                    double maxLat = Double.NEGATIVE_INFINITY;
+                    for (int i = start; i < Math.min(polygon.getSize(), start + VERTICES_PER_RUN); i++) {
+                        minLon = Math.min(minLon, polygon.getLons()[i]);
+                        minLat = Math.min(minLat, polygon.getLats()[i]);
+                        maxLon = Math.max(maxLon, polygon.getLons()[i]);
+                        maxLat = Math.max(maxLat, polygon.getLats()[i]);
+                    }
+                    runRegions[run] = r;
+                    runPolygons[run] = polygon;
+                    runStarts[run] = start;
+                    setBox(runBoxes, run, minLon, minLat, maxLon, maxLat);
+                }
+            }
+        }
+
+        pathTree = new PackedRTree(pathBoxes[0], pathBoxes[1], pathBoxes[2], pathBoxes[3]);
+        runTree = new PackedRTree(runBoxes[0], runBoxes[1], runBoxes[2], runBoxes[3]);
+    }
+
+    private static void setBox(double[][] boxes, int i, double minLon, double minLat, double maxLon, double maxLat) {
+        boxes[0][i] = minLon;
+        boxes[1][i] = minLat;
+        boxes[2][i] = maxLon;
+        boxes[3][i] = maxLat;
+    }
+
+    int size() {
+        return regions.size();
+    }
+
+    /**
+     * @return the first region containing the point, or null
+     */
+    Region find(double lat, double lon) {
+        List<Integer> candidates = new ArrayList<>();
+        pathTree.search(lon, lat, candidates::add);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        // paths were added in the order of the list
+        candidates.sort(null);
+        Point2D.Double point = new Point2D.Double(lon, lat);
+        for (int path : candidates) {
+            Region region = regions.get(pathRegions[path]);
+            int number = pathNumbers[path];
+            if (region.bounds().get(number).contains(point) && region.paths().get(number).contains(point)) {
+                return region;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the closest polygon vertex, the first one in the list if several are equally close, or null if there are none
+     */
+    Vertex findClosestVertex(double lat, double lon, Metric metric) {
+        double[] best = {Double.MAX_VALUE};
+        int[] bestRun = {-1};
+        int[] bestVertex = {-1};
+
+        runTree.nearest((minLon, minLat, maxLon, maxLat) -> metric.lowerBound(angleToBox(lat, lon, minLon, minLat, maxLon, maxLat)),
+                TOLERANCE, run -> {
+                    GQPolygon polygon = runPolygons[run];
+                    int end = Math.min(polygon.getSize(), runStarts[run] + VERTICES_PER_RUN);
+                    for (int i = runStarts[run]; i < end; i++) {
+                        double dist = metric.distance(polygon.getLats()[i], polygon.getLons()[i]);
+                        if (dist < best[0] || (dist == best[0] && run < bestRun[0])) {
+                            best[0] = dist;
+                            bestRun[0] = run;
+                            bestVertex[0] = i;
+                        }
+                    }
+                    return best[0];
+                });
+
+        if (bestRun[0] == -1) {
+            return null;
+        }
+
+        GQPolygon polygon = runPolygons[bestRun[0]];
+        return new Vertex(regions.get(runRegions[bestRun[0]]), polygon.getLats()[bestVertex[0]],
+                polygon.getLons()[bestVertex[0]], best[0]);
+    }
+
+    /**
+     * @return lower bound of the central angle in radians between the point and any point of the box
+     */
+    static double angleToBox(double lat, double lon, double minLon, double minLat, double maxLon, double maxLat) {
+        double latGap = Math.toRadians(Math.max(0, Math.max(minLat - lat, lat - maxLat)));
+
+        double width = maxLon - minLon;
+        double lonGap = 0;
+        if (width < 360) {
+            double offset = ((lon - minLon) % 360 + 360) % 360;
+            if (offset > width) {
+                lonGap = Math.toRadians(Math.min(offset - width, 360 - offset));
+            }
+        }
+
+        // distance to the closest meridian of the box, past a quarter of the globe the pole is the closest
+        double meridianGap = lonGap >= Math.PI / 2 ? Math.PI / 2 - Math.toRadians(Math.abs(lat))
+                : Math.asin(Math.min(1, Math.cos(Math.toRadians(lat)) * Math.sin(lonGap)));
+
+        return Math.max(latGap, meridianGap);
+    }
+
+    static Metric greatCircle(double lat, double lon) {
+        return new Metric() {
+            @Override
+            public double distance(float pLat, float pLon) {
+                return GeoUtils.greatCircleDistance(pLat, pLon, lat, lon);
+            }
+
+            @Override
+            public double lowerBound(double angle) {
+                return angle * GeoUtils.EARTH_RADIUS;
+            }
+        };
+    }
+
+    /**
+     * Straight line from the point at the given depth to the vertices at the surface.
+     */
+    static Metric geological(double lat, double lon, double depth) {
+        return new Metric() {
+            @Override
+            public double distance(float pLat, float pLon) {
+                return GeoUtils.geologicalDistance(lat, lon, -depth, pLat, pLon, 0);
+            }
+
+            @Override
+            public double lowerBound(double angle) {
+                return geologicalDistance(depth, angle);
+            }
+        };
+    }
+
+    /**
+     * @param angle central angle in radians
+     * @return straight line distance from a point at the given depth to a surface point at the given angle from it
+     */
+    static double geologicalDistance(double depth, double angle) {
+        double radius = GeoUtils.EARTH_RADIUS - depth;
+        if (radius <= 0) {
+            return 0;
+        }
+        double r = GeoUtils.EARTH_RADIUS;
+        return Math.sqrt(Math.max(0, radius * radius + r * r - 2 * radius * r * Math.cos(angle)));
+    }
+}
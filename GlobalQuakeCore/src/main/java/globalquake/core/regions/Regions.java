@@ -8,15 +8,19 @@ import org.json.JSONObject;
 import org.tinylog.Logger;
 
 import java.awt.geom.Path2D;
-import java.awt.geom.Point2D;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -57,6 +61,12 @@ public class Regions {
     private static final List<Region> regionSearchHD = new ArrayList<>();
     private static HashMap<String, Double> shorelineLookup;
 
+    // copied on write, looked up by identity of the lists
+    private static volatile Map<List<Region>, RegionIndex> indexes = new IdentityHashMap<>();
+
+    private static volatile CoastRaster coastRasterHD;
+    private static volatile CoastRaster coastRasterUHD;
+
 
     public static void init() throws IOException {
         parseGeoJson("polygons/countriesMD.json", raw_polygonsMD, regionsMD, NONE);
@@ -76,9 +86,50 @@ public class Regions {
             regionSearchHD.addAll(list);
         }
 
+        for(List<Region> list : List.of(regionsMD, regionsHD, regionsUHD, regionSearchHD)){
+            getIndex(list);
+        }
+
+        coastRasterHD = loadCoastRaster(CoastRaster.FILE_NAME_HD, regionsHD);
+        coastRasterUHD = loadCoastRaster(CoastRaster.FILE_NAME_UHD, regionsUHD);
+
         //loadLookupTable();
     }
 
+    /**
+     * Loads the raster generated during the build, memory-mapped when it is a plain file.
+     *
+     * @return the raster, or null if there is none or it was made from different polygons
+     */
+    private static CoastRaster loadCoastRaster(String name, List<Region> regions) {
+        URL url = ClassLoader.getSystemClassLoader().getResource("lookup/" + name);
+        if (url == null) {
+            Logger.warn("未找到海岸栅格 %s, 将直接使用地区界".formatted(name));
+            return null;
+        }
+
+        try {
+            CoastRaster raster;
+            if ("file".equals(url.getProtocol())) {
+                raster = CoastRaster.map(Path.of(url.toURI()));
+            } else {
+                try (InputStream in = url.openStream()) {
+                    raster = CoastRaster.read(in);
+                }
+            }
+
+            if (raster.getFingerprint() != CoastRaster.fingerprint(regions)) {
+                Logger.warn("海岸栅格 %s 与地区界不符, 将直接使用地区界".formatted(name));
+                return null;
+            }
+
+            return raster;
+        } catch (IOException | URISyntaxException | InvalidPathException e) {
+            Logger.error(e);
+            return null;
+        }
+    }
+
     @SuppressWarnings("unused")
     private static void loadLookupTable() throws IOException {
     shorelineLookup = LookupTableIO.importLookupTableFromFile();
@@ -127,67 +178,70 @@ public class Regions {
     }
 
     public static double getOceanDistance(double lat, double lon, boolean gcd, double depth) {
-        double closestDistance = Double.MAX_VALUE;
-        Point2D.Double point = new Point2D.Double(lon, lat);
-        for (Region reg : regionsUHD) {
-            for(Path2D.Float path : reg.paths()){
-                if(path.contains(point)){
-                    return depth;
-                }
+        CoastRaster raster = coastRasterUHD;
+        if (raster != null) {
+            int type = raster.getType(lat, lon);
+            if (type == CoastRaster.LAND) {
+                return depth;
             }
-            for (GQPolygon polygon : reg.raws()) {
-                for(int i = 0; i < polygon.getSize(); i++) {
-                    double pLat = polygon.getLats()[i];
-                    double pLon = polygon.getLons()[i];
-                    double dist = gcd ? GeoUtils.greatCircleDistance(pLat, pLon, lat, lon) :
-                            GeoUtils.geologicalDistance(lat, lon, -depth, pLat, pLon, 0);
-                    if (dist < closestDistance) {
-                        closestDistance = dist;
-                    }
-                }
+
+            // away from the coast the interpolated distance is close enough
+            double distance = raster.getCoastDistance(lat, lon);
+            if (!Double.isNaN(distance)) {
+                return gcd ? distance : RegionIndex.geologicalDistance(depth, distance / GeoUtils.EARTH_RADIUS);
             }
         }
 
-        return closestDistance;
+        RegionIndex index = getIndex(regionsUHD);
+        if (index.find(lat, lon) != null) {
+            return depth;
+        }
+
+        RegionIndex.Vertex closest = index.findClosestVertex(lat, lon,
+                gcd ? RegionIndex.greatCircle(lat, lon) : RegionIndex.geological(lat, lon, depth));
+        return closest == null ? Double.MAX_VALUE : closest.distance();
     }
 
     public static boolean isOcean(double lat, double lng, boolean uhd) {
+        CoastRaster raster = uhd ? coastRasterUHD : coastRasterHD;
+        if (raster != null) {
+            int type = raster.getType(lat, lng);
+            if (type != CoastRaster.COAST) {
+                return type == CoastRaster.OCEAN;
+            }
+        }
+
         return isOcean(lat, lng, uhd ? regionsUHD : regionsHD);
     }
 
-    @SuppressWarnings("SameParameterValue")
     private static boolean isOcean(double lat, double lng, List<Region> regions) {
-        Point2D.Double point = new Point2D.Double(lng, lat);
-        for (Region reg : regions) {
-            int i = 0;
-            for (Path2D.Float path : reg.paths()) {
-                if (reg.bounds().get(i).contains(point)) {
-                    if(path.contains(point)) {
-                        return false;
-                    }
-                }
-                i++;
-            }
-        }
-
-        return true;
+        return getIndex(regions).find(lat, lng) == null;
     }
 
     public static String getName(double lat, double lon, List<Region> regions){
-        Point2D.Double point = new Point2D.Double(lon, lat);
-        for (Region reg : regions) {
-            int i = 0;
-            for (Path2D.Float path : reg.paths()) {
-                if (reg.bounds().get(i).contains(point)) {
-                    if(path.contains(point)) {
-                        return reg.name();
-                    }
-                }
-                i++;
-            }
+        Region region = getIndex(regions).find(lat, lon);
+        return region == null ? null : region.name();
+    }
+
+    /**
+     * Returns the index of the list, building it on first use or when regions were added to the list since.
+     */
+    static RegionIndex getIndex(List<Region> regions) {
+        RegionIndex index = indexes.get(regions);
+        if (index != null && index.size() == regions.size()) {
+            return index;
         }
 
-        return null;
+        synchronized (Regions.class) {
+            index = indexes.get(regions);
+            if (index == null || index.size() != regions.size()) {
+                index = new RegionIndex(regions);
+                Map<List<Region>, RegionIndex> copy = new IdentityHashMap<>(indexes);
+                copy.put(regions, index);
+                indexes = copy;
+            }
+            return index;
+        }
     }
 
     public static String getExtendedName(double lat, double lon){
@@ -206,30 +260,13 @@ public class Regions {
             return extendedName;
         }
 
-        float closestLat = 0;
-        float closestLon = 0;
-        String closest = "Unknown";
-        double closestDistance = Double.MAX_VALUE;
-        for (Region reg : regionsMD) {
-            for (GQPolygon polygon : reg.raws()) {
-                for(int i = 0; i < polygon.getSize(); i++) {
-                    float pLat = polygon.getLats()[i];
-                    float pLon = polygon.getLons()[i];
-                    double dist = GeoUtils.greatCircleDistance(pLat, pLon, lat, lon);
-                    if (dist < closestDistance) {
-                        closestDistance = dist;
-                        closest = reg.name();
-                        closestLat = pLat;
-                        closestLon = pLon;
-                    }
-                }
-            }
-        }
-
-        String closestNameExtended = closest;
+        RegionIndex.Vertex closest = getIndex(regionsMD).findClosestVertex(lat, lon, RegionIndex.greatCircle(lat, lon));
+        double closestDistance = closest == null ? Double.MAX_VALUE : closest.distance();
+        String closestName = closest == null ? "Unknown" : closest.region().name();
+        String closestNameExtended = closestName;
 
-        if(closestDistance != Double.MAX_VALUE) {
-            String closestExtended = getExtendedName(closestLat, closestLon);
+        if(closest != null) {
+            String closestExtended = getExtendedName(closest.lat(), closest.lon());
             if(closestExtended != null){
                 closestNameExtended = closestExtended;
             }
@@ -239,7 +276,7 @@ public class Regions {
         if (closestDistance < 200) {
             name = closestNameExtended + "的海岸附近 ";
         } else if (closestDistance < 1500) {
-            name = closest + "近海";
+            name = closestName + "近海";
         } else {
             name = "在无人之地的中央";
         }
@@ -253,22 +290,8 @@ public class Regions {
             return 0;
         }
 
-        double closestDistance = Double.MAX_VALUE;
-        for (Region reg : regionsMD) {
-            for (GQPolygon polygon : reg.raws()) {
-                for(int i = 0; i < polygon.getSize(); i++) {
-                    float pLat = polygon.getLats()[i];
-                    float pLon = polygon.getLons()[i];
-                    double dist = GeoUtils.greatCircleDistance(pLat, pLon, lat, lon);
-                    if (dist < closestDistance) {
-                        closestDistance = dist;
-                    }
-                }
-            }
-        }
-
-
-        return closestDistance;
+        RegionIndex.Vertex closest = getIndex(regionsMD).findClosestVertex(lat, lon, RegionIndex.greatCircle(lat, lon));
+        return closest == null ? Double.MAX_VALUE : closest.distance();
     }
 
     public static HashMap<String, Double> generateLookupTable(double minLat, double maxLat, double minLon, double maxLon) {
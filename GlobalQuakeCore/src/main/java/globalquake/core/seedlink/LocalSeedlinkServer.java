@@ -0,0 +1,759 @@
+package globalquake.core.seedlink;
+
+import edu.sc.seis.seisFile.mseed.Blockette1000;
+import edu.sc.seis.seisFile.mseed.Btime;
+import edu.sc.seis.seisFile.mseed.DataHeader;
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.seisFile.seedlink.SeedlinkPacket;
+import edu.sc.seis.seisFile.seedlink.SeedlinkReader;
+import globalquake.core.analysis.WaveformTransformator;
+import globalquake.core.database.Network;
+import globalquake.core.database.SeedlinkNetwork;
+import globalquake.core.database.Station;
+import globalquake.core.database.StationDatabase;
+import globalquake.core.database.StationSource;
+import globalquake.core.training.MiniseedWaveformTraining;
+import gqserver.api.packets.station.InputType;
+import org.apache.commons.cli.*;
+import org.tinylog.Logger;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small in-process Seedlink server for load testing the ingest without touching real networks.
+ * <p>
+ * It speaks the part of SeedLink 3.1 that {@link SeedlinkNetworksReader} and
+ * {@link globalquake.core.database.SeedlinkCommunicator} use: HELLO, INFO, STATION, SELECT, DATA, END and BYE.
+ * Every stream produces 512 byte INT32 records in real time. The samples are either synthetic or looped from
+ * miniSEED files and depend only on the absolute time, so a client that reconnects continues where the data is now,
+ * just like with a real server. Connections can be dropped on purpose to exercise the reconnect logic.
+ */
+public class LocalSeedlinkServer implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 512;
+    public static final int PACKET_SIZE = RECORD_SIZE + 8;
+
+    // fixed data header (48 bytes) + blockette 1000 (8 bytes), data starts at 64
+    private static final int DATA_OFFSET = 64;
+    public static final int SAMPLES_PER_RECORD = (RECORD_SIZE - DATA_OFFSET) / Integer.BYTES;
+    private static final int INFO_CHUNK_SIZE = RECORD_SIZE - DATA_OFFSET;
+
+    private static final byte ENCODING_ASCII = 0;
+    private static final byte ENCODING_INT32 = 3;
+    private static final byte RECORD_LENGTH_512 = 9;
+
+    public static final int MAX_STATIONS = 26 * 1000;
+
+    private static final DateTimeFormatter INFO_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss.SSSS")
+            .withZone(ZoneOffset.UTC);
+
+    /**
+     * @param stations number of served stations, named XA.S000 ... XZ.S999
+     * @param channels channel codes served by every station, e.g. HHZ or 00HHZ
+     * @param sampleRate sample rate of the synthetic streams, file-backed streams keep their own
+     * @param backfillSeconds how much past data is sent right after the handshake
+     * @param disconnectIntervalSeconds mean lifetime of a streaming connection, 0 = never disconnect
+     * @param waveformFiles miniSEED files or directories looped instead of synthetic data, empty = synthetic
+     * @param seed seed of the synthetic waveforms and station coordinates
+     */
+    public record ServerOptions(int stations, List<String> channels, double sampleRate, double backfillSeconds,
+                                double disconnectIntervalSeconds, List<Path> waveformFiles, long seed) {
+
+        public static ServerOptions synthetic(int stations, double sampleRate) {
+            return new ServerOptions(stations, List.of("HHZ"), sampleRate, 10, 0, List.of(), 0);
+        }
+    }
+
+    public record StreamId(String network, String station, String location, String channel) {
+
+        public String selector() {
+            return location + channel;
+        }
+    }
+
+    private interface Waveform {
+        int sample(long index);
+    }
+
+    private record ServedStream(StreamId id, double sampleRate, Waveform waveform) {
+    }
+
+    private record ServedStation(String network, String station, double lat, double lon, List<ServedStream> streams) {
+    }
+
+    private final ServerOptions options;
+    private final List<ServedStation> stations = new ArrayList<>();
+    private final Map<String, ServedStation> stationMap = new HashMap<>();
+
+    // sample index 0 of every stream, all record boundaries are aligned to it
+    private final long epochMillis;
+
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong inducedDisconnects = new AtomicLong();
+
+    private final Set<Socket> activeSockets = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket;
+    private ExecutorService clientService;
+
+    public LocalSeedlinkServer(ServerOptions options) throws IOException {
+        if (options.stations() < 1 || options.stations() > MAX_STATIONS) {
+            throw new IllegalArgumentException("台站数量必须在 1 到 %d 之间".formatted(MAX_STATIONS));
+        }
+        if (options.channels().isEmpty() || options.sampleRate() <= 0 ||
+                options.channels().stream().anyMatch(code -> code.length() < 3 || code.length() > 5)) {
+            throw new IllegalArgumentException("无效的Seedlink服务器参数: %s".formatted(options));
+        }
+
+        this.options = options;
+        this.epochMillis = Instant.now().minus(Duration.ofDays(1)).toEpochMilli() / 1000 * 1000;
+
+        List<ServedStream> templates = options.waveformFiles().isEmpty() ? List.of() : loadWaveforms(options.waveformFiles());
+        if (!options.waveformFiles().isEmpty() && templates.isEmpty()) {
+            throw new IOException("在 %s 中没有找到可用的波形".formatted(options.waveformFiles()));
+        }
+
+        Random random = new Random(options.seed());
+        int streamIndex = 0;
+        for (int i = 0; i < options.stations(); i++) {
+            String network = "X" + (char) ('A' + i / 1000);
+            String station = "S%03d".formatted(i % 1000);
+            double lat = Math.toDegrees(Math.asin(random.nextDouble() * 2.0 - 1.0));
+            double lon = random.nextDouble() * 360.0 - 180.0;
+
+            List<ServedStream> streams = new ArrayList<>();
+            for (String code : options.channels()) {
+                String location = code.length() > 3 ? code.substring(0, code.length() - 3) : "";
+                StreamId id = new StreamId(network, station, location, code.substring(code.length() - 3));
+                if (templates.isEmpty()) {
+                    streams.add(new ServedStream(id, options.sampleRate(), synthetic(random.nextLong(), options.sampleRate())));
+                } else {
+                    ServedStream template = templates.get(streamIndex % templates.size());
+                    streams.add(new ServedStream(id, template.sampleRate(), shifted(template.waveform(), random.nextInt(1 << 20))));
+                }
+                streamIndex++;
+            }
+
+            ServedStation servedStation = new ServedStation(network, station, lat, lon, streams);
+            stations.add(servedStation);
+            stationMap.put(stationKey(network, station), servedStation);
+        }
+    }
+
+    private static String stationKey(String network, String station) {
+        return "%s %s".formatted(network.trim().toUpperCase(), station.trim().toUpperCase());
+    }
+
+    /**
+     * Starts accepting clients on the loopback interface
+     *
+     * @param port port to listen on, 0 = any free port
+     * @return the actual port
+     */
+    public int start(int port) throws IOException {
+        return start(InetAddress.getLoopbackAddress().getHostAddress(), port);
+    }
+
+    public int start(String host, int port) throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.bind(new InetSocketAddress(host, port));
+        serverSocket = socket;
+
+        clientService = Executors.newCachedThreadPool();
+        clientService.submit(this::runAccept);
+
+        Logger.info("本地Seedlink服务器在 %s:%d 上运行, %d 个台站, %d 个数据流".formatted(
+                host, socket.getLocalPort(), stations.size(), getStreamCount()));
+        return socket.getLocalPort();
+    }
+
+    public int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    public int getStreamCount() {
+        return stations.stream().mapToInt(station -> station.streams().size()).sum();
+    }
+
+    public List<StreamId> getStreams() {
+        return stations.stream().flatMap(station -> station.streams().stream()).map(ServedStream::id).toList();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getInducedDisconnects() {
+        return inducedDisconnects.get();
+    }
+
+    public SeedlinkNetwork createSeedlinkNetwork(String name) {
+        return new SeedlinkNetwork(name, InetAddress.getLoopbackAddress().getHostAddress(), getPort());
+    }
+
+    /**
+     * Adds all served stations and channels to the database so that the availability check and the ingest pick them up
+     */
+    public void populate(StationDatabase stationDatabase, StationSource stationSource) {
+        stationDatabase.getDatabaseWriteLock().lock();
+        try {
+            for (ServedStation servedStation : stations) {
+                Network network = StationDatabase.getOrCreateNetwork(stationDatabase.getNetworks(), servedStation.network(), "本地Seedlink服务器");
+                Station station = StationDatabase.getOrCreateStation(network, servedStation.station(), "合成台站",
+                        servedStation.lat(), servedStation.lon(), 0);
+                for (ServedStream stream : servedStation.streams()) {
+                    StationDatabase.getOrCreateChannel(station, stream.id().channel(), stream.id().location(),
+                            servedStation.lat(), servedStation.lon(), 0, stream.sampleRate(), stationSource,
+                            WaveformTransformator.DEFAULT_SENSITIVITY, InputType.VELOCITY);
+                }
+            }
+        } finally {
+            stationDatabase.getDatabaseWriteLock().unlock();
+        }
+    }
+
+    private void runAccept() {
+        while (serverSocket != null && !serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                clientService.submit(() -> handleClient(socket));
+            } catch (IOException e) {
+                if (serverSocket != null && !serverSocket.isClosed()) {
+                    Logger.error(e);
+                }
+            }
+        }
+    }
+
+    private void handleClient(Socket socket) {
+        activeSockets.add(socket);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+
+            ServedStation currentStation = null;
+            List<String> selectors = new ArrayList<>();
+            List<ServedStream> selected = new ArrayList<>();
+
+            String line;
+            while ((line = readLine(in)) != null) {
+                String[] parts = line.trim().split("\\s+");
+                switch (parts[0].toUpperCase()) {
+                    case "HELLO" -> writeLine(out, "SeedLink v3.1 (GlobalQuake) :: SLPROTO:3.1\r\nGlobalQuake");
+                    case "INFO" -> sendInfo(out, parts.length > 1 ? parts[1].toUpperCase() : "ID");
+                    case "STATION" -> {
+                        currentStation = parts.length > 2 ? stationMap.get(stationKey(parts[2], parts[1])) : null;
+                        selectors.clear();
+                        writeLine(out, currentStation == null ? "ERROR" : "OK");
+                    }
+                    case "SELECT" -> {
+                        if (currentStation != null && parts.length > 1) {
+                            selectors.add(parts[1].toUpperCase());
+                        }
+                        writeLine(out, currentStation == null ? "ERROR" : "OK");
+                    }
+                    case "DATA", "FETCH", "TIME" -> {
+                        if (currentStation != null) {
+                            for (ServedStream stream : currentStation.streams()) {
+                                if ((selectors.isEmpty() || selectors.stream().anyMatch(selector -> matches(selector, stream.id())))
+                                        && !selected.contains(stream)) {
+                                    selected.add(stream);
+                                }
+                            }
+                        }
+                        writeLine(out, currentStation == null ? "ERROR" : "OK");
+                    }
+                    case "END" -> {
+                        stream(socket, out, selected);
+                        return;
+                    }
+                    case "BYE" -> {
+                        return;
+                    }
+                    default -> writeLine(out, "ERROR");
+                }
+            }
+        } catch (SocketException e) {
+            Logger.trace(e);
+        } catch (Exception e) {
+            Logger.error(e);
+        } finally {
+            activeSockets.remove(socket);
+        }
+    }
+
+    /**
+     * @param selector [LL]CCC[.T] with ? wildcards, a selector without a location matches any location
+     */
+    static boolean matches(String selector, StreamId id) {
+        int dot = selector.indexOf('.');
+        if (dot >= 0) {
+            String type = selector.substring(dot + 1);
+            if (!type.isEmpty() && !type.equals("D")) {
+                return false;
+            }
+            selector = selector.substring(0, dot);
+        }
+
+        if (selector.length() < 3) {
+            return false;
+        }
+
+        String channelPattern = selector.substring(selector.length() - 3);
+        String locationPattern = selector.substring(0, selector.length() - 3);
+        return wildcardMatches(channelPattern, id.channel()) &&
+                (locationPattern.isEmpty() || wildcardMatches(locationPattern, id.location()));
+    }
+
+    private static boolean wildcardMatches(String pattern, String value) {
+        if (pattern.length() != value.length()) {
+            // "--" is the usual way to select an empty location code
+            return value.isEmpty() && pattern.equals("--");
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) != '?' && pattern.charAt(i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                return null;
+            }
+            if (b == '\r' || b == '\n') {
+                if (!builder.isEmpty()) {
+                    return builder.toString();
+                }
+            } else {
+                builder.append((char) b);
+            }
+        }
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private void sendInfo(OutputStream out, String level) throws IOException, SeedFormatException {
+        String now = INFO_TIME_FORMAT.format(Instant.now());
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\"?>\n");
+        xml.append("<seedlink software=\"GlobalQuake LocalSeedlinkServer\" organization=\"GlobalQuake\" started=\"%s\">\n"
+                .formatted(INFO_TIME_FORMAT.format(Instant.ofEpochMilli(epochMillis))));
+        if (level.equals("STATIONS") || level.equals("STREAMS")) {
+            for (ServedStation station : stations) {
+                xml.append("<station name=\"%s\" network=\"%s\" description=\"synthetic\" begin_seq=\"000000\" end_seq=\"000000\" stream_check=\"enabled\"".formatted(
+                        station.station(), station.network()));
+                if (level.equals("STATIONS")) {
+                    xml.append("/>\n");
+                    continue;
+                }
+                xml.append(">\n");
+                for (ServedStream stream : station.streams()) {
+                    xml.append("<stream location=\"%s\" seedname=\"%s\" type=\"D\" begin_time=\"%s\" end_time=\"%s\" begin_recno=\"0\" end_recno=\"0\" gap_check=\"disabled\" gap_treshold=\"0\"/>\n".formatted(
+                            stream.id().location(), stream.id().channel(),
+                            INFO_TIME_FORMAT.format(Instant.ofEpochMilli(epochMillis)), now));
+                }
+                xml.append("</station>\n");
+            }
+        }
+        xml.append("</seedlink>\n");
+
+        byte[] bytes = xml.toString().getBytes(StandardCharsets.UTF_8);
+        for (int offset = 0; offset < bytes.length; offset += INFO_CHUNK_SIZE) {
+            int length = Math.min(INFO_CHUNK_SIZE, bytes.length - offset);
+            boolean last = offset + length >= bytes.length;
+
+            DataRecord record = new DataRecord(createHeader(0, "XX", "INFO", "", "LOG", Instant.now(), length, 0));
+            record.addBlockette(createBlockette(ENCODING_ASCII));
+            record.setData(Arrays.copyOfRange(bytes, offset, offset + length));
+
+            // "SLINFO *" = more INFO packets follow, "SLINFO  " = last one
+            writePacket(out, (last ? "SLINFO  " : "SLINFO *").getBytes(StandardCharsets.US_ASCII), record.toByteArray());
+        }
+        out.flush();
+    }
+
+    private static void writePacket(OutputStream out, byte[] header, byte[] record) throws IOException {
+        out.write(header);
+        out.write(record, 0, Math.min(record.length, RECORD_SIZE));
+        for (int i = record.length; i < RECORD_SIZE; i++) {
+            out.write(0);
+        }
+    }
+
+    private static DataHeader createHeader(int sequence, String network, String station, String location, String channel,
+                                           Instant start, int samples, double sampleRate) {
+        DataHeader header = new DataHeader(sequence % 1000000, 'D', false);
+        header.setNetworkCode(network);
+        header.setStationIdentifier(station);
+        header.setLocationIdentifier(location);
+        header.setChannelIdentifier(channel);
+        header.setStartBtime(new Btime(start));
+        header.setNumSamples((short) samples);
+        header.setSampleRate(sampleRate);
+        return header;
+    }
+
+    private static Blockette1000 createBlockette(byte encoding) {
+        Blockette1000 blockette = new Blockette1000();
+        blockette.setEncodingFormat(encoding);
+        blockette.setWordOrder(Blockette1000.SEED_BIG_ENDIAN);
+        blockette.setDataRecordLength(RECORD_LENGTH_512);
+        return blockette;
+    }
+
+    private static final class Cursor {
+        private final ServedStream stream;
+        private long nextIndex;
+        private long dueMillis;
+
+        private Cursor(ServedStream stream, long nextIndex, long epochMillis) {
+            this.stream = stream;
+            this.nextIndex = nextIndex;
+            updateDue(epochMillis);
+        }
+
+        private void updateDue(long epochMillis) {
+            // a record can be sent once its last sample exists
+            dueMillis = epochMillis + (long) Math.ceil((nextIndex + SAMPLES_PER_RECORD) * 1000.0 / stream.sampleRate());
+        }
+    }
+
+    private void stream(Socket socket, OutputStream out, List<ServedStream> selected) throws IOException, SeedFormatException, InterruptedException {
+        if (selected.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long disconnectAt = options.disconnectIntervalSeconds() > 0 ?
+                now + (long) (options.disconnectIntervalSeconds() * 1000.0 * (0.5 + ThreadLocalRandom.current().nextDouble())) :
+                Long.MAX_VALUE;
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(selected.size(), Comparator.comparingLong(cursor -> cursor.dueMillis));
+        for (ServedStream stream : selected) {
+            double start = (now - options.backfillSeconds() * 1000.0 - epochMillis) / 1000.0 * stream.sampleRate();
+            queue.add(new Cursor(stream, (long) (start / SAMPLES_PER_RECORD) * SAMPLES_PER_RECORD, epochMillis));
+        }
+
+        int sequence = 0;
+        byte[] sequenceHeader = new byte[8];
+        int[] samples = new int[SAMPLES_PER_RECORD];
+        ByteBuffer data = ByteBuffer.allocate(SAMPLES_PER_RECORD * Integer.BYTES);
+
+        while (!socket.isClosed()) {
+            now = System.currentTimeMillis();
+            if (now >= disconnectAt) {
+                inducedDisconnects.incrementAndGet();
+                // abortive close, the client sees a connection reset like with a crashed server
+                socket.setSoLinger(true, 0);
+                return;
+            }
+
+            Cursor cursor = queue.peek();
+            long wait = Objects.requireNonNull(cursor).dueMillis - now;
+            if (wait > 0) {
+                out.flush();
+                Thread.sleep(Math.min(wait, disconnectAt - now));
+                continue;
+            }
+
+            queue.poll();
+            ServedStream stream = cursor.stream;
+            for (int i = 0; i < SAMPLES_PER_RECORD; i++) {
+                samples[i] = stream.waveform().sample(cursor.nextIndex + i);
+            }
+            data.clear();
+            data.asIntBuffer().put(samples);
+
+            Instant start = Instant.ofEpochMilli(epochMillis).plusNanos(Math.round(cursor.nextIndex * 1e9 / stream.sampleRate()));
+            StreamId id = stream.id();
+            DataRecord record = new DataRecord(createHeader(sequence, id.network(), id.station(), id.location(), id.channel(),
+                    start, SAMPLES_PER_RECORD, stream.sampleRate()));
+            record.addBlockette(createBlockette(ENCODING_INT32));
+            record.setData(data.array());
+
+            System.arraycopy("SL%06X".formatted(sequence).getBytes(StandardCharsets.US_ASCII), 0, sequenceHeader, 0, 8);
+            writePacket(out, sequenceHeader, record.toByteArray());
+            packetsSent.incrementAndGet();
+            sequence = (sequence + 1) & 0xFFFFFF;
+
+            cursor.nextIndex += SAMPLES_PER_RECORD;
+            cursor.updateDue(epochMillis);
+            queue.add(cursor);
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Background noise plus two sines with a random frequency and phase, a pure function of the sample index
+     */
+    private static Waveform synthetic(long seed, double sampleRate) {
+        Random random = new Random(seed);
+        double f1 = 0.1 + random.nextDouble() * 0.4;
+        double f2 = 1.0 + random.nextDouble() * 4.0;
+        double p1 = random.nextDouble() * Math.PI * 2;
+        double p2 = random.nextDouble() * Math.PI * 2;
+        double a1 = 200 + random.nextDouble() * 800;
+        double a2 = 50 + random.nextDouble() * 200;
+        double noise = 100 + random.nextDouble() * 400;
+
+        return index -> {
+            double t = index / sampleRate;
+            double n = ((mix(seed ^ index * 0x9E3779B97F4A7C15L) >>> 11) * 0x1.0p-53 - 0.5) * 2.0 * noise;
+            return (int) (a1 * Math.sin(2 * Math.PI * f1 * t + p1) + a2 * Math.sin(2 * Math.PI * f2 * t + p2) + n);
+        };
+    }
+
+    private static Waveform shifted(Waveform waveform, long offset) {
+        return index -> waveform.sample(index + offset);
+    }
+
+    /**
+     * Decodes the records of every stream found in the files into one looped sample array
+     */
+    private static List<ServedStream> loadWaveforms(List<Path> inputs) throws IOException {
+        Map<String, List<DataRecord>> byStream = new TreeMap<>();
+        for (DataRecord record : MiniseedWaveformTraining.readRecords(inputs)) {
+            byStream.computeIfAbsent(record.getHeader().getCodes(), k -> new ArrayList<>()).add(record);
+        }
+
+        List<ServedStream> result = new ArrayList<>();
+        for (Map.Entry<String, List<DataRecord>> entry : byStream.entrySet()) {
+            List<DataRecord> records = entry.getValue();
+            records.sort(Comparator.comparing(record -> record.getStartBtime().toInstant()));
+
+            double sampleRate = records.get(0).getSampleRate();
+            int count = 0;
+            int[][] decoded = new int[records.size()][];
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    decoded[i] = records.get(i).decompress().getAsInt();
+                    count += decoded[i].length;
+                } catch (Exception e) {
+                    Logger.warn("无法解码 %s: %s".formatted(entry.getKey(), e.getMessage()));
+                    decoded[i] = new int[0];
+                }
+            }
+
+            if (count == 0 || sampleRate <= 0) {
+                continue;
+            }
+
+            int[] samples = new int[count];
+            int position = 0;
+            for (int[] part : decoded) {
+                System.arraycopy(part, 0, samples, position, part.length);
+                position += part.length;
+            }
+
+            Logger.debug("已加载波形 %s, %d 个样本 @ %.1f sps".formatted(entry.getKey(), count, sampleRate));
+            result.add(new ServedStream(null, sampleRate, index -> samples[(int) Math.floorMod(index, (long) samples.length)]));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        ServerSocket socket = serverSocket;
+        serverSocket = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Logger.error(e);
+            }
+        }
+
+        for (Socket client : activeSockets) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                Logger.trace(e);
+            }
+        }
+
+        if (clientService != null) {
+            clientService.shutdownNow();
+            try {
+                if (!clientService.awaitTermination(10, TimeUnit.SECONDS)) {
+                    Logger.error("无法终止本地Seedlink服务器!");
+                }
+            } catch (InterruptedException e) {
+                Logger.error(e);
+            }
+        }
+    }
+
+    /**
+     * Load generator client, connects the same way as {@link SeedlinkNetworksReader} does and reconnects when dropped
+     */
+    private static void runClient(String host, int port, List<StreamId> streams, AtomicLong received,
+                                  AtomicLong reconnects, AtomicLong handshakeMillis) {
+        while (!Thread.currentThread().isInterrupted()) {
+            SeedlinkReader reader = null;
+            try {
+                long start = System.currentTimeMillis();
+                reader = new SeedlinkReader(host, port, 90, false, 90);
+                reader.sendHello();
+                for (StreamId id : streams) {
+                    reader.selectData(id.network(), id.station(), List.of(id.selector()));
+                }
+                reader.endHandshake();
+                handshakeMillis.addAndGet(System.currentTimeMillis() - start);
+
+                while (reader.hasNext()) {
+                    SeedlinkPacket packet = reader.readPacket();
+                    packet.getMiniSeed();
+                    received.incrementAndGet();
+                }
+            } catch (Exception e) {
+                Logger.trace(e);
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+
+            reconnects.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options cliOptions = new Options();
+
+        Option stationsOption = new Option("n", "stations", true, "台站数量 (默认 1000)");
+        stationsOption.setRequired(false);
+        cliOptions.addOption(stationsOption);
+
+        Option channelsOption = new Option("c", "channels", true, "每个台站的通道, 用逗号分隔 (默认 HHZ)");
+        channelsOption.setRequired(false);
+        cliOptions.addOption(channelsOption);
+
+        Option rateOption = new Option("r", "rate", true, "合成数据的采样率 (默认 100)");
+        rateOption.setRequired(false);
+        cliOptions.addOption(rateOption);
+
+        Option backfillOption = new Option("b", "backfill", true, "握手后发送的历史数据秒数 (默认 10)");
+        backfillOption.setRequired(false);
+        cliOptions.addOption(backfillOption);
+
+        Option disconnectOption = new Option("d", "disconnect", true, "平均连接时长(秒), 之后服务器主动断开, 0 = 从不 (默认 0)");
+        disconnectOption.setRequired(false);
+        cliOptions.addOption(disconnectOption);
+
+        Option hostOption = new Option("h", "host", true, "监听地址 (默认 127.0.0.1)");
+        hostOption.setRequired(false);
+        cliOptions.addOption(hostOption);
+
+        Option portOption = new Option("p", "port", true, "监听端口 (默认 18000)");
+        portOption.setRequired(false);
+        cliOptions.addOption(portOption);
+
+        Option clientsOption = new Option("k", "clients", true, "进程内负载客户端数量, 0 = 只运行服务器 (默认 0)");
+        clientsOption.setRequired(false);
+        cliOptions.addOption(clientsOption);
+
+        Option durationOption = new Option("t", "time", true, "运行秒数, 0 = 一直运行 (默认 0)");
+        durationOption.setRequired(false);
+        cliOptions.addOption(durationOption);
+
+        CommandLine cmd;
+        try {
+            cmd = new BasicParser().parse(cliOptions, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("LocalSeedlinkServer [options] [miniSEED files or directories]", cliOptions);
+            System.exit(1);
+            return;
+        }
+
+        ServerOptions options = new ServerOptions(
+                Integer.parseInt(cmd.getOptionValue(stationsOption.getOpt(), "1000")),
+                Arrays.stream(cmd.getOptionValue(channelsOption.getOpt(), "HHZ").split(",")).map(String::trim).toList(),
+                Double.parseDouble(cmd.getOptionValue(rateOption.getOpt(), "100")),
+                Double.parseDouble(cmd.getOptionValue(backfillOption.getOpt(), "10")),
+                Double.parseDouble(cmd.getOptionValue(disconnectOption.getOpt(), "0")),
+                Arrays.stream(cmd.getArgs()).map(Path::of).toList(),
+                0);
+
+        int clients = Integer.parseInt(cmd.getOptionValue(clientsOption.getOpt(), "0"));
+        long duration = Long.parseLong(cmd.getOptionValue(durationOption.getOpt(), "0"));
+        String host = cmd.getOptionValue(hostOption.getOpt(), "127.0.0.1");
+
+        LocalSeedlinkServer server = new LocalSeedlinkServer(options);
+        int port = server.start(host, Integer.parseInt(cmd.getOptionValue(portOption.getOpt(), "18000")));
+
+        AtomicLong received = new AtomicLong();
+        AtomicLong reconnects = new AtomicLong();
+        AtomicLong handshakeMillis = new AtomicLong();
+        ExecutorService clientService = Executors.newCachedThreadPool();
+
+        List<StreamId> streams = server.getStreams();
+        for (int i = 0; i < clients; i++) {
+            // every client takes its own slice of the streams, like one seedlink network each
+            List<StreamId> part = streams.subList(i * streams.size() / clients, (i + 1) * streams.size() / clients);
+            clientService.submit(() -> runClient(host, port, part, received, reconnects, handshakeMillis));
+        }
+
+        long start = System.currentTimeMillis();
+        long lastSent = 0;
+        long lastReceived = 0;
+        while (duration <= 0 || System.currentTimeMillis() - start < duration * 1000) {
+            Thread.sleep(5000);
+            long sent = server.getPacketsSent();
+            long got = received.get();
+            System.out.printf("数据流: %d, 连接: %d, 主动断开: %d, 发送: %.0f 包/秒, 接收: %.0f 包/秒, 客户端重连: %d, 握手总耗时: %d ms%n",
+                    server.getStreamCount(), server.getConnections(), server.getInducedDisconnects(),
+                    (sent - lastSent) / 5.0, (got - lastReceived) / 5.0, reconnects.get(), handshakeMillis.get());
+            lastSent = sent;
+            lastReceived = got;
+        }
+
+        clientService.shutdownNow();
+        server.close();
+        System.exit(0);
+    }
+}
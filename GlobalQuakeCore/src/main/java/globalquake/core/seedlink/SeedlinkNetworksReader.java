@@ -2,17 +2,21 @@ package globalquake.core.seedlink;
 
 import edu.sc.seis.seisFile.mseed.DataRecord;
 import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.seisFile.mseed.SeedRecord;
 import edu.sc.seis.seisFile.seedlink.SeedlinkException;
 import edu.sc.seis.seisFile.seedlink.SeedlinkPacket;
 import edu.sc.seis.seisFile.seedlink.SeedlinkReader;
 import globalquake.core.GlobalQuake;
+import globalquake.core.Settings;
 import globalquake.core.database.SeedlinkNetwork;
 import globalquake.core.database.SeedlinkStatus;
 import globalquake.core.station.AbstractStation;
 import globalquake.core.station.GlobalStation;
 import org.tinylog.Logger;
 
+import java.io.IOException;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -28,6 +32,8 @@ public class SeedlinkNetworksReader {
 
         private ExecutorService seedlinkReaderService;
 
+        private SeedlinkSelectorReader selectorReader;
+
         private final Queue<SeedlinkReader> activeReaders = new ConcurrentLinkedQueue<>();
 
         public static void main(String[] args) throws Exception {
@@ -56,6 +62,16 @@ public class SeedlinkNetworksReader {
 
         public void run() {
             createCache();
+            if (Settings.selectorSeedlinkReader) {
+                try {
+                    runSelectorReader();
+                    return;
+                } catch (IOException e) {
+                    Logger.error("无法启动非阻塞seedlink读取器,将使用普通读取器");
+                    Logger.error(e);
+                }
+            }
+
             seedlinkReaderService = Executors.newCachedThreadPool();
             GlobalQuake.instance.getStationDatabaseManager().getStationDatabase().getDatabaseReadLock().lock();
 
@@ -67,14 +83,39 @@ public class SeedlinkNetworksReader {
             }
         }
 
-        private final Map<String, GlobalStation> stationCache = new HashMap<>();
+        private void runSelectorReader() throws IOException {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            selectorReader = new SeedlinkSelectorReader(threads, this::newPacket, RECONNECT_DELAY, SEEDLINK_TIMEOUT);
+
+            GlobalQuake.instance.getStationDatabaseManager().getStationDatabase().getDatabaseReadLock().lock();
+            try {
+                for (SeedlinkNetwork seedlinkNetwork : GlobalQuake.instance.getStationDatabaseManager().getStationDatabase().getSeedlinkNetworks()) {
+                    List<AbstractStation> stations = new ArrayList<>();
+                    for (AbstractStation station : GlobalQuake.instance.getStationManager().getStations()) {
+                        if (station.getSeedlinkNetwork() != null && station.getSeedlinkNetwork().equals(seedlinkNetwork)) {
+                            stations.add(station);
+                        }
+                    }
+                    selectorReader.add(seedlinkNetwork, stations);
+                }
+            } finally {
+                GlobalQuake.instance.getStationDatabaseManager().getStationDatabase().getDatabaseReadLock().unlock();
+            }
+
+            selectorReader.start();
+            Logger.info("非阻塞seedlink读取器已启动,使用%d个线程".formatted(threads));
+        }
+
+        private StationLookup stationLookup = new StationLookup(List.of());
 
         private void createCache() {
+            List<GlobalStation> stations = new ArrayList<>();
             for (AbstractStation s : GlobalQuake.instance.getStationManager().getStations()) {
                 if (s instanceof GlobalStation) {
-                    stationCache.put("%s %s".formatted(s.getNetworkCode(), s.getStationCode()), (GlobalStation) s);
+                    stations.add((GlobalStation) s);
                 }
             }
+            stationLookup = new StationLookup(stations);
         }
 
         private void runSeedlinkThread(SeedlinkNetwork seedlinkNetwork, int reconnectDelay) {
@@ -123,7 +164,7 @@ public class SeedlinkNetworksReader {
                 while (reader.hasNext()) {
                     SeedlinkPacket slp = reader.readPacket();
                     try {
-                        newPacket(slp.getMiniSeed());
+                        newPacket(slp.getMseedBytes(), 0);
                     } catch (SocketException | SeedFormatException se) {
                         Logger.trace(se);
                     } catch (Exception e) {
@@ -163,22 +204,38 @@ public class SeedlinkNetworksReader {
             seedlinkReaderService.submit(() -> runSeedlinkThread(seedlinkNetwork, finalReconnectDelay));
         }
 
-        private void newPacket(DataRecord dr) {
+        /**
+         * The station is found from the raw header bytes, records of stations that were never selected are not parsed at all
+         * @param offset start of the miniSEED record in the buffer
+         */
+        private void newPacket(byte[] buffer, int offset) throws IOException, SeedFormatException {
+            GlobalStation globalStation = stationLookup.find(buffer, offset);
+            if (globalStation == null) {
+                Logger.trace("Seedlink发送了数据给 %s %s,但那从未被选择过!".formatted(
+                        new String(buffer, offset + StationLookup.NETWORK_OFFSET, 2, StandardCharsets.US_ASCII).trim(),
+                        new String(buffer, offset + StationLookup.STATION_OFFSET, 5, StandardCharsets.US_ASCII).trim()));
+                return;
+            }
+
+            byte[] record = offset == 0 && buffer.length == SeedlinkSelectorReader.RECORD_SIZE ? buffer :
+                    Arrays.copyOfRange(buffer, offset, offset + SeedlinkSelectorReader.RECORD_SIZE);
+            if (!(SeedRecord.read(record) instanceof DataRecord dr)) {
+                return;
+            }
+
             if (lastData == null || dr.getLastSampleBtime().toInstant().isAfter(lastData)) {
                 lastData = dr.getLastSampleBtime().toInstant();
             }
 
-            String network = dr.getHeader().getNetworkCode().replaceAll(" ", "");
-            String station = dr.getHeader().getStationIdentifier().replaceAll(" ", "");
-            var globalStation = stationCache.get("%s %s".formatted(network, station));
-            if (globalStation == null) {
-                Logger.trace("Seedlink发送了数据给 %s %s,但那从未被选择过!".formatted(network, station));
-            } else {
-                globalStation.addRecord(dr);
-            }
+            globalStation.addRecord(dr);
         }
 
         public void stop() {
+            if (selectorReader != null) {
+                selectorReader.close();
+                selectorReader = null;
+            }
+
             if (seedlinkReaderService != null) {
                 seedlinkReaderService.shutdownNow();
                 for (Iterator<SeedlinkReader> iterator = activeReaders.iterator(); iterator.hasNext(); ) {
@@ -194,7 +251,7 @@ public class SeedlinkNetworksReader {
                     Logger.error(e);
                 }
             }
-            stationCache.clear();
+            stationLookup = new StationLookup(List.of());
         }
 
     }
\ No newline at end of file
@@ -0,0 +1,472 @@
+package globalquake.core.seedlink;
+
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import globalquake.core.database.SeedlinkNetwork;
+import globalquake.core.database.SeedlinkStatus;
+import globalquake.core.station.AbstractStation;
+import org.tinylog.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking alternative to running one {@link edu.sc.seis.seisFile.seedlink.SeedlinkReader} thread per network.
+ * A few threads each run a selector over a share of the Seedlink networks, the handshake is a small state machine
+ * and in the data phase the packets are handed over straight from the socket buffer.
+ * <p>
+ * The behaviour follows the blocking reader: stations are selected one by one with STATION, SELECT and DATA,
+ * the network is reset when more than 10% of the stations fail and it reconnects with an increasing delay.
+ */
+final class SeedlinkSelectorReader implements Closeable {
+
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 512;
+    static final int PACKET_SIZE = HEADER_SIZE + RECORD_SIZE;
+
+    private static final int READ_BUFFER_PACKETS = 32;
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final long SWEEP_INTERVAL = 1000;
+
+    interface RecordConsumer {
+        /**
+         * @param offset start of the 512 byte miniSEED record in the buffer, the buffer is reused after the call returns
+         */
+        void accept(byte[] buffer, int offset) throws Exception;
+    }
+
+    private enum State {
+        RESOLVING, CONNECTING, HELLO, SELECTING, STREAMING, WAITING, STOPPED
+    }
+
+    private final List<Loop> loops = new ArrayList<>();
+    private final ExecutorService resolverService = Executors.newSingleThreadExecutor();
+    private final RecordConsumer consumer;
+    private int nextLoop;
+    private final int reconnectDelay;
+    private final long timeout;
+
+    /**
+     * @param timeout seconds without any data after which the connection is reset
+     */
+    SeedlinkSelectorReader(int threads, RecordConsumer consumer, int reconnectDelay, int timeout) throws IOException {
+        this.consumer = consumer;
+        this.reconnectDelay = reconnectDelay;
+        this.timeout = timeout * 1000L;
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops.add(new Loop(i));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    void start() {
+        loops.forEach(loop -> loop.thread.start());
+    }
+
+    /**
+     * Networks are spread over the threads evenly, each connection stays on its thread
+     */
+    void add(SeedlinkNetwork seedlinkNetwork, List<AbstractStation> stations) {
+        Loop loop = loops.get(nextLoop++ % loops.size());
+        Connection connection = new Connection(loop, seedlinkNetwork, stations);
+        loop.execute(() -> {
+            loop.connections.add(connection);
+            connection.connect();
+        });
+    }
+
+    @Override
+    public void close() {
+        resolverService.shutdownNow();
+        for (Loop loop : loops) {
+            loop.execute(loop::shutdown);
+        }
+        for (Loop loop : loops) {
+            try {
+                loop.thread.join(10 * 1000);
+            } catch (InterruptedException e) {
+                Logger.error(e);
+            }
+            if (loop.thread.isAlive()) {
+                Logger.error("无法终止seedlink读取线程!");
+            }
+        }
+    }
+
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final List<Connection> connections = new ArrayList<>();
+
+        private Loop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "Seedlink Reader #%d".formatted(index));
+        }
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.currentTimeMillis();
+            try {
+                while (selector.isOpen()) {
+                    selector.select(SWEEP_INTERVAL);
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    if (!selector.isOpen()) {
+                        break;
+                    }
+
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        ((Connection) key.attachment()).handle(key);
+                    }
+                    selector.selectedKeys().clear();
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= SWEEP_INTERVAL) {
+                        for (Connection connection : new ArrayList<>(connections)) {
+                            connection.sweep(now);
+                        }
+                        lastSweep = now;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                Logger.trace(e);
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            for (Connection connection : connections) {
+                connection.stop();
+            }
+            connections.clear();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Logger.trace(e);
+            }
+        }
+    }
+
+    private final class Connection {
+        private final Loop loop;
+        private final SeedlinkNetwork seedlinkNetwork;
+        private final List<AbstractStation> stations;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(PACKET_SIZE * READ_BUFFER_PACKETS);
+
+        private State state = State.WAITING;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer writeBuffer;
+        private long lastActivity;
+        private long reconnectAt;
+        private int currentReconnectDelay;
+        private int attempt;
+
+        private int helloLines;
+        private int stationIndex;
+        private int command;
+        private int errors;
+
+        private Connection(Loop loop, SeedlinkNetwork seedlinkNetwork, List<AbstractStation> stations) {
+            this.loop = loop;
+            this.seedlinkNetwork = seedlinkNetwork;
+            this.stations = stations;
+            this.currentReconnectDelay = reconnectDelay;
+        }
+
+        private void connect() {
+            seedlinkNetwork.status = SeedlinkStatus.CONNECTING;
+            seedlinkNetwork.connectedStations = 0;
+            Logger.info("连接到seedlink服务器 \"" + seedlinkNetwork.getName() + "\"");
+
+            // name resolution blocks, it must not stall the other connections of this thread
+            state = State.RESOLVING;
+            lastActivity = System.currentTimeMillis();
+            int currentAttempt = ++attempt;
+            try {
+                resolverService.submit(() -> {
+                    InetSocketAddress address = new InetSocketAddress(seedlinkNetwork.getHost(), seedlinkNetwork.getPort());
+                    loop.execute(() -> open(address, currentAttempt));
+                });
+            } catch (RejectedExecutionException e) {
+                state = State.STOPPED;
+            }
+        }
+
+        private void open(InetSocketAddress address, int resolvedAttempt) {
+            if (state != State.RESOLVING || resolvedAttempt != attempt) {
+                return;
+            }
+
+            try {
+                if (address.isUnresolved()) {
+                    throw new IOException("无法解析主机 %s".formatted(address.getHostString()));
+                }
+
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                state = State.CONNECTING;
+                lastActivity = System.currentTimeMillis();
+                if (channel.connect(address)) {
+                    key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+                    connected();
+                } else {
+                    key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                disconnect(e.getMessage());
+            }
+        }
+
+        private void connected() throws IOException {
+            currentReconnectDelay = reconnectDelay; // 如果连接成功,则重置延迟
+            errors = 0;
+            stationIndex = -1;
+            helloLines = 2;
+            readBuffer.clear();
+            state = State.HELLO;
+            send("HELLO");
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    connected();
+                    return;
+                }
+
+                if (key.isWritable()) {
+                    flush();
+                }
+
+                if (key.isValid() && key.isReadable()) {
+                    read();
+                }
+            } catch (Exception e) {
+                disconnect(e.getMessage() == null ? e.toString() : e.getMessage());
+            }
+        }
+
+        private void read() throws Exception {
+            int count = channel.read(readBuffer);
+            if (count == -1) {
+                disconnect(null);
+                return;
+            }
+            lastActivity = System.currentTimeMillis();
+            readBuffer.flip();
+
+            while (state == State.HELLO || state == State.SELECTING) {
+                String line = readLine();
+                if (line == null) {
+                    break;
+                }
+                onLine(line);
+            }
+
+            if (state == State.STREAMING) {
+                readPackets();
+            }
+
+            // an incomplete packet or line stays for the next read
+            readBuffer.compact();
+        }
+
+        private String readLine() throws IOException {
+            int start = readBuffer.position();
+            for (int i = start; i < readBuffer.limit(); i++) {
+                if (readBuffer.get(i) == '\n') {
+                    readBuffer.position(i + 1);
+                    return new String(readBuffer.array(), start, i - start, StandardCharsets.US_ASCII).trim();
+                }
+            }
+
+            if (readBuffer.remaining() > MAX_LINE_LENGTH) {
+                throw new IOException("Seedlink response line too long");
+            }
+            return null;
+        }
+
+        private void onLine(String line) throws IOException {
+            if (state == State.HELLO) {
+                if (--helloLines == 0) {
+                    state = State.SELECTING;
+                    nextStation();
+                }
+                return;
+            }
+
+            AbstractStation station = stations.get(stationIndex);
+            if (!line.equals("OK")) {
+                Logger.warn("无法连接到 %s %s %s %s [%s]!".formatted(station.getStationCode(), station.getNetworkCode(), station.getChannelName(), station.getLocationCode(), seedlinkNetwork.getName()));
+                errors++;
+                if (errors > seedlinkNetwork.selectedStations * 0.1) {
+                    Logger.warn("seedlink网络 %s 中错误太多,正在重置!".formatted(seedlinkNetwork.getName()));
+                    throw new IOException(line);
+                }
+                nextStation();
+                return;
+            }
+
+            command++;
+            switch (command) {
+                case 1 -> send("SELECT %s%s.D".formatted(station.getLocationCode(), station.getChannelName()));
+                case 2 -> send("DATA");
+                default -> {
+                    seedlinkNetwork.connectedStations++;
+                    nextStation();
+                }
+            }
+        }
+
+        private void nextStation() throws IOException {
+            stationIndex++;
+            command = 0;
+            if (stationIndex < stations.size()) {
+                AbstractStation station = stations.get(stationIndex);
+                Logger.trace("连接到 %s %s %s %s [%s]".formatted(station.getStationCode(), station.getNetworkCode(), station.getChannelName(), station.getLocationCode(), seedlinkNetwork.getName()));
+                send("STATION %s %s".formatted(station.getStationCode(), station.getNetworkCode()));
+                return;
+            }
+
+            if (seedlinkNetwork.connectedStations == 0) {
+                Logger.info("没有台站连接到 " + seedlinkNetwork.getName());
+                stop();
+                return;
+            }
+
+            send("END");
+            state = State.STREAMING;
+            seedlinkNetwork.status = SeedlinkStatus.RUNNING;
+        }
+
+        private void readPackets() throws IOException {
+            byte[] array = readBuffer.array();
+            while (readBuffer.remaining() >= PACKET_SIZE) {
+                int offset = readBuffer.position();
+                if (array[offset] != 'S' || array[offset + 1] != 'L') {
+                    throw new IOException("Invalid Seedlink packet header");
+                }
+
+                readBuffer.position(offset + PACKET_SIZE);
+                if (array[offset + 2] == 'I' && array[offset + 3] == 'N' && array[offset + 4] == 'F' && array[offset + 5] == 'O') {
+                    continue;
+                }
+
+                try {
+                    consumer.accept(array, offset + HEADER_SIZE);
+                } catch (SeedFormatException e) {
+                    Logger.trace(e);
+                } catch (Exception e) {
+                    Logger.error(e);
+                }
+            }
+        }
+
+        private void send(String command) throws IOException {
+            writeBuffer = ByteBuffer.wrap((command + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            flush();
+        }
+
+        private void flush() throws IOException {
+            if (writeBuffer != null) {
+                channel.write(writeBuffer);
+                if (!writeBuffer.hasRemaining()) {
+                    writeBuffer = null;
+                }
+            }
+
+            if (key.isValid()) {
+                key.interestOps(writeBuffer == null ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void sweep(long now) {
+            switch (state) {
+                case RESOLVING, CONNECTING, HELLO, SELECTING, STREAMING -> {
+                    if (now - lastActivity > timeout) {
+                        disconnect("超时");
+                    }
+                }
+                case WAITING -> {
+                    if (now >= reconnectAt) {
+                        connect();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        /**
+         * @param failure reason of the failure, null if the server closed the connection
+         */
+        private void disconnect(String failure) {
+            if (failure != null) {
+                Logger.warn("seedlink读取器失败于seedlink `%s`: %s".formatted(seedlinkNetwork.getName(), failure));
+            }
+
+            closeChannel();
+            seedlinkNetwork.status = SeedlinkStatus.DISCONNECTED;
+            seedlinkNetwork.connectedStations = 0;
+            Logger.warn("%s 断开连接,%d秒后重新连接...".formatted(seedlinkNetwork.getName(), currentReconnectDelay));
+
+            state = State.WAITING;
+            reconnectAt = System.currentTimeMillis() + currentReconnectDelay * 1000L;
+            if (currentReconnectDelay < 60 * 5) {
+                currentReconnectDelay *= 2;
+            }
+        }
+
+        private void stop() {
+            closeChannel();
+            seedlinkNetwork.status = SeedlinkStatus.DISCONNECTED;
+            seedlinkNetwork.connectedStations = 0;
+            state = State.STOPPED;
+        }
+
+        private void closeChannel() {
+            writeBuffer = null;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    Logger.error(e);
+                }
+                channel = null;
+                key = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package globalquake.core.seedlink;
+
+import globalquake.core.station.GlobalStation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Finds the station of a received record without creating any objects.
+ * The key packs the space padded network (2 bytes) and station (5 bytes) codes of the miniSEED fixed header into a long,
+ * so it can be read straight from the record bytes. Stations are kept in a sorted array and found by binary search.
+ */
+final class StationLookup {
+
+    static final int STATION_OFFSET = 8;
+    static final int NETWORK_OFFSET = 18;
+
+    private static final int STATION_LENGTH = 5;
+    private static final int NETWORK_LENGTH = 2;
+
+    private final long[] keys;
+    private final GlobalStation[] stations;
+
+    StationLookup(Collection<GlobalStation> stations) {
+        GlobalStation[] sorted = stations.toArray(new GlobalStation[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(key(a.getNetworkCode(), a.getStationCode()), key(b.getNetworkCode(), b.getStationCode())));
+
+        this.keys = new long[sorted.length];
+        this.stations = sorted;
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = key(sorted[i].getNetworkCode(), sorted[i].getStationCode());
+        }
+    }
+
+    /**
+     * @param offset start of the miniSEED record
+     */
+    GlobalStation find(byte[] record, int offset) {
+        return find(key(record, offset));
+    }
+
+    GlobalStation find(long key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? null : stations[index];
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    static long key(byte[] record, int offset) {
+        long key = 0;
+        for (int i = 0; i < NETWORK_LENGTH; i++) {
+            key = key << 8 | (record[offset + NETWORK_OFFSET + i] & 0xFF);
+        }
+        for (int i = 0; i < STATION_LENGTH; i++) {
+            key = key << 8 | (record[offset + STATION_OFFSET + i] & 0xFF);
+        }
+        return key;
+    }
+
+    static long key(String networkCode, String stationCode) {
+        return pack(pack(0, networkCode, NETWORK_LENGTH), stationCode, STATION_LENGTH);
+    }
+
+    private static long pack(long key, String code, int length) {
+        byte[] bytes = code.trim().getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < length; i++) {
+            key = key << 8 | (i < bytes.length ? bytes[i] & 0xFF : ' ');
+        }
+        return key;
+    }
+}
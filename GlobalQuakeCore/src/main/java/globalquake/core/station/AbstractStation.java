@@ -6,6 +6,7 @@ import globalquake.core.analysis.BetterAnalysis;
 import globalquake.core.analysis.Event;
 import globalquake.core.database.SeedlinkNetwork;
 import gqserver.api.packets.station.InputType;
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
 
 import java.util.Collection;
 import java.util.Deque;
@@ -37,6 +38,10 @@ public abstract class AbstractStation {
 
 	private final Deque<StationInterval> intervals = new ConcurrentLinkedDeque<>();
 
+	private int reportedIntensity = -1;
+	private boolean reportedEventMode;
+	private boolean reportedDisplayableData;
+
 	public AbstractStation(String networkCode, String stationCode, String channelName,
 						   String locationCode, double lat, double lon, double alt,
 						   int id, SeedlinkNetwork seedlinkNetwork, double sensitivity) {
@@ -169,6 +174,26 @@ public abstract class AbstractStation {
 		ratioHistory.clear();
 	}
 
+	/**
+	 * Compares the state shown to clients with the state from the previous call, the intensity is compared
+	 * after quantization so that noise does not mark every station as changed.
+	 *
+	 * @return true if the state changed
+	 */
+	public boolean updateReportedState() {
+		int intensity = StationsIntensityDeltaPacket.quantize(getMaxRatio60S());
+		boolean eventMode = isInEventMode();
+		boolean displayableData = hasDisplayableData();
+		if (intensity == reportedIntensity && eventMode == reportedEventMode && displayableData == reportedDisplayableData) {
+			return false;
+		}
+
+		reportedIntensity = intensity;
+		reportedEventMode = eventMode;
+		reportedDisplayableData = displayableData;
+		return true;
+	}
+
 	public int getId() {
 		return id;
 	}
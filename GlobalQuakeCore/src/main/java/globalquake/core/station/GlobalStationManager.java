@@ -6,24 +6,29 @@ import globalquake.utils.monitorable.MonitorableConcurrentLinkedQueue;
 import org.tinylog.Logger;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class GlobalStationManager {
 
     private static final int RAYS = 9;
     private static final int STATIONS_PER_RAY = 3;
+    private static final double MAX_NEARBY_DISTANCE = 4000;
     protected Collection<AbstractStation> stations = new MonitorableConcurrentLinkedQueue<>();
 
 
     protected final AtomicInteger nextID = new AtomicInteger(0);
     protected UUID indexing;
 
+    private final Set<AbstractStation> changedStations = ConcurrentHashMap.newKeySet();
+
     public void initStations(StationDatabaseManager databaseManager) {
         if(databaseManager == null){
             return;
         }
         indexing = UUID.randomUUID();
         stations.clear();
+        changedStations.clear();
         nextID.set(0);
 
         databaseManager.getStationDatabase().getDatabaseReadLock().lock();
@@ -47,41 +52,40 @@ public class GlobalStationManager {
         Logger.info("已加载 " + stations.size() + " 个台站.");
     }
 
+    /**
+     * Fills in the nearby stations of every station
+     */
     public static void createListOfClosestStations(Collection<AbstractStation> stations){
+        StationIndex index = new StationIndex(stations);
         stations.parallelStream().forEach(station -> {
             @SuppressWarnings("unchecked") Queue<NearbyStationDistanceInfo>[] rays = new Queue[RAYS];
             for (int i = 0; i < RAYS; i++) {
                 rays[i] = new PriorityQueue<>(Comparator.comparing(NearbyStationDistanceInfo::dist));
             }
 
-            for (AbstractStation station2 : stations) {
-                if (!(station2.getId() == station.getId())) {
-                    double dist = GeoUtils.greatCircleDistance(station.getLatitude(), station.getLongitude(), station2.getLatitude(),
-                            station2.getLongitude());
-
-                    if(dist > 4000){
-                        continue;
-                    }
+            index.forEachWithin(station.getLatitude(), station.getLongitude(), MAX_NEARBY_DISTANCE, (station2, dist) -> {
+                if (station2.getId() == station.getId()) {
+                    return;
+                }
 
-                    double ang = GeoUtils.calculateAngle(station.getLatitude(), station.getLongitude(), station2.getLatitude(),
-                            station2.getLongitude());
-                    int ray = (int) ((ang / 360.0) * (RAYS - 1.0));
+                double ang = GeoUtils.calculateAngle(station.getLatitude(), station.getLongitude(), station2.getLatitude(),
+                        station2.getLongitude());
+                int ray = (int) ((ang / 360.0) * (RAYS - 1.0));
 
-                    NearbyStationDistanceInfo nearbyStationDistanceInfo = new NearbyStationDistanceInfo(station2, (float) dist, (float) ang);
+                NearbyStationDistanceInfo nearbyStationDistanceInfo = new NearbyStationDistanceInfo(station2, (float) dist, (float) ang);
 
-                    rays[ray].add(nearbyStationDistanceInfo);
-                    int ray2 = ray + 1;
-                    if (ray2 == RAYS) {
-                        ray2 = 0;
-                    }
-                    int ray3 = ray - 1;
-                    if (ray3 == -1) {
-                        ray3 = RAYS - 1;
-                    }
-                    rays[ray2].add(nearbyStationDistanceInfo);
-                    rays[ray3].add(nearbyStationDistanceInfo);
+                rays[ray].add(nearbyStationDistanceInfo);
+                int ray2 = ray + 1;
+                if (ray2 == RAYS) {
+                    ray2 = 0;
                 }
-            }
+                int ray3 = ray - 1;
+                if (ray3 == -1) {
+                    ray3 = RAYS - 1;
+                }
+                rays[ray2].add(nearbyStationDistanceInfo);
+                rays[ray3].add(nearbyStationDistanceInfo);
+            });
 
             Set<NearbyStationDistanceInfo> result = new HashSet<>();
             for(Queue<NearbyStationDistanceInfo> ray : rays){
@@ -117,6 +121,25 @@ public class GlobalStationManager {
         return indexing;
     }
 
+    /**
+     * Called once a second for stations whose {@link AbstractStation#updateReportedState()} changed
+     */
+    public void markChanged(AbstractStation station) {
+        changedStations.add(station);
+    }
+
+    /**
+     * @return stations marked as changed since the previous call
+     */
+    public List<AbstractStation> drainChangedStations() {
+        List<AbstractStation> result = new ArrayList<>(changedStations.size());
+        for (Iterator<AbstractStation> iterator = changedStations.iterator(); iterator.hasNext(); ) {
+            result.add(iterator.next());
+            iterator.remove();
+        }
+        return result;
+    }
+
     public AbstractStation getStationByIdentifier(String identifier) {
         return stations.stream().filter(station -> station.getIdentifier().equals(identifier)).findFirst().orElse(null);
     }
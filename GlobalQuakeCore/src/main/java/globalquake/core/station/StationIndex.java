@@ -0,0 +1,169 @@
+package globalquake.core.station;
+
+import globalquake.utils.GeoUtils;
+
+import java.util.*;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Immutable latitude/longitude cell index over a set of stations.
+ * Radius queries only visit the cells overlapping the spherical cap around the query point,
+ * candidates are then filtered by their exact great circle distance.
+ */
+public final class StationIndex {
+
+    public static final double DEFAULT_CELL_SIZE = 2.0;
+
+    private static final AbstractStation[] EMPTY = new AbstractStation[0];
+
+    private final double cellSize;
+    private final int latCells;
+    private final int lonCells;
+    private final AbstractStation[][] cells;
+    private final int size;
+
+    public StationIndex(Collection<AbstractStation> stations) {
+        this(stations, DEFAULT_CELL_SIZE);
+    }
+
+    public StationIndex(Collection<AbstractStation> stations, double cellSize) {
+        if (cellSize <= 0 || cellSize > 90) {
+            throw new IllegalArgumentException("Invalid cell size: %s".formatted(cellSize));
+        }
+
+        this.cellSize = cellSize;
+        this.latCells = (int) Math.ceil(180.0 / cellSize);
+        this.lonCells = (int) Math.ceil(360.0 / cellSize);
+
+        List<List<AbstractStation>> buckets = new ArrayList<>(latCells * lonCells);
+        for (int i = 0; i < latCells * lonCells; i++) {
+            buckets.add(null);
+        }
+
+        int count = 0;
+        for (AbstractStation station : stations) {
+            int cell = latCell(station.getLatitude()) * lonCells + lonCell(station.getLongitude());
+            List<AbstractStation> bucket = buckets.get(cell);
+            if (bucket == null) {
+                buckets.set(cell, bucket = new ArrayList<>());
+            }
+            bucket.add(station);
+            count++;
+        }
+
+        this.cells = new AbstractStation[latCells * lonCells][];
+        for (int i = 0; i < cells.length; i++) {
+            List<AbstractStation> bucket = buckets.get(i);
+            cells[i] = bucket == null ? EMPTY : bucket.toArray(EMPTY);
+        }
+
+        this.size = count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int latCell(double lat) {
+        return Math.max(0, Math.min(latCells - 1, (int) Math.floor((lat + 90.0) / cellSize)));
+    }
+
+    private int lonCell(double lon) {
+        return Math.floorMod((int) Math.floor((lon + 180.0) / cellSize), lonCells);
+    }
+
+    /**
+     * Calls the consumer with every station within the given great circle distance
+     * together with its distance in km. The order of the stations is unspecified.
+     */
+    public void forEachWithin(double lat, double lon, double radiusKm, ObjDoubleConsumer<AbstractStation> consumer) {
+        if (radiusKm < 0 || size == 0) {
+            return;
+        }
+
+        // small margin so that stations right at the edge of the cap are not lost to rounding
+        double radiusDeg = Math.toDegrees(radiusKm / GeoUtils.EARTH_RADIUS) * 1.0001 + 1e-6;
+        double minLat = lat - radiusDeg;
+        double maxLat = lat + radiusDeg;
+
+        boolean fullCircle = minLat <= -90.0 || maxLat >= 90.0 || radiusDeg >= 90.0;
+        double halfWidth = 180.0;
+        if (!fullCircle) {
+            // widest longitude extent of a spherical cap that does not contain a pole
+            double sinRadius = Math.sin(Math.toRadians(radiusDeg));
+            double cosLat = Math.cos(Math.toRadians(lat));
+            if (sinRadius >= cosLat) {
+                fullCircle = true;
+            } else {
+                halfWidth = Math.toDegrees(Math.asin(sinRadius / cosLat));
+            }
+        }
+
+        int lonFrom;
+        int lonCount;
+        if (fullCircle || halfWidth * 2.0 + cellSize >= 360.0) {
+            lonFrom = 0;
+            lonCount = lonCells;
+        } else {
+            lonFrom = (int) Math.floor((lon - halfWidth + 180.0) / cellSize);
+            int lonTo = (int) Math.floor((lon + halfWidth + 180.0) / cellSize);
+            lonCount = Math.min(lonCells, lonTo - lonFrom + 1);
+        }
+
+        int latFrom = latCell(minLat);
+        int latTo = latCell(maxLat);
+
+        for (int latIndex = latFrom; latIndex <= latTo; latIndex++) {
+            for (int i = 0; i < lonCount; i++) {
+                for (AbstractStation station : cells[latIndex * lonCells + Math.floorMod(lonFrom + i, lonCells)]) {
+                    double dist = GeoUtils.greatCircleDistance(lat, lon, station.getLatitude(), station.getLongitude());
+                    if (dist <= radiusKm) {
+                        consumer.accept(station, dist);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return all stations within the given great circle distance, in no particular order
+     */
+    public List<AbstractStation> findWithin(double lat, double lon, double radiusKm) {
+        List<AbstractStation> result = new ArrayList<>();
+        forEachWithin(lat, lon, radiusKm, (station, dist) -> result.add(station));
+        return result;
+    }
+
+    /**
+     * @param lat latitude of the query point
+     * @param lon longitude of the query point
+     * @param k maximum number of stations to return
+     * @param maxRadiusKm stations further than this are never returned
+     * @return up to k closest stations sorted by distance, closest first
+     */
+    public List<AbstractStation> findNearest(double lat, double lon, int k, double maxRadiusKm) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<NearbyStationDistanceInfo> found = new ArrayList<>();
+        double radius = Math.min(maxRadiusKm, Math.toRadians(cellSize) * GeoUtils.EARTH_RADIUS);
+        while (true) {
+            found.clear();
+            forEachWithin(lat, lon, radius, (station, dist) -> found.add(new NearbyStationDistanceInfo(station, dist, 0)));
+            // everything closer than the k-th candidate lies inside the current radius, so the answer is final
+            if (found.size() >= k || radius >= maxRadiusKm || found.size() == size) {
+                break;
+            }
+            radius = Math.min(maxRadiusKm, radius * 2.0);
+        }
+
+        found.sort(Comparator.comparingDouble(NearbyStationDistanceInfo::dist));
+
+        List<AbstractStation> result = new ArrayList<>(Math.min(k, found.size()));
+        for (int i = 0; i < Math.min(k, found.size()); i++) {
+            result.add(found.get(i).station());
+        }
+        return result;
+    }
+}
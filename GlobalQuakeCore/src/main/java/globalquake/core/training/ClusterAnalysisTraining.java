@@ -64,7 +64,7 @@ public class ClusterAnalysisTraining {
         }
     }
 
-    public static void runTest(int numStations) {
+    public static void runTest(int numStations) throws InterruptedException {
         long time = 0;
         long maxTime = 21 * MINUTE;
         long step = 1000;
@@ -160,6 +160,7 @@ public class ClusterAnalysisTraining {
 
             clusterAnalysis.run();
             earthquakeAnalysis.run();
+            earthquakeAnalysis.awaitIdle();
 
             System.out.printf("跳过秒数: %.2f%n", time / 1000.0);
 
@@ -193,6 +194,8 @@ public class ClusterAnalysisTraining {
         for(SimulatedEarthquake simulatedEarthquake : allSimulatedEarthquakes){
             System.err.println(simulatedEarthquake);
         }
+
+        earthquakeAnalysis.destroy();
     }
 
     private static int eventC = 0;
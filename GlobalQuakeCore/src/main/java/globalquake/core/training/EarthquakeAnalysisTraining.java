@@ -117,10 +117,35 @@ public class EarthquakeAnalysisTraining {
         EarthquakeAnalysis earthquakeAnalysis = new EarthquakeAnalysis();
         earthquakeAnalysis.testing = true;
 
-        List<FakeStation> fakeStations = new ArrayList<>();
-
         Random r = new Random(seed);
 
+        List<FakeStation> fakeStations = createFakeStations(r, stations);
+
+        var cluster = new Cluster();
+        cluster.updateCount = 6543541;
+
+        Hypocenter absolutetyCorrect = new Hypocenter(140 + r.nextDouble() * 10, r.nextDouble() * 10, 200, 0, 0,0, null, null);
+
+        List<PickedEvent> pickedEvents = createPickedEvents(r, fakeStations, absolutetyCorrect);
+
+        cluster.calculateRoot(fakeStations);
+
+        earthquakeAnalysis.processCluster(cluster, pickedEvents, !cpu);
+
+        Logger.debug("Shouldve been " + absolutetyCorrect);
+        Logger.debug("Got           " + cluster.getPreviousHypocenter());
+
+        if(cluster.getEarthquake()!=null) {
+            double dist = GeoUtils.greatCircleDistance(cluster.getEarthquake().getLat(), cluster.getEarthquake().getLon(), absolutetyCorrect.lat, absolutetyCorrect.lon);
+            return Math.abs(cluster.getEarthquake().getOrigin());
+        } else{
+            return -1;
+        }
+    }
+
+    public static List<FakeStation> createFakeStations(Random r, int stations) {
+        List<FakeStation> fakeStations = new ArrayList<>();
+
         for(int i = 0; i < stations; i++){
             double ang = r.nextDouble() * 360.0;
             double dist = r.nextDouble() * DIST;
@@ -128,11 +153,11 @@ public class EarthquakeAnalysisTraining {
             fakeStations.add(new FakeStation(latLon[0], latLon[1]));
         }
 
-        List<PickedEvent> pickedEvents = new ArrayList<>();
-        var cluster = new Cluster();
-        cluster.updateCount = 6543541;
+        return fakeStations;
+    }
 
-        Hypocenter absolutetyCorrect = new Hypocenter(140 + r.nextDouble() * 10, r.nextDouble() * 10, 200, 0, 0,0, null, null);
+    public static List<PickedEvent> createPickedEvents(Random r, List<FakeStation> fakeStations, Hypocenter absolutetyCorrect) {
+        List<PickedEvent> pickedEvents = new ArrayList<>();
 
         for(FakeStation fakeStation : fakeStations){
             double distGC = GeoUtils.greatCircleDistance(absolutetyCorrect.lat,
@@ -153,19 +178,7 @@ public class EarthquakeAnalysisTraining {
             pickedEvents.add(event);
         }
 
-        cluster.calculateRoot(fakeStations);
-
-        earthquakeAnalysis.processCluster(cluster, pickedEvents, !cpu);
-
-        Logger.debug("Shouldve been " + absolutetyCorrect);
-        Logger.debug("Got           " + cluster.getPreviousHypocenter());
-
-        if(cluster.getEarthquake()!=null) {
-            double dist = GeoUtils.greatCircleDistance(cluster.getEarthquake().getLat(), cluster.getEarthquake().getLon(), absolutetyCorrect.lat, absolutetyCorrect.lon);
-            return Math.abs(cluster.getEarthquake().getOrigin());
-        } else{
-            return -1;
-        }
+        return pickedEvents;
     }
 
     public record FakeStation(double lat, double lon){
@@ -1,10 +1,500 @@
 package globalquake.core.training;
 
-@SuppressWarnings("all")
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedFormatException;
+import edu.sc.seis.seisFile.mseed.SeedRecord;
+import globalquake.core.GlobalQuake;
+import globalquake.core.HypocsSettings;
+import globalquake.core.Settings;
+import globalquake.core.analysis.WaveformTransformator;
+import globalquake.core.archive.EarthquakeArchive;
+import globalquake.core.earthquake.ClusterAnalysis;
+import globalquake.core.earthquake.EarthquakeAnalysis;
+import globalquake.core.earthquake.data.Earthquake;
+import globalquake.core.events.GlobalQuakeEventHandler;
+import globalquake.core.events.GlobalQuakeEventListener;
+import globalquake.core.events.specific.QuakeCreateEvent;
+import globalquake.core.regions.Regions;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStation;
+import globalquake.core.station.GlobalStationManager;
+import globalquake.utils.QuickSelect;
+import gqserver.api.packets.station.InputType;
+import org.apache.commons.cli.*;
+import org.tinylog.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Offline replay of local miniSEED files through the whole processing chain
+ * (GlobalStation -> Analysis -> ClusterAnalysis -> EarthquakeAnalysis) without any network access.
+ * <p>
+ * Records are delivered to the stations when the replay clock passes their last sample, the analysis loop runs every
+ * 100 ms of replay time, the 1 second loop every second and the hypocenter loop every hypocsLoopTime, just like in
+ * {@link globalquake.core.GlobalQuakeRuntime}. The stages run one after another on the replay thread, so the result
+ * is reproducible and the time spent in each stage can be compared with its budget.
+ * <p>
+ * Usage: MiniseedWaveformTraining [-s stations.txt] [-x speed] [-n copies] [-t tailSeconds] files or directories...
+ * <ul>
+ *     <li>stations.txt - lines of "NET STA LAT LON [ALT] [SENSITIVITY]", without it only ingest and analysis are replayed</li>
+ *     <li>speed - 0 replays as fast as possible, 1 in wall-clock time, 10 ten times faster than real time</li>
+ *     <li>copies - every stream is fed to this many stations, to see how many stations the machine can sustain</li>
+ * </ul>
+ */
 public class MiniseedWaveformTraining {
 
-    public static void main(String[] args) {
+    public static final long ANALYSIS_INTERVAL = 100;
+    public static final long SECOND_INTERVAL = 1000;
+
+    private final ReplayOptions options;
+
+    public record ReplayOptions(List<Path> inputs, Path stationsFile, double speed, int copies, long tailSeconds) {
+    }
+
+    record StationInfo(double lat, double lon, double alt, double sensitivity) {
+    }
+
+    record ReplayRecord(DataRecord record, long deliveryTime, List<GlobalStation> targets) {
+    }
+
+    /**
+     * Collects durations of one stage of the processing
+     */
+    public static final class StageStats {
+
+        private final String name;
+        private final long budgetNanos;
+        private long[] durations = new long[1024];
+        private int count;
+        private long total;
+        private long max;
+        private int overBudget;
+
+        public StageStats(String name, long budgetMillis) {
+            this.name = name;
+            this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        }
+
+        public void add(long nanos) {
+            if (count == durations.length) {
+                durations = Arrays.copyOf(durations, durations.length * 2);
+            }
+            durations[count++] = nanos;
+            total += nanos;
+            max = Math.max(max, nanos);
+            if (budgetNanos > 0 && nanos > budgetNanos) {
+                overBudget++;
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int getOverBudget() {
+            return overBudget;
+        }
+
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] copy = Arrays.copyOf(durations, count);
+            int k = (int) Math.min(count - 1, Math.floor(percentile * count));
+            return QuickSelect.select(copy, count, k) / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            if (count == 0) {
+                return "%-10s 未运行".formatted(name);
+            }
+            String result = "%-10s 次数 %7d | 平均 %8.3f ms | p50 %8.3f ms | p99 %8.3f ms | 最大 %8.3f ms".formatted(
+                    name, count, total / 1e6 / count, percentileMillis(0.5), percentileMillis(0.99), max / 1e6);
+            if (budgetNanos > 0) {
+                result += " | 超过 %d ms: %d".formatted(TimeUnit.NANOSECONDS.toMillis(budgetNanos), overBudget);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Minimal GlobalQuake instance driven by the replay clock, the archive is kept in memory only
+     */
+    static class ReplayGlobalQuake extends GlobalQuake {
+
+        private volatile long replayTime;
+
+        ReplayGlobalQuake(Collection<AbstractStation> stations, boolean locateQuakes) {
+            super();
+            eventHandler = new GlobalQuakeEventHandler().runHandler();
+
+            globalStationManager = new GlobalStationManager();
+            globalStationManager.getStations().addAll(stations);
+
+            List<Earthquake> earthquakes = new CopyOnWriteArrayList<>();
+            List<AbstractStation> located = locateQuakes ? new ArrayList<>(stations) : new ArrayList<>();
+            clusterAnalysis = new ClusterAnalysis(earthquakes, located);
+            earthquakeAnalysis = new EarthquakeAnalysis(clusterAnalysis, earthquakes);
+
+            archive = new EarthquakeArchive() {
+                @Override
+                public void archiveQuakeAndSave(Earthquake earthquake) {
+                    archiveQuake(earthquake);
+                }
+            };
+        }
+
+        void setReplayTime(long replayTime) {
+            this.replayTime = replayTime;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return replayTime;
+        }
+
+        @Override
+        public boolean limitedSettings() {
+            return true;
+        }
+
+        @Override
+        public boolean limitedWaveformBuffers() {
+            return true;
+        }
+
+        @Override
+        public boolean isSimulation() {
+            return true;
+        }
+    }
+
+    public MiniseedWaveformTraining(ReplayOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options cliOptions = new Options();
+
+        Option stationsOption = new Option("s", "stations", true, "台站坐标文件 (NET STA LAT LON [ALT] [SENSITIVITY])");
+        stationsOption.setRequired(false);
+        cliOptions.addOption(stationsOption);
+
+        Option speedOption = new Option("x", "speed", true, "回放速度, 0 = 尽可能快, 1 = 实时");
+        speedOption.setRequired(false);
+        cliOptions.addOption(speedOption);
+
+        Option copiesOption = new Option("n", "copies", true, "每个数据流复制的台站数量");
+        copiesOption.setRequired(false);
+        cliOptions.addOption(copiesOption);
+
+        Option tailOption = new Option("t", "tail", true, "最后一条记录之后继续运行的秒数");
+        tailOption.setRequired(false);
+        cliOptions.addOption(tailOption);
+
+        CommandLine cmd;
+        try {
+            cmd = new BasicParser().parse(cliOptions, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("MiniseedWaveformTraining [options] <miniSEED files or directories>", cliOptions);
+            System.exit(1);
+            return;
+        }
+
+        if (cmd.getArgs().length == 0) {
+            new HelpFormatter().printHelp("MiniseedWaveformTraining [options] <miniSEED files or directories>", cliOptions);
+            System.exit(1);
+        }
+
+        ReplayOptions options = new ReplayOptions(
+                Arrays.stream(cmd.getArgs()).map(Path::of).toList(),
+                cmd.hasOption(stationsOption.getOpt()) ? Path.of(cmd.getOptionValue(stationsOption.getOpt())) : null,
+                Double.parseDouble(cmd.getOptionValue(speedOption.getOpt(), "0")),
+                Integer.parseInt(cmd.getOptionValue(copiesOption.getOpt(), "1")),
+                Long.parseLong(cmd.getOptionValue(tailOption.getOpt(), "60")));
+
+        if (options.speed() < 0 || options.copies() < 1 || options.tailSeconds() < 0) {
+            throw new IllegalArgumentException("无效的回放参数: %s".formatted(options));
+        }
+
+        Regions.enabled = false;
+        Settings.parallelHypocenterLocations = true;
+
+        new MiniseedWaveformTraining(options).run();
+        System.exit(0);
+    }
+
+    static Map<String, StationInfo> loadStations(Path path) throws IOException {
+        Map<String, StationInfo> result = new HashMap<>();
+        for (String line : Files.readAllLines(path)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("[,\\s]+");
+            if (parts.length < 4) {
+                throw new IOException("无效的台站行: %s".formatted(line));
+            }
+
+            try {
+                double alt = parts.length > 4 ? Double.parseDouble(parts[4]) : 0;
+                double sensitivity = parts.length > 5 ? Double.parseDouble(parts[5]) : WaveformTransformator.DEFAULT_SENSITIVITY;
+                result.put(stationKey(parts[0], parts[1]),
+                        new StationInfo(Double.parseDouble(parts[2]), Double.parseDouble(parts[3]), alt, sensitivity));
+            } catch (NumberFormatException e) {
+                throw new IOException("无效的台站行: %s".formatted(line), e);
+            }
+        }
+        return result;
+    }
+
+    private static String stationKey(String network, String station) {
+        return "%s.%s".formatted(network.trim().toUpperCase(), station.trim().toUpperCase());
+    }
+
+    public static List<DataRecord> readRecords(List<Path> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path input : inputs) {
+            try (Stream<Path> walk = Files.walk(input)) {
+                walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+            }
+        }
+
+        List<DataRecord> records = new ArrayList<>();
+        for (Path file : files) {
+            int before = records.size();
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    SeedRecord seedRecord = SeedRecord.read(in);
+                    if (seedRecord instanceof DataRecord dataRecord) {
+                        records.add(dataRecord);
+                    }
+                }
+            } catch (EOFException ignored) {
+                // end of file
+            } catch (SeedFormatException e) {
+                Logger.warn("无法读取 %s: %s".formatted(file, e.getMessage()));
+            }
+            Logger.debug("从 %s 读取了 %d 条记录".formatted(file, records.size() - before));
+        }
+        return records;
+    }
+
+    private static InputType inputTypeOf(String channel) {
+        if (channel.length() < 2) {
+            return InputType.UNKNOWN;
+        }
+        return switch (channel.charAt(1)) {
+            case 'H', 'L' -> InputType.VELOCITY;
+            case 'N', 'G' -> InputType.ACCELERATION;
+            default -> InputType.UNKNOWN;
+        };
+    }
+
+    public void run() throws IOException {
+        Map<String, StationInfo> stationInfos = options.stationsFile() == null ? null : loadStations(options.stationsFile());
+        boolean locateQuakes = stationInfos != null;
+
+        System.out.println("正在读取 miniSEED 文件...");
+        List<DataRecord> dataRecords = readRecords(options.inputs());
+        if (dataRecords.isEmpty()) {
+            System.err.println("没有找到任何数据记录!");
+            return;
+        }
+
+        // one stream per station, vertical component preferred like the station selection does
+        Map<String, String> selectedChannels = new HashMap<>();
+        for (DataRecord record : dataRecords) {
+            String key = stationKey(record.getHeader().getNetworkCode(), record.getHeader().getStationIdentifier());
+            String channel = record.getHeader().getLocationIdentifier().trim() + "." + record.getHeader().getChannelIdentifier().trim();
+            selectedChannels.merge(key, channel, (a, b) -> !a.endsWith("Z") && b.endsWith("Z") ? b : a);
+        }
+
+        List<AbstractStation> stations = new ArrayList<>();
+        Map<String, List<GlobalStation>> stationsByKey = new HashMap<>();
+        int skipped = 0;
+        int nextId = 0;
+        for (Map.Entry<String, String> entry : selectedChannels.entrySet().stream().sorted(Map.Entry.comparingByKey()).toList()) {
+            StationInfo info = stationInfos == null ? new StationInfo(0, 0, 0, WaveformTransformator.DEFAULT_SENSITIVITY) : stationInfos.get(entry.getKey());
+            if (info == null) {
+                skipped++;
+                continue;
+            }
+
+            String[] network = entry.getKey().split("\\.", 2);
+            String[] channel = entry.getValue().split("\\.", 2);
+            List<GlobalStation> copies = new ArrayList<>();
+            for (int i = 0; i < options.copies(); i++) {
+                GlobalStation station = new GlobalStation(network[0], network[1], channel[1], channel[0],
+                        info.lat(), info.lon(), info.alt(), nextId++, null, info.sensitivity(), inputTypeOf(channel[1]));
+                copies.add(station);
+                stations.add(station);
+            }
+            stationsByKey.put(entry.getKey() + "." + entry.getValue(), copies);
+        }
+
+        if (skipped > 0) {
+            Logger.warn("%d 个台站没有坐标, 已跳过".formatted(skipped));
+        }
+
+        List<ReplayRecord> records = new ArrayList<>();
+        for (DataRecord record : dataRecords) {
+            String key = stationKey(record.getHeader().getNetworkCode(), record.getHeader().getStationIdentifier()) + "." +
+                    record.getHeader().getLocationIdentifier().trim() + "." + record.getHeader().getChannelIdentifier().trim();
+            List<GlobalStation> targets = stationsByKey.get(key);
+            if (targets != null) {
+                records.add(new ReplayRecord(record, record.getLastSampleBtime().toInstant().toEpochMilli(), targets));
+            }
+        }
+        records.sort(Comparator.comparingLong(ReplayRecord::deliveryTime));
+
+        if (records.isEmpty()) {
+            System.err.println("没有可回放的记录!");
+            return;
+        }
+
+        ReplayGlobalQuake globalQuake = new ReplayGlobalQuake(stations, locateQuakes);
+        if (locateQuakes) {
+            GlobalStationManager.createListOfClosestStations(stations);
+        }
+
+        List<Earthquake> detected = new CopyOnWriteArrayList<>();
+        globalQuake.getEventHandler().registerEventListener(new GlobalQuakeEventListener() {
+            @Override
+            public void onQuakeCreate(QuakeCreateEvent event) {
+                detected.add(event.earthquake());
+            }
+        });
+
+        System.out.printf("回放 %d 条记录, %d 个台站 (%d 个数据流 x %d), 速度 %s%n", records.size(), stations.size(),
+                stationsByKey.size(), options.copies(), options.speed() == 0 ? "尽可能快" : "%.1fx".formatted(options.speed()));
+
+        replay(globalQuake, records, stations, detected);
+    }
+
+    private void replay(ReplayGlobalQuake globalQuake, List<ReplayRecord> records, List<AbstractStation> stations, List<Earthquake> detected) {
+        long hypocsInterval = HypocsSettings.getOrDefaultInt("hypocsLoopTime", 300);
+
+        StageStats ingest = new StageStats("接收", 0);
+        StageStats analysis = new StageStats("台站分析", ANALYSIS_INTERVAL);
+        StageStats second = new StageStats("1秒循环", SECOND_INTERVAL);
+        StageStats clusters = new StageStats("震群分析", 0);
+        StageStats hypocenters = new StageStats("震源定位", 0);
+        StageStats lag = new StageStats("延迟", 0);
+
+        long start = records.get(0).deliveryTime() - ANALYSIS_INTERVAL;
+        long end = records.get(records.size() - 1).deliveryTime() + options.tailSeconds() * 1000;
+
+        long nextSecond = start + SECOND_INTERVAL;
+        long nextHypocs = start + hypocsInterval;
+        int recordIndex = 0;
+        long deliveredRecords = 0;
+        long deliveredSamples = 0;
+
+        long wallStart = System.nanoTime();
+        for (long time = start; time <= end; time += ANALYSIS_INTERVAL) {
+            if (options.speed() > 0) {
+                long due = wallStart + (long) ((time - start) * 1_000_000L / options.speed());
+                long now = System.nanoTime();
+                if (now < due) {
+                    sleepNanos(due - now);
+                } else {
+                    lag.add(now - due);
+                }
+            }
+
+            globalQuake.setReplayTime(time);
+
+            long a = System.nanoTime();
+            while (recordIndex < records.size() && records.get(recordIndex).deliveryTime() <= time) {
+                ReplayRecord record = records.get(recordIndex++);
+                for (GlobalStation station : record.targets()) {
+                    station.addRecord(record.record());
+                    deliveredRecords++;
+                    deliveredSamples += record.record().getHeader().getNumSamples();
+                }
+            }
+            ingest.add(System.nanoTime() - a);
+
+            a = System.nanoTime();
+            stations.parallelStream().forEach(AbstractStation::analyse);
+            analysis.add(System.nanoTime() - a);
+
+            if (time >= nextSecond) {
+                final long secondTime = time;
+                a = System.nanoTime();
+                stations.parallelStream().forEach(station -> station.second(secondTime));
+                globalQuake.getEarthquakeAnalysis().second();
+                second.add(System.nanoTime() - a);
+                nextSecond += SECOND_INTERVAL;
+            }
+
+            if (time >= nextHypocs) {
+                a = System.nanoTime();
+                globalQuake.getClusterAnalysis().run();
+                clusters.add(System.nanoTime() - a);
+
+                a = System.nanoTime();
+                globalQuake.getEarthquakeAnalysis().run();
+                awaitIdle(globalQuake.getEarthquakeAnalysis());
+                hypocenters.add(System.nanoTime() - a);
+                nextHypocs += hypocsInterval;
+            }
+        }
+
+        double wallSeconds = (System.nanoTime() - wallStart) / 1e9;
+        double replaySeconds = (end - start) / 1000.0;
+
+        System.out.println("\n========== 回放结果 ==========");
+        System.out.printf("回放时长 %.1f 秒, 实际用时 %.1f 秒 (%.1fx 实时)%n", replaySeconds, wallSeconds, replaySeconds / wallSeconds);
+        System.out.printf("记录 %d (%.0f 条/秒), 采样点 %d (%.0f 个/秒)%n",
+                deliveredRecords, deliveredRecords / wallSeconds, deliveredSamples, deliveredSamples / wallSeconds);
+        System.out.println(ingest);
+        System.out.println(analysis);
+        System.out.println(second);
+        System.out.println(clusters);
+        System.out.println(hypocenters);
+        if (options.speed() > 0) {
+            System.out.println(lag);
+        }
+
+        int activeStations = (int) stations.stream().filter(station -> station.getAnalysis().getNumRecords() > 0).count();
+        System.out.printf("活跃台站 %d / %d, 检测到的事件 %d%n", activeStations, stations.size(),
+                stations.stream().mapToInt(station -> station.getAnalysis().getDetectedEvents().size()).sum());
+
+        System.out.printf("检测到的地震: %d%n", detected.size());
+        for (Earthquake earthquake : detected) {
+            System.out.printf("  %s  %.3f %.3f  深度 %.1f km  M%.1f%n",
+                    new Date(earthquake.getOrigin()), earthquake.getLat(), earthquake.getLon(), earthquake.getDepth(), earthquake.getMag());
+        }
+
+        globalQuake.getEarthquakeAnalysis().destroy();
+        globalQuake.getEventHandler().stopHandler();
+    }
+
+    private static void awaitIdle(EarthquakeAnalysis earthquakeAnalysis) {
+        try {
+            earthquakeAnalysis.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
 }
@@ -13,12 +13,20 @@ public class PerformanceSettingsPanel extends SettingsPanel {
     private JSlider sliderResolution;
     private JCheckBox chkBoxParalell;
     private JCheckBox chkBoxRecalibrateOnLauch;
+    private JCheckBox chkBoxIncremental;
+    private JCheckBox chkBoxLockFreeBuffers;
+    private JCheckBox chkBoxSelectorSeedlink;
+    private JCheckBox chkBoxIncrementalClusters;
 
     public PerformanceSettingsPanel() {
         setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 
         add(createSettingAccuracy());
         add(createSettingParalell());
+        add(createSettingIncremental());
+        add(createSettingLockFreeBuffers());
+        add(createSettingSelectorSeedlink());
+        add(createSettingIncrementalClusters());
         fill(this, 16);
     }
 
@@ -46,10 +54,102 @@ public class PerformanceSettingsPanel extends SettingsPanel {
         return panel;
     }
 
+    @SuppressWarnings("ExtractMethodRecommender")
+    private JPanel createSettingIncremental() {
+        JPanel panel = new JPanel();
+        panel.setBorder(BorderFactory.createRaisedBevelBorder());
+        panel.setLayout(new BorderLayout());
+        chkBoxIncremental = new JCheckBox("增量震源重定位");
+        chkBoxIncremental.setSelected(Settings.incrementalHypocenterSearch);
+
+        JTextArea textAreaExplanation = new JTextArea(
+                """
+                当地震只新增了少量测站时,从上一次的震源位置开始,只搜索其附近区域,
+                而不是重新进行完整的震源搜索.这可以大大减少大地震持续修正时的 CPU 占用.
+                如果上一次的震源与新的数据明显不符,仍会进行完整搜索.""");
+        textAreaExplanation.setBorder(new EmptyBorder(5, 5, 5, 5));
+        textAreaExplanation.setEditable(false);
+        textAreaExplanation.setBackground(panel.getBackground());
+
+        panel.add(chkBoxIncremental, BorderLayout.CENTER);
+        panel.add(textAreaExplanation, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    @SuppressWarnings("ExtractMethodRecommender")
+    private JPanel createSettingLockFreeBuffers() {
+        JPanel panel = new JPanel();
+        panel.setBorder(BorderFactory.createRaisedBevelBorder());
+        panel.setLayout(new BorderLayout());
+        chkBoxLockFreeBuffers = new JCheckBox("无锁波形缓冲区");
+        chkBoxLockFreeBuffers.setSelected(Settings.lockFreeWaveformBuffers);
+
+        JTextArea textAreaExplanation = new JTextArea(
+                """
+                台站数据写入波形缓冲区时不再加锁,界面读取时复制一份一致的快照.
+                在台站数量很多时可以降低数据处理的 CPU 开销.
+                更改将在台站重新加载后生效.""");
+        textAreaExplanation.setBorder(new EmptyBorder(5, 5, 5, 5));
+        textAreaExplanation.setEditable(false);
+        textAreaExplanation.setBackground(panel.getBackground());
+
+        panel.add(chkBoxLockFreeBuffers, BorderLayout.CENTER);
+        panel.add(textAreaExplanation, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    @SuppressWarnings("ExtractMethodRecommender")
+    private JPanel createSettingSelectorSeedlink() {
+        JPanel panel = new JPanel();
+        panel.setBorder(BorderFactory.createRaisedBevelBorder());
+        panel.setLayout(new BorderLayout());
+        chkBoxSelectorSeedlink = new JCheckBox("非阻塞Seedlink读取");
+        chkBoxSelectorSeedlink.setSelected(Settings.selectorSeedlinkReader);
+
+        JTextArea textAreaExplanation = new JTextArea(
+                """
+                所有Seedlink节点的连接由少量线程共同处理,而不是每个节点占用一个线程.
+                在连接大量Seedlink节点时可以减少线程数量和内存占用.
+                更改将在台站重新加载后生效.""");
+        textAreaExplanation.setBorder(new EmptyBorder(5, 5, 5, 5));
+        textAreaExplanation.setEditable(false);
+        textAreaExplanation.setBackground(panel.getBackground());
+
+        panel.add(chkBoxSelectorSeedlink, BorderLayout.CENTER);
+        panel.add(textAreaExplanation, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    @SuppressWarnings("ExtractMethodRecommender")
+    private JPanel createSettingIncrementalClusters() {
+        JPanel panel = new JPanel();
+        panel.setBorder(BorderFactory.createRaisedBevelBorder());
+        panel.setLayout(new BorderLayout());
+        chkBoxIncrementalClusters = new JCheckBox("增量震群关联");
+        chkBoxIncrementalClusters.setSelected(Settings.incrementalClusterAnalysis);
+
+        JTextArea textAreaExplanation = new JTextArea(
+                """
+                震群关联只重新检查自上次以来新增,更新或过期的事件,并在事件变化后立即运行,
+                而不是每次都检查所有事件.结果与完整关联相同.
+                在没有新事件时几乎不占用 CPU.""");
+        textAreaExplanation.setBorder(new EmptyBorder(5, 5, 5, 5));
+        textAreaExplanation.setEditable(false);
+        textAreaExplanation.setBackground(panel.getBackground());
+
+        panel.add(chkBoxIncrementalClusters, BorderLayout.CENTER);
+        panel.add(textAreaExplanation, BorderLayout.SOUTH);
+        return panel;
+    }
+
     @Override
     public void save() {
         Settings.hypocenterDetectionResolution = (double) sliderResolution.getValue();
         Settings.parallelHypocenterLocations = chkBoxParalell.isSelected();
+        Settings.incrementalHypocenterSearch = chkBoxIncremental.isSelected();
+        Settings.lockFreeWaveformBuffers = chkBoxLockFreeBuffers.isSelected();
+        Settings.selectorSeedlinkReader = chkBoxSelectorSeedlink.isSelected();
+        Settings.incrementalClusterAnalysis = chkBoxIncrementalClusters.isSelected();
         Settings.recalibrateOnLaunch = chkBoxRecalibrateOnLauch.isSelected();
     }
 
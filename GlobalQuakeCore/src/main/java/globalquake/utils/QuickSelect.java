@@ -0,0 +1,71 @@
+package globalquake.utils;
+
+public final class QuickSelect {
+
+    private QuickSelect() {
+    }
+
+    /**
+     * Partially reorders the array so that the k-th smallest of the first {@code length} elements ends up at index k
+     * and returns it. Same result as {@code Arrays.sort} followed by {@code array[k]}, but in expected linear time
+     * and without allocating anything.
+     */
+    public static long select(long[] array, int length, int k) {
+        if (k < 0 || k >= length) {
+            throw new IllegalArgumentException("k=%d is out of range for length %d".formatted(k, length));
+        }
+
+        int left = 0;
+        int right = length - 1;
+
+        while (right > left) {
+            int mid = (left + right) >>> 1;
+
+            // median of three as pivot, keeps sorted and reverse sorted input linear
+            if (array[mid] < array[left]) {
+                swap(array, mid, left);
+            }
+            if (array[right] < array[left]) {
+                swap(array, right, left);
+            }
+            if (array[right] < array[mid]) {
+                swap(array, right, mid);
+            }
+
+            long pivot = array[mid];
+            int i = left;
+            int j = right;
+
+            while (i <= j) {
+                while (array[i] < pivot) {
+                    i++;
+                }
+                while (array[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(array, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return array[k];
+            }
+        }
+
+        return array[k];
+    }
+
+    private static void swap(long[] array, int a, int b) {
+        long tmp = array[a];
+        array[a] = array[b];
+        array[b] = tmp;
+    }
+
+}
@@ -0,0 +1,138 @@
+package globalquake.core.analysis;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStation;
+import gqserver.api.packets.station.InputType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BetterAnalysisTest {
+
+    private static final double SAMPLE_RATE = 50.0;
+    private static final long START = 1_700_000_000_000L;
+
+    private record Record(long startTime, int[] data) {
+        long endTime() {
+            return Analysis.sampleTime(startTime, data.length - 1, SAMPLE_RATE);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        if (GlobalQuake.mainFolder == null) {
+            // settings are saved on first use
+            GlobalQuake.prepare(Files.createTempDirectory("settings").toFile(), null);
+        }
+        new GlobalQuake() {
+            @Override
+            public boolean limitedSettings() {
+                return false;
+            }
+
+            @Override
+            public boolean limitedWaveformBuffers() {
+                return false;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        GlobalQuake.instance = null;
+    }
+
+    /**
+     * Ten minutes of background noise around a constant offset with two local quakes,
+     * cut into records of varying length like a seedlink stream. One record is repeated, so the time goes backwards once.
+     */
+    private static List<Record> createRecords() {
+        Random random = new Random(6);
+        int samples = (int) (10 * 60 * SAMPLE_RATE);
+        int[] waveform = new int[samples];
+        for (int i = 0; i < samples; i++) {
+            double t = i / SAMPLE_RATE;
+            double value = 12000 + random.nextGaussian() * 150;
+            for (double quake : new double[]{150, 400}) {
+                if (t >= quake) {
+                    double envelope = 40000 * Math.exp(-(t - quake) / 8.0);
+                    value += envelope * Math.sin(2 * Math.PI * 3.0 * (t - quake)) * (0.6 + 0.4 * random.nextDouble());
+                }
+            }
+            waveform[i] = (int) Math.round(value);
+        }
+
+        List<Record> records = new ArrayList<>();
+        int index = 0;
+        while (index < samples) {
+            int length = Math.min(samples - index, 100 + random.nextInt(400));
+            int[] data = new int[length];
+            System.arraycopy(waveform, index, data, 0, length);
+            records.add(new Record(Analysis.sampleTime(START, index, SAMPLE_RATE), data));
+            index += length;
+        }
+
+        records.add(records.size() / 2, records.get(records.size() / 2 - 3));
+        return records;
+    }
+
+    private static BetterAnalysis createAnalysis() {
+        AbstractStation station = new GlobalStation("", "", "", "", 50, 17, 0, 0, null, -1, InputType.UNKNOWN);
+        BetterAnalysis analysis = (BetterAnalysis) station.getAnalysis();
+        analysis.setSampleRate(SAMPLE_RATE);
+        analysis.reset();
+        return analysis;
+    }
+
+    @Test
+    public void testBlockSameAsPerSample() {
+        List<Record> records = createRecords();
+        BetterAnalysis perSample = createAnalysis();
+        BetterAnalysis perRecord = createAnalysis();
+
+        for (Record record : records) {
+            // each record arrives a second after its last sample
+            long currentTime = record.endTime() + 1000;
+            for (int i = 0; i < record.data().length; i++) {
+                perSample.nextSample(record.data()[i], Analysis.sampleTime(record.startTime(), i, SAMPLE_RATE), currentTime);
+            }
+            perRecord.nextSamples(record.data(), record.startTime(), SAMPLE_RATE, currentTime);
+
+            assertEquals(perSample.getStatus(), perRecord.getStatus());
+            assertEquals(perSample.getLatestLogTime(), perRecord.getLatestLogTime());
+            assertEquals(perSample._maxRatio, perRecord._maxRatio, 0);
+            assertEquals(perSample._maxVelocity, perRecord._maxVelocity, 0);
+        }
+
+        WaveformBuffer expected = perSample.getWaveformBuffer();
+        WaveformBuffer actual = perRecord.getWaveformBuffer();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.getNextSlot(), actual.getNextSlot());
+        assertEquals(expected.getOldestDataSlot(), actual.getOldestDataSlot());
+        for (int i = 0; i < expected.getSize(); i++) {
+            assertEquals(expected.toLog(i), actual.toLog(i));
+        }
+
+        List<Event> expectedEvents = perSample.getDetectedEvents();
+        List<Event> actualEvents = perRecord.getDetectedEvents();
+        assertFalse(expectedEvents.isEmpty());
+        assertEquals(expectedEvents.size(), actualEvents.size());
+        for (int i = 0; i < expectedEvents.size(); i++) {
+            Event expectedEvent = expectedEvents.get(i);
+            Event actualEvent = actualEvents.get(i);
+            assertEquals(expectedEvent.getStart(), actualEvent.getStart());
+            assertEquals(expectedEvent.getEnd(), actualEvent.getEnd());
+            assertEquals(expectedEvent.isValid(), actualEvent.isValid());
+            assertEquals(expectedEvent.getMaxRatio(), actualEvent.getMaxRatio(), 0);
+            assertEquals(expectedEvent.getMaxVelocity(), actualEvent.getMaxVelocity(), 0);
+        }
+    }
+}
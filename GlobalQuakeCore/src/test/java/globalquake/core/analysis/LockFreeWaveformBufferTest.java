@@ -0,0 +1,152 @@
+package globalquake.core.analysis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LockFreeWaveformBufferTest {
+
+    private static final double SPS = 100.0;
+    private static final long STEP = 10;
+
+    private static void logSample(WaveformBuffer buffer, int seconds, long i) {
+        long time = i * STEP;
+        buffer.append(seconds, time, (int) i, i % 1000, i % 777, i % 555, 1, i % 333);
+    }
+
+    private static void assertConsistent(WaveformBuffer snapshot) {
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        int index = snapshot.getOldestDataSlot();
+        long previous = -1;
+        while (true) {
+            long time = snapshot.getTime(index);
+            long i = time / STEP;
+            assertEquals(i * STEP, time);
+            if (previous != -1) {
+                assertEquals(previous + 1, i);
+            }
+
+            assertEquals(i, snapshot.getRaw(index));
+            assertEquals(i % 1000, snapshot.getComputed(WaveformBuffer.FILTERED_VALUE, index), 0);
+            assertEquals(i % 777, snapshot.getRatio(index), 0);
+            assertEquals(i % 555, snapshot.getMediumRatio(index), 0);
+            assertEquals(i % 333, snapshot.getSpecialRatio(index), 0);
+
+            previous = i;
+            if (index == snapshot.getNewestDataSlot()) {
+                break;
+            }
+            index = (index + 1) % snapshot.getSize();
+        }
+    }
+
+    @Test
+    public void testSnapshotMatchesBuffer() {
+        LockFreeWaveformBuffer buffer = new LockFreeWaveformBuffer(SPS, 5, false);
+        assertTrue(buffer.snapshot().isEmpty());
+
+        for (long i = 0; i < 1234; i++) {
+            logSample(buffer, 5, i);
+        }
+
+        assertEquals(0, buffer.getSequence() % 2);
+
+        WaveformBuffer snapshot = buffer.snapshot();
+        assertEquals(buffer.getSize(), snapshot.getSize());
+        assertEquals(buffer.getOldestDataSlot(), snapshot.getOldestDataSlot());
+        assertEquals(buffer.getNewestDataSlot(), snapshot.getNewestDataSlot());
+        assertEquals(1233 * STEP, snapshot.getTime(snapshot.getNewestDataSlot()));
+        assertConsistent(snapshot);
+
+        // the snapshot is independent of further writes
+        logSample(buffer, 5, 1234);
+        assertEquals(1233 * STEP, snapshot.getTime(snapshot.getNewestDataSlot()));
+    }
+
+    @Test
+    public void testSequenceCountsNestedWritesOnce() {
+        LockFreeWaveformBuffer buffer = new LockFreeWaveformBuffer(SPS, 5, false);
+        for (long i = 0; i < 600; i++) {
+            logSample(buffer, 5, i);
+        }
+        assertEquals(1200, buffer.getSequence());
+
+        // resize inside append
+        logSample(buffer, 3, 600);
+        assertEquals(1202, buffer.getSequence());
+        assertEquals(300, buffer.getSize());
+        assertConsistent(buffer.snapshot());
+    }
+
+    @Test
+    public void testConcurrentSnapshotsLockFree() throws InterruptedException {
+        stressTest(new LockFreeWaveformBuffer(SPS, 5, false));
+    }
+
+    @Test
+    public void testConcurrentSnapshotsLocked() throws InterruptedException {
+        stressTest(new WaveformBuffer(SPS, 5, false));
+    }
+
+    private static void stressTest(WaveformBuffer buffer) throws InterruptedException {
+        final long samples = 300_000;
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong snapshots = new AtomicLong();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        assertConsistent(buffer.snapshot());
+                        snapshots.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        Thread writer = new Thread(() -> {
+            try {
+                for (long i = 0; i < samples && failure.get() == null; i++) {
+                    // resize every now and then to exercise the array replacement
+                    int seconds = (i / 20_000) % 2 == 0 ? 5 : 3;
+                    logSample(buffer, seconds, i);
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                running.set(false);
+            }
+        });
+
+        writer.start();
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Inconsistent snapshot", failure.get());
+        }
+
+        assertTrue(snapshots.get() > 0);
+        WaveformBuffer snapshot = buffer.snapshot();
+        assertConsistent(snapshot);
+        assertEquals((samples - 1) * STEP, snapshot.getTime(snapshot.getNewestDataSlot()));
+    }
+
+}
@@ -0,0 +1,52 @@
+package globalquake.core.archive;
+
+import globalquake.core.earthquake.quality.QualityClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ArchiveIndexTest {
+
+    private static List<ArchivedQuake> bruteForce(List<ArchivedQuake> quakes, ArchiveQuery query) {
+        List<ArchivedQuake> result = new ArrayList<>(quakes.stream().filter(query::matches).sorted(query.order().comparator()).toList());
+        int end = (int) Math.min(result.size(), (long) query.offset() + query.limit());
+        return result.subList(Math.min(query.offset(), result.size()), end);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(0);
+        ArchiveIndex index = new ArchiveIndex();
+        List<ArchivedQuake> quakes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ArchivedQuake quake = new ArchivedQuake(UUID.randomUUID(), random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+                    random.nextDouble() * 600, random.nextDouble() * 9, random.nextInt(1000) * 1000L, QualityClass.B, 0);
+            quakes.add(quake);
+            index.add(quake);
+        }
+
+        for (ArchivedQuake removed : quakes.subList(0, 100)) {
+            index.remove(removed);
+        }
+        quakes = quakes.subList(100, quakes.size());
+        assertEquals(quakes.size(), index.size());
+
+        for (ArchiveQuery.Order order : ArchiveQuery.Order.values()) {
+            List<ArchiveQuery> queries = List.of(
+                    new ArchiveQuery(Long.MIN_VALUE, Long.MAX_VALUE, -90, 90, -180, 180, -6371, 6371, -10, 10, order, 0, Integer.MAX_VALUE),
+                    new ArchiveQuery(200_000, 500_000, -90, 90, -180, 180, -6371, 6371, -10, 10, order, 10, 25),
+                    new ArchiveQuery(0, 999_000, 20, 55.5, -30, 40, 0, 300, 3.5, 6.2, order, 0, 50),
+                    new ArchiveQuery(0, 999_000, 20, 55.5, -30, 40, 0, 300, 3.5, 6.2, order, 5, Integer.MAX_VALUE),
+                    new ArchiveQuery(600_000, 400_000, -90, 90, -180, 180, -6371, 6371, -10, 10, order, 0, 10));
+
+            for (ArchiveQuery query : queries) {
+                assertEquals(query.toString(), bruteForce(quakes, query), index.query(query));
+            }
+        }
+    }
+}
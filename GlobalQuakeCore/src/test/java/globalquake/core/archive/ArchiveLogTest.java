@@ -0,0 +1,130 @@
+package globalquake.core.archive;
+
+import globalquake.core.earthquake.quality.QualityClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ArchiveLogTest {
+
+    private static ArchivedQuake createQuake(long origin) {
+        return new ArchivedQuake(UUID.randomUUID(), 50, 17, 10, 4.5, origin, QualityClass.B, origin + 1000);
+    }
+
+    private static ArchiveLog openLog(Path directory) throws IOException {
+        return new ArchiveLog(directory.resolve("archive.log"), directory.resolve("archive.idx")).open();
+    }
+
+    @Test
+    public void testReopenWithIndex() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        ArchivedQuake first = createQuake(1000);
+        ArchivedQuake second = createQuake(3000);
+        ArchivedQuake third = createQuake(2000);
+
+        try (ArchiveLog log = openLog(directory)) {
+            log.append(first);
+            log.append(second);
+            log.append(third);
+        }
+
+        try (ArchiveLog log = openLog(directory)) {
+            // appended after the index was written, found by scanning the tail
+            log.append(createQuake(500));
+        }
+
+        try (ArchiveLog log = openLog(directory)) {
+            assertEquals(4, log.size());
+            List<ArchivedQuake> newest = log.readNewest(2);
+            assertEquals(second.getUuid(), newest.get(0).getUuid());
+            assertEquals(third.getUuid(), newest.get(1).getUuid());
+            assertEquals(first.getMag(), log.read(first.getUuid()).getMag(), 1e-9);
+
+            List<ArchiveLog.IndexEntry> between = log.findBetween(1000, 3000);
+            assertEquals(2, between.size());
+            assertEquals(third.getUuid(), between.get(0).uuid());
+            assertEquals(first.getUuid(), between.get(1).uuid());
+        }
+    }
+
+    @Test
+    public void testUpdateSupersedes() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        ArchivedQuake quake = createQuake(1000);
+
+        try (ArchiveLog log = openLog(directory)) {
+            log.append(quake);
+            quake.setWrong(true);
+            log.append(quake);
+
+            assertEquals(1, log.size());
+            assertEquals(2, log.getTotalEntries());
+            assertTrue(log.read(quake.getUuid()).isWrong());
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        ArchivedQuake quake = createQuake(1000);
+
+        long validSize;
+        try (ArchiveLog log = openLog(directory)) {
+            log.append(quake);
+            validSize = log.getLogSize();
+            log.append(createQuake(2000));
+        }
+        Files.delete(directory.resolve("archive.idx"));
+
+        // simulate a crash in the middle of the second append
+        try (FileChannel channel = FileChannel.open(directory.resolve("archive.log"), StandardOpenOption.WRITE)) {
+            channel.truncate(validSize + 40);
+        }
+
+        try (ArchiveLog log = openLog(directory)) {
+            assertEquals(1, log.size());
+            assertEquals(validSize, log.getLogSize());
+            assertEquals(validSize, Files.size(directory.resolve("archive.log")));
+            assertNotNull(log.read(quake.getUuid()));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("archive");
+        try (ArchiveLog log = openLog(directory)) {
+            for (int i = 0; i < 50; i++) {
+                ArchivedQuake quake = createQuake(i * 1000L);
+                log.append(quake);
+                log.append(quake);
+            }
+
+            long sizeBefore = log.getLogSize();
+            log.compact(10);
+
+            assertEquals(10, log.size());
+            assertEquals(10, log.getTotalEntries());
+            assertTrue(log.getLogSize() < sizeBefore / 5);
+
+            List<ArchivedQuake> newest = log.readNewest(100);
+            assertEquals(10, newest.size());
+            assertEquals(49000L, newest.get(0).getOrigin());
+            assertEquals(40000L, newest.get(9).getOrigin());
+
+            log.append(createQuake(100_000));
+        }
+
+        try (ArchiveLog log = openLog(directory)) {
+            assertEquals(11, log.size());
+            assertEquals(100_000L, log.readNewest(1).get(0).getOrigin());
+        }
+    }
+}
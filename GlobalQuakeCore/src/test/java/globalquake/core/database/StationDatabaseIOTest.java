@@ -0,0 +1,116 @@
+package globalquake.core.database;
+
+import gqserver.api.packets.station.InputType;
+import org.junit.Test;
+
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StationDatabaseIOTest {
+
+    private static StationDatabase createDatabase() {
+        StationDatabase stationDatabase = new StationDatabase();
+        StationSource source = stationDatabase.getStationSources().get(0);
+        source.setLastUpdate(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6));
+        StationSource unlisted = new StationSource("unlisted", "http://localhost/");
+
+        for (int n = 0; n < 3; n++) {
+            Network network = StationDatabase.getOrCreateNetwork(stationDatabase.getNetworks(), "N" + n, "Network " + n);
+            for (int s = 0; s < 20; s++) {
+                Station station = StationDatabase.getOrCreateStation(network, "STA" + s, "Site", n, s, 100);
+                StationDatabase.getOrCreateChannel(station, "HHZ", "00", n, s, 100, 100, source, 1e9, InputType.VELOCITY);
+                Channel channel = StationDatabase.getOrCreateChannel(station, "HNZ", "", n, s, 100, 200, unlisted, -1, InputType.UNKNOWN);
+                channel.getStationSources().add(source);
+                station.setSelectedChannel(channel);
+            }
+        }
+
+        return stationDatabase;
+    }
+
+    @Test
+    public void testIndexConsistency() {
+        StationDatabase stationDatabase = createDatabase();
+        List<Network> networks = stationDatabase.getNetworks();
+
+        assertSame(networks.get(1), StationDatabase.getNetwork(networks, "n1"));
+        assertSame(networks.get(1).getStations().get(5), StationDatabase.getStation(networks, "N1", "sta5"));
+        assertSame(networks.get(1).getStations().get(5).getChannels().get(1),
+                StationDatabase.getChannel(networks, "N1", "STA5", "hnz", ""));
+        assertNull(StationDatabase.getChannel(networks, "N1", "STA5", "HNZ", "00"));
+
+        networks.get(1).getStations().removeIf(station -> station.getStationCode().equals("STA5"));
+        assertNull(StationDatabase.getStation(networks, "N1", "STA5"));
+        assertNotNull(StationDatabase.getStation(networks, "N1", "STA6"));
+
+        // a duplicate takes over once the first one is removed
+        Network duplicate = new Network("N0", "Duplicate");
+        networks.add(duplicate);
+        assertNotSame(duplicate, StationDatabase.getNetwork(networks, "N0"));
+        networks.remove(0);
+        assertSame(duplicate, StationDatabase.getNetwork(networks, "N0"));
+
+        networks.set(0, new Network("X", ""));
+        assertNull(StationDatabase.getNetwork(networks, "N1"));
+        assertNotNull(StationDatabase.getNetwork(networks, "X"));
+
+        networks.clear();
+        assertNull(StationDatabase.getNetwork(networks, "X"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StationDatabase stationDatabase = createDatabase();
+        StationDatabase loaded = StationDatabaseIO.decode(StationDatabaseIO.encode(stationDatabase));
+
+        assertEquals(stationDatabase.getStationSources(), loaded.getStationSources());
+        assertEquals(stationDatabase.getStationSources().get(0).getLastUpdate(), loaded.getStationSources().get(0).getLastUpdate());
+        assertEquals(stationDatabase.getSeedlinkNetworks().size(), loaded.getSeedlinkNetworks().size());
+        assertEquals(stationDatabase.getSeedlinkNetworks().get(3).getHost(), loaded.getSeedlinkNetworks().get(3).getHost());
+        assertEquals(stationDatabase.getNetworks(), loaded.getNetworks());
+
+        Station station = StationDatabase.getStation(loaded.getNetworks(), "N2", "STA7");
+        assertNotNull(station);
+        assertSame(station.getChannels().get(1), station.getSelectedChannel());
+        assertEquals(2, station.getSelectedChannel().getStationSources().size());
+        assertEquals(InputType.VELOCITY, station.getChannels().get(0).getInputType());
+        assertEquals(1e9, station.getChannels().get(0).getSensitivity(), 1e-6);
+
+        // channels share the instances of the listed station sources
+        assertTrue(station.getChannels().get(0).getStationSources().stream().allMatch(source -> source == loaded.getStationSources().get(0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedFile() throws IOException {
+        byte[] data = StationDatabaseIO.encode(createDatabase());
+        data[data.length / 2] ^= 1;
+        StationDatabaseIO.decode(data);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotADatabase() throws IOException {
+        StationDatabaseIO.decode(new byte[]{1, 2, 3});
+    }
+
+    @Test
+    public void testLegacySerializationKeepsIndex() throws Exception {
+        StationDatabase stationDatabase = createDatabase();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(stationDatabase);
+        }
+
+        StationDatabase loaded;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            loaded = (StationDatabase) in.readObject();
+        }
+
+        assertEquals(stationDatabase.getNetworks(), loaded.getNetworks());
+        assertSame(loaded.getNetworks().get(2).getStations().get(3).getChannels().get(0),
+                StationDatabase.getChannel(loaded.getNetworks(), "N2", "STA3", "HHZ", "00"));
+    }
+}
@@ -0,0 +1,92 @@
+package globalquake.core.database;
+
+import gqserver.api.packets.station.InputType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+public class StationXMLParserTest {
+
+    private static InputStream fixture(String name) {
+        return Objects.requireNonNull(StationXMLParserTest.class.getResourceAsStream("/database/" + name));
+    }
+
+    @Test
+    public void testStationXML() throws Exception {
+        StationSource stationSource = new StationSource("test", "http://localhost/fdsnws/station/1/");
+        List<Network> result = new ArrayList<>();
+        try (InputStream in = fixture("fdsnws_station.xml")) {
+            FDSNWSDownloader.parseStationXML(stationSource, result, in);
+        }
+
+        // the network without code is skipped
+        assertEquals(1, result.size());
+        Network network = result.get(0);
+        assertEquals("CZ", network.getNetworkCode());
+        assertEquals("Czech Regional Seismic Network", network.getDescription());
+        assertEquals(2, network.getStations().size());
+
+        Station pru = network.getStations().get(0);
+        assertEquals("PRU", pru.getStationCode());
+        assertEquals("Pruhonice", pru.getStationSite().trim());
+        assertEquals(49.9883, pru.getLatitude(), 1e-9);
+        assertEquals(14.5417, pru.getLongitude(), 1e-9);
+        assertEquals(302, pru.getAlt(), 1e-9);
+
+        // LHZ is not supported and BHZ has ended
+        assertEquals(2, pru.getChannels().size());
+
+        Channel hhz = pru.getChannels().get(0);
+        assertEquals("HHZ", hhz.getCode());
+        assertEquals("", hhz.getLocationCode());
+        assertEquals(49.9884, hhz.getLatitude(), 1e-9);
+        assertEquals(301.5, hhz.getElevation(), 1e-9);
+        assertEquals(100, hhz.getSampleRate(), 1e-9);
+        assertEquals(6.29145E8, hhz.getSensitivity(), 1e-3);
+        assertEquals(InputType.VELOCITY, hhz.getInputType());
+
+        Channel hnz = pru.getChannels().get(1);
+        assertEquals("HNZ", hnz.getCode());
+        assertEquals("10", hnz.getLocationCode());
+        assertEquals(427000 * 1E9, hnz.getSensitivity(), 1);
+        assertEquals(InputType.ACCELERATION, hnz.getInputType());
+
+        // the stage gain is not the instrument sensitivity
+        Channel bhz = network.getStations().get(1).getChannels().get(0);
+        assertEquals("BHZ", bhz.getCode());
+        assertEquals(-1, bhz.getSampleRate(), 1e-9);
+        assertEquals(InputType.UNKNOWN, bhz.getInputType());
+    }
+
+    @Test
+    public void testEmptyDocument() throws Exception {
+        List<Network> result = new ArrayList<>();
+        FDSNWSDownloader.parseStationXML(new StationSource("test", ""), result, new ByteArrayInputStream(new byte[0]));
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testSeedlinkStreams() throws Exception {
+        String info;
+        try (InputStream in = fixture("seedlink_info_streams.xml")) {
+            info = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        List<String> streams = new ArrayList<>();
+        int stations = SeedlinkCommunicator.readStreams(info, (networkCode, stationCode, locationCode, channelName, endDate) ->
+                streams.add(String.join("|", networkCode, stationCode, locationCode, channelName, endDate)));
+
+        assertEquals(2, stations);
+        assertEquals(List.of(
+                "CZ|PRU||HHZ|2024/01/10 12:00:00.0000",
+                "CZ|PRU|10|HNZ|2024-01-10 12:00:01",
+                "CZ|KRUC|00|BHZ|2024/01/09 00:00:00.0000"), streams);
+    }
+}
@@ -0,0 +1,131 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.Settings;
+import globalquake.core.analysis.Event;
+import globalquake.core.earthquake.data.*;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.training.ClusterAnalysisTraining;
+import globalquake.utils.GeoUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EarthquakeAnalysisWarmStartTest {
+
+    private static final HypocenterFinderSettings FINDER_SETTINGS = new HypocenterFinderSettings(Settings.pWaveInaccuracyThresholdDefault,
+            Settings.hypocenterCorrectThresholdDefault, Settings.hypocenterDetectionResolutionDefault,
+            Settings.hypocenterDetectionResolutionGPUDefault, Settings.minimumStationsForEEWDefault, false);
+
+    private static final double QUAKE_LAT = 37.0;
+    private static final double QUAKE_LON = 138.0;
+    private static final double QUAKE_DEPTH = 10.0;
+    private static final long QUAKE_ORIGIN = 1_700_000_000_000L;
+
+    @Before
+    public void setUp() throws Exception {
+        TauPTravelTimeCalculator.init();
+        if (GlobalQuake.mainFolder == null) {
+            // settings are saved on first use
+            GlobalQuake.prepare(Files.createTempDirectory("settings").toFile(), null);
+        }
+    }
+
+    /**
+     * P wave picks of the quake at random stations up to 4 degrees away, with a little picking error
+     */
+    private static List<PickedEvent> createPicks(Random random, int count) {
+        List<PickedEvent> picks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double lat = QUAKE_LAT + (random.nextDouble() * 2 - 1) * 4;
+            double lon = QUAKE_LON + (random.nextDouble() * 2 - 1) * 4;
+            double angle = TauPTravelTimeCalculator.toAngle(GeoUtils.greatCircleDistance(QUAKE_LAT, QUAKE_LON, lat, lon));
+            long pWave = QUAKE_ORIGIN + (long) (TauPTravelTimeCalculator.getPWaveTravelTime(QUAKE_DEPTH, angle) * 1000)
+                    + random.nextLong(-200, 200);
+            picks.add(new PickedEvent(pWave, lat, lon, 0, 100));
+        }
+        return picks;
+    }
+
+    private static Cluster createCluster(List<PickedEvent> picks) {
+        Cluster cluster = new Cluster();
+        for (PickedEvent pick : picks) {
+            AbstractStation station = new ClusterAnalysisTraining.SimulatedStation(pick.lat(), pick.lon(), pick.elevation());
+            Event event = new Event(station.getAnalysis());
+            event.setpWave(pick.pWave());
+            cluster.getAssignedEvents().put(station, event);
+        }
+        cluster.calculateRoot(true);
+        return cluster;
+    }
+
+    /**
+     * The hypocenter of the previous revision, as if it had been located from the given picks
+     */
+    private static Hypocenter locate(EarthquakeAnalysis analysis, List<PickedEvent> picks) {
+        PreliminaryHypocenter preliminaryHypocenter = analysis.runHypocenterFinder(picks, createCluster(picks), FINDER_SETTINGS, true);
+        Hypocenter hypocenter = preliminaryHypocenter.finish(null, null);
+        hypocenter.usedEvents = picks.size();
+        hypocenter.reducedEvents = picks.size();
+        hypocenter.totalEvents = picks.size();
+        return hypocenter;
+    }
+
+    @Test
+    public void testWarmStartMatchesFullSearch() {
+        EarthquakeAnalysis analysis = new EarthquakeAnalysis();
+        Random random = new Random(3);
+
+        List<PickedEvent> picks = createPicks(random, 30);
+        Hypocenter previous = locate(analysis, picks);
+
+        picks.addAll(createPicks(random, 3));
+        Cluster cluster = createCluster(picks);
+        cluster.setPreviousHypocenter(previous);
+
+        PreliminaryHypocenter warm = analysis.runIncrementalHypocenterFinder(new ArrayList<>(picks), cluster, FINDER_SETTINGS);
+        PreliminaryHypocenter full = analysis.runHypocenterFinder(new ArrayList<>(picks), createCluster(picks), FINDER_SETTINGS, true);
+
+        assertNotNull(warm);
+        assertEquals(0, GeoUtils.greatCircleDistance(warm.lat, warm.lon, full.lat, full.lon), 10.0);
+        assertEquals(full.depth, warm.depth, 10.0);
+        assertEquals(full.origin, warm.origin, 1000);
+        assertEquals(full.correctStations, warm.correctStations, 1);
+    }
+
+    @Test
+    public void testWarmStartFallsBack() {
+        EarthquakeAnalysis analysis = new EarthquakeAnalysis();
+        Random random = new Random(4);
+
+        List<PickedEvent> picks = createPicks(random, 30);
+        Hypocenter previous = locate(analysis, picks);
+
+        // the previous hypocenter no longer fits the picks
+        Hypocenter moved = new Hypocenter(previous.lat + 3, previous.lon - 3, previous.depth, previous.origin,
+                previous.totalErr, previous.correctEvents, null, null);
+        moved.usedEvents = previous.usedEvents;
+        moved.reducedEvents = previous.reducedEvents;
+        moved.totalEvents = previous.totalEvents;
+
+        List<PickedEvent> fewNew = new ArrayList<>(picks);
+        fewNew.addAll(createPicks(random, 3));
+        Cluster cluster = createCluster(fewNew);
+        cluster.setPreviousHypocenter(moved);
+        assertNull(analysis.runIncrementalHypocenterFinder(new ArrayList<>(fewNew), cluster, FINDER_SETTINGS));
+
+        // too many events were added since the previous revision
+        List<PickedEvent> manyNew = new ArrayList<>(picks);
+        manyNew.addAll(createPicks(random, 20));
+        cluster = createCluster(manyNew);
+        cluster.setPreviousHypocenter(previous);
+        assertNull(analysis.runIncrementalHypocenterFinder(new ArrayList<>(manyNew), cluster, FINDER_SETTINGS));
+    }
+}
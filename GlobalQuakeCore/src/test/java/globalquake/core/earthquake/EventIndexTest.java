@@ -0,0 +1,103 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.analysis.Event;
+import globalquake.core.earthquake.data.Cluster;
+import globalquake.core.earthquake.data.Earthquake;
+import globalquake.core.earthquake.data.Hypocenter;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.training.ClusterAnalysisTraining;
+import globalquake.utils.GeoUtils;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class EventIndexTest {
+
+    private static Earthquake createEarthquake(double lat, double lon, double depth, long origin, double mag) {
+        Cluster cluster = new Cluster();
+        Hypocenter hypocenter = new Hypocenter(lat, lon, depth, origin, 0, 10, null, null);
+        hypocenter.magnitude = mag;
+        cluster.setPreviousHypocenter(hypocenter);
+        return new Earthquake(cluster);
+    }
+
+    private static void addEvent(AbstractStation station, long pWave) {
+        Event event = new Event(station.getAnalysis());
+        station.getAnalysis().getDetectedEvents().add(event);
+        event.setpWave(pWave);
+    }
+
+    @Test
+    public void testFindContainsAllArrivals() throws Exception {
+        TauPTravelTimeCalculator.init();
+        Random r = new Random(0);
+
+        List<AbstractStation> stations = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = Math.toDegrees(Math.asin(r.nextDouble() * 2 - 1));
+            double lon = r.nextDouble() * 360 - 180;
+            stations.add(new ClusterAnalysisTraining.SimulatedStation(lat, lon, r.nextDouble() * 7000 - 3000));
+        }
+
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            earthquakes.add(createEarthquake(r.nextDouble() * 160 - 80, r.nextDouble() * 360 - 180,
+                    r.nextDouble() * 600, 1_000_000 + r.nextLong(20 * 60 * 1000), 4 + r.nextDouble() * 5));
+        }
+
+        // arrivals of all phases with generous noise and plenty of unrelated triggers
+        for (AbstractStation station : stations) {
+            for (Earthquake earthquake : earthquakes) {
+                double angle = TauPTravelTimeCalculator.toAngle(GeoUtils.greatCircleDistance(earthquake.getLat(), earthquake.getLon(),
+                        station.getLatitude(), station.getLongitude()));
+                for (double travel : new double[]{
+                        TauPTravelTimeCalculator.getPWaveTravelTime(earthquake.getDepth(), angle),
+                        TauPTravelTimeCalculator.getSWaveTravelTime(earthquake.getDepth(), angle),
+                        TauPTravelTimeCalculator.getPKPWaveTravelTime(earthquake.getDepth(), angle)}) {
+                    if (travel >= 0 && r.nextDouble() < 0.5) {
+                        addEvent(station, earthquake.getOrigin() + (long) (travel * 1000) + r.nextLong(-20000, 20000));
+                    }
+                }
+            }
+            if (r.nextDouble() < 0.3) {
+                addEvent(station, r.nextLong(4_000_000));
+            }
+        }
+
+        EventIndex eventIndex = new EventIndex(stations);
+        List<EventIndex.Entry> entries = eventIndex.getEntries();
+
+        for (Earthquake earthquake : earthquakes) {
+            List<EventIndex.Entry> pCandidates = eventIndex.find(earthquake.getLat(), earthquake.getLon(), ClusterAnalysis.pWaveWindow(earthquake));
+            List<EventIndex.Entry> sCandidates = eventIndex.find(earthquake.getLat(), earthquake.getLon(), ClusterAnalysis.sWaveWindow(earthquake));
+
+            int pArrivals = 0;
+            for (EventIndex.Entry entry : entries) {
+                if (ClusterAnalysis.couldBeArrival(entry.event(), earthquake, true, true, false)) {
+                    assertTrue(pCandidates.contains(entry));
+                    pArrivals++;
+                }
+                if (ClusterAnalysis.couldBeSArrival(entry.event(), earthquake)) {
+                    assertTrue(sCandidates.contains(entry));
+                }
+            }
+
+            assertTrue(pArrivals > 0);
+            assertTrue(pCandidates.size() < entries.size() / 2);
+
+            for (int i = 1; i < pCandidates.size(); i++) {
+                assertTrue(pCandidates.get(i - 1).order() < pCandidates.get(i).order());
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        EventIndex eventIndex = new EventIndex(List.of(new ClusterAnalysisTraining.SimulatedStation(10, 20, 0)));
+        assertTrue(eventIndex.getEntries().isEmpty());
+        assertTrue(eventIndex.find(10, 20, (minDist, maxDist, minAlt, maxAlt) -> new EventIndex.TimeRange(Long.MIN_VALUE, Long.MAX_VALUE)).isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.earthquake.data.Cluster;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HypocenterExecutorTest {
+
+    private static Runnable blocker(List<String> order, String name, CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            order.add(name);
+            started.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    @Test
+    public void testPriorityAndSupersededRevisions() throws Exception {
+        HypocenterExecutor executor = new HypocenterExecutor(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Cluster a = new Cluster();
+        Cluster b = new Cluster();
+        Cluster c = new Cluster();
+
+        executor.submit(a, 0, blocker(order, "A1", started, release));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.submit(b, 1, () -> order.add("B1"));
+        executor.submit(c, 5, () -> order.add("C1"));
+        executor.submit(b, 2, () -> order.add("B2"));
+        executor.submit(a, 0, () -> order.add("A2"));
+        executor.submit(a, 0, () -> order.add("A3"));
+
+        release.countDown();
+        executor.awaitIdle();
+
+        assertEquals(List.of("A1", "C1", "B2", "A3"), order);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRemovedClustersAreDropped() throws Exception {
+        HypocenterExecutor executor = new HypocenterExecutor(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Cluster a = new Cluster();
+        Cluster b = new Cluster();
+
+        executor.submit(a, 0, blocker(order, "A1", started, release));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.submit(b, 10, () -> order.add("B1"));
+        executor.submit(a, 0, () -> order.add("A2"));
+        executor.retainAll(List.of(a));
+        executor.retainAll(Collections.emptyList());
+
+        release.countDown();
+        executor.awaitIdle();
+
+        assertEquals(List.of("A1"), order);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,333 @@
+package globalquake.core.earthquake;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.Settings;
+import globalquake.core.analysis.Event;
+import globalquake.core.earthquake.data.Cluster;
+import globalquake.core.earthquake.data.Earthquake;
+import globalquake.core.earthquake.data.Hypocenter;
+import globalquake.core.events.GlobalQuakeEventHandler;
+import globalquake.core.geo.taup.TauPTravelTimeCalculator;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStationManager;
+import globalquake.core.training.ClusterAnalysisTraining;
+import globalquake.utils.GeoUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class IncrementalAssociationTest {
+
+    private static final int STEPS = 60;
+    private static final long STEP = 5000;
+
+    private record Quake(double lat, double lon, double depth, long origin, double mag) {
+    }
+
+    private record Pick(int station, long time) {
+    }
+
+    /**
+     * Stations with picks of a few earthquakes and a stand-in for the hypocenter search
+     */
+    private static final class World {
+        private final List<AbstractStation> stations = new ArrayList<>();
+        private final List<Earthquake> earthquakes = new CopyOnWriteArrayList<>();
+        private final List<Quake> quakes = new ArrayList<>();
+        private final List<Pick> picks = new ArrayList<>();
+        private final ClusterAnalysis clusterAnalysis;
+        private final Random random;
+        private final long base;
+        private int nextPick;
+
+        private World(long seed, long base) {
+            this.base = base;
+            Random r = new Random(seed);
+            for (int i = 0; i < 600; i++) {
+                stations.add(new ClusterAnalysisTraining.SimulatedStation(30 + r.nextDouble() * 15, 130 + r.nextDouble() * 15, r.nextDouble() * 2000));
+            }
+            for (int i = 0; i < 300; i++) {
+                double lat = Math.toDegrees(Math.asin(r.nextDouble() * 2 - 1));
+                stations.add(new ClusterAnalysisTraining.SimulatedStation(lat, r.nextDouble() * 360 - 180, r.nextDouble() * 2000));
+            }
+
+            GlobalStationManager.createListOfClosestStations(stations);
+
+            quakes.add(new Quake(37, 138, 10, base + 10_000, 6.5));
+            quakes.add(new Quake(33, 141, 300, base + 60_000, 5.0));
+            quakes.add(new Quake(-20, -70, 100, base + 20_000, 7.5));
+
+            for (int i = 0; i < stations.size(); i++) {
+                AbstractStation station = stations.get(i);
+                for (Quake quake : quakes) {
+                    double angle = TauPTravelTimeCalculator.toAngle(GeoUtils.greatCircleDistance(quake.lat(), quake.lon(),
+                            station.getLatitude(), station.getLongitude()));
+                    for (double travel : new double[]{
+                            TauPTravelTimeCalculator.getPWaveTravelTime(quake.depth(), angle),
+                            TauPTravelTimeCalculator.getSWaveTravelTime(quake.depth(), angle),
+                            TauPTravelTimeCalculator.getPKPWaveTravelTime(quake.depth(), angle)}) {
+                        if (travel >= 0 && r.nextDouble() < 0.7) {
+                            picks.add(new Pick(i, quake.origin() + (long) (travel * 1000) + r.nextLong(-1500, 1500)));
+                        }
+                    }
+                }
+                if (r.nextDouble() < 0.2) {
+                    picks.add(new Pick(i, base + r.nextLong(STEPS * STEP)));
+                }
+            }
+            picks.sort(Comparator.comparingLong(Pick::time));
+
+            random = new Random(seed);
+            clusterAnalysis = new ClusterAnalysis(earthquakes, stations);
+        }
+
+        private void step(long now) {
+            while (nextPick < picks.size() && picks.get(nextPick).time() <= now) {
+                Pick pick = picks.get(nextPick++);
+                AbstractStation station = stations.get(pick.station());
+                Event event = new Event(station.getAnalysis());
+                station.getAnalysis().getDetectedEvents().add(event);
+                event.setpWave(pick.time());
+            }
+
+            // repicked and discarded events
+            for (AbstractStation station : stations) {
+                for (Event event : station.getAnalysis().getDetectedEvents()) {
+                    double value = random.nextDouble();
+                    if (value < 0.01) {
+                        event.setpWave(event.getpWave() + 800);
+                    } else if (value < 0.012) {
+                        event.endBadly();
+                    }
+                }
+            }
+        }
+
+        private void locate(int step) {
+            for (Cluster cluster : clusterAnalysis.getClusters()) {
+                if (cluster.getEarthquake() == null && cluster.getAssignedEvents().size() >= 5) {
+                    Quake nearest = quakes.stream().min(Comparator.comparingDouble(quake ->
+                            GeoUtils.greatCircleDistance(quake.lat(), quake.lon(), cluster.getRootLat(), cluster.getRootLon()))).orElseThrow();
+                    cluster.setPreviousHypocenter(hypocenter(nearest, 0, cluster.getAssignedEvents().size()));
+                    Earthquake earthquake = new Earthquake(cluster);
+                    cluster.setEarthquake(earthquake);
+                    earthquakes.add(earthquake);
+                } else if (cluster.getEarthquake() != null && step % 4 == 0) {
+                    Hypocenter previous = cluster.getPreviousHypocenter();
+                    Quake quake = new Quake(previous.lat, previous.lon, previous.depth, previous.origin, previous.magnitude);
+                    cluster.setPreviousHypocenter(hypocenter(quake, random.nextDouble() * 0.1, cluster.getAssignedEvents().size()));
+                    cluster.getEarthquake().update();
+                }
+            }
+        }
+
+        private static Hypocenter hypocenter(Quake quake, double shift, int correctEvents) {
+            Hypocenter hypocenter = new Hypocenter(quake.lat() + shift, quake.lon() - shift, quake.depth(),
+                    quake.origin() + (long) (shift * 1000), 0, correctEvents, null, null);
+            hypocenter.magnitude = quake.mag();
+            return hypocenter;
+        }
+
+        private List<String> describe() {
+            Map<Event, String> names = new HashMap<>();
+            List<String> sWaves = new ArrayList<>();
+            for (int i = 0; i < stations.size(); i++) {
+                List<Event> events = stations.get(i).getAnalysis().getDetectedEvents();
+                for (int j = 0; j < events.size(); j++) {
+                    names.put(events.get(j), i + ":" + j);
+                    if (events.get(j).isSWave()) {
+                        sWaves.add(i + ":" + j);
+                    }
+                }
+            }
+
+            List<String> result = new ArrayList<>();
+            result.add("S " + sWaves);
+            for (Cluster cluster : clusterAnalysis.getClusters()) {
+                List<String> assigned = new ArrayList<>();
+                for (Event event : cluster.getAssignedEvents().values()) {
+                    assigned.add(names.get(event));
+                }
+                Collections.sort(assigned);
+                result.add((cluster.getEarthquake() != null) + " " + assigned);
+            }
+            return result;
+        }
+    }
+
+    private Boolean incrementalClusterAnalysis;
+
+    @Before
+    public void setUp() throws Exception {
+        TauPTravelTimeCalculator.init();
+        if (GlobalQuake.mainFolder == null) {
+            // settings are saved on first use
+            GlobalQuake.prepare(Files.createTempDirectory("settings").toFile(), null);
+        }
+        incrementalClusterAnalysis = Settings.incrementalClusterAnalysis;
+        new GlobalQuake() {
+            {
+                eventHandler = new GlobalQuakeEventHandler().runHandler();
+            }
+
+            @Override
+            public boolean limitedSettings() {
+                return true;
+            }
+
+            @Override
+            public boolean limitedWaveformBuffers() {
+                return true;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        Settings.incrementalClusterAnalysis = incrementalClusterAnalysis;
+        GlobalQuake.instance.getEventHandler().stopHandler();
+        GlobalQuake.instance = null;
+    }
+
+    private static void assertCandidates(World world) {
+        IncrementalAssociation association = world.clusterAnalysis.getIncrementalAssociation();
+        EventIndex eventIndex = new EventIndex(world.stations);
+        for (Cluster cluster : world.clusterAnalysis.getClusters()) {
+            IncrementalAssociation.Candidates candidates = association.getCandidates(cluster);
+            if (candidates == null) {
+                continue;
+            }
+
+            Earthquake earthquake = cluster.getEarthquake();
+            Set<Event> pArrivals = new HashSet<>();
+            for (EventIndex.Entry entry : association.getPArrivals(eventIndex, cluster)) {
+                pArrivals.add(entry.event());
+            }
+
+            for (EventIndex.Entry entry : eventIndex.getEntries()) {
+                Event event = entry.event();
+                boolean sArrival = ClusterAnalysis.couldBeSArrival(event, earthquake);
+                assertEquals(sArrival, candidates.isSArrival(event));
+                assertEquals(sArrival && !ClusterAnalysis.couldBePWaveArrival(event, earthquake, true, false, true),
+                        candidates.getSOnlyArrivals().contains(event));
+                assertEquals(ClusterAnalysis.couldBePWaveArrival(event, earthquake, true, true, false), pArrivals.contains(event));
+            }
+        }
+    }
+
+    @Test
+    public void testCandidatesFollowChanges() {
+        World world = new World(1, System.currentTimeMillis() - 2 * 60 * 1000);
+        Settings.incrementalClusterAnalysis = true;
+
+        boolean checked = false;
+        for (int step = 0; step < STEPS; step++) {
+            world.step(world.base + step * STEP);
+
+            world.clusterAnalysis.run();
+            assertCandidates(world);
+
+            world.locate(step);
+            checked |= !world.earthquakes.isEmpty();
+        }
+
+        assertTrue(checked);
+        assertTrue(world.describe().get(0).length() > 4);
+    }
+
+    @Test
+    public void testSkippedPassChangesNothing() {
+        World world = new World(2, System.currentTimeMillis() - 2 * 60 * 1000);
+        Settings.incrementalClusterAnalysis = true;
+
+        int compared = 0;
+        for (int step = 0; step < STEPS; step++) {
+            world.step(world.base + step * STEP);
+            world.clusterAnalysis.run();
+            world.locate(step);
+
+            IncrementalAssociation association = world.clusterAnalysis.getIncrementalAssociation();
+            int skipped = association.getSkippedPasses();
+            world.clusterAnalysis.run();
+            world.clusterAnalysis.run();
+            if (association.getSkippedPasses() > skipped && step % 10 == 9) {
+                // a full pass on the same state has to agree with the skipped one
+                List<String> before = world.describe();
+                Settings.incrementalClusterAnalysis = false;
+                world.clusterAnalysis.run();
+                Settings.incrementalClusterAnalysis = true;
+                assertEquals(before, world.describe());
+                compared++;
+            }
+        }
+
+        assertTrue(compared > 0);
+    }
+
+    @Test
+    public void testOnlyRealChangesAreTracked() {
+        AbstractStation station = new ClusterAnalysisTraining.SimulatedStation(35, 135, 0);
+        Set<Event> changed = ConcurrentHashMap.newKeySet();
+        Event.trackChanges(changed);
+        try {
+            Event event = new Event(station.getAnalysis());
+            station.getAnalysis().getDetectedEvents().add(event);
+            assertTrue(changed.isEmpty());
+
+            event.setpWave(10_000);
+            assertEquals(Set.of(event), changed);
+            changed.clear();
+
+            event.setpWave(10_000);
+            event.setAsSWave(false);
+            assertTrue(changed.isEmpty());
+
+            event.setAsSWave(true);
+            assertEquals(Set.of(event), changed);
+            changed.clear();
+
+            event.endBadly();
+            assertEquals(Set.of(event), changed);
+            changed.clear();
+
+            event.endBadly();
+            assertTrue(changed.isEmpty());
+        } finally {
+            Event.stopTrackingChanges(changed);
+        }
+    }
+
+    @Test
+    public void testNoChangesNoPass() {
+        World world = new World(3, System.currentTimeMillis() - 2 * 60 * 1000);
+        Settings.incrementalClusterAnalysis = true;
+
+        for (int step = 0; step < STEPS; step += 10) {
+            world.step(world.base + step * STEP);
+        }
+
+        // let the passes settle
+        for (int i = 0; i < 5; i++) {
+            world.clusterAnalysis.run();
+        }
+        assertFalse(world.clusterAnalysis.hasChangedEvents());
+
+        IncrementalAssociation association = world.clusterAnalysis.getIncrementalAssociation();
+        int skipped = association.getSkippedPasses();
+        world.clusterAnalysis.run();
+        assertEquals(skipped + 1, association.getSkippedPasses());
+
+        world.clusterAnalysis.destroy();
+        Event event = new Event(world.stations.get(0).getAnalysis());
+        world.stations.get(0).getAnalysis().getDetectedEvents().add(event);
+        event.setpWave(world.base);
+        assertFalse(world.clusterAnalysis.hasChangedEvents());
+    }
+}
@@ -0,0 +1,78 @@
+package globalquake.core.geo.taup;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class BinaryTravelTableTest {
+
+    private static float[][] createTable(int rows, int cols, float offset) {
+        float[][] table = new float[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                table[row][col] = offset + row * 1000 + col * 0.5f;
+            }
+        }
+        return table;
+    }
+
+    private static Path writeTestTable() throws IOException {
+        Path path = Files.createTempFile("travel_table", ".bin");
+        path.toFile().deleteOnExit();
+        BinaryTravelTable.write(path,
+                TravelTimeGrid.of(createTable(5, 7, 0)),
+                TravelTimeGrid.of(createTable(5, 7, 1)),
+                TravelTimeGrid.of(createTable(4, 9, 2)),
+                TravelTimeGrid.of(createTable(3, 2, 3)));
+        return path;
+    }
+
+    @Test
+    public void testMappedRoundTrip() throws IOException {
+        BinaryTravelTable table = BinaryTravelTable.map(writeTestTable());
+
+        assertArrayEquals(createTable(5, 7, 0), table.getPTable().toArray());
+        assertArrayEquals(createTable(5, 7, 1), table.getSTable().toArray());
+        assertArrayEquals(createTable(4, 9, 2), table.getPKIKPTable().toArray());
+        assertArrayEquals(createTable(3, 2, 3), table.getPKPTable().toArray());
+
+        assertEquals(2 + 3 * 1000 + 8 * 0.5f, table.getPKIKPTable().get(3, 8), 0);
+    }
+
+    @Test
+    public void testStreamRoundTrip() throws IOException {
+        BinaryTravelTable table = BinaryTravelTable.read(new ByteArrayInputStream(Files.readAllBytes(writeTestTable())));
+
+        assertArrayEquals(createTable(5, 7, 1), table.getSTable().toArray());
+        assertEquals(4, table.getPKIKPTable().getRows());
+        assertEquals(9, table.getPKIKPTable().getCols());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedData() throws IOException {
+        byte[] bytes = Files.readAllBytes(writeTestTable());
+        bytes[BinaryTravelTable.HEADER_SIZE + 17] ^= 0x10;
+        BinaryTravelTable.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedHeader() throws IOException {
+        byte[] bytes = Files.readAllBytes(writeTestTable());
+        // reserved field, not checked by anything but the checksum
+        bytes[12] ^= 0x01;
+        BinaryTravelTable.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongVersion() throws IOException {
+        byte[] bytes = Files.readAllBytes(writeTestTable());
+        bytes[4] = (byte) (BinaryTravelTable.VERSION + 1);
+        BinaryTravelTable.read(new ByteArrayInputStream(bytes));
+    }
+
+}
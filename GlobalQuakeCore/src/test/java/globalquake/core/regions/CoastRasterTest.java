@@ -0,0 +1,100 @@
+package globalquake.core.regions;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CoastRasterTest {
+
+    private static final int CELLS_PER_DEGREE = 2;
+    private static final float DISTANCE_STEP = 0.5f;
+
+    private static Path writeRaster(List<Region> regions) throws IOException {
+        Path path = Files.createTempFile("coast_raster", ".bin");
+        path.toFile().deleteOnExit();
+        CoastRaster.write(path, regions, CELLS_PER_DEGREE, DISTANCE_STEP);
+        return path;
+    }
+
+    @Test
+    public void testSameAsPolygons() throws IOException {
+        List<Region> regions = RegionIndexTest.createRegions(0);
+        RegionIndex index = new RegionIndex(regions);
+        CoastRaster raster = CoastRaster.map(writeRaster(regions));
+        assertEquals(CoastRaster.fingerprint(regions), raster.getFingerprint());
+
+        Random r = new Random(3);
+        int[] counts = new int[3];
+        int distances = 0;
+        for (int i = 0; i < 20_000; i++) {
+            double lat = Math.toDegrees(Math.asin(r.nextDouble() * 2 - 1));
+            double lon = r.nextDouble() * 360 - 180;
+            if (i % 4 == 0) {
+                // cell corners
+                lat = Math.floor(lat * CELLS_PER_DEGREE) / CELLS_PER_DEGREE;
+                lon = Math.floor(lon * CELLS_PER_DEGREE) / CELLS_PER_DEGREE;
+            }
+
+            int type = raster.getType(lat, lon);
+            counts[type]++;
+            if (type != CoastRaster.COAST) {
+                assertEquals(index.find(lat, lon) == null ? CoastRaster.OCEAN : CoastRaster.LAND, type);
+            }
+
+            double distance = raster.getCoastDistance(lat, lon);
+            if (!Double.isNaN(distance)) {
+                assertEquals(CoastRaster.OCEAN, type);
+                double exact = index.findClosestVertex(lat, lon, RegionIndex.greatCircle(lat, lon)).distance();
+                // the distance changes at most by the distance to the cell centers
+                assertEquals(exact, distance, Math.sqrt(2) * 111.2 / CELLS_PER_DEGREE + DISTANCE_STEP);
+                distances++;
+            }
+        }
+
+        assertTrue(counts[CoastRaster.OCEAN] > 1000);
+        assertTrue(counts[CoastRaster.LAND] > 100);
+        assertTrue(distances > 1000);
+    }
+
+    @Test
+    public void testReadEqualsMap() throws IOException {
+        List<Region> regions = RegionIndexTest.createRegions(1);
+        Path path = writeRaster(regions);
+        CoastRaster mapped = CoastRaster.map(path);
+        CoastRaster read;
+        try (InputStream in = Files.newInputStream(path)) {
+            read = CoastRaster.read(in);
+        }
+
+        Random r = new Random(4);
+        for (int i = 0; i < 10_000; i++) {
+            double lat = r.nextDouble() * 180 - 90;
+            double lon = r.nextDouble() * 360 - 180;
+            assertEquals(mapped.getType(lat, lon), read.getType(lat, lon));
+            assertEquals(mapped.getCoastDistance(lat, lon), read.getCoastDistance(lat, lon), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedFile() throws IOException {
+        Path path = writeRaster(RegionIndexTest.createRegions(2));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        CoastRaster.map(path);
+    }
+
+    @Test
+    public void testFingerprint() {
+        List<Region> regions = RegionIndexTest.createRegions(5);
+        assertEquals(CoastRaster.fingerprint(regions), CoastRaster.fingerprint(RegionIndexTest.createRegions(5)));
+        assertNotEquals(CoastRaster.fingerprint(regions), CoastRaster.fingerprint(regions.subList(1, regions.size())));
+    }
+}
@@ -0,0 +1,134 @@
+package globalquake.core.regions;
+
+import globalquake.utils.GeoUtils;
+import org.geojson.LngLatAlt;
+import org.geojson.Polygon;
+import org.junit.Test;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RegionIndexTest {
+
+    private static GQPolygon createPolygon(Random r, double lat, double lon, double size, List<Path2D.Float> paths) {
+        List<LngLatAlt> points = new ArrayList<>();
+        int count = 5 + r.nextInt(200);
+        Path2D.Float path = new Path2D.Float();
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            double radius = size * (0.3 + r.nextDouble());
+            LngLatAlt point = new LngLatAlt(lon + Math.cos(angle) * radius, Math.max(-90, Math.min(90, lat + Math.sin(angle) * radius)));
+            points.add(point);
+            if (i == 0) {
+                path.moveTo(point.getLongitude(), point.getLatitude());
+            } else {
+                path.lineTo(point.getLongitude(), point.getLatitude());
+            }
+        }
+        path.closePath();
+        paths.add(path);
+        return new GQPolygon(new Polygon(points));
+    }
+
+    static List<Region> createRegions(long seed) {
+        Random r = new Random(seed);
+        List<Region> regions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            List<Path2D.Float> paths = new ArrayList<>();
+            List<GQPolygon> raws = new ArrayList<>();
+            double lat = r.nextDouble() * 180 - 90;
+            // some polygons cross the antimeridian
+            double lon = r.nextDouble() * 380 - 190;
+            int parts = 1 + r.nextInt(3);
+            for (int j = 0; j < parts; j++) {
+                raws.add(createPolygon(r, lat + r.nextGaussian() * 3, lon + r.nextGaussian() * 3, r.nextDouble() * 8, paths));
+            }
+            regions.add(new Region("region" + i, paths, paths.stream().map(Path2D.Float::getBounds2D).toList(), raws));
+        }
+        return regions;
+    }
+
+    private static Region findLinear(List<Region> regions, double lat, double lon) {
+        Point2D.Double point = new Point2D.Double(lon, lat);
+        for (Region region : regions) {
+            for (int i = 0; i < region.paths().size(); i++) {
+                if (region.bounds().get(i).contains(point) && region.paths().get(i).contains(point)) {
+                    return region;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static RegionIndex.Vertex findClosestLinear(List<Region> regions, RegionIndex.Metric metric) {
+        RegionIndex.Vertex closest = null;
+        for (Region region : regions) {
+            for (GQPolygon polygon : region.raws()) {
+                for (int i = 0; i < polygon.getSize(); i++) {
+                    double dist = metric.distance(polygon.getLats()[i], polygon.getLons()[i]);
+                    if (closest == null || dist < closest.distance()) {
+                        closest = new RegionIndex.Vertex(region, polygon.getLats()[i], polygon.getLons()[i], dist);
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    @Test
+    public void testSameAsLinearSearch() {
+        List<Region> regions = createRegions(0);
+        RegionIndex index = new RegionIndex(regions);
+        Random r = new Random(1);
+
+        int inside = 0;
+        for (int i = 0; i < 500; i++) {
+            double lat = Math.toDegrees(Math.asin(r.nextDouble() * 2 - 1));
+            double lon = r.nextDouble() * 360 - 180;
+
+            Region region = findLinear(regions, lat, lon);
+            assertSame(region, index.find(lat, lon));
+            if (region != null) {
+                inside++;
+            }
+
+            for (RegionIndex.Metric metric : List.of(RegionIndex.greatCircle(lat, lon),
+                    RegionIndex.geological(lat, lon, r.nextDouble() * 700))) {
+                RegionIndex.Vertex expected = findClosestLinear(regions, metric);
+                assertEquals(expected, index.findClosestVertex(lat, lon, metric));
+            }
+        }
+
+        assertTrue(inside > 0);
+    }
+
+    @Test
+    public void testAngleToBoxIsLowerBound() {
+        Random r = new Random(2);
+        for (int i = 0; i < 100_000; i++) {
+            double lat = r.nextDouble() * 180 - 90;
+            double lon = r.nextDouble() * 360 - 180;
+            double minLat = r.nextDouble() * 180 - 90;
+            double maxLat = minLat + r.nextDouble() * (90 - minLat);
+            double minLon = r.nextDouble() * 400 - 200;
+            double maxLon = minLon + r.nextDouble() * 60;
+
+            double pLat = minLat + r.nextDouble() * (maxLat - minLat);
+            double pLon = minLon + r.nextDouble() * (maxLon - minLon);
+            double angle = GeoUtils.greatCircleDistance(lat, lon, pLat, pLon) / GeoUtils.EARTH_RADIUS;
+            assertTrue(RegionIndex.angleToBox(lat, lon, minLon, minLat, maxLon, maxLat) <= angle + 1e-9);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        RegionIndex index = new RegionIndex(List.of());
+        assertNull(index.find(10, 20));
+        assertNull(index.findClosestVertex(10, 20, RegionIndex.greatCircle(10, 20)));
+    }
+}
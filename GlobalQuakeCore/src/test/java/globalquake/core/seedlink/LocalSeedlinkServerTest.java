@@ -0,0 +1,115 @@
+package globalquake.core.seedlink;
+
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.seedlink.SeedlinkException;
+import edu.sc.seis.seisFile.seedlink.SeedlinkPacket;
+import edu.sc.seis.seisFile.seedlink.SeedlinkReader;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalSeedlinkServerTest {
+
+    private static LocalSeedlinkServer createServer(double disconnectInterval) throws Exception {
+        LocalSeedlinkServer server = new LocalSeedlinkServer(new LocalSeedlinkServer.ServerOptions(
+                3, List.of("HHZ", "00HHE"), 100, 10, disconnectInterval, List.of(), 1));
+        server.start(0);
+        return server;
+    }
+
+    @Test
+    public void testInfoStreams() throws Exception {
+        try (LocalSeedlinkServer server = createServer(0)) {
+            SeedlinkReader reader = new SeedlinkReader("127.0.0.1", server.getPort(), 10, false, 10);
+            String info = reader.getInfoString(SeedlinkReader.INFO_STREAMS);
+            reader.close();
+
+            assertTrue(info.contains("<station name=\"S002\" network=\"XA\""));
+            assertTrue(info.contains("location=\"00\" seedname=\"HHE\""));
+            assertEquals(6, info.split("<stream ").length - 1);
+        }
+    }
+
+    @Test
+    public void testDataStream() throws Exception {
+        try (LocalSeedlinkServer server = createServer(0)) {
+            SeedlinkReader reader = new SeedlinkReader("127.0.0.1", server.getPort(), 10, false, 10);
+            reader.sendHello();
+            reader.selectData("XA", "S001", List.of("00HHE"));
+            reader.endHandshake();
+
+            Instant previousEnd = null;
+            for (int i = 0; i < 5; i++) {
+                assertTrue(reader.hasNext());
+                SeedlinkPacket packet = reader.readPacket();
+                DataRecord record = packet.getMiniSeed();
+
+                assertEquals("XA", record.getHeader().getNetworkCode().trim());
+                assertEquals("S001", record.getHeader().getStationIdentifier().trim());
+                assertEquals("00", record.getHeader().getLocationIdentifier().trim());
+                assertEquals("HHE", record.getHeader().getChannelIdentifier().trim());
+                assertEquals(LocalSeedlinkServer.SAMPLES_PER_RECORD, record.getHeader().getNumSamples());
+                assertEquals(100.0, record.getSampleRate(), 1e-6);
+
+                Instant start = record.getStartBtime().toInstant();
+                if (previousEnd != null) {
+                    assertEquals(previousEnd, start);
+                }
+                previousEnd = record.getPredictedNextStartBtime().toInstant();
+            }
+
+            reader.close();
+        }
+    }
+
+    @Test(expected = SeedlinkException.class)
+    public void testUnknownStation() throws Exception {
+        try (LocalSeedlinkServer server = createServer(0)) {
+            SeedlinkReader reader = new SeedlinkReader("127.0.0.1", server.getPort(), 10, false, 10);
+            try {
+                reader.sendHello();
+                reader.selectData("XX", "NOPE", List.of("HHZ"));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testInducedDisconnect() throws Exception {
+        try (LocalSeedlinkServer server = createServer(0.5)) {
+            SeedlinkReader reader = new SeedlinkReader("127.0.0.1", server.getPort(), 10, false, 10);
+            reader.sendHello();
+            reader.selectData("XA", "S000", List.of("HHZ"));
+            reader.endHandshake();
+
+            long start = System.currentTimeMillis();
+            try {
+                while (reader.hasNext()) {
+                    reader.readPacket();
+                    assertTrue(System.currentTimeMillis() - start < 5000);
+                }
+            } catch (Exception ignored) {
+                // connection reset
+            } finally {
+                reader.close();
+            }
+
+            assertEquals(1, server.getInducedDisconnects());
+        }
+    }
+
+    @Test
+    public void testSelectorMatching() {
+        LocalSeedlinkServer.StreamId id = new LocalSeedlinkServer.StreamId("XA", "S000", "", "HHZ");
+        assertTrue(LocalSeedlinkServer.matches("HHZ", id));
+        assertTrue(LocalSeedlinkServer.matches("HH?", id));
+        assertTrue(LocalSeedlinkServer.matches("--HHZ.D", id));
+        assertFalse(LocalSeedlinkServer.matches("00HHZ", id));
+        assertFalse(LocalSeedlinkServer.matches("HHE", id));
+        assertFalse(LocalSeedlinkServer.matches("HHZ.E", id));
+    }
+}
@@ -0,0 +1,114 @@
+package globalquake.core.seedlink;
+
+import edu.sc.seis.seisFile.mseed.DataRecord;
+import edu.sc.seis.seisFile.mseed.SeedRecord;
+import globalquake.core.database.SeedlinkNetwork;
+import globalquake.core.database.SeedlinkStatus;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStation;
+import gqserver.api.packets.station.InputType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SeedlinkSelectorReaderTest {
+
+    private static GlobalStation station(SeedlinkNetwork seedlinkNetwork, String stationCode, String location, String channel) {
+        return new GlobalStation("XA", stationCode, channel, location, 0, 0, 0, 0, seedlinkNetwork, -1, InputType.UNKNOWN);
+    }
+
+    @Test
+    public void testStationLookup() throws Exception {
+        GlobalStation a = station(null, "S000", "", "HHZ");
+        GlobalStation b = station(null, "ABCDE", "", "HHZ");
+        StationLookup lookup = new StationLookup(List.of(a, b));
+
+        byte[] record = new byte[SeedlinkSelectorReader.RECORD_SIZE + 3];
+        System.arraycopy("S000 ".getBytes(), 0, record, 3 + StationLookup.STATION_OFFSET, 5);
+        System.arraycopy("XA".getBytes(), 0, record, 3 + StationLookup.NETWORK_OFFSET, 2);
+
+        assertSame(a, lookup.find(record, 3));
+        assertSame(b, lookup.find(StationLookup.key(" XA ", "ABCDE")));
+        assertNull(lookup.find(StationLookup.key("XB", "S000")));
+    }
+
+    @Test
+    public void testReadStations() throws Exception {
+        try (LocalSeedlinkServer server = new LocalSeedlinkServer(new LocalSeedlinkServer.ServerOptions(
+                3, List.of("HHZ", "00HHE"), 100, 10, 0, List.of(), 1))) {
+            server.start(0);
+            SeedlinkNetwork seedlinkNetwork = server.createSeedlinkNetwork("local");
+
+            List<AbstractStation> stations = List.of(
+                    station(seedlinkNetwork, "S000", "", "HHZ"),
+                    station(seedlinkNetwork, "S002", "00", "HHE"),
+                    station(seedlinkNetwork, "NOPE", "", "HHZ"));
+            seedlinkNetwork.selectedStations = 20;
+
+            StationLookup lookup = new StationLookup(List.of((GlobalStation) stations.get(0), (GlobalStation) stations.get(1)));
+            Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+
+            SeedlinkSelectorReader reader = new SeedlinkSelectorReader(1, (buffer, offset) -> {
+                // the reader catches exceptions of the consumer, mismatches are counted under their own key instead
+                GlobalStation station = lookup.find(buffer, offset);
+                DataRecord record = (DataRecord) SeedRecord.read(Arrays.copyOfRange(buffer, offset, offset + SeedlinkSelectorReader.RECORD_SIZE));
+                String key = station == null ? "unknown" : "%s %s".formatted(station.getStationCode(), record.getHeader().getChannelIdentifier().trim());
+                received.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            }, 1, 10);
+
+            try {
+                reader.add(seedlinkNetwork, stations);
+                reader.start();
+
+                long start = System.currentTimeMillis();
+                while (received.size() < 2 || received.values().stream().anyMatch(count -> count.get() < 10)) {
+                    assertTrue(System.currentTimeMillis() - start < 10000);
+                    Thread.sleep(10);
+                }
+
+                assertEquals(Set.of("S000 HHZ", "S002 HHE"), received.keySet());
+                assertEquals(SeedlinkStatus.RUNNING, seedlinkNetwork.status);
+                assertEquals(2, seedlinkNetwork.connectedStations);
+            } finally {
+                reader.close();
+            }
+
+            assertEquals(SeedlinkStatus.DISCONNECTED, seedlinkNetwork.status);
+        }
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        try (LocalSeedlinkServer server = new LocalSeedlinkServer(new LocalSeedlinkServer.ServerOptions(
+                1, List.of("HHZ"), 100, 10, 0.5, List.of(), 1))) {
+            server.start(0);
+            SeedlinkNetwork seedlinkNetwork = server.createSeedlinkNetwork("local");
+            seedlinkNetwork.selectedStations = 1;
+
+            AtomicInteger received = new AtomicInteger();
+            SeedlinkSelectorReader reader = new SeedlinkSelectorReader(1, (buffer, offset) -> received.incrementAndGet(), 1, 10);
+            try {
+                reader.add(seedlinkNetwork, List.of(station(seedlinkNetwork, "S000", "", "HHZ")));
+                reader.start();
+
+                long start = System.currentTimeMillis();
+                while (server.getConnections() < 2 || seedlinkNetwork.status != SeedlinkStatus.RUNNING) {
+                    assertTrue(System.currentTimeMillis() - start < 10000);
+                    Thread.sleep(10);
+                }
+
+                assertTrue(server.getInducedDisconnects() >= 1);
+                assertTrue(received.get() > 0);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
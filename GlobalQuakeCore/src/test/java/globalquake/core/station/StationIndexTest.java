@@ -0,0 +1,85 @@
+package globalquake.core.station;
+
+import globalquake.utils.GeoUtils;
+import gqserver.api.packets.station.InputType;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class StationIndexTest {
+
+    private static List<AbstractStation> createStations(Random r, int count) {
+        List<AbstractStation> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double lat = Math.toDegrees(Math.asin(r.nextDouble() * 2 - 1));
+            double lon = r.nextDouble() * 360 - 180;
+            stations.add(new GlobalStation("", "", "", "", lat, lon, 0, i, null, -1, InputType.UNKNOWN));
+        }
+
+        // poles and the date line
+        stations.add(new GlobalStation("", "", "", "", 90, 0, 0, count, null, -1, InputType.UNKNOWN));
+        stations.add(new GlobalStation("", "", "", "", -89.9, 179.9, 0, count + 1, null, -1, InputType.UNKNOWN));
+        stations.add(new GlobalStation("", "", "", "", 10, 180, 0, count + 2, null, -1, InputType.UNKNOWN));
+        stations.add(new GlobalStation("", "", "", "", 10, -179.95, 0, count + 3, null, -1, InputType.UNKNOWN));
+        return stations;
+    }
+
+    private static Set<Integer> bruteForce(List<AbstractStation> stations, double lat, double lon, double radius) {
+        return stations.stream()
+                .filter(station -> GeoUtils.greatCircleDistance(lat, lon, station.getLatitude(), station.getLongitude()) <= radius)
+                .map(AbstractStation::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testWithinMatchesBruteForce() {
+        Random r = new Random(0);
+        List<AbstractStation> stations = createStations(r, 3000);
+        StationIndex index = new StationIndex(stations);
+
+        double[][] points = {{0, 0}, {89.5, 20}, {-88, -100}, {10, 179.9}, {-45, -180}, {60, 30}};
+        double[] radii = {0, 50, 500, 4000, 12000, 25000};
+
+        for (double[] point : points) {
+            for (double radius : radii) {
+                Set<Integer> expected = bruteForce(stations, point[0], point[1], radius);
+                Set<Integer> actual = index.findWithin(point[0], point[1], radius).stream()
+                        .map(AbstractStation::getId).collect(Collectors.toSet());
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testNoDuplicates() {
+        List<AbstractStation> stations = createStations(new Random(1), 500);
+        StationIndex index = new StationIndex(stations);
+
+        assertEquals(stations.size(), index.findWithin(70, 10, 30000).size());
+        assertEquals(stations.size(), index.size());
+    }
+
+    @Test
+    public void testNearest() {
+        Random r = new Random(2);
+        List<AbstractStation> stations = createStations(r, 2000);
+        StationIndex index = new StationIndex(stations);
+
+        for (int i = 0; i < 50; i++) {
+            double lat = r.nextDouble() * 180 - 90;
+            double lon = r.nextDouble() * 360 - 180;
+
+            List<AbstractStation> expected = new ArrayList<>(stations);
+            expected.sort(Comparator.comparingDouble(station -> GeoUtils.greatCircleDistance(lat, lon, station.getLatitude(), station.getLongitude())));
+
+            List<AbstractStation> nearest = index.findNearest(lat, lon, 8, 20000);
+            assertEquals(expected.subList(0, 8), nearest);
+        }
+
+        assertEquals(0, index.findNearest(0, 0, 5, 0.001).size());
+    }
+
+}
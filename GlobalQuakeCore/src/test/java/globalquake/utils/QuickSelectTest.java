@@ -0,0 +1,54 @@
+package globalquake.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class QuickSelectTest {
+
+    @Test
+    public void testSingleValue() {
+        long[] array = {42};
+        assertEquals(42, QuickSelect.select(array, 1, 0));
+    }
+
+    @Test
+    public void testMatchesSort() {
+        Random r = new Random(1234);
+        for (int length = 1; length < 200; length++) {
+            long[] array = new long[length];
+            for (int i = 0; i < length; i++) {
+                // small range to get plenty of duplicates
+                array[i] = r.nextInt(50) - 25;
+            }
+
+            long[] sorted = array.clone();
+            Arrays.sort(sorted);
+
+            for (int k = 0; k < length; k++) {
+                assertEquals(sorted[k], QuickSelect.select(array.clone(), length, k));
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyPrefixIsUsed() {
+        long[] array = {5, 1, 3, Long.MIN_VALUE, Long.MIN_VALUE};
+        assertEquals(3, QuickSelect.select(array, 3, 1));
+    }
+
+    @Test
+    public void testUnknownOrigins() {
+        long[] array = {Long.MIN_VALUE, 100, Long.MIN_VALUE, 50, Long.MIN_VALUE};
+        assertEquals(Long.MIN_VALUE, QuickSelect.select(array, array.length, (array.length - 1) / 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOutOfRange() {
+        QuickSelect.select(new long[3], 3, 3);
+    }
+
+}
@@ -1,11 +1,14 @@
 package gqserver.fdsnws_event;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URL;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 
@@ -17,6 +20,7 @@ import org.tinylog.Logger;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
+import globalquake.core.archive.ArchiveQuery;
 import globalquake.core.archive.ArchivedQuake;
 import globalquake.core.earthquake.EarthquakeDataExport;
 import globalquake.core.exception.RuntimeApplicationException;
@@ -66,25 +70,23 @@ public class EventsV1Handler implements HttpHandler{
         }
 
 
-        //TODO: This gets every earthquake in the database. This relies on the database not being too large.
-        List<ArchivedQuake> earthquakes = EarthquakeDataExport.getArchivedAndLiveEvents();
+        //Only the matching page of events is collected, the archive is searched through its index
+        List<ArchivedQuake> quakes = EarthquakeDataExport.getEvents(request.toQuery());
 
-        List<ArchivedQuake> filteredQuakes = filterEventDataWithRequest(earthquakes, request);
-        
-        String formattedResult;
         String contentType;
+        EventsWriter eventsWriter;
 
         switch (request.format) {
-            case "xml" -> {
-                formattedResult = EarthquakeDataExport.getQuakeMl(filteredQuakes);
+            case "xml", "quakeml" -> {
+                eventsWriter = EarthquakeDataExport::writeQuakeMl;
                 contentType = "application/xml";
             }
             case "json", "geojson" -> {
-                formattedResult = EarthquakeDataExport.getGeoJSON(filteredQuakes).toString();
+                eventsWriter = EarthquakeDataExport::writeGeoJSON;
                 contentType = "application/json";
             }
             case "text" -> {
-                formattedResult = EarthquakeDataExport.getText(filteredQuakes);
+                eventsWriter = EarthquakeDataExport::writeText;
                 contentType = "text/plain";
             }
             default -> {
@@ -100,81 +102,26 @@ public class EventsV1Handler implements HttpHandler{
         }
 
         //If there are no earthquakes, then set the response code to the nodata code
-        int responseCode = !filteredQuakes.isEmpty() ? 200 : request.nodata;
-
-        HttpResponse response = new HttpResponse(responseCode, formattedResult, contentType);
-        sendResponse(exchange, response);
-    }
-
-
-    private List<ArchivedQuake> filterEventDataWithRequest(List<ArchivedQuake> earthquakes, FdsnwsEventsRequest request){
-        //Order does not necessarily matter here.
-
-        //A basic wrapper is made to easily filter the earthquakes
-        class protoquake {public ArchivedQuake quake; public boolean include;}
-        List<protoquake> protoquakes = new ArrayList<>();
-        for(ArchivedQuake quake : earthquakes){
-            protoquake protoquake = new protoquake();
-            protoquake.quake = quake;
-            protoquake.include = true;
-            protoquakes.add(protoquake);
-        }
-        
-        //If an event falls outside of any of the filters, it is removed from the list
-        for(protoquake protoquake : protoquakes){
-            //Filter by time
-            if(protoquake.quake.getOrigin() < request.starttime.getTime()){
-                protoquake.include = false;
-            }
-            if(protoquake.quake.getOrigin() > request.endtime.getTime()){
-                protoquake.include = false;
-            }
+        int responseCode = !quakes.isEmpty() ? 200 : request.nodata;
 
-            //Filter by latitude
-            if(protoquake.quake.getLat() < request.minlatitude){
-                protoquake.include = false;
-            }
-            if(protoquake.quake.getLat() > request.maxlatitude){
-                protoquake.include = false;
-            }
-
-            //Filter by longitude
-            if(protoquake.quake.getLon() < request.minlongitude){
-                protoquake.include = false;
-            }
-            if(protoquake.quake.getLon() > request.maxlongitude){
-                protoquake.include = false;
-            }
-
-            //Filter by depth
-            if(protoquake.quake.getDepth() < request.mindepth){
-                protoquake.include = false;
-            }
-            if(protoquake.quake.getDepth() > request.maxdepth){
-                protoquake.include = false;
-            }
-
-            //Filter by magnitude
-            if(protoquake.quake.getMag() < request.minmagnitude){
-                protoquake.include = false;
-            }
-            if(protoquake.quake.getMag() > request.maxmagnitude){
-                protoquake.include = false;
-            }
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*"); //TODO: make this configurable
+        if(responseCode == 204){
+            //No content means no body at all
+            exchange.sendResponseHeaders(responseCode, -1);
+            exchange.close();
+            return;
         }
 
-        //Remove all earthquakes that are not included
-        protoquakes.removeIf(protoquake -> !protoquake.include);
-
-        //Convert the protoquakes back into a list of ArchivedQuakes
-        List<ArchivedQuake> filteredEarthquakes = new ArrayList<>();
-        for(protoquake protoquake : protoquakes){
-            filteredEarthquakes.add(protoquake.quake);
+        //The response is streamed in chunks instead of being built as one string first
+        exchange.sendResponseHeaders(responseCode, 0);
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))){
+            eventsWriter.write(quakes, writer);
         }
+    }
 
-        return filteredEarthquakes;
-
-
+    private interface EventsWriter {
+        void write(List<ArchivedQuake> quakes, Writer writer) throws IOException;
     }
 
     private static void sendResponse(HttpExchange exchange, HttpResponse response) throws IOException{
@@ -226,7 +173,7 @@ public class EventsV1Handler implements HttpHandler{
         private int limit;                    //Limit the results to the specified number of events.
         private int offset;                   //Return results starting at the event count specified, starting at 1.
         
-        private String orderby;             //Order the results. The allowed values are:
+        private ArchiveQuery.Order orderby; //Order the results. The allowed values are:
                                             //time - the default, order by origin descending time
                                             //time-asc - order by origin ascending time
                                             //magnitude - order by descending magnitude
@@ -413,9 +360,31 @@ public class EventsV1Handler implements HttpHandler{
             //includeallmagnitudes
             //includearrivals
             //eventid
-            //limit
-            //offset
-            //orderby
+
+            String limit1 = parameters.get("limit");
+            if(limit1 != null){
+                limit = EventsV1ParamChecks.parseLimit(limit1);
+            }
+            if(limit == 0){
+                throw new HttpRequestException(400, "解析限制数量时出现问题,请确保其为正整数");
+            }
+
+            String offset1 = parameters.get("offset");
+            if(offset1 != null){
+                offset = EventsV1ParamChecks.parseOffset(offset1);
+            }
+            if(offset == 0){
+                throw new HttpRequestException(400, "解析偏移量时出现问题,请确保其为正整数 (从1开始)");
+            }
+
+            String orderby1 = parameters.get("orderby");
+            if(orderby1 != null){
+                orderby = EventsV1ParamChecks.parseOrderBy(orderby1);
+            }
+            if(orderby == null){
+                throw new HttpRequestException(400, "解析排序方式出错,请确保其为\"time\"、\"time-asc\"、\"magnitude\"或\"magnitude-asc\"");
+            }
+
             //catalog
             //contributor
             //updatedafter
@@ -462,6 +431,11 @@ public class EventsV1Handler implements HttpHandler{
             minmagnitude = -10f;
             maxmagnitude = 10f;
 
+            //No limit, starting with the first event, newest first
+            limit = Integer.MAX_VALUE;
+            offset = 1;
+            orderby = ArchiveQuery.Order.TIME;
+
             //Default format is XML
             format = "xml";
 
@@ -469,6 +443,13 @@ public class EventsV1Handler implements HttpHandler{
             nodata = 204;
         }
 
+        private ArchiveQuery toQuery(){
+            return new ArchiveQuery(starttime.getTime(), endtime.getTime(),
+                    minlatitude, maxlatitude, minlongitude, maxlongitude,
+                    mindepth, maxdepth, minmagnitude, maxmagnitude,
+                    orderby, offset - 1, limit);
+        }
+
         private Map<String, String> parseQueryString(String queryString) {
             Map<String, String> parameters = new HashMap<>();
             if (queryString != null) {
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import globalquake.core.archive.ArchiveQuery;
 import gqserver.fdsnws_event.EventsV1Handler.HttpRequestException;
 
 
@@ -86,6 +87,45 @@ public class EventsV1ParamChecks {
 
     //several other things
 
+    static public int parseLimit(String limit){
+        //Takes a string and makes sure it is a positive number of events, returns 0 if it is not
+        int parsedLimit;
+        try{
+            parsedLimit = Integer.parseInt(limit);
+            if(parsedLimit < 1){
+                return 0;
+            }
+        }catch(Exception e){
+            return 0;
+        }
+        return parsedLimit;
+    }
+
+    static public int parseOffset(String offset){
+        //Offset starts at 1, returns 0 if it is not valid
+        int parsedOffset;
+        try{
+            parsedOffset = Integer.parseInt(offset);
+            if(parsedOffset < 1){
+                return 0;
+            }
+        }catch(Exception e){
+            return 0;
+        }
+        return parsedOffset;
+    }
+
+    static public ArchiveQuery.Order parseOrderBy(String orderBy){
+        //Takes a string and makes sure it is a valid ordering
+        return switch (orderBy) {
+            case "time" -> ArchiveQuery.Order.TIME;
+            case "time-asc" -> ArchiveQuery.Order.TIME_ASC;
+            case "magnitude" -> ArchiveQuery.Order.MAGNITUDE;
+            case "magnitude-asc" -> ArchiveQuery.Order.MAGNITUDE_ASC;
+            default -> null;
+        };
+    }
+
     static public String parseFormat(String format) throws HttpRequestException{
         //Takes a string and makes sure it is a valid format
         List<String> validFormats = Arrays.asList("quakeml", "geojson", "text", "json", "xml");
@@ -2,10 +2,16 @@ package gqserver.fdsnws_event;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.sun.net.httpserver.HttpServer;
 
 import globalquake.core.Settings;
+import globalquake.utils.NamedThreadFactory;
 import org.tinylog.Logger;
 
 
@@ -13,8 +19,12 @@ public class FdsnwsEventsHTTPServer {
     private static FdsnwsEventsHTTPServer instance;
     private boolean serverRunning;
     private HttpServer server;
+    private ThreadPoolExecutor workers;
+    private ScheduledExecutorService statsService;
+    private final FdsnwsEventsStats stats = new FdsnwsEventsStats();
 
     private final Duration clientCleanExitTime = Duration.ofSeconds(3);
+    private static final long STATS_INTERVAL_SECONDS = 60;
 
     private FdsnwsEventsHTTPServer() {
         if(instance != null){
@@ -29,8 +39,11 @@ public class FdsnwsEventsHTTPServer {
 
         EventsV1Handler ev1handler = new EventsV1Handler();
 
-        server.createContext("/fdsnws/event/1/query", ev1handler);
-        server.createContext("/fdsnws/event/1/application.wadl", ev1handler);
+        //Requests are handled on the worker pool, the dispatcher thread only accepts or rejects them
+        LoadSheddingHandler handler = new LoadSheddingHandler(ev1handler, workers, stats);
+
+        server.createContext("/fdsnws/event/1/query", handler);
+        server.createContext("/fdsnws/event/1/application.wadl", handler);
     }
 
     public static FdsnwsEventsHTTPServer getInstance() {
@@ -49,13 +62,37 @@ public class FdsnwsEventsHTTPServer {
         server = null;
         server = HttpServer.create(new InetSocketAddress(Settings.FDSNWSEventIP, Settings.FDSNWSEventPort), 0);
 
+        //At most FDSNWSEventThreads requests run at once and FDSNWSEventQueueSize wait, the rest get 503
+        //Daemon threads, so that requests still running do not keep the application alive
+        NamedThreadFactory workerThreads = new NamedThreadFactory("fdsnws_event 请求线程");
+        workers = new ThreadPoolExecutor(Settings.FDSNWSEventThreads, Settings.FDSNWSEventThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Settings.FDSNWSEventQueueSize), runnable -> {
+                    Thread thread = workerThreads.newThread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        statsService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("fdsnws_event 统计线程"));
+        statsService.scheduleAtFixedRate(this::reportStats, STATS_INTERVAL_SECONDS, STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
         initRoutes();
-        server.setExecutor(null); // creates a default executor
+        server.setExecutor(null); // the default executor runs on the dispatcher thread
         server.start();
         serverRunning = true;
         Logger.info("fdsnws_event 服务器启动在 " + Settings.FDSNWSEventIP + ":" + Settings.FDSNWSEventPort);
     }
 
+    private void reportStats() {
+        String report = stats.report();
+        if(report != null){
+            Logger.tag("ServerStatus").info(report);
+        }
+    }
+
+    public FdsnwsEventsStats getStats() {
+        return stats;
+    }
+
     @SuppressWarnings("unused")
     public void stopServer() {
         if (!serverRunning) {
@@ -64,6 +101,8 @@ public class FdsnwsEventsHTTPServer {
         }
 
         server.stop((int)clientCleanExitTime.getSeconds());
+        workers.shutdownNow();
+        statsService.shutdownNow();
         serverRunning = false;
         Logger.info("fdsnws_event 服务器已停止");
     }
@@ -0,0 +1,88 @@
+package gqserver.fdsnws_event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request counters and timings of the fdsnws_event server, reset with every {@link #report()}.
+ */
+public class FdsnwsEventsStats {
+
+    private static final long SLOW_REQUEST = TimeUnit.SECONDS.toNanos(1);
+    static final long REJECTION_WARNING_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder handleNanos = new LongAdder();
+    private final LongAccumulator maxQueueNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxHandleNanos = new LongAccumulator(Math::max, 0);
+
+    private final LongAdder rejectedTotal = new LongAdder();
+    private final AtomicLong unreportedRejections = new AtomicLong();
+    private final AtomicLong lastRejectionWarning = new AtomicLong(System.nanoTime() - REJECTION_WARNING_INTERVAL);
+
+    public void handled(long queueTime, long handleTime, boolean failed) {
+        handled.increment();
+        if (failed) {
+            this.failed.increment();
+        }
+        if (queueTime + handleTime > SLOW_REQUEST) {
+            slow.increment();
+        }
+        queueNanos.add(queueTime);
+        handleNanos.add(handleTime);
+        maxQueueNanos.accumulate(queueTime);
+        maxHandleNanos.accumulate(handleTime);
+    }
+
+    /**
+     * @param now {@link System#nanoTime()} of the rejection
+     * @return number of rejections to warn about, 0 if the last warning is more recent than {@link #REJECTION_WARNING_INTERVAL}
+     */
+    public long rejected(long now) {
+        rejected.increment();
+        rejectedTotal.increment();
+        unreportedRejections.incrementAndGet();
+
+        long last = lastRejectionWarning.get();
+        if (now - last >= REJECTION_WARNING_INTERVAL && lastRejectionWarning.compareAndSet(last, now)) {
+            return unreportedRejections.getAndSet(0);
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of rejected requests since start, not reset by {@link #report()}
+     */
+    public long getRejectedTotal() {
+        return rejectedTotal.sum();
+    }
+
+    /**
+     * @return summary of the requests since the last report, null if there were none
+     */
+    public String report() {
+        long count = handled.sumThenReset();
+        long rejectedCount = rejected.sumThenReset();
+        long failedCount = failed.sumThenReset();
+        long slowCount = slow.sumThenReset();
+        long queueTotal = queueNanos.sumThenReset();
+        long handleTotal = handleNanos.sumThenReset();
+        long queueMax = maxQueueNanos.getThenReset();
+        long handleMax = maxHandleNanos.getThenReset();
+
+        if (count == 0 && rejectedCount == 0) {
+            return null;
+        }
+
+        return "fdsnws_event 请求:%d,拒绝:%d,失败:%d,慢请求:%d,排队 平均/最大:%.1f / %.1f ms,处理 平均/最大:%.1f / %.1f ms".formatted(
+                count, rejectedCount, failedCount, slowCount,
+                count == 0 ? 0.0 : queueTotal / 1e6 / count, queueMax / 1e6,
+                count == 0 ? 0.0 : handleTotal / 1e6 / count, handleMax / 1e6);
+    }
+}
@@ -0,0 +1,72 @@
+package gqserver.fdsnws_event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import org.tinylog.Logger;
+
+/**
+ * Runs the wrapped handler on the bounded worker pool instead of the dispatcher thread of the HttpServer.
+ * When the pool and its queue are full, the request is answered right away with 503, so a burst of slow
+ * requests cannot make every other request wait.
+ */
+public class LoadSheddingHandler implements HttpHandler {
+
+    private static final int RETRY_AFTER_SECONDS = 5;
+
+    private final HttpHandler handler;
+    private final ExecutorService workers;
+    private final FdsnwsEventsStats stats;
+
+    public LoadSheddingHandler(HttpHandler handler, ExecutorService workers, FdsnwsEventsStats stats) {
+        this.handler = handler;
+        this.workers = workers;
+        this.stats = stats;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        try {
+            workers.execute(() -> process(exchange, received));
+        } catch (RejectedExecutionException e) {
+            // a burst can be rejected thousands of times per second, so only a summary is logged now and then
+            long count = stats.rejected(System.nanoTime());
+            if (count > 0) {
+                Logger.warn("fdsnws_event 服务器繁忙,已拒绝 %d 个请求".formatted(count));
+            }
+            reject(exchange);
+        }
+    }
+
+    private void process(HttpExchange exchange, long received) {
+        long started = System.nanoTime();
+        boolean failed = false;
+        try {
+            handler.handle(exchange);
+        } catch (Exception e) {
+            failed = true;
+            Logger.error(e);
+        } finally {
+            // the handler normally closes it already, closing again does nothing
+            exchange.close();
+            stats.handled(started - received, System.nanoTime() - started, failed);
+        }
+    }
+
+    private static void reject(HttpExchange exchange) throws IOException {
+        byte[] body = "服务器繁忙,请稍后再试".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        exchange.sendResponseHeaders(503, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
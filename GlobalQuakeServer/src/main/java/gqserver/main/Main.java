@@ -64,6 +64,10 @@ public class Main {
         maxClientsOption.setRequired(false);
         options.addOption(maxClientsOption);
 
+        Option selectorOption = new Option("s", "selector", false, "使用非阻塞模式运行服务器(仅支持新版客户端)");
+        selectorOption.setRequired(false);
+        options.addOption(selectorOption);
+
         Option maxGpuMemOption = new Option("g", "gpu-max-mem", true, "最大GPU内存限制(以GB为单位)");
         maxGpuMemOption.setRequired(false);
         options.addOption(maxGpuMemOption);
@@ -97,6 +101,11 @@ public class Main {
             }
         }
 
+        if(cmd.hasOption(selectorOption.getOpt())) {
+            Settings.selectorServer = true;
+            Logger.info("服务器将以非阻塞模式运行.");
+        }
+
         if(cmd.hasOption(maxGpuMemOption.getOpt())) {
             try {
                 double maxMem =  Double.parseDouble(cmd.getOptionValue(maxGpuMemOption.getOpt()));
@@ -0,0 +1,320 @@
+package gqserver.server;
+
+import gqserver.api.Packet;
+import gqserver.api.ServerClient;
+import gqserver.api.codec.EncodedPacket;
+import gqserver.api.data.station.StationIntensityData;
+import gqserver.api.exception.PacketLimitException;
+import gqserver.api.packets.cluster.ClusterPacket;
+import gqserver.api.packets.data.DataRecordPacket;
+import gqserver.api.packets.earthquake.EarthquakeCheckPacket;
+import gqserver.api.packets.earthquake.HypocenterDataPacket;
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
+import gqserver.api.packets.station.StationsIntensityPacket;
+import gqserver.api.packets.system.TerminationPacket;
+import org.tinylog.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+
+/**
+ * Client served by {@link ClientSelector}. Packets are not written by the sending thread,
+ * they wait in a bounded queue until the selector finds the socket writable.
+ * <p>
+ * Above {@link #SOFT_QUEUE_LIMIT} the queue is under backpressure: waveform data and intensity deltas are dropped and packets that only
+ * carry the latest state of something (hypocenter, cluster, station intensities) replace their queued older versions.
+ * Clients that stay under backpressure for {@link #BACKPRESSURE_TIMEOUT} or reach {@link #HARD_QUEUE_LIMIT} are disconnected.
+ */
+public class ChannelServerClient extends ServerClient {
+
+    public static final int SOFT_QUEUE_LIMIT = 256;
+    public static final int HARD_QUEUE_LIMIT = 4096;
+    public static final long BACKPRESSURE_TIMEOUT = 15 * 1000;
+
+    private final SocketChannel channel;
+    private final ClientSelector selector;
+
+    private final LinkedList<EncodedPacket> queue = new LinkedList<>();
+    private final Object queueLock = new Object();
+    private ByteBuffer writeBuffer;
+    private boolean writeRequested;
+    private boolean closeAfterWrite;
+    private long backpressureSince = -1;
+    private boolean joined;
+
+    private long droppedPackets;
+    private long coalescedPackets;
+
+    public ChannelServerClient(SocketChannel channel, ClientSelector selector, int codecVersion) {
+        super(channel.socket(), codecVersion);
+        this.channel = channel;
+        this.selector = selector;
+    }
+
+    @Override
+    public void sendPacket(Packet packet) throws IOException {
+        sendPacket(new EncodedPacket(packet));
+    }
+
+    @Override
+    public void sendPacket(EncodedPacket packet) throws IOException {
+        synchronized (queueLock) {
+            if (!channel.isOpen() || closeAfterWrite) {
+                return;
+            }
+
+            if (queue.size() < SOFT_QUEUE_LIMIT) {
+                backpressureSince = -1;
+            } else {
+                if (backpressureSince == -1) {
+                    backpressureSince = System.currentTimeMillis();
+                }
+
+                if (packet.packet() instanceof DataRecordPacket ||
+                        (packet.packet() instanceof StationsIntensityDeltaPacket delta && !delta.keyframe())) {
+                    // the client waits for the next keyframe after a missing delta
+                    droppedPackets++;
+                    return;
+                }
+
+                if (coalesce(packet)) {
+                    coalescedPackets++;
+                    return;
+                }
+            }
+
+            if (queue.size() >= HARD_QUEUE_LIMIT) {
+                Logger.tag("Server").warn("客户端 #%d 发送队列已满,正在断开连接!".formatted(getID()));
+                queue.clear();
+                channel.close();
+                return;
+            }
+
+            queue.add(packet);
+            requestWrite();
+        }
+    }
+
+    /**
+     * Replaces a queued packet describing the same thing, keeping its position in the queue.
+     * @return true if the packet was merged into the queue
+     */
+    private boolean coalesce(EncodedPacket packet) {
+        for (ListIterator<EncodedPacket> iterator = queue.listIterator(queue.size()); iterator.hasPrevious(); ) {
+            Packet merged = merge(iterator.previous().packet(), packet.packet());
+            if (merged != null) {
+                iterator.set(merged == packet.packet() ? packet : new EncodedPacket(merged));
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static Packet merge(Packet queued, Packet packet) {
+        if (queued instanceof HypocenterDataPacket q && packet instanceof HypocenterDataPacket p
+                && q.data().uuid().equals(p.data().uuid())) {
+            return p;
+        }
+
+        if (queued instanceof ClusterPacket q && packet instanceof ClusterPacket p
+                && q.clusterData().uuid().equals(p.clusterData().uuid())) {
+            return p;
+        }
+
+        if (queued instanceof EarthquakeCheckPacket q && packet instanceof EarthquakeCheckPacket p
+                && q.info().uuid().equals(p.info().uuid())) {
+            return p;
+        }
+
+        if (queued instanceof StationsIntensityDeltaPacket q && packet instanceof StationsIntensityDeltaPacket p
+                && q.keyframe() && p.keyframe() && Objects.equals(q.stationsIndexing(), p.stationsIndexing())) {
+            return p;
+        }
+
+        if (queued instanceof StationsIntensityPacket q && packet instanceof StationsIntensityPacket p
+                && Objects.equals(q.stationsIndexing(), p.stationsIndexing())) {
+            Map<Integer, StationIntensityData> intensities = new LinkedHashMap<>();
+            q.intensities().forEach(data -> intensities.put(data.index(), data));
+            p.intensities().forEach(data -> intensities.put(data.index(), data));
+            return new StationsIntensityPacket(p.stationsIndexing(), p.time(), new ArrayList<>(intensities.values()));
+        }
+
+        return null;
+    }
+
+    /**
+     * Queues the header of the Java object stream. Clients open their object stream before sending the handshake
+     * and block until they receive the header, so it has to be sent as soon as the connection is accepted.
+     */
+    void sendStreamHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.flush();
+        }
+
+        synchronized (queueLock) {
+            writeBuffer = ByteBuffer.wrap(bytes.toByteArray());
+            requestWrite();
+        }
+    }
+
+    /**
+     * Sends the handshake response the way blocking clients expect it, as the first object of the stream
+     * started by {@link #sendStreamHeader()}, the codec is used from the next packet on.
+     */
+    void sendHandshakeResponse(Packet packet, boolean close) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+            @Override
+            protected void writeStreamHeader() {
+                // already sent when the connection was accepted
+            }
+        }) {
+            out.writeObject(packet);
+        }
+
+        synchronized (queueLock) {
+            // the header may not have been written completely yet
+            if (writeBuffer != null && writeBuffer.hasRemaining()) {
+                ByteBuffer buffer = ByteBuffer.allocate(writeBuffer.remaining() + bytes.size());
+                buffer.put(writeBuffer).put(bytes.toByteArray()).flip();
+                writeBuffer = buffer;
+            } else {
+                writeBuffer = ByteBuffer.wrap(bytes.toByteArray());
+            }
+            closeAfterWrite = close;
+            joined = !close;
+            requestWrite();
+        }
+    }
+
+    boolean isJoined() {
+        synchronized (queueLock) {
+            return joined;
+        }
+    }
+
+    void received(Packet packet) throws PacketLimitException {
+        onPacketReceived(packet);
+    }
+
+    private void requestWrite() {
+        if (!writeRequested) {
+            writeRequested = true;
+            selector.requestWrite(this);
+        }
+    }
+
+    /**
+     * Writes as much as the socket accepts without blocking.
+     * @return true if everything queued was written
+     */
+    boolean write() throws IOException {
+        synchronized (queueLock) {
+            while (true) {
+                if (writeBuffer != null) {
+                    channel.write(writeBuffer);
+                    if (writeBuffer.hasRemaining()) {
+                        return false;
+                    }
+                    writeBuffer = null;
+                }
+
+                EncodedPacket packet = queue.poll();
+                if (packet == null) {
+                    break;
+                }
+
+                // the frame may be shared with other clients, wrapping it does not copy or modify it
+                writeBuffer = ByteBuffer.wrap(packet.frame());
+                onPacketSent();
+                if (packet.packet() instanceof TerminationPacket) {
+                    closeAfterWrite = true;
+                }
+            }
+
+            writeRequested = false;
+            if (queue.size() < SOFT_QUEUE_LIMIT) {
+                backpressureSince = -1;
+            }
+
+            if (closeAfterWrite) {
+                channel.close();
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the client should be disconnected because it does not keep up with the data
+     */
+    boolean isStalled(long now) {
+        synchronized (queueLock) {
+            return backpressureSince != -1 && queue.size() >= SOFT_QUEUE_LIMIT && now - backpressureSince > BACKPRESSURE_TIMEOUT;
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (queueLock) {
+            return queue.size();
+        }
+    }
+
+    public long getDroppedPackets() {
+        synchronized (queueLock) {
+            return droppedPackets;
+        }
+    }
+
+    public long getCoalescedPackets() {
+        synchronized (queueLock) {
+            return coalescedPackets;
+        }
+    }
+
+    /**
+     * Best effort attempt to write the queue immediately, used before closing the connection.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (channel.isOpen()) {
+            write();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public void destroy(String reason) throws IOException {
+        if (!isJoined()) {
+            sendHandshakeResponse(new TerminationPacket(reason), true);
+            return;
+        }
+
+        // the termination packet closes the connection once it is written
+        synchronized (queueLock) {
+            queue.clear();
+            queue.add(new EncodedPacket(new TerminationPacket(reason)));
+            requestWrite();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isOpen() && channel.isConnected();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,352 @@
+package gqserver.server;
+
+import gqserver.api.Packet;
+import gqserver.api.codec.PacketCodec;
+import gqserver.api.exception.PacketLimitException;
+import gqserver.api.exception.UnknownPacketException;
+import gqserver.api.packets.system.HandshakePacket;
+import gqserver.api.packets.system.HandshakeSuccessfulPacket;
+import org.tinylog.Logger;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking alternative to the thread-per-client accept loop of {@link GQServerSocket}.
+ * One thread accepts, reads and writes all connections, received packets are processed on a small fixed pool,
+ * in order for each client. Sending only queues the packet in {@link ChannelServerClient}, so a slow client
+ * cannot delay the others.
+ * <p>
+ * The handshake stays Java serialized for compatibility, but afterwards only the binary codec is supported.
+ * Clients that do not offer it are rejected.
+ */
+public class ClientSelector implements Closeable {
+
+    private static final int MAX_HANDSHAKE_SIZE = 4 * 1024;
+    private static final int MAX_INBOUND_FRAME_SIZE = 16 * 1024;
+    private static final long SWEEP_INTERVAL = 1000;
+    private static final ObjectInputFilter HANDSHAKE_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxbytes=%d;gqserver.api.**;!*".formatted(MAX_HANDSHAKE_SIZE));
+
+    private final GQServerSocket server;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Queue<ChannelServerClient> writeRequests = new ConcurrentLinkedQueue<>();
+    private final ExecutorService packetService;
+
+    private static final class Connection {
+        private final ChannelServerClient client;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(Integer.BYTES + MAX_INBOUND_FRAME_SIZE);
+        private final long acceptTime = System.currentTimeMillis();
+        private final Queue<Packet> inbound = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean processing = new AtomicBoolean(false);
+        private boolean handshakeReceived;
+        private boolean left;
+
+        private Connection(ChannelServerClient client) {
+            this.client = client;
+        }
+    }
+
+    public ClientSelector(GQServerSocket server, String ip, int port) throws IOException {
+        this.server = server;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(ip, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.packetService = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public void run() {
+        long lastSweep = System.currentTimeMillis();
+        try {
+            while (selector.isOpen()) {
+                selector.select(SWEEP_INTERVAL);
+                processWriteRequests();
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handleKey(key);
+                }
+                selector.selectedKeys().clear();
+
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SWEEP_INTERVAL) {
+                    sweep(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            Logger.tag("Server").trace(e);
+        } finally {
+            packetService.shutdownNow();
+        }
+    }
+
+    void requestWrite(ChannelServerClient client) {
+        writeRequests.add(client);
+        selector.wakeup();
+    }
+
+    private void processWriteRequests() {
+        ChannelServerClient client;
+        while ((client = writeRequests.poll()) != null) {
+            SelectionKey key = client.getChannel().keyFor(selector);
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (!client.write() && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                disconnect(connection, e);
+            }
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+
+            if (key.isValid() && key.isWritable() && connection.client.write() && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        } catch (Exception | UnknownPacketException | PacketLimitException e) {
+            disconnect(connection, e);
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+        } catch (IOException e) {
+            Logger.tag("Server").trace(e);
+            return;
+        }
+
+        try {
+            if (!server.checkAddress(channel.socket())) {
+                channel.close();
+                Logger.tag("Server").warn("客户端因达到最大连接数而被拒绝!");
+                server.getStats().ipRejects++;
+                return;
+            }
+
+            server.getStats().accepted++;
+            Logger.tag("Server").info("新客户端加入...");
+
+            channel.configureBlocking(false);
+            ChannelServerClient client = new ChannelServerClient(channel, this, PacketCodec.VERSION);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(client));
+            client.sendStreamHeader();
+        } catch (IOException e) {
+            server.getStats().errors++;
+            Logger.tag("Server").error("接受客户端时失败!");
+            Logger.tag("Server").trace(e);
+            server.clientLeft(channel.socket());
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.tag("Server").trace(ex);
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException, UnknownPacketException, PacketLimitException {
+        int count = connection.client.getChannel().read(connection.readBuffer);
+        if (count == -1) {
+            disconnect(connection, null);
+            return;
+        }
+
+        if (!connection.handshakeReceived) {
+            readHandshake(connection);
+            return;
+        }
+
+        ByteBuffer buffer = connection.readBuffer;
+        buffer.flip();
+        try {
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt(buffer.position());
+                if (length <= 0 || length > MAX_INBOUND_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length: %d".formatted(length));
+                }
+
+                if (buffer.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+
+                byte[] frame = new byte[length];
+                buffer.position(buffer.position() + Integer.BYTES);
+                buffer.get(frame);
+
+                Packet packet = PacketCodec.decode(frame);
+                connection.client.received(packet);
+                connection.inbound.add(packet);
+            }
+        } finally {
+            buffer.compact();
+        }
+
+        if (!connection.inbound.isEmpty() && connection.processing.compareAndSet(false, true)) {
+            packetService.submit(() -> processInbound(connection));
+        }
+    }
+
+    private void processInbound(Connection connection) {
+        ChannelServerClient client = connection.client;
+        while (true) {
+            Packet packet;
+            while ((packet = connection.inbound.poll()) != null) {
+                try {
+                    packet.onServerReceive(client);
+                    server.getDataService().processPacket(client, packet);
+                } catch (Exception e) {
+                    Logger.tag("Server").error(e);
+                }
+            }
+
+            connection.processing.set(false);
+            if (connection.inbound.isEmpty() || !connection.processing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void readHandshake(Connection connection) throws IOException, PacketLimitException {
+        ByteBuffer buffer = connection.readBuffer;
+        Object obj;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position()))) {
+            in.setObjectInputFilter(HANDSHAKE_FILTER);
+            obj = in.readObject();
+        } catch (EOFException e) {
+            if (buffer.position() >= MAX_HANDSHAKE_SIZE) {
+                throw new IOException("Handshake too large");
+            }
+            // not everything arrived yet
+            return;
+        } catch (ClassNotFoundException | InvalidClassException | StreamCorruptedException e) {
+            obj = null;
+        }
+
+        // the client waits for the response before sending anything else
+        connection.handshakeReceived = true;
+        buffer.clear();
+
+        ChannelServerClient client = connection.client;
+        Logger.tag("Server").info("为客户端 #%d 执行握手".formatted(client.getID()));
+
+        if (!(obj instanceof HandshakePacket handshakePacket)) {
+            server.getStats().wrongPacket++;
+            Logger.tag("Server").warn("客户端发送了无效的初始数据包!");
+            disconnect(connection, null);
+            return;
+        }
+
+        client.received(handshakePacket);
+
+        String rejection = server.checkHandshake(handshakePacket);
+        if (rejection == null && handshakePacket.codecVersion() != PacketCodec.VERSION) {
+            server.getStats().wrongVersion++;
+            rejection = "此服务器仅支持新版客户端,请更新您的客户端!";
+        }
+
+        if (rejection == null) {
+            client.setClientConfig(handshakePacket.clientConfig());
+            if (server.join(client, () -> client.sendHandshakeResponse(new HandshakeSuccessfulPacket(PacketCodec.VERSION), false))) {
+                return;
+            }
+            rejection = GQServerSocket.SERVER_FULL;
+        }
+
+        leave(connection);
+        client.destroy(rejection);
+    }
+
+    private void sweep(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (!(key.attachment() instanceof Connection connection)) {
+                continue;
+            }
+
+            ChannelServerClient client = connection.client;
+            if (!connection.handshakeReceived && now - connection.acceptTime > GQServerSocket.HANDSHAKE_TIMEOUT) {
+                Logger.tag("Server").warn("客户端 #%d 握手超时".formatted(client.getID()));
+                disconnect(connection, null);
+            } else if (client.isJoined() && client.isStalled(now)) {
+                server.getStats().slowClients++;
+                Logger.tag("Server").warn("客户端 #%d 接收数据过慢 (队列: %d, 已丢弃: %d, 已合并: %d),正在断开连接!".formatted(
+                        client.getID(), client.getQueueDepth(), client.getDroppedPackets(), client.getCoalescedPackets()));
+                disconnect(connection, null);
+            }
+        }
+    }
+
+    /**
+     * Joined clients are removed by the watchdog of {@link GQServerSocket} once they are not connected.
+     */
+    private void disconnect(Connection connection, Throwable cause) {
+        if (cause != null) {
+            Logger.tag("Server").warn("客户端 #%d 在读取时发生崩溃!".formatted(connection.client.getID()));
+            Logger.tag("Server").trace(cause);
+        }
+
+        try {
+            connection.client.destroy();
+        } catch (IOException e) {
+            Logger.tag("Server").trace(e);
+        }
+
+        if (!connection.client.isJoined()) {
+            leave(connection);
+        }
+    }
+
+    private void leave(Connection connection) {
+        if (!connection.left) {
+            connection.left = true;
+            server.clientLeft(connection.client.getSocket());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            serverChannel.close();
+        } finally {
+            selector.close();
+        }
+    }
+}
@@ -3,9 +3,11 @@ package gqserver.server;
 import edu.sc.seis.seisFile.mseed.DataRecord;
 import globalquake.core.station.GlobalStation;
 import gqserver.api.ServerClient;
+import gqserver.api.codec.EncodedPacket;
 import gqserver.api.packets.data.DataRecordPacket;
 
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Queue;
@@ -16,7 +18,10 @@ public class DataRequest {
     private final ServerClient client;
     public boolean ready;
 
-    private final Queue<DataRecord> dataRecordQueue = new PriorityQueue<>(DataService.getDataRecordComparator());
+    private record QueuedRecord(DataRecord dataRecord, EncodedPacket packet) {}
+
+    private final Queue<QueuedRecord> dataRecordQueue = new PriorityQueue<>(
+            Comparator.comparing(QueuedRecord::dataRecord, DataService.getDataRecordComparator()));
 
     public DataRequest(GlobalStation station, ServerClient client) {
         this.station = station;
@@ -41,14 +46,24 @@ public class DataRequest {
         return Objects.hash(station.getId());
     }
 
+    public static EncodedPacket createPacket(GlobalStation station, DataRecord dataRecord) {
+        return new EncodedPacket(new DataRecordPacket(station.getId(), dataRecord.toByteArray()));
+    }
+
     public synchronized void enqueue(DataRecord dataRecord) {
-        dataRecordQueue.add(dataRecord);
+        enqueue(dataRecord, createPacket(station, dataRecord));
+    }
+
+    /**
+     * @param packet packet created by {@link #createPacket(GlobalStation, DataRecord)}, shared by all requests for the station
+     */
+    public synchronized void enqueue(DataRecord dataRecord, EncodedPacket packet) {
+        dataRecordQueue.add(new QueuedRecord(dataRecord, packet));
     }
 
     public synchronized void sendAll() throws IOException {
         while(!dataRecordQueue.isEmpty()){
-            DataRecord dataRecord = dataRecordQueue.remove();
-            client.sendPacket(new DataRecordPacket(station.getId(), dataRecord.toByteArray()));
+            client.sendPacket(dataRecordQueue.remove().packet());
         }
     }
 
@@ -18,7 +18,9 @@ import globalquake.core.station.AbstractStation;
 import globalquake.core.station.GlobalStation;
 import gqserver.api.Packet;
 import gqserver.api.ServerClient;
+import gqserver.api.codec.EncodedPacket;
 import gqserver.api.data.cluster.ClusterData;
+import gqserver.api.data.earthquake.ArchiveDigestData;
 import gqserver.api.data.earthquake.ArchivedEventData;
 import gqserver.api.data.earthquake.ArchivedQuakeData;
 import gqserver.api.data.earthquake.EarthquakeInfo;
@@ -30,6 +32,7 @@ import gqserver.api.packets.cluster.ClusterPacket;
 import gqserver.api.packets.data.DataRequestPacket;
 import gqserver.api.packets.earthquake.*;
 import gqserver.api.packets.station.StationsInfoPacket;
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
 import gqserver.api.packets.station.StationsIntensityPacket;
 import gqserver.api.packets.station.StationsRequestPacket;
 import gqserver.events.GlobalQuakeServerEventListener;
@@ -49,10 +52,17 @@ public class DataService extends GlobalQuakeEventListener {
 
     private static final int STATIONS_INFO_PACKET_MAX_SIZE = 64;
     private static final int DATA_REQUESTS_MAX_COUNT = 16;
+    static final int KEYFRAME_INTERVAL_SECONDS = 30;
+    private static final int ARCHIVE_PAGE_SIZE = 64;
 
     private final Queue<EarthquakeInfo> currentEarthquakes;
 
-    private final Map<AbstractStation, StationStatus> stationIntensities = new HashMap<>();
+    // last sent status of each station by its index, the base for the intensity deltas
+    private final SortedMap<Integer, StationStatus> stationIntensities = new TreeMap<>();
+    private final Object stationIntensitiesLock = new Object();
+    private UUID intensityIndexing;
+    private int intensitySequence = 0;
+    private int secondsSinceKeyframe = 0;
     private ScheduledExecutorService stationIntensityService;
     private final Object stationDataQueueLock = new Object();
 
@@ -124,25 +134,81 @@ public class DataService extends GlobalQuakeEventListener {
 
     private void sendIntensityData() {
         try {
+            sendIntensityData(getStationReceivingClients());
+        } catch(Exception e){
+            Logger.tag("Server").error(e);
+        }
+    }
+
+    /**
+     * Called once a second, sends the stations changed since the previous call.
+     */
+    void sendIntensityData(List<ServerClient> clients) {
+        List<AbstractStation> changed = GlobalQuake.instance.getStationManager().drainChangedStations();
+        changed.sort(Comparator.comparing(AbstractStation::getId));
+
+        UUID indexing = GlobalQuake.instance.getStationManager().getIndexing();
+        long time = GlobalQuake.instance.currentTimeMillis();
+        List<ServerClient> legacyClients = clients.stream().filter(client -> client.getCodecVersion() == 0).toList();
+        List<ServerClient> deltaClients = clients.stream().filter(client -> client.getCodecVersion() != 0).toList();
+
+        synchronized (stationIntensitiesLock) {
+            if (!Objects.equals(indexing, intensityIndexing)) {
+                // station indices were reassigned
+                stationIntensities.clear();
+                intensityIndexing = indexing;
+            }
+
+            int[] indices = new int[changed.size()];
+            int[] deltas = new int[changed.size()];
+            boolean[] eventModes = new boolean[changed.size()];
+
             List<StationIntensityData> data = new ArrayList<>();
-            for (AbstractStation abstractStation : GlobalQuake.instance.getStationManager().getStations()) {
-                StationStatus status = createStatus(abstractStation);
-                StationStatus previous = stationIntensities.put(abstractStation, status);
-                if (previous == null || !previous.equals(status)) {
-                    data.add(new StationIntensityData(abstractStation.getId(), status.intensity(), status.eventMode()));
-                    if (data.size() >= STATIONS_INFO_PACKET_MAX_SIZE) {
-                        broadcast(getStationReceivingClients(), new StationsIntensityPacket(GlobalQuake.instance.getStationManager().getIndexing(), GlobalQuake.instance.currentTimeMillis(), data));
-                        data = new ArrayList<>();
-                    }
+            for (int i = 0; i < changed.size(); i++) {
+                AbstractStation station = changed.get(i);
+                StationStatus status = createStatus(station);
+                StationStatus previous = stationIntensities.put(station.getId(), status);
+
+                indices[i] = station.getId();
+                deltas[i] = status.quantizedIntensity() - (previous == null ? 0 : previous.quantizedIntensity());
+                eventModes[i] = status.eventMode();
+
+                data.add(new StationIntensityData(station.getId(), status.intensity(), status.eventMode()));
+                if (data.size() >= STATIONS_INFO_PACKET_MAX_SIZE) {
+                    broadcast(legacyClients, new StationsIntensityPacket(indexing, time, data));
+                    data = new ArrayList<>();
                 }
             }
 
             if (!data.isEmpty()) {
-                broadcast(getStationReceivingClients(), new StationsIntensityPacket(GlobalQuake.instance.getStationManager().getIndexing(), GlobalQuake.instance.currentTimeMillis(), data));
+                broadcast(legacyClients, new StationsIntensityPacket(indexing, time, data));
             }
-        } catch(Exception e){
-            Logger.tag("Server").error(e);
+
+            if (++secondsSinceKeyframe >= KEYFRAME_INTERVAL_SECONDS) {
+                secondsSinceKeyframe = 0;
+                intensitySequence++;
+                broadcast(deltaClients, createIntensityKeyframe(indexing, time));
+            } else if (!changed.isEmpty()) {
+                intensitySequence++;
+                broadcast(deltaClients, new StationsIntensityDeltaPacket(indexing, time, intensitySequence, false, indices, deltas, eventModes));
+            }
+        }
+    }
+
+    private StationsIntensityDeltaPacket createIntensityKeyframe(UUID indexing, long time) {
+        int[] indices = new int[stationIntensities.size()];
+        int[] intensities = new int[stationIntensities.size()];
+        boolean[] eventModes = new boolean[stationIntensities.size()];
+
+        int i = 0;
+        for (var kv : stationIntensities.entrySet()) {
+            indices[i] = kv.getKey();
+            intensities[i] = kv.getValue().quantizedIntensity();
+            eventModes[i] = kv.getValue().eventMode();
+            i++;
         }
+
+        return new StationsIntensityDeltaPacket(indexing, time, intensitySequence, true, indices, intensities, eventModes);
     }
 
     @Override
@@ -191,10 +257,15 @@ public class DataService extends GlobalQuakeEventListener {
             stationDataQueueMap.get(station).add(record);
         }
 
+        EncodedPacket packet = null;
         for(var kv : clientDataRequestMap.entrySet()){
             for(DataRequest dr : kv.getValue()){
                 if(dr.getStation().getId() == station.getId()){
-                    dr.enqueue(record);
+                    if(packet == null){
+                        // the record is converted and encoded once for all subscribed clients
+                        packet = DataRequest.createPacket(station, record);
+                    }
+                    dr.enqueue(record, packet);
                     if(dr.getQueueSize() > 20 && !dr.ready) {
                         Logger.tag("Server").warn("客户数据队列超过了某个限制,正在发送所有内容...");
                         dr.ready = true;
@@ -230,7 +301,7 @@ public class DataService extends GlobalQuakeEventListener {
         return Comparator.comparing(dataRecord -> dataRecord.getStartBtime().toInstant().toEpochMilli());
     }
 
-    private Packet createArchivedPacket(ArchivedQuake archivedQuake) {
+    private static ArchivedQuakePacket createArchivedPacket(ArchivedQuake archivedQuake) {
         return new ArchivedQuakePacket(new ArchivedQuakeData(
                 archivedQuake.getUuid(),
                 (float) archivedQuake.getLat(),
@@ -242,7 +313,7 @@ public class DataService extends GlobalQuakeEventListener {
                 archivedQuake.getFinalUpdateMillis()), createArchivedEventsData(archivedQuake.getArchivedEvents()));
     }
 
-    private List<ArchivedEventData> createArchivedEventsData(ArrayList<ArchivedEvent> archivedEvents) {
+    private static List<ArchivedEventData> createArchivedEventsData(ArrayList<ArchivedEvent> archivedEvents) {
         List<ArchivedEventData> result = new ArrayList<>();
         for(ArchivedEvent archivedEvent : archivedEvents){
             result.add(new ArchivedEventData(
@@ -330,9 +401,11 @@ public class DataService extends GlobalQuakeEventListener {
     }
 
     private void broadcast(List<ServerClient> clients, Packet packet) {
+        // encoded at most once, no matter how many clients receive it
+        EncodedPacket encodedPacket = new EncodedPacket(packet);
         clients.forEach(client -> {
             try {
-                client.sendPacket(packet);
+                client.sendPacket(encodedPacket);
             } catch(SocketException | SocketTimeoutException e){
                 Logger.tag("Server").trace(e);
             }catch (Exception e) {
@@ -361,6 +434,8 @@ public class DataService extends GlobalQuakeEventListener {
                 processEarthquakeRequest(client, earthquakeRequestPacket);
             } else if (packet instanceof ArchivedQuakesRequestPacket) {
                 processArchivedQuakesRequest(client);
+            } else if (packet instanceof ArchivedQuakesSyncRequestPacket archivedQuakesSyncRequestPacket) {
+                processArchivedQuakesSyncRequest(client, archivedQuakesSyncRequestPacket);
             } else if(packet instanceof StationsRequestPacket){
                 processStationsRequestPacket(client);
             } else if(packet instanceof DataRequestPacket dataRequestPacket){
@@ -441,6 +516,13 @@ public class DataService extends GlobalQuakeEventListener {
         if(!data.isEmpty()){
             client.sendPacket(new StationsInfoPacket(GlobalQuake.instance.getStationManager().getIndexing(), data));
         }
+
+        if(client.getCodecVersion() != 0 && client.getClientConfig().stationData()){
+            // so that the client can apply deltas right away instead of waiting for the next keyframe
+            synchronized (stationIntensitiesLock) {
+                client.sendPacket(createIntensityKeyframe(GlobalQuake.instance.getStationManager().getIndexing(), GlobalQuake.instance.currentTimeMillis()));
+            }
+        }
     }
 
     private void processArchivedQuakesRequest(ServerClient client) throws IOException {
@@ -451,6 +533,82 @@ public class DataService extends GlobalQuakeEventListener {
         }
     }
 
+    private void processArchivedQuakesSyncRequest(ServerClient client, ArchivedQuakesSyncRequestPacket request) throws IOException {
+        client.sendPacket(createArchivePage(GlobalQuake.instance.getArchive().getArchivedQuakes(), request, ARCHIVE_PAGE_SIZE));
+    }
+
+    /**
+     * Collects the quakes of the buckets older than {@link ArchivedQuakesSyncRequestPacket#before()} whose digest
+     * differs from the one sent by the client, newest bucket first, until the page holds at least pageSize quakes.
+     * <p>
+     * The archive is sorted newest first, so the page starts at a binary search for its first bucket
+     * and only the quakes of the page and the bucket after it are read.
+     */
+    static ArchivedQuakesPagePacket createArchivePage(List<ArchivedQuake> archivedQuakes, ArchivedQuakesSyncRequestPacket request, int pageSize) {
+        Map<Long, ArchiveDigestData> known = new HashMap<>();
+        if (request.digests() != null) {
+            request.digests().forEach(digest -> known.put(digest.bucket(), digest));
+        }
+
+        List<ArchivedQuakePacket> quakes = new ArrayList<>();
+        List<ArchivedQuake> bucket = new ArrayList<>();
+        long bucketNumber = 0;
+
+        int start = Math.min(firstQuakeBefore(archivedQuakes, request.before()), archivedQuakes.size());
+        for (ListIterator<ArchivedQuake> iterator = archivedQuakes.listIterator(start); iterator.hasNext(); ) {
+            ArchivedQuake archivedQuake = iterator.next();
+            long quakeBucket = ArchiveDigestData.bucketOf(archivedQuake.getOrigin());
+            if (quakeBucket >= request.before()) {
+                // archived after the search
+                continue;
+            }
+
+            if (!bucket.isEmpty() && quakeBucket != bucketNumber) {
+                addBucket(quakes, bucket, known);
+                if (quakes.size() >= pageSize) {
+                    // buckets are never split, the client continues with this one
+                    return new ArchivedQuakesPagePacket(quakes, quakeBucket + 1, false);
+                }
+            }
+
+            bucketNumber = quakeBucket;
+            bucket.add(archivedQuake);
+        }
+
+        addBucket(quakes, bucket, known);
+        return new ArchivedQuakesPagePacket(quakes, Long.MIN_VALUE, true);
+    }
+
+    private static void addBucket(List<ArchivedQuakePacket> quakes, List<ArchivedQuake> bucket, Map<Long, ArchiveDigestData> known) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+
+        ArchiveDigestData digest = ArchiveDigestData.create(bucket, ArchivedQuake::getUuid, ArchivedQuake::getOrigin).get(0);
+        if (!digest.equals(known.get(digest.bucket()))) {
+            bucket.forEach(archivedQuake -> quakes.add(createArchivedPacket(archivedQuake)));
+        }
+
+        bucket.clear();
+    }
+
+    /**
+     * @return index of the first quake of the newest first list in a bucket older than before
+     */
+    private static int firstQuakeBefore(List<ArchivedQuake> archivedQuakes, long before) {
+        int low = 0;
+        int high = archivedQuakes.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ArchiveDigestData.bucketOf(archivedQuakes.get(mid).getOrigin()) >= before) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     private void processEarthquakeRequest(ServerClient client, EarthquakeRequestPacket earthquakeRequestPacket) throws IOException {
         for(Earthquake earthquake : GlobalQuakeServer.instance.getEarthquakeAnalysis().getEarthquakes()){
             if(earthquake.getUuid().equals(earthquakeRequestPacket.uuid())){
@@ -473,7 +631,9 @@ public class DataService extends GlobalQuakeEventListener {
         stationMap.clear();
         clientDataRequestMap.clear();
         stationDataQueueMap.clear();
-        stationIntensities.clear();
+        synchronized (stationIntensitiesLock) {
+            stationIntensities.clear();
+        }
         currentEarthquakes.clear();
     }
 }
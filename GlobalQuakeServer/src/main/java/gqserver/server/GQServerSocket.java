@@ -7,6 +7,7 @@ import globalquake.utils.monitorable.MonitorableCopyOnWriteArrayList;
 import gqserver.api.GQApi;
 import gqserver.api.Packet;
 import gqserver.api.ServerClient;
+import gqserver.api.codec.PacketCodec;
 import gqserver.api.exception.PacketLimitException;
 import gqserver.api.packets.system.HandshakePacket;
 import gqserver.api.packets.system.HandshakeSuccessfulPacket;
@@ -34,7 +35,8 @@ import java.util.concurrent.TimeUnit;
 
 public class GQServerSocket {
 
-    private static final int HANDSHAKE_TIMEOUT = 10 * 1000;
+    static final int HANDSHAKE_TIMEOUT = 10 * 1000;
+    static final String SERVER_FULL = "服务器已满!";
     private static final int WATCHDOG_TIMEOUT = 60 * 1000;
 
     public static final int READ_TIMEOUT = WATCHDOG_TIMEOUT + 10 * 1000;
@@ -51,15 +53,21 @@ public class GQServerSocket {
     private GQServerStats stats;
 
     private volatile ServerSocket lastSocket;
+    private volatile ClientSelector clientSelector;
     private final Object joinMutex = new Object();
     private final Object connectionsMapLock = new Object();
 
     private final Map<String, Integer> connectionsMap = new HashMap<>();
 
+    interface JoinAction {
+        void run() throws IOException;
+    }
+
     public GQServerSocket() {
         status = SocketStatus.IDLE;
         clients = new MonitorableCopyOnWriteArrayList<>();
         dataService = new DataService();
+        stats = new GQServerStats();
     }
 
     public void run(String ip, int port) {
@@ -74,12 +82,17 @@ public class GQServerSocket {
 
         setStatus(SocketStatus.OPENING);
         try {
-            lastSocket = new ServerSocket();
             Logger.tag("Server").info("绑定端口 %d 中...".formatted(port));
-            lastSocket.bind(new InetSocketAddress(ip, port));
+            if (Settings.selectorServer) {
+                clientSelector = new ClientSelector(this, ip, port);
+                acceptService.submit(this::runSelector);
+            } else {
+                lastSocket = new ServerSocket();
+                lastSocket.bind(new InetSocketAddress(ip, port));
+                acceptService.submit(this::runAccept);
+            }
             clientsWatchdog.scheduleAtFixedRate(this::checkClients, 0, 10, TimeUnit.SECONDS);
             clientsLimitWatchdog.scheduleAtFixedRate(this::updateLimits, 0, 60, TimeUnit.SECONDS);
-            acceptService.submit(this::runAccept);
 
             if(Main.isHeadless()){
                 statusReportingService.scheduleAtFixedRate(this::printStatus, 0, 30, TimeUnit.SECONDS);
@@ -110,8 +123,8 @@ public class GQServerSocket {
 
         if (stats != null) {
             Logger.tag("ServerStatus").info(
-                    "已接受:%d,版本错误:%d,数据包错误:%d,服务器已满:%d,成功:%d,错误:%d,IP拒绝:%d"
-                    .formatted(stats.accepted, stats.wrongVersion, stats.wrongPacket, stats.serverFull, stats.successfull, stats.errors, stats.ipRejects));
+                    "已接受:%d,版本错误:%d,数据包错误:%d,服务器已满:%d,成功:%d,错误:%d,IP拒绝:%d,慢速客户端:%d"
+                    .formatted(stats.accepted, stats.wrongVersion, stats.wrongPacket, stats.serverFull, stats.successfull, stats.errors, stats.ipRejects, stats.slowClients));
         }
     }
 
@@ -139,6 +152,7 @@ public class GQServerSocket {
 
     private boolean handshake(ServerClient client) throws IOException {
         Packet packet;
+        int codecVersion = 0;
         try {
             packet = client.readPacket();
         } catch (UnknownPacketException | PacketLimitException e) {
@@ -148,14 +162,16 @@ public class GQServerSocket {
         }
 
         if (packet instanceof HandshakePacket handshakePacket) {
-            if (handshakePacket.compatVersion() != GQApi.COMPATIBILITY_VERSION) {
-                stats.wrongVersion++;
-                client.destroy(("您的客户端版本与服务器不兼容!" +
-                        " 服务器正在运行版本 %s").formatted(GlobalQuake.version));
+            String rejection = checkHandshake(handshakePacket);
+            if (rejection != null) {
+                client.destroy(rejection);
                 return false;
             }
 
             client.setClientConfig(handshakePacket.clientConfig());
+            if (handshakePacket.codecVersion() == PacketCodec.VERSION) {
+                codecVersion = PacketCodec.VERSION;
+            }
         } else {
             stats.wrongPacket++;
             Logger.tag("Server").warn("客户端发送了无效的初始数据包!");
@@ -163,17 +179,51 @@ public class GQServerSocket {
             return false;
         }
 
+        int finalCodecVersion = codecVersion;
+        if (!join(client, () -> {
+            client.sendPacket(new HandshakeSuccessfulPacket(finalCodecVersion));
+            client.flush();
+            if (finalCodecVersion != 0) {
+                client.useBinaryCodec();
+            }
+            readerService.submit(new ClientReader(client));
+        })) {
+            client.destroy(SERVER_FULL);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return reason for rejecting the client, null if it may join
+     */
+    String checkHandshake(HandshakePacket handshakePacket) {
+        if (handshakePacket.compatVersion() != GQApi.COMPATIBILITY_VERSION) {
+            stats.wrongVersion++;
+            return ("您的客户端版本与服务器不兼容!" +
+                    " 服务器正在运行版本 %s").formatted(GlobalQuake.version);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param onJoin sends the handshake response, runs before the client is added and starts receiving broadcasts
+     * @return false if the server is full
+     */
+    boolean join(ServerClient client, JoinAction onJoin) throws IOException {
         synchronized (joinMutex) {
             if (clients.size() >= Settings.maxClients) {
-                client.destroy("服务器已满!");
                 stats.serverFull++;
                 return false;
-            } else {
-                Logger.tag("Server").info("客户端 #%d 握手成功".formatted(client.getID()));
-                stats.successfull++;
-                client.sendPacket(new HandshakeSuccessfulPacket());
-                readerService.submit(new ClientReader(client));
-                clients.add(client);
+            }
+
+            Logger.tag("Server").info("客户端 #%d 握手成功".formatted(client.getID()));
+            stats.successfull++;
+            onJoin.run();
+            clients.add(client);
+            if (GlobalQuakeServer.instance != null) {
                 GlobalQuakeServer.instance.getServerEventHandler().fireEvent(new ClientJoinedEvent(client));
             }
         }
@@ -222,6 +272,16 @@ public class GQServerSocket {
         if (lastSocket != null) {
             lastSocket.close();
         }
+
+        if (clientSelector != null) {
+            clientSelector.close();
+        }
+    }
+
+    private void runSelector() {
+        clientSelector.run();
+        clientSelector = null;
+        onClose();
     }
 
     private void runAccept() {
@@ -265,14 +325,14 @@ public class GQServerSocket {
         onClose();
     }
 
-    private void clientLeft(Socket socket) {
+    void clientLeft(Socket socket) {
         String address = getRemoteAddress(socket);
         synchronized (connectionsMapLock) {
             connectionsMap.put(address, connectionsMap.get(address) - 1);
         }
     }
 
-    private boolean checkAddress(Socket socket) {
+    boolean checkAddress(Socket socket) {
         String address = getRemoteAddress(socket);
         synchronized (connectionsMapLock) {
             int connections = connectionsMap.getOrDefault(address, 1);
@@ -299,6 +359,10 @@ public class GQServerSocket {
         return clients;
     }
 
+    GQServerStats getStats() {
+        return stats;
+    }
+
     public DataService getDataService() {
         return dataService;
     }
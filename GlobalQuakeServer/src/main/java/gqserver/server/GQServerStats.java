@@ -10,4 +10,5 @@ public class GQServerStats {
     public int successfull;
     public int errors;
     public int ipRejects;
+    public int slowClients;
 }
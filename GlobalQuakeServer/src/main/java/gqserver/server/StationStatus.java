@@ -1,8 +1,15 @@
 package gqserver.server;
 
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
+
 import java.util.Objects;
 
 public record StationStatus(boolean eventMode, boolean hasData, float intensity){
+
+    public int quantizedIntensity() {
+        return StationsIntensityDeltaPacket.quantize(intensity);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
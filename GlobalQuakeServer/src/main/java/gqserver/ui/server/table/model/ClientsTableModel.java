@@ -15,7 +15,8 @@ public class ClientsTableModel extends FilterableTableModel<ServerClient> {
             Column.readonly("加入时间", LocalDateTime.class, ServerClient::getJoinDate, new LastUpdateRenderer<>()),
             Column.readonly("延迟 (ms)", Long.class, ServerClient::getDelay, new TableCellRendererAdapter<>()),
             Column.readonly("数据包发送数", Long.class, ServerClient::getSentPackets, new TableCellRendererAdapter<>()),
-            Column.readonly("数据包接受数", Long.class, ServerClient::getReceivedPackets, new TableCellRendererAdapter<>()));
+            Column.readonly("数据包接受数", Long.class, ServerClient::getReceivedPackets, new TableCellRendererAdapter<>()),
+            Column.readonly("发送队列", Integer.class, ServerClient::getQueueDepth, new TableCellRendererAdapter<>()));
 
 
     public ClientsTableModel(List<ServerClient> data) {
@@ -0,0 +1,106 @@
+package gqserver.fdsnws_event;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LoadSheddingHandlerTest {
+
+    private static int request(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            int code = connection.getResponseCode();
+            if (code == 503) {
+                assertEquals("5", connection.getHeaderField("Retry-After"));
+            }
+            return code;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void testRejectsWhenSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // one running and one waiting request fill the pool
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        FdsnwsEventsStats stats = new FdsnwsEventsStats();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new LoadSheddingHandler(exchange -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }, workers, stats));
+        server.start();
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            URL url = new URL("http://127.0.0.1:%d/fdsnws/event/1/query".formatted(server.getAddress().getPort()));
+            Future<Integer> running = clients.submit(() -> request(url));
+            Future<Integer> queued = clients.submit(() -> request(url));
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (workers.getActiveCount() < 1 || workers.getQueue().size() < 1) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            assertEquals(503, request(url));
+            assertEquals(503, request(url));
+            assertEquals(2, stats.getRejectedTotal());
+
+            release.countDown();
+            assertEquals(200, (int) running.get(10, TimeUnit.SECONDS));
+            assertEquals(200, (int) queued.get(10, TimeUnit.SECONDS));
+            assertEquals(2, stats.getRejectedTotal());
+
+            String report = stats.report();
+            assertNotNull(report);
+            assertTrue(report.contains("拒绝:2"));
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+            server.stop(0);
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectionWarningRateLimited() {
+        FdsnwsEventsStats stats = new FdsnwsEventsStats();
+        long now = System.nanoTime();
+        long interval = FdsnwsEventsStats.REJECTION_WARNING_INTERVAL;
+
+        assertEquals(1, stats.rejected(now));
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(0, stats.rejected(now + i * interval / 200));
+        }
+
+        // the next warning sums up everything since the previous one
+        assertEquals(101, stats.rejected(now + interval));
+        assertEquals(0, stats.rejected(now + interval + 1));
+        assertEquals(103, stats.getRejectedTotal());
+    }
+}
@@ -0,0 +1,107 @@
+package gqserver.server;
+
+import gqserver.api.Packet;
+import gqserver.api.codec.PacketCodec;
+import gqserver.api.data.cluster.ClusterData;
+import gqserver.api.data.earthquake.HypocenterData;
+import gqserver.api.data.station.StationIntensityData;
+import gqserver.api.packets.data.DataRecordPacket;
+import gqserver.api.packets.earthquake.HypocenterDataPacket;
+import gqserver.api.packets.station.StationsIntensityPacket;
+import gqserver.api.packets.system.HeartbeatPacket;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ChannelServerClientTest {
+
+    private static HypocenterDataPacket hypocenter(UUID uuid, int revision) {
+        return new HypocenterDataPacket(new HypocenterData(uuid, revision, 50, 17, 10, 0, 4.5f, 0, "Czech Republic"),
+                null, new ClusterData(uuid, 50, 17, 1));
+    }
+
+    @Test
+    public void testBackpressure() throws Throwable {
+        try (ClientSelector selector = new ClientSelector(new GQServerSocket(), "127.0.0.1", 0);
+             ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             SocketChannel peer = SocketChannel.open(serverChannel.getLocalAddress());
+             SocketChannel channel = serverChannel.accept()) {
+            channel.configureBlocking(false);
+            ChannelServerClient client = new ChannelServerClient(channel, selector, PacketCodec.VERSION);
+
+            UUID uuid = UUID.randomUUID();
+            client.sendPacket(new HeartbeatPacket());
+            for (int i = 1; i < ChannelServerClient.SOFT_QUEUE_LIMIT + 10; i++) {
+                client.sendPacket(new DataRecordPacket(0, new byte[8]));
+            }
+
+            assertEquals(ChannelServerClient.SOFT_QUEUE_LIMIT, client.getQueueDepth());
+            assertEquals(10, client.getDroppedPackets());
+
+            client.sendPacket(hypocenter(uuid, 1));
+            client.sendPacket(hypocenter(uuid, 2));
+            client.sendPacket(hypocenter(uuid, 3));
+            assertEquals(ChannelServerClient.SOFT_QUEUE_LIMIT + 1, client.getQueueDepth());
+            assertEquals(2, client.getCoalescedPackets());
+
+            assertFalse(client.isStalled(System.currentTimeMillis()));
+            assertTrue(client.isStalled(System.currentTimeMillis() + ChannelServerClient.BACKPRESSURE_TIMEOUT + 1));
+
+            while (!client.write()) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(0, client.getQueueDepth());
+            assertFalse(client.isStalled(System.currentTimeMillis() + ChannelServerClient.BACKPRESSURE_TIMEOUT + 1));
+
+            DataInputStream in = new DataInputStream(peer.socket().getInputStream());
+            assertTrue(PacketCodec.read(in) instanceof HeartbeatPacket);
+            for (int i = 1; i < ChannelServerClient.SOFT_QUEUE_LIMIT; i++) {
+                assertTrue(PacketCodec.read(in) instanceof DataRecordPacket);
+            }
+            assertEquals(hypocenter(uuid, 3), PacketCodec.read(in));
+        }
+    }
+
+    @Test
+    public void testHardLimit() throws Throwable {
+        try (ClientSelector selector = new ClientSelector(new GQServerSocket(), "127.0.0.1", 0);
+             ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             SocketChannel ignored = SocketChannel.open(serverChannel.getLocalAddress());
+             SocketChannel channel = serverChannel.accept()) {
+            channel.configureBlocking(false);
+            ChannelServerClient client = new ChannelServerClient(channel, selector, PacketCodec.VERSION);
+
+            for (int i = 0; i <= ChannelServerClient.HARD_QUEUE_LIMIT; i++) {
+                client.sendPacket(hypocenter(UUID.randomUUID(), 0));
+            }
+
+            assertFalse(client.isConnected());
+            assertEquals(0, client.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void testMergeIntensities() {
+        UUID indexing = UUID.randomUUID();
+        Packet merged = ChannelServerClient.merge(
+                new StationsIntensityPacket(indexing, 1000, List.of(new StationIntensityData(1, 1f, false), new StationIntensityData(2, 2f, false))),
+                new StationsIntensityPacket(indexing, 2000, List.of(new StationIntensityData(2, 5f, true), new StationIntensityData(3, 3f, false))));
+
+        assertEquals(new StationsIntensityPacket(indexing, 2000, List.of(
+                new StationIntensityData(1, 1f, false),
+                new StationIntensityData(2, 5f, true),
+                new StationIntensityData(3, 3f, false))), merged);
+
+        assertNull(ChannelServerClient.merge(
+                new StationsIntensityPacket(UUID.randomUUID(), 1000, List.of()),
+                new StationsIntensityPacket(indexing, 2000, List.of())));
+    }
+}
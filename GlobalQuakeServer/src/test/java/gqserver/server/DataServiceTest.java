@@ -0,0 +1,274 @@
+package gqserver.server;
+
+import globalquake.core.GlobalQuake;
+import globalquake.core.archive.ArchivedQuake;
+import globalquake.core.earthquake.quality.QualityClass;
+import globalquake.core.station.AbstractStation;
+import globalquake.core.station.GlobalStationManager;
+import gqserver.api.Packet;
+import gqserver.api.ServerClient;
+import gqserver.api.codec.EncodedPacket;
+import gqserver.api.codec.PacketCodec;
+import gqserver.api.data.earthquake.ArchiveDigestData;
+import gqserver.api.exception.UnknownPacketException;
+import gqserver.api.packets.earthquake.ArchivedQuakePacket;
+import gqserver.api.packets.earthquake.ArchivedQuakesPagePacket;
+import gqserver.api.packets.earthquake.ArchivedQuakesSyncRequestPacket;
+import gqserver.api.packets.station.InputType;
+import gqserver.api.packets.station.StationsIntensityDeltaPacket;
+import gqserver.api.packets.station.StationsIntensityState;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class DataServiceTest {
+
+    private static final long DAY = ArchiveDigestData.BUCKET_LENGTH;
+
+    private static class TestStation extends AbstractStation {
+        private double intensity;
+        private boolean eventMode;
+
+        TestStation(int id) {
+            super("GQ", "S" + id, "HHZ", "", 50, 17, 0, id, null, -1);
+        }
+
+        @Override
+        public double getMaxRatio60S() {
+            return intensity;
+        }
+
+        @Override
+        public boolean isInEventMode() {
+            return eventMode;
+        }
+
+        @Override
+        public boolean hasDisplayableData() {
+            return true;
+        }
+
+        @Override
+        public InputType getInputType() {
+            return InputType.UNKNOWN;
+        }
+    }
+
+    /**
+     * Binary codec client that keeps the broadcast packets, read back from the frames it would write to the socket.
+     */
+    private static class RecordingClient extends ServerClient {
+        private final List<Packet> packets = new ArrayList<>();
+
+        RecordingClient() {
+            super(new Socket(), PacketCodec.VERSION);
+        }
+
+        @Override
+        public synchronized void sendPacket(EncodedPacket packet) {
+            try {
+                packets.add(PacketCodec.read(new DataInputStream(new ByteArrayInputStream(packet.frame()))));
+            } catch (IOException | UnknownPacketException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        GlobalQuake.instance = null;
+    }
+
+    private static ArchivedQuake quake(long origin) {
+        return new ArchivedQuake(UUID.randomUUID(), 50, 17, 10, 4.5, origin, QualityClass.B, origin + 1000);
+    }
+
+    private static List<ArchiveDigestData> digests(List<ArchivedQuake> quakes) {
+        return ArchiveDigestData.create(quakes, ArchivedQuake::getUuid, ArchivedQuake::getOrigin);
+    }
+
+    @Test
+    public void testArchivePages() {
+        List<ArchivedQuake> archive = new ArrayList<>();
+        for (int day = 9; day >= 0; day--) {
+            archive.add(quake(day * DAY + 1000));
+            archive.add(quake(day * DAY + 2000));
+        }
+
+        // empty client, pages of whole buckets newest first
+        List<ArchivedQuake> received = new ArrayList<>();
+        long before = Long.MAX_VALUE;
+        int pages = 0;
+        while (true) {
+            ArchivedQuakesPagePacket page = DataService.createArchivePage(archive, new ArchivedQuakesSyncRequestPacket(before, List.of()), 5);
+            pages++;
+            for (ArchivedQuakePacket quakePacket : page.quakes()) {
+                received.add(archive.stream().filter(q -> q.getUuid().equals(quakePacket.archivedQuakeData().uuid())).findAny().orElseThrow());
+            }
+            if (page.last()) {
+                break;
+            }
+            before = page.nextBefore();
+        }
+
+        assertEquals(4, pages);
+        assertEquals(archive.size(), received.size());
+        assertEquals(digests(archive), digests(received));
+
+        // up to date client
+        ArchivedQuakesPagePacket page = DataService.createArchivePage(archive, new ArchivedQuakesSyncRequestPacket(Long.MAX_VALUE, digests(archive)), 5);
+        assertTrue(page.last());
+        assertTrue(page.quakes().isEmpty());
+
+        // client missing one quake receives only its bucket
+        List<ArchivedQuake> known = new ArrayList<>(archive);
+        ArchivedQuake missing = known.remove(7);
+        page = DataService.createArchivePage(archive, new ArchivedQuakesSyncRequestPacket(Long.MAX_VALUE, digests(known)), 5);
+        assertTrue(page.last());
+        assertEquals(2, page.quakes().size());
+        assertTrue(page.quakes().stream().anyMatch(p -> p.archivedQuakeData().uuid().equals(missing.getUuid())));
+    }
+
+    @Test
+    public void testIntensityQuantization() {
+        assertEquals(0, StationsIntensityDeltaPacket.quantize(0));
+        assertEquals(0, StationsIntensityDeltaPacket.quantize(-5));
+        assertEquals(0, StationsIntensityDeltaPacket.quantize(Double.NaN));
+        assertEquals(0.0, StationsIntensityDeltaPacket.dequantize(0), 0);
+        // below the smallest step
+        assertEquals(1, StationsIntensityDeltaPacket.quantize(1e-5));
+
+        for (int quantized = 1; quantized < 1000; quantized++) {
+            assertEquals(quantized, StationsIntensityDeltaPacket.quantize(StationsIntensityDeltaPacket.dequantize(quantized)));
+        }
+
+        // half of a step of 1/100 of a decade
+        double maxError = Math.pow(10, 0.005) - 1;
+        Random random = new Random(0);
+        for (int i = 0; i < 10_000; i++) {
+            double intensity = Math.pow(10, random.nextDouble() * 8 - 2);
+            double restored = StationsIntensityDeltaPacket.dequantize(StationsIntensityDeltaPacket.quantize(intensity));
+            assertEquals(1.0, restored / intensity, maxError + 1e-9);
+        }
+    }
+
+    @Test
+    public void testIntensityDeltas() throws Exception {
+        if (GlobalQuake.mainFolder == null) {
+            // settings are saved on first use
+            GlobalQuake.prepare(Files.createTempDirectory("settings").toFile(), null);
+        }
+
+        GlobalStationManager stationManager = new GlobalStationManager() {
+            {
+                indexing = UUID.randomUUID();
+            }
+        };
+        new GlobalQuake() {
+            @Override
+            public GlobalStationManager getStationManager() {
+                return stationManager;
+            }
+
+            @Override
+            public boolean limitedSettings() {
+                return false;
+            }
+
+            @Override
+            public boolean limitedWaveformBuffers() {
+                return false;
+            }
+        };
+
+        Random random = new Random(1);
+        List<TestStation> stations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            TestStation station = new TestStation(i);
+            station.intensity = i % 10 == 0 ? 0 : Math.pow(10, random.nextDouble() * 6 - 1);
+            stations.add(station);
+        }
+
+        DataService dataService = new DataService();
+        RecordingClient client = new RecordingClient();
+        StationsIntensityState state = new StationsIntensityState();
+        boolean[] eventModes = new boolean[stations.size()];
+        double[] intensities = new double[stations.size()];
+
+        int interval = DataService.KEYFRAME_INTERVAL_SECONDS;
+        int droppedSecond = interval + 10;
+        int lastSequence = 0;
+
+        for (int second = 1; second <= 2 * interval + 10; second++) {
+            // the stations change now and then, some seconds nothing changes at all
+            if (second % 7 != 0) {
+                for (int i = 0; i < 5; i++) {
+                    TestStation station = stations.get(random.nextInt(stations.size()));
+                    station.intensity = Math.pow(10, random.nextDouble() * 6 - 1);
+                    station.eventMode = random.nextBoolean();
+                }
+            }
+
+            // as the runtime does once a second
+            boolean changed = false;
+            for (TestStation station : stations) {
+                if (station.updateReportedState()) {
+                    stationManager.markChanged(station);
+                    changed = true;
+                }
+            }
+
+            dataService.sendIntensityData(List.of(client));
+
+            boolean keyframe = second % interval == 0;
+            if (!keyframe && !changed) {
+                assertTrue(client.packets.isEmpty());
+                continue;
+            }
+
+            assertEquals(1, client.packets.size());
+            StationsIntensityDeltaPacket packet = (StationsIntensityDeltaPacket) client.packets.remove(0);
+            assertEquals(keyframe, packet.keyframe());
+            assertEquals(++lastSequence, packet.sequence());
+            assertEquals(stationManager.getIndexing(), packet.stationsIndexing());
+            if (keyframe) {
+                assertEquals(stations.size(), packet.indices().length);
+            }
+
+            if (second == droppedSecond) {
+                continue;
+            }
+
+            boolean applied = state.apply(packet, (index, intensity, eventMode) -> {
+                intensities[index] = intensity;
+                eventModes[index] = eventMode;
+            });
+
+            // nothing is applied before the first keyframe and between the dropped delta and the next keyframe
+            boolean synced = second >= interval && (second < droppedSecond || second >= 2 * interval);
+            assertEquals(synced, applied);
+            assertEquals(synced, state.isSynced());
+            if (!synced) {
+                continue;
+            }
+
+            for (TestStation station : stations) {
+                int expected = StationsIntensityDeltaPacket.quantize((float) station.intensity);
+                assertEquals(expected, state.getQuantizedIntensity(station.getId()));
+                assertEquals(StationsIntensityDeltaPacket.dequantize(expected), intensities[station.getId()], 0);
+                assertEquals(station.eventMode, eventModes[station.getId()]);
+            }
+        }
+    }
+}